@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Generates a dynamic class data sharing (AppCDS) archive for an uber-jar by a
+ * training run, and reports at startup of the uber-jar whether the archive is
+ * in use.
+ * <p>
+ * The archive is stored next to the uber-jar and its file name is recorded in
+ * the manifest attribute {@value #ARCHIVE_ATTRIBUTE}. The JVM only maps an
+ * archive given with {@code -XX:SharedArchiveFile}, so the manifest entry
+ * cannot enable it by itself.
+ */
+public class ClassDataSharing {
+
+    public static final String ARCHIVE_ATTRIBUTE = "Launcher-CDS-Archive";
+
+    private static final Logger LOGGER = Logger.getLogger(ClassDataSharing.class.getName());
+
+    private static final long READY_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    private static final long STOP_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+    private static final long POLL_INTERVAL = 100;
+
+    private final Path jar;
+    private final Path archive;
+    private final URL readinessUrl;
+
+    public ClassDataSharing(Path jar, URL readinessUrl) {
+        this.jar = jar.toAbsolutePath();
+        this.archive = this.jar.resolveSibling(getArchiveName(jar));
+        this.readinessUrl = readinessUrl;
+    }
+
+    /**
+     * Returns the file name of the archive generated for the given uber-jar.
+     */
+    public static String getArchiveName(Path jar) {
+        String name = jar.getFileName().toString();
+        if (name.endsWith(".jar")) {
+            name = name.substring(0, name.length() - 4);
+        }
+        return name + ".jsa";
+    }
+
+    /**
+     * Starts the uber-jar, waits until the readiness URL answers with anything
+     * but 503, and stops it so that the JVM dumps the classes it has loaded.
+     * The uber-jar is then started once more with the archive to compare the
+     * startup times.
+     */
+    public void generate() throws IOException, InterruptedException {
+        if (Runtime.version().feature() < 13) {
+            throw new IllegalStateException("Dynamic class data sharing archives require Java 13 or later.");
+        }
+        Files.deleteIfExists(archive);
+
+        long withoutArchive = run("-XX:ArchiveClassesAtExit=" + archive);
+        if (!Files.isRegularFile(archive)) {
+            throw new IllegalStateException("Class data sharing archive was not created: " + archive);
+        }
+        long withArchive = run("-XX:SharedArchiveFile=" + archive);
+
+        LOGGER.log(Level.INFO, "Class data sharing archive was generated. {0}", archive);
+        LOGGER.log(Level.INFO, "Startup time without archive: {0} ms, with archive: {1} ms",
+                new Object[] { withoutArchive, withArchive });
+        LOGGER.log(Level.INFO, "Start the uber-jar with: java -XX:SharedArchiveFile={0} -jar {1}",
+                new Object[] { archive, jar });
+    }
+
+    private long run(String archiveOption) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = Arrays.asList(java, archiveOption, "-jar", jar.toString());
+        File log = File.createTempFile("launcher-cds", ".log");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        long startupTime;
+        try {
+            waitUntilReady(process, log);
+            startupTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            // The archive is dumped when the JVM exits normally, which the
+            // shutdown hooks of the launcher do on termination
+            process.destroy();
+            if (!process.waitFor(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IllegalStateException("Training run did not stop, see " + log);
+            }
+        }
+        Files.delete(log.toPath());
+        return startupTime;
+    }
+
+    private void waitUntilReady(Process process, File log) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT;
+        while (System.currentTimeMillis() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Training run exited with " + process.exitValue() + ", see " + log);
+            }
+            if (isReady()) {
+                return;
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        throw new IllegalStateException("Application did not become ready at " + readinessUrl + ", see " + log);
+    }
+
+    private boolean isReady() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) readinessUrl.openConnection();
+            connection.setConnectTimeout(1000);
+            connection.setReadTimeout(60000);
+            try {
+                int status = connection.getResponseCode();
+                InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+                if (body != null) {
+                    body.readAllBytes();
+                    body.close();
+                }
+                return status != HttpURLConnection.HTTP_UNAVAILABLE;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Logs whether the archive recorded in the manifest of the uber-jar
+     * containing the given class is used by this JVM.
+     */
+    public static void report(Class<?> mainClass) {
+        Path jar;
+        String archiveName;
+        try {
+            jar = Paths.get(mainClass.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if (!Files.isRegularFile(jar)) {
+                return;
+            }
+            try (JarFile jarFile = new JarFile(jar.toFile())) {
+                Manifest manifest = jarFile.getManifest();
+                archiveName = manifest == null ? null : manifest.getMainAttributes().getValue(ARCHIVE_ATTRIBUTE);
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Class data sharing archive could not be looked up.", e);
+            return;
+        }
+        if (archiveName == null) {
+            return;
+        }
+
+        Path archive = jar.toAbsolutePath().resolveSibling(archiveName);
+        if (isInUse(archive)) {
+            LOGGER.log(Level.INFO, "Class data sharing archive is in use. {0}", archive);
+        } else if (Files.isRegularFile(archive)) {
+            LOGGER.log(Level.INFO, "Class data sharing archive is not in use. Start with -XX:SharedArchiveFile={0} to use it.",
+                    archive);
+        } else {
+            LOGGER.log(Level.INFO, "Class data sharing archive is not found. {0}", archive);
+        }
+    }
+
+    private static boolean isInUse(Path archive) {
+        if (!System.getProperty("java.vm.info", "").contains("sharing")) {
+            return false;
+        }
+        try {
+            HotSpotDiagnosticMXBean diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            String sharedArchiveFile = diagnostic == null ? "" : diagnostic.getVMOption("SharedArchiveFile").getValue();
+            return !sharedArchiveFile.isEmpty() && Files.isSameFile(Paths.get(sharedArchiveFile), archive);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+}
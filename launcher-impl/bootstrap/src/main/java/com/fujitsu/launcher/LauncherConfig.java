@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2021 Fujitsu Limited and/or its affiliates. All rights
+ * Copyright (c) 2021, 2023 Fujitsu Limited and/or its affiliates. All rights
  * reserved.
  *
  * This program and the accompanying materials are made available under the
@@ -15,6 +15,7 @@ import java.util.List;
 public class LauncherConfig {
 
     private Operation operation;
+    private boolean cdsArchive;
     private String configFile;
     private String contextRoot = "/";
     private String deploy;
@@ -26,6 +27,7 @@ public class LauncherConfig {
     private String libraries;
     private boolean precompilejsp;
     private List<String> subcommandArguments;
+    private String warmupUrl;
 
     public void setOperation(Operation operation) {
         this.operation = operation;
@@ -35,6 +37,14 @@ public class LauncherConfig {
         return operation;
     }
 
+    public boolean isCdsArchive() {
+        return cdsArchive;
+    }
+
+    public void setCdsArchive(boolean cdsArchive) {
+        this.cdsArchive = cdsArchive;
+    }
+
     public String getConfigFile() {
         return configFile;
     }
@@ -122,4 +132,12 @@ public class LauncherConfig {
     public void setSubcommandArguments(List<String> subcommandArguments) {
         this.subcommandArguments = subcommandArguments;
     }
+
+    public String getWarmupUrl() {
+        return warmupUrl;
+    }
+
+    public void setWarmupUrl(String warmupUrl) {
+        this.warmupUrl = warmupUrl;
+    }
 }
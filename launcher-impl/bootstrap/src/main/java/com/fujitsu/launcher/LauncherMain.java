@@ -16,6 +16,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URL;
@@ -24,10 +25,13 @@ import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -41,7 +45,10 @@ import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.internal.api.Globals;
 
 import com.fujitsu.launcher.cli.CommandLineException;
+import com.fujitsu.launcher.deployment.DeploymentGate;
+import com.fujitsu.launcher.shutdown.RequestDrain;
 import com.fujitsu.launcher.cli.LauncherCommandLine;
+import com.fujitsu.launcher.startup.StartupProfiler;
 import com.sun.enterprise.glassfish.bootstrap.Constants;
 import com.sun.enterprise.module.bootstrap.StartupContext;
 
@@ -51,6 +58,16 @@ import com.sun.enterprise.module.bootstrap.StartupContext;
  */
 public class LauncherMain {
 
+    private static final String CONFIG_SERVICES_SNAPSHOT = "uber-jar_config-services.properties";
+    private static final List<String> CONFIG_SERVICES = Arrays.asList(
+            "org.eclipse.microprofile.config.spi.ConfigSource",
+            "org.eclipse.microprofile.config.spi.ConfigSourceProvider",
+            "org.eclipse.microprofile.config.spi.Converter",
+            "io.smallrye.config.ConfigSourceFactory",
+            "io.smallrye.config.ConfigSourceInterceptor",
+            "io.smallrye.config.ConfigSourceInterceptorFactory",
+            "io.smallrye.config.ConfigValidator");
+
     private GlassFishProperties glassfishProperties = new GlassFishProperties();
     private DeployProperties deployProperties = new DeployProperties();
     private LauncherConfig config;
@@ -134,7 +151,19 @@ public class LauncherMain {
                 glassfishProperties.getProperties().store(gbw, this.getClass().getName());
                 deployProperties.store(dbw, this.getClass().getName());
                 Files.delete(zipfs.getPath("META-INF/MANIFEST.MF"));
-                Files.copy(mis, zipfs.getPath("META-INF/MANIFEST.MF"));
+                if (config.isCdsArchive()) {
+                    // The archive has to be named before the training run, as
+                    // it is only valid for the uber-jar as it is at that time
+                    Manifest manifest = new Manifest(mis);
+                    manifest.getMainAttributes().putValue(ClassDataSharing.ARCHIVE_ATTRIBUTE,
+                            ClassDataSharing.getArchiveName(Paths.get(outputJar)));
+                    try (OutputStream mos = Files.newOutputStream(zipfs.getPath("META-INF/MANIFEST.MF"))) {
+                        manifest.write(mos);
+                    }
+                } else {
+                    Files.copy(mis, zipfs.getPath("META-INF/MANIFEST.MF"));
+                }
+                writeConfigServicesSnapshot(zipfs);
             }
             if (configFile != null) {
                 try (
@@ -149,6 +178,55 @@ public class LauncherMain {
             System.exit(1);
         }
         Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Uber-jar was generated. {0}", config.getGenerate());
+
+        if (config.isCdsArchive()) {
+            try {
+                new ClassDataSharing(Paths.get(config.getGenerate()), getReadinessUrl()).generate();
+            } catch (Throwable th) {
+                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Class data sharing archive can't be generated.", th);
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Returns the URL polled by the training run, which also serves as the warm-up request.
+     */
+    private URL getReadinessUrl() throws IOException {
+        String warmupUrl = config.getWarmupUrl();
+        if (warmupUrl != null) {
+            return new URL(warmupUrl);
+        }
+        String contextRoot = config.getContextRoot();
+        if (!contextRoot.startsWith("/")) {
+            contextRoot = "/" + contextRoot;
+        }
+        return new URL("http", "localhost", config.getHttpListener(), contextRoot);
+    }
+
+    /**
+     * Records the MicroProfile Config service providers of the uber-jar so that building a config does not
+     * need to scan the class path for them at startup.
+     */
+    private void writeConfigServicesSnapshot(FileSystem zipfs) throws IOException {
+        Properties snapshot = new Properties();
+        for (String service : CONFIG_SERVICES) {
+            Path path = zipfs.getPath("META-INF/services/" + service);
+            List<String> providers = new ArrayList<>();
+            if (Files.exists(path)) {
+                for (String line : Files.readAllLines(path)) {
+                    int comment = line.indexOf('#');
+                    String provider = (comment < 0 ? line : line.substring(0, comment)).trim();
+                    if (!provider.isEmpty() && !providers.contains(provider)) {
+                        providers.add(provider);
+                    }
+                }
+            }
+            snapshot.setProperty(service, String.join(",", providers));
+        }
+        try (BufferedWriter sbw = Files.newBufferedWriter(zipfs.getPath(CONFIG_SERVICES_SNAPSHOT))) {
+            snapshot.store(sbw, this.getClass().getName());
+        }
     }
 
     private void launch() {
@@ -164,8 +242,10 @@ public class LauncherMain {
             Runtime.getRuntime().addShutdownHook(postInitShutdownHook);
             Runtime.getRuntime().removeShutdownHook(preInitShutdownHook);
 
+            armDeploymentGate();
             glassfish.start();
             glassfish.getDeployer().deploy(new File(config.getDeploy()), deployProperties.getDeployOptions());
+            writeStartupProfile();
         } catch (Throwable th) {
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Server was stopped.", th);
             cleanInstanceRoot();
@@ -248,6 +328,30 @@ public class LauncherMain {
         }
     }
 
+    /**
+     * Makes the listeners answer requests with 503 until the application is started.
+     */
+    public static void armDeploymentGate() {
+        if (!Boolean.getBoolean("com.fujitsu.launcher.deploy.disableDeploymentGate")) {
+            DeploymentGate.arm();
+        }
+    }
+
+    /**
+     * Writes the startup timeline, if profiling is enabled, into the directory
+     * given by {@code com.fujitsu.launcher.startup.profileDir} or else into the
+     * instance root.
+     */
+    public static void writeStartupProfile() {
+        if (!StartupProfiler.isRecording()) {
+            return;
+        }
+        String directory = System.getProperty("com.fujitsu.launcher.startup.profileDir", getInstanceRoot());
+        if (directory != null) {
+            StartupProfiler.writeReports(Paths.get(directory));
+        }
+    }
+
     public static Thread createPreInitShutdownHook() {
         return new Thread() {
             public void run() {
@@ -260,6 +364,7 @@ public class LauncherMain {
         return new Thread() {
             public void run() {
                 try {
+                    drainRequests();
                     glassfish.stop();
                     glassfish.dispose();
                 } catch (Exception e) {
@@ -269,6 +374,24 @@ public class LauncherMain {
         };
     }
 
+    /**
+     * Reports readiness as DOWN, stops accepting connections after the
+     * readiness delay and waits for the requests in flight before the server
+     * is stopped.
+     */
+    private static void drainRequests() {
+        long timeout = Long.getLong("com.fujitsu.launcher.shutdown.drainTimeout", 30000);
+        if (timeout <= 0) {
+            return;
+        }
+        long delay = Long.getLong("com.fujitsu.launcher.shutdown.readinessDelay", 0);
+        try {
+            RequestDrain.drain(delay, timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     public static void cleanInstanceRoot() {
         String instanceRootProp = getInstanceRoot();
         if (instanceRootProp != null) {
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2021 Fujitsu Limited and/or its affiliates. All rights
+ * Copyright (c) 2021, 2023 Fujitsu Limited and/or its affiliates. All rights
  * reserved.
  *
  * This program and the accompanying materials are made available under the
@@ -16,6 +16,7 @@ import com.fujitsu.launcher.LauncherConfig;
 import com.fujitsu.launcher.Operation;
 
 public class LauncherCommandLine {
+    public static final String CDS_ARCHIVE_OPTION = "--cds-archive";
     public static final String CONFIG_FILE_OPTION = "--config-file";
     public static final String CONTEXT_ROOT_OPTION = "--contextroot";
     public static final String DEPLOY_OPTION = "--deploy";
@@ -26,13 +27,22 @@ public class LauncherCommandLine {
     public static final String HTTPS_LISTENER_OPTION = "--https-listener";
     public static final String LIBRARIES_OPTION = "--libraries";
     public static final String PRECOMPILEJSP_OPTION = "--precompilejsp";
+    public static final String WARMUP_URL_OPTION = "--warmup-url";
+
+    private static final String[] GENERATE_ONLY_OPTIONS = new String[] {
+            CDS_ARCHIVE_OPTION,
+            FORCE_OPTION,
+            WARMUP_URL_OPTION,
+    };
 
     private static final String[] FORBIDDEN_OPTIONS_FOR_EXECUTE = new String[] {
+            CDS_ARCHIVE_OPTION,
             CONTEXT_ROOT_OPTION,
             FORCE_OPTION,
             GENERATE_OPTION,
             LIBRARIES_OPTION,
             PRECOMPILEJSP_OPTION,
+            WARMUP_URL_OPTION,
     };
 
     public LauncherConfig parseCommandLine(String[] args) throws CommandLineException {
@@ -51,6 +61,7 @@ public class LauncherCommandLine {
     }
 
     private void initOptionMap(OptionSpec optionSpec) {
+        optionSpec.define(CDS_ARCHIVE_OPTION, BooleanOption.class);
         optionSpec.define(CONFIG_FILE_OPTION, StringOption.class);
         optionSpec.define(CONTEXT_ROOT_OPTION, StringOption.class);
         optionSpec.define(DEPLOY_OPTION, StringOption.class);
@@ -61,6 +72,7 @@ public class LauncherCommandLine {
         optionSpec.define(HTTPS_LISTENER_OPTION, IntOption.class);
         optionSpec.define(LIBRARIES_OPTION, StringOption.class);
         optionSpec.define(PRECOMPILEJSP_OPTION, BooleanOption.class);
+        optionSpec.define(WARMUP_URL_OPTION, StringOption.class);
     }
 
     private static LauncherConfig createConfigFromParsingResult(Operation operation, OptionMap optionMap, ArgumentList argumentList) {
@@ -78,6 +90,8 @@ public class LauncherCommandLine {
         setConfigIfPresent(config::setGenerate, optionMap.get(GENERATE_OPTION, StringOption.class));
         setConfigIfPresent(config::setForce, optionMap.get(FORCE_OPTION, StringOption.class));
         setConfigIfPresent(config::setExecute, optionMap.get(EXECUTE_OPTION, StringOption.class));
+        setConfigIfPresent(config::setCdsArchive, optionMap.get(CDS_ARCHIVE_OPTION, BooleanOption.class));
+        setConfigIfPresent(config::setWarmupUrl, optionMap.get(WARMUP_URL_OPTION, StringOption.class));
 
         config.setSubcommandArguments(argumentList.getList());
 
@@ -121,8 +135,14 @@ public class LauncherCommandLine {
 
         // test forbidden options
         if (operation == Operation.DEPLOY) {
-            if (optionMap.get(FORCE_OPTION) != null) {
-                throw new CommandLineException("Option '--force' must be used with option '--generate'.");
+            for (String generateOnly : GENERATE_ONLY_OPTIONS) {
+                if (optionMap.get(generateOnly) != null) {
+                    throw new CommandLineException("Option '" + generateOnly + "' must be used with option '--generate'.");
+                }
+            }
+        } else if (operation == Operation.GENERATE) {
+            if (optionMap.get(WARMUP_URL_OPTION) != null && optionMap.get(CDS_ARCHIVE_OPTION) == null) {
+                throw new CommandLineException("Option '--warmup-url' must be used with option '--cds-archive'.");
             }
         } else if (operation == Operation.EXECUTE) {
             for (String forbidden : FORBIDDEN_OPTIONS_FOR_EXECUTE) {
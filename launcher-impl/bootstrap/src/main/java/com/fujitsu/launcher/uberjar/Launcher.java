@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2017-2022 Fujitsu Limited and/or its affiliates. All rights
+ * Copyright (c) 2017-2023 Fujitsu Limited and/or its affiliates. All rights
  * reserved.
  *
  * This program and the accompanying materials are made available under the
@@ -10,6 +10,7 @@
  */
 package com.fujitsu.launcher.uberjar;
 
+import com.fujitsu.launcher.ClassDataSharing;
 import com.fujitsu.launcher.DeployProperties;
 import com.fujitsu.launcher.LauncherMain;
 
@@ -48,6 +49,7 @@ public class Launcher {
             deployProperties.load(dpis);
 
             LauncherMain.initProductName();
+            ClassDataSharing.report(Launcher.class);
 
             Thread preInitShutdownHook = LauncherMain.createPreInitShutdownHook();
             Runtime.getRuntime().addShutdownHook(preInitShutdownHook);
@@ -58,8 +60,10 @@ public class Launcher {
             Runtime.getRuntime().addShutdownHook(postInitShutdownHook);
             Runtime.getRuntime().removeShutdownHook(preInitShutdownHook);
 
+            LauncherMain.armDeploymentGate();
             glassfish.start();
             glassfish.getDeployer().deploy(wis, deployProperties.getDeployOptions());
+            LauncherMain.writeStartupProfile();
         } catch (Throwable th) {
             Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Server was stopped.", th);
             LauncherMain.cleanInstanceRoot();
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2021 Fujitsu Limited and/or its affiliates. All rights
+ * Copyright (c) 2021, 2023 Fujitsu Limited and/or its affiliates. All rights
  * reserved.
  *
  * This program and the accompanying materials are made available under the
@@ -60,6 +60,34 @@ public class LauncherCommandLineTest {
         assertEquals("myuber.jar", config.getGenerate());
     }
 
+    @Test
+    public void testGenerateWithCdsArchive() throws CommandLineException {
+        LauncherCommandLine commandLine = new LauncherCommandLine();
+        LauncherConfig config = commandLine.parseCommandLine(new String[] {
+                "--deploy", "myapp.war",
+                "--generate", "myuber.jar",
+                "--cds-archive",
+                "--warmup-url", "http://localhost:8080/myapp"
+        });
+
+        assertEquals(Operation.GENERATE, config.getOperation());
+        assertEquals(true, config.isCdsArchive());
+        assertEquals("http://localhost:8080/myapp", config.getWarmupUrl());
+    }
+
+    @Test
+    public void testWarmupUrlWithoutCdsArchive() {
+        LauncherCommandLine commandLine = new LauncherCommandLine();
+
+        Exception exception = assertThrows(
+                CommandLineException.class, () -> {
+                    commandLine.parseCommandLine(new String[] {
+                            "--deploy", "myapp.war", "--generate", "myuber.jar", "--warmup-url", "http://localhost:8080/" });
+                });
+
+        assertEquals("Option '--warmup-url' must be used with option '--cds-archive'.", exception.getMessage());
+    }
+
     @Test
     public void testExecute() throws CommandLineException {
         LauncherCommandLine commandLine = new LauncherCommandLine();
@@ -118,6 +146,13 @@ public class LauncherCommandLineTest {
                 });
 
         assertEquals("Option '--force' must be used with option '--generate'.", exception.getMessage());
+
+        exception = assertThrows(
+                CommandLineException.class, () -> {
+                    commandLine.parseCommandLine(new String[] { "--deploy", "myapp.war", "--cds-archive" });
+                });
+
+        assertEquals("Option '--cds-archive' must be used with option '--generate'.", exception.getMessage());
     }
 
     @Test
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.deployment;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tracks the deployment of the application while the HTTP listeners are
+ * already accepting connections.
+ * <p>
+ * Launcher arms the gate before the server is started. Until the application
+ * has been started, the listeners answer requests with
+ * {@code 503 Service Unavailable} instead of passing them to the empty
+ * mapper. The gate opens when {@code ApplicationLifecycle} has started the
+ * application and stays open afterwards.
+ */
+public final class DeploymentGate {
+
+    /**
+     * The progress of the deployment.
+     */
+    public enum Phase {
+        /** The gate is not armed, requests are always passed on. */
+        NONE,
+        /** The server is starting and the deployment has not begun yet. */
+        WAITING,
+        PREPARE,
+        LOAD,
+        START,
+        /** The application has been started, requests are passed on. */
+        STARTED,
+        /** The deployment failed, requests keep being rejected. */
+        FAILED;
+
+        private final byte[] healthDown = encode("{\"status\":\"DOWN\",\"checks\":[{\"name\":\"deployment\","
+                + "\"status\":\"DOWN\",\"data\":{\"phase\":\"" + name() + "\"}}]}");
+
+        /**
+         * Returns the pre-encoded health check response reported for
+         * {@code /health}, {@code /health/started} and {@code /health/ready}
+         * while the gate is closed.
+         */
+        public byte[] getHealthDown() {
+            return healthDown;
+        }
+    }
+
+    private static final byte[] HEALTH_LIVE = encode("{\"status\":\"UP\",\"checks\":[]}");
+
+    private static volatile Phase phase = Phase.NONE;
+
+    private DeploymentGate() {
+    }
+
+    /**
+     * Closes the gate until the application is started.
+     */
+    public static synchronized void arm() {
+        if (phase == Phase.NONE) {
+            phase = Phase.WAITING;
+        }
+    }
+
+    public static boolean isArmed() {
+        return phase != Phase.NONE;
+    }
+
+    public static boolean isOpen() {
+        Phase current = phase;
+        return current == Phase.NONE || current == Phase.STARTED;
+    }
+
+    public static Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Records the progress of the deployment; ignored unless the gate is closed.
+     */
+    public static synchronized void progress(Phase next) {
+        if (phase != Phase.NONE && phase != Phase.STARTED) {
+            phase = next;
+        }
+    }
+
+    /**
+     * Opens the gate. Requests received from now on are passed to the application.
+     */
+    public static void open() {
+        progress(Phase.STARTED);
+    }
+
+    public static void fail() {
+        progress(Phase.FAILED);
+    }
+
+    /**
+     * Returns the pre-encoded health check response reported for
+     * {@code /health/live} while the gate is closed.
+     */
+    public static byte[] getHealthLive() {
+        return HEALTH_LIVE;
+    }
+
+    private static byte[] encode(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
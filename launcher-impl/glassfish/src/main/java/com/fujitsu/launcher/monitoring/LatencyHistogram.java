@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.monitoring;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations over fixed bucket bounds.
+ * <p>
+ * The counters are striped: a fixed number of rows, each selected by the
+ * recording thread, so that threads rarely update the same counters. The
+ * footprint does not grow with the number of threads, and recording takes no
+ * lock and allocates nothing. The rows are merged when the histogram is read.
+ */
+public final class LatencyHistogram {
+
+    /** How long a merged snapshot is reused, so that one scrape merges once. */
+    private static final long SNAPSHOT_TTL = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final int DEFAULT_STRIPES = stripesFor(Runtime.getRuntime().availableProcessors());
+
+    private final long[] bounds;
+    /** Buckets, overflow bucket, sum and maximum of each stripe. */
+    private final AtomicLongArray counters;
+    private final int stride;
+    private final int mask;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param boundsMillis the inclusive upper bounds of the buckets in
+     *            milliseconds, in ascending order; longer durations are
+     *            counted in an overflow bucket
+     */
+    public LatencyHistogram(double[] boundsMillis) {
+        this(boundsMillis, DEFAULT_STRIPES);
+    }
+
+    LatencyHistogram(double[] boundsMillis, int stripes) {
+        bounds = new long[boundsMillis.length];
+        for (int i = 0; i < boundsMillis.length; i++) {
+            bounds[i] = (long) (boundsMillis[i] * 1_000_000);
+        }
+        Arrays.sort(bounds);
+        // Rows padded by at least a cache line, so that stripes do not share
+        // one
+        stride = (bounds.length + 3 + 15) & ~7;
+        int rows = stripesFor(stripes);
+        mask = rows - 1;
+        counters = new AtomicLongArray(rows * stride);
+    }
+
+    /**
+     * Records a duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        int row = (int) Thread.currentThread().getId() & mask;
+        int base = row * stride;
+        int index = Arrays.binarySearch(bounds, nanos);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        counters.getAndIncrement(base + index);
+        counters.getAndAdd(base + bounds.length + 1, nanos);
+        int max = base + bounds.length + 2;
+        long current = counters.get(max);
+        while (nanos > current && !counters.weakCompareAndSetVolatile(max, current, nanos)) {
+            current = counters.get(max);
+        }
+    }
+
+    public int getBucketCount() {
+        return bounds.length;
+    }
+
+    public double getBoundMillis(int bucket) {
+        return bounds[bucket] / 1_000_000.0;
+    }
+
+    public long getCount() {
+        return getSnapshot().count;
+    }
+
+    public double getSumMillis() {
+        return getSnapshot().counts[bounds.length + 1] / 1_000_000.0;
+    }
+
+    /**
+     * Returns the number of durations up to the bound of the given bucket.
+     */
+    public long getCumulativeCount(int bucket) {
+        long[] counts = getSnapshot().counts;
+        long cumulative = 0;
+        for (int i = 0; i <= bucket; i++) {
+            cumulative += counts[i];
+        }
+        return cumulative;
+    }
+
+    /**
+     * Estimates the given quantile in milliseconds by linear interpolation
+     * within the bucket it falls into.
+     */
+    public double getQuantileMillis(double quantile) {
+        Snapshot current = getSnapshot();
+        if (current.count == 0) {
+            return 0;
+        }
+        long[] counts = current.counts;
+        long max = counts[bounds.length + 2];
+        double rank = Math.max(1, Math.ceil(quantile * current.count));
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            if (counts[i] > 0 && cumulative + counts[i] >= rank) {
+                long lower = i == 0 ? 0 : bounds[i - 1];
+                long upper = Math.min(bounds[i], max);
+                double fraction = (rank - cumulative) / counts[i];
+                return (lower + (upper - lower) * fraction) / 1_000_000.0;
+            }
+            cumulative += counts[i];
+        }
+        return max / 1_000_000.0;
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        long now = System.nanoTime();
+        if (current == null || now - current.taken > SNAPSHOT_TTL) {
+            current = merge(now);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private Snapshot merge(long now) {
+        long[] counts = new long[bounds.length + 3];
+        for (int base = 0; base < counters.length(); base += stride) {
+            for (int i = 0; i <= bounds.length + 1; i++) {
+                counts[i] += counters.get(base + i);
+            }
+            counts[bounds.length + 2] = Math.max(counts[bounds.length + 2], counters.get(base + bounds.length + 2));
+        }
+        long count = 0;
+        for (int i = 0; i <= bounds.length; i++) {
+            count += counts[i];
+        }
+        return new Snapshot(now, count, counts);
+    }
+
+    /**
+     * Returns the power of two at least the given number of stripes, at most
+     * 64.
+     */
+    private static int stripesFor(int stripes) {
+        int rows = 1;
+        while (rows < stripes && rows < 64) {
+            rows <<= 1;
+        }
+        return rows;
+    }
+
+    private static final class Snapshot {
+
+        final long taken;
+        final long count;
+        final long[] counts;
+
+        Snapshot(long taken, long count, long[] counts) {
+            this.taken = taken;
+            this.count = count;
+            this.counts = counts;
+        }
+    }
+}
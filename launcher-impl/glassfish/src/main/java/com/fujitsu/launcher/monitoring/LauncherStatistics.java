@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.monitoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of runtime statistics collected by Launcher itself.
+ * <p>
+ * Components that do not depend on MicroProfile Metrics register their
+ * counters and gauges here. The metrics module publishes every registered
+ * statistic into the vendor registry, so the values are scraped from
+ * {@code /metrics} without any bytecode instrumentation.
+ */
+public final class LauncherStatistics {
+
+    private static final Map<String, Statistic> STATISTICS = new ConcurrentHashMap<>();
+    private static final AtomicLong MODIFICATION_COUNT = new AtomicLong();
+
+    private LauncherStatistics() {
+    }
+
+    /**
+     * Registers a statistic, replacing any statistic with the same name and tags.
+     *
+     * @param name the metric name
+     * @param description the human readable description
+     * @param unit the unit, {@code null} for none
+     * @param tags the tags, may be empty
+     * @param supplier supplies the current value; must be cheap and thread safe
+     * @return the registered statistic
+     */
+    public static Statistic register(String name, String description, String unit, Map<String, String> tags,
+            Supplier<Number> supplier) {
+        Statistic statistic = new Statistic(name, description, unit, tags, supplier);
+        STATISTICS.put(statistic.getKey(), statistic);
+        MODIFICATION_COUNT.incrementAndGet();
+        return statistic;
+    }
+
+    public static void unregister(Statistic statistic) {
+        if (statistic != null && STATISTICS.remove(statistic.getKey(), statistic)) {
+            MODIFICATION_COUNT.incrementAndGet();
+        }
+    }
+
+    public static void unregisterAll(List<Statistic> statistics) {
+        for (Statistic statistic : statistics) {
+            unregister(statistic);
+        }
+        statistics.clear();
+    }
+
+    public static List<Statistic> getStatistics() {
+        return Collections.unmodifiableList(new ArrayList<>(STATISTICS.values()));
+    }
+
+    /**
+     * Returns a counter incremented on every registration change so that
+     * consumers can cheaply detect whether they need to resynchronize.
+     */
+    public static long getModificationCount() {
+        return MODIFICATION_COUNT.get();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.monitoring;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * A single named, tagged value sampled on demand.
+ *
+ * @see LauncherStatistics
+ */
+public final class Statistic {
+
+    private final String name;
+    private final String description;
+    private final String unit;
+    private final Map<String, String> tags;
+    private final Supplier<Number> supplier;
+
+    Statistic(String name, String description, String unit, Map<String, String> tags, Supplier<Number> supplier) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.description = description == null ? "" : description;
+        this.unit = unit == null ? "none" : unit;
+        this.tags = Collections.unmodifiableMap(new TreeMap<>(tags));
+        this.supplier = Objects.requireNonNull(supplier, "supplier");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public Supplier<Number> getSupplier() {
+        return supplier;
+    }
+
+    String getKey() {
+        return name + tags;
+    }
+
+    @Override
+    public String toString() {
+        return "Statistic[" + name + tags + "]";
+    }
+}
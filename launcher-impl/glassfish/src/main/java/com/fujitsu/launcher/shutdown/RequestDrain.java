@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.shutdown;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Lets the HTTP listeners finish the requests in flight before the server is
+ * stopped.
+ * <p>
+ * Once draining has begun, readiness is reported as {@code DOWN} and every
+ * further response closes its connection. After a delay, which lets load
+ * balancers notice the readiness change, the listeners stop accepting
+ * connections. {@link #drain(long, long)} returns when no request is in
+ * flight any more or the deadline has passed.
+ * <p>
+ * Requests are counted per connection, so that the requests of a connection
+ * closed before they complete are not waited for.
+ */
+public final class RequestDrain {
+
+    private static final Logger LOGGER = Logger.getLogger(RequestDrain.class.getName());
+
+    private static final long POLL_INTERVAL = 50;
+
+    private static final byte[] HEALTH_DOWN = ("{\"status\":\"DOWN\",\"checks\":[{\"name\":\"shutdown\","
+            + "\"status\":\"DOWN\"}]}").getBytes(StandardCharsets.US_ASCII);
+
+    private static final AtomicLong IN_FLIGHT = new AtomicLong();
+    private static final LongAdder DRAINED = new LongAdder();
+    private static final Set<Runnable> LISTENERS = new CopyOnWriteArraySet<>();
+
+    private static volatile boolean draining;
+
+    private RequestDrain() {
+    }
+
+    public static boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Registers the action stopping a listener from accepting connections.
+     */
+    public static void addListener(Runnable stopAccepting) {
+        LISTENERS.add(stopAccepting);
+    }
+
+    public static void removeListener(Runnable stopAccepting) {
+        LISTENERS.remove(stopAccepting);
+    }
+
+    /**
+     * Returns the counter of the requests in flight on a new connection.
+     */
+    public static ConnectionRequests newConnection() {
+        return new ConnectionRequests();
+    }
+
+    static long getInFlight() {
+        return IN_FLIGHT.get();
+    }
+
+    /**
+     * Returns the pre-encoded health check response reported for
+     * {@code /health} and {@code /health/ready} while draining.
+     */
+    public static byte[] getHealthDown() {
+        return HEALTH_DOWN;
+    }
+
+    /**
+     * Starts draining and waits for the requests in flight.
+     *
+     * @param delay the time in milliseconds between reporting readiness as
+     *            {@code DOWN} and no longer accepting connections
+     * @param timeout the maximum time to wait for the requests in flight in
+     *            milliseconds, once connections are no longer accepted
+     * @return the number of requests still in flight at the deadline
+     */
+    public static long drain(long delay, long timeout) throws InterruptedException {
+        draining = true;
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        for (Runnable listener : LISTENERS) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Listener could not stop accepting connections", e);
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long inFlight;
+        while ((inFlight = IN_FLIGHT.get()) > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(POLL_INTERVAL);
+        }
+        long aborted = Math.max(inFlight, 0);
+        LOGGER.log(Level.INFO, "Request draining finished: {0} requests drained, {1} requests aborted",
+                new Object[] { DRAINED.sum(), aborted });
+        return aborted;
+    }
+
+    /**
+     * Requests in flight on a connection. HTTP/2 connections may have several.
+     */
+    public static final class ConnectionRequests {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private ConnectionRequests() {
+        }
+
+        public void started() {
+            if (inFlight.getAndUpdate(n -> n < 0 ? n : n + 1) >= 0) {
+                IN_FLIGHT.incrementAndGet();
+            }
+        }
+
+        public void completed() {
+            if (inFlight.getAndUpdate(n -> n > 0 ? n - 1 : n) > 0) {
+                IN_FLIGHT.decrementAndGet();
+                if (draining) {
+                    DRAINED.increment();
+                }
+            }
+        }
+
+        /**
+         * Stops waiting for the requests still in flight on the connection,
+         * whose completion is no longer reported.
+         */
+        public void closed() {
+            int abandoned = inFlight.getAndSet(-1);
+            if (abandoned > 0) {
+                IN_FLIGHT.addAndGet(-abandoned);
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.startup;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event emitted for each span of the startup timeline.
+ */
+@Name("com.fujitsu.launcher.Startup")
+@Label("Startup Span")
+@Category({ "Launcher", "Startup" })
+@Description("A step of the server startup or application deployment")
+class StartupEvent extends Event {
+
+    @Label("Category")
+    String category;
+
+    @Label("Name")
+    String name;
+
+    @Label("Depth")
+    int depth;
+}
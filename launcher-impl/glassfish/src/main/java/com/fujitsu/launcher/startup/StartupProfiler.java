@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.startup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the server startup and the application deployment as a nested
+ * timeline of spans.
+ * <p>
+ * Profiling is enabled with the system property
+ * {@code com.fujitsu.launcher.startup.profile}. Each span is emitted as a JFR
+ * event, and once the application is deployed the timeline is written as
+ * {@value #TIMELINE_FILE} and, in the Chrome trace event format, as
+ * {@value #TRACE_FILE}. Recording stops when the reports have been written.
+ * <p>
+ * Spans still open at that time, such as a model built in the background, and
+ * spans that were only ended together with an enclosing span, such as a
+ * service whose creation failed, are reported as unfinished.
+ */
+public final class StartupProfiler {
+
+    public static final String TIMELINE_FILE = "startup-timeline.json";
+    public static final String TRACE_FILE = "startup-trace.json";
+
+    private static final Logger LOGGER = Logger.getLogger(StartupProfiler.class.getName());
+
+    private static final Span NOOP = new Span(null, null, 0);
+
+    private static volatile boolean recording = Boolean.getBoolean("com.fujitsu.launcher.startup.profile");
+
+    private static final long ORIGIN_NANOS = System.nanoTime();
+    private static final long ORIGIN_MILLIS = System.currentTimeMillis();
+
+    private static final Queue<Span> ROOTS = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Deque<Span>> STACK = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private StartupProfiler() {
+    }
+
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Starts a span nested in the innermost open span of the current thread.
+     * The span must be closed by the same thread.
+     */
+    public static Span begin(String category, String name) {
+        if (!recording) {
+            return NOOP;
+        }
+        Deque<Span> stack = STACK.get();
+        Span parent = stack.peek();
+        Span span = new Span(category, name, stack.size());
+        if (parent == null) {
+            ROOTS.add(span);
+        } else {
+            parent.children.add(span);
+        }
+        stack.push(span);
+        return span;
+    }
+
+    /**
+     * Ends the innermost open span of the current thread with the given name,
+     * for callers that observe the start and the end of a step separately.
+     */
+    public static void end(String name) {
+        if (!recording) {
+            return;
+        }
+        for (Span span : STACK.get()) {
+            if (span.name.equals(name)) {
+                span.close();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the timeline reports into the given directory and stops recording.
+     */
+    public static void writeReports(Path directory) {
+        if (!recording) {
+            return;
+        }
+        recording = false;
+
+        long now = System.nanoTime();
+        List<Span> roots = new ArrayList<>(ROOTS);
+        ROOTS.clear();
+        roots.sort(Comparator.comparingLong(span -> span.start));
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(directory.resolve(TIMELINE_FILE), StandardCharsets.UTF_8)) {
+                writeTimeline(writer, roots, now);
+            }
+            try (Writer writer = Files.newBufferedWriter(directory.resolve(TRACE_FILE), StandardCharsets.UTF_8)) {
+                writeTrace(writer, roots, now);
+            }
+            LOGGER.log(Level.INFO, "Startup timeline was written to {0}", directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Startup timeline could not be written to " + directory, e);
+        }
+    }
+
+    private static void writeTimeline(Writer writer, List<Span> roots, long now) throws IOException {
+        writer.write("{\"startTime\":");
+        writer.write(Long.toString(ORIGIN_MILLIS));
+        writer.write(",\"jvmStartTime\":");
+        writer.write(Long.toString(ManagementFactory.getRuntimeMXBean().getStartTime()));
+        writer.write(",\"spans\":");
+        writeSpans(writer, roots, now);
+        writer.write("}\n");
+    }
+
+    private static void writeSpans(Writer writer, Iterable<Span> spans, long now) throws IOException {
+        writer.write('[');
+        boolean first = true;
+        for (Span span : spans) {
+            long end = span.end;
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write("{\"category\":");
+            writeString(writer, span.category);
+            writer.write(",\"name\":");
+            writeString(writer, span.name);
+            writer.write(",\"thread\":");
+            writeString(writer, span.threadName);
+            writer.write(",\"start\":");
+            writer.write(millis(span.start - ORIGIN_NANOS));
+            writer.write(",\"duration\":");
+            writer.write(millis((end == 0 ? now : end) - span.start));
+            if (end == 0 || span.unfinished) {
+                writer.write(",\"unfinished\":true");
+            }
+            if (!span.children.isEmpty()) {
+                writer.write(",\"children\":");
+                writeSpans(writer, span.children, now);
+            }
+            writer.write('}');
+        }
+        writer.write(']');
+    }
+
+    private static void writeTrace(Writer writer, List<Span> roots, long now) throws IOException {
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        Map<Long, String> threads = new HashMap<>();
+        Deque<Span> pending = new ArrayDeque<>(roots);
+        boolean first = true;
+        while (!pending.isEmpty()) {
+            Span span = pending.pop();
+            pending.addAll(span.children);
+            long end = span.end;
+            threads.put(span.threadId, span.threadName);
+            if (!first) {
+                writer.write(",\n");
+            }
+            first = false;
+            writer.write("{\"ph\":\"X\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(span.threadId));
+            writer.write(",\"cat\":");
+            writeString(writer, span.category);
+            writer.write(",\"name\":");
+            writeString(writer, span.name);
+            writer.write(",\"ts\":");
+            writer.write(Long.toString(TimeUnit.NANOSECONDS.toMicros(span.start - ORIGIN_NANOS)));
+            writer.write(",\"dur\":");
+            writer.write(Long.toString(TimeUnit.NANOSECONDS.toMicros((end == 0 ? now : end) - span.start)));
+            if (end == 0 || span.unfinished) {
+                writer.write(",\"args\":{\"unfinished\":true}");
+            }
+            writer.write('}');
+        }
+        for (Map.Entry<Long, String> thread : threads.entrySet()) {
+            writer.write(",\n{\"ph\":\"M\",\"pid\":1,\"name\":\"thread_name\",\"tid\":");
+            writer.write(Long.toString(thread.getKey()));
+            writer.write(",\"args\":{\"name\":");
+            writeString(writer, thread.getValue());
+            writer.write("}}");
+        }
+        writer.write("]}\n");
+    }
+
+    private static String millis(long nanos) {
+        return Double.toString(nanos / 1_000_000.0);
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * A step of the startup timeline.
+     */
+    public static final class Span implements AutoCloseable {
+
+        private final String category;
+        private final String name;
+        private final long threadId;
+        private final String threadName;
+        private final Queue<Span> children = new ConcurrentLinkedQueue<>();
+        private final StartupEvent event;
+        private final long start;
+        private volatile long end;
+        private volatile boolean unfinished;
+
+        private Span(String category, String name, int depth) {
+            this.category = category;
+            this.name = name;
+            Thread thread = Thread.currentThread();
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            if (category != null) {
+                event = new StartupEvent();
+                event.category = category;
+                event.name = name;
+                event.depth = depth;
+                event.begin();
+            } else {
+                event = null;
+            }
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * Ends this span together with any span still open inside it, which
+         * is marked as unfinished.
+         */
+        @Override
+        public void close() {
+            if (event == null || end != 0) {
+                return;
+            }
+            Deque<Span> stack = STACK.get();
+            if (!stack.contains(this)) {
+                return;
+            }
+            long now = System.nanoTime();
+            Span top;
+            do {
+                top = stack.pop();
+                top.unfinished = top != this;
+                top.end = now;
+                top.event.commit();
+            } while (top != this);
+            if (stack.isEmpty()) {
+                STACK.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit of concurrent requests adapted to the observed response time.
+ * <p>
+ * The response times of a short window are compared with their long-term
+ * average: while they stay close, the limit grows by its square root per
+ * window; when they rise, the limit shrinks in proportion, down to half per
+ * window. Requests beyond the limit are expected to be rejected at once, so
+ * that they neither queue up nor add to the latency of the admitted ones.
+ */
+public final class ConcurrencyLimit {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int MIN_SAMPLES = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+
+    /** Share of the limit available to low priority requests. */
+    private static final double LOW_PRIORITY_SHARE = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejections = new LongAdder();
+
+    private final LongAdder windowNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private volatile long windowStart = System.nanoTime();
+
+    /** Guards the estimate; held by at most one completing request per window. */
+    private final ReentrantLock update = new ReentrantLock();
+    private double estimate;
+    private double longRtt;
+
+    private volatile int limit;
+
+    public ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.estimate = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+        this.limit = (int) estimate;
+    }
+
+    /**
+     * Admits a request if the limit allows it.
+     *
+     * @param lowPriority whether only a share of the limit is available
+     * @return {@code true} if admitted, in which case {@link #release(long)}
+     *         must be called when the request is completed
+     */
+    public boolean tryAcquire(boolean lowPriority) {
+        // A low limit must still leave a low priority request a slot
+        int max = lowPriority ? Math.max(1, (int) (limit * LOW_PRIORITY_SHARE)) : limit;
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= max) {
+                rejections.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Completes an admitted request.
+     *
+     * @param startNanos the {@link System#nanoTime()} at admission
+     */
+    public void release(long startNanos) {
+        long now = System.nanoTime();
+        int current = inFlight.getAndDecrement();
+        windowNanos.add(now - startNanos);
+        windowSamples.increment();
+
+        long start = windowStart;
+        if (now - start >= WINDOW && windowSamples.sum() >= MIN_SAMPLES && update.tryLock()) {
+            try {
+                if (windowStart == start) {
+                    long samples = windowSamples.sumThenReset();
+                    long nanos = windowNanos.sumThenReset();
+                    windowStart = now;
+                    adapt((double) nanos / samples, current);
+                }
+            } finally {
+                update.unlock();
+            }
+        }
+    }
+
+    private void adapt(double shortRtt, int current) {
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+        } else {
+            longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+        // After a long overload the average has followed the response times
+        // up; let it come down quickly once they are back to normal
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        // The load did not reach the limit, so the window says nothing about it
+        if (current < estimate / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double target = estimate * gradient + Math.sqrt(estimate);
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimate;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+
+/**
+ * LRU cache of small static files of a web module, bounded by the total size
+ * of the cached content.
+ * <p>
+ * Cached entries are validated against the file's timestamp and length at most
+ * once per check interval, the same way {@code WebappClassLoader} tracks
+ * modifications of loaded resources. All entries of a module are dropped when
+ * its class loader is reloaded or closed.
+ */
+public final class StaticResourceCache {
+
+    private static final Map<ClassLoader, List<StaticResourceCache>> CACHES =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Content smaller than this is not worth compressing. */
+    private static final int MIN_COMPRESSIBLE_SIZE = 256;
+
+    private final long maxSize;
+    private final long checkInterval;
+    private final boolean gzip;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    StaticResourceCache(ClassLoader classLoader, String contextPath, long maxSize, long checkInterval, boolean gzip) {
+        this.maxSize = maxSize;
+        this.checkInterval = checkInterval;
+        this.gzip = gzip;
+
+        Map<String, String> tags = Map.of("context", contextPath.isEmpty() ? "/" : contextPath);
+        statistics.add(LauncherStatistics.register("staticContent.cache.hits",
+                "Number of static resources served from the in-memory cache", null, tags, hits::sum));
+        statistics.add(LauncherStatistics.register("staticContent.cache.misses",
+                "Number of static resources read from the file system", null, tags, misses::sum));
+        statistics.add(LauncherStatistics.register("staticContent.cache.size",
+                "Total size of the cached static content", "bytes", tags, this::getSize));
+        statistics.add(LauncherStatistics.register("staticContent.bytesServed",
+                "Number of static content bytes written to responses", "bytes", tags, bytesServed::sum));
+
+        if (classLoader != null) {
+            synchronized (CACHES) {
+                CACHES.computeIfAbsent(classLoader, k -> new ArrayList<>()).add(this);
+            }
+        }
+    }
+
+    /**
+     * Drops all entries cached for the web module of the given class loader.
+     * Called by {@code WebappClassLoader} when it is reloaded or closed.
+     */
+    public static void invalidate(ClassLoader classLoader) {
+        synchronized (CACHES) {
+            List<StaticResourceCache> caches = CACHES.get(classLoader);
+            if (caches != null) {
+                for (StaticResourceCache cache : caches) {
+                    cache.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cached entry for the file, or {@code null} if it is absent or
+     * the file has been modified since it was cached.
+     */
+    Entry get(File file) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file.getPath());
+        }
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            if (now - entry.checked < checkInterval) {
+                hits.increment();
+                return entry;
+            }
+            if (file.lastModified() == entry.lastModified && file.length() == entry.content.length) {
+                entry.checked = now;
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Reads the file into the cache. A gzip variant is computed for
+     * compressible content if it is smaller than the original.
+     */
+    Entry load(File file, boolean compressible) throws IOException {
+        // Take the validators before reading, so that a concurrent update is
+        // detected by the next check rather than cached as current.
+        long lastModified = file.lastModified();
+        byte[] content = Files.readAllBytes(file.toPath());
+        byte[] compressed = gzip && compressible && content.length >= MIN_COMPRESSIBLE_SIZE ? compress(content) : null;
+        Entry entry = new Entry(content, compressed, lastModified, System.currentTimeMillis());
+        put(file.getPath(), entry);
+        return entry;
+    }
+
+    void served(long bytes) {
+        bytesServed.add(bytes);
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    void close() {
+        clear();
+        LauncherStatistics.unregisterAll(statistics);
+        synchronized (CACHES) {
+            for (Iterator<List<StaticResourceCache>> it = CACHES.values().iterator(); it.hasNext();) {
+                List<StaticResourceCache> caches = it.next();
+                if (caches.remove(this) && caches.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        long entrySize = entry.size();
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size();
+        }
+        if (entrySize > maxSize) {
+            return;
+        }
+        entries.put(key, entry);
+        size += entrySize;
+
+        for (Iterator<Entry> it = entries.values().iterator(); size > maxSize && it.hasNext();) {
+            size -= it.next().size();
+            it.remove();
+        }
+    }
+
+    private static byte[] compress(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(content);
+        }
+        // Keep the compressed variant only if it actually saves bytes
+        return out.size() < content.length ? out.toByteArray() : null;
+    }
+
+    /**
+     * The content of a cached file and its pre-computed validators.
+     */
+    static final class Entry {
+
+        final byte[] content;
+        final byte[] gzipContent;
+        final long lastModified;
+        final String etag;
+        volatile long checked;
+
+        Entry(byte[] content, byte[] gzipContent, long lastModified, long checked) {
+            this.content = content;
+            this.gzipContent = gzipContent;
+            this.lastModified = lastModified;
+            this.etag = StaticResourceFilter.etag(content.length, lastModified);
+            this.checked = checked;
+        }
+
+        long size() {
+            return content.length + (gzipContent == null ? 0 : gzipContent.length);
+        }
+    }
+}
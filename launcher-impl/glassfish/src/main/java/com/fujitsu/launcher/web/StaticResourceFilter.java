@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.FilterConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Serves plain files of an exploded web module in front of the default servlet.
+ * <p>
+ * Files up to {@code cacheMaxEntrySize} bytes are kept in a
+ * {@link StaticResourceCache} together with their gzip variant and ETag.
+ * Larger files are streamed from a {@link FileChannel} through the
+ * container's output buffer rather than read into memory as a whole; the
+ * servlet output stream does not expose the socket, so this is not zero-copy.
+ * Anything else, such as directories, range requests and resources packaged
+ * in JAR files, is left to the default servlet.
+ */
+public class StaticResourceFilter implements Filter {
+
+    private static final Logger LOGGER = Logger.getLogger(StaticResourceFilter.class.getName());
+
+    private static final boolean DISABLED = Boolean.getBoolean("com.fujitsu.launcher.http.disableStaticContentCache");
+
+    private static final long DEFAULT_CACHE_MAX_SIZE = 10 * 1024 * 1024;
+    private static final long DEFAULT_CACHE_MAX_ENTRY_SIZE = 256 * 1024;
+    private static final long DEFAULT_CHECK_INTERVAL = 1000;
+
+    private ServletContext context;
+    private String docBase;
+    private long maxEntrySize;
+    private StaticResourceCache cache;
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+        if (DISABLED) {
+            return;
+        }
+        context = config.getServletContext();
+        String root = context.getRealPath("/");
+        if (root == null) {
+            // Not an exploded module, there are no files to serve
+            return;
+        }
+        try {
+            docBase = new File(root).getCanonicalPath();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Static content cache disabled for " + context.getContextPath(), e);
+            return;
+        }
+
+        maxEntrySize = getLong(config, "cacheMaxEntrySize", DEFAULT_CACHE_MAX_ENTRY_SIZE);
+        cache = new StaticResourceCache(context.getClassLoader(), context.getContextPath(),
+                getLong(config, "cacheMaxSize", DEFAULT_CACHE_MAX_SIZE),
+                getLong(config, "checkInterval", DEFAULT_CHECK_INTERVAL),
+                !"false".equalsIgnoreCase(config.getInitParameter("gzip")));
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (cache == null || !(request instanceof HttpServletRequest) || !(response instanceof HttpServletResponse)
+                || !serve((HttpServletRequest) request, (HttpServletResponse) response)) {
+            chain.doFilter(request, response);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (cache != null) {
+            cache.close();
+            cache = null;
+        }
+    }
+
+    /**
+     * Serves the requested file, returning {@code false} if the request has to
+     * be handled by the default servlet.
+     */
+    private boolean serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String method = request.getMethod();
+        boolean head = "HEAD".equals(method);
+        if (!head && !"GET".equals(method) || request.getHeader("Range") != null) {
+            return false;
+        }
+
+        String path = request.getPathInfo() == null
+                ? request.getServletPath()
+                : request.getServletPath() + request.getPathInfo();
+        if (path.isEmpty() || path.endsWith("/") || isProtected(path)) {
+            return false;
+        }
+        String realPath = context.getRealPath(path);
+        if (realPath == null) {
+            return false;
+        }
+        File file = new File(realPath);
+        if (!file.isFile() || !isCanonical(file, path)) {
+            return false;
+        }
+
+        String contentType = context.getMimeType(file.getName());
+        long length = file.length();
+        if (length <= maxEntrySize) {
+            StaticResourceCache.Entry entry = cache.get(file);
+            if (entry == null) {
+                entry = cache.load(file, isCompressible(contentType));
+            }
+            if (entry.gzipContent != null) {
+                // Also sent with 304 responses, which must carry the same Vary
+                response.addHeader("Vary", "Accept-Encoding");
+            }
+            if (notModified(request, response, entry.etag, entry.lastModified)) {
+                return true;
+            }
+            setHeaders(response, contentType, entry.etag, entry.lastModified);
+
+            byte[] content = entry.content;
+            if (entry.gzipContent != null && acceptsGzip(request)) {
+                response.setHeader("Content-Encoding", "gzip");
+                content = entry.gzipContent;
+            }
+            response.setContentLength(content.length);
+            if (!head) {
+                response.getOutputStream().write(content);
+                cache.served(content.length);
+            }
+            return true;
+        }
+
+        long lastModified = file.lastModified();
+        String etag = etag(length, lastModified);
+        if (notModified(request, response, etag, lastModified)) {
+            return true;
+        }
+        setHeaders(response, contentType, etag, lastModified);
+        response.setContentLengthLong(length);
+        if (!head) {
+            cache.served(transfer(file, length, response.getOutputStream()));
+        }
+        return true;
+    }
+
+    /**
+     * Weak ETag in the format used by the default servlet, so that validators
+     * stay the same whichever of the two served the file.
+     */
+    static String etag(long length, long lastModified) {
+        return "W/\"" + length + "-" + lastModified + "\"";
+    }
+
+    private boolean isCanonical(File file, String path) {
+        // Reject aliases such as symbolic links or case variants on case
+        // insensitive file systems; the default servlet applies its own rules
+        try {
+            return file.getCanonicalPath().equals(docBase + path.replace('/', File.separatorChar));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long transfer(File file, long length, ServletOutputStream out) throws IOException {
+        // The output stream does not expose the connection's socket channel,
+        // so the container's output buffer is the only copy made here
+        WritableByteChannel target = Channels.newChannel(out);
+        long position = 0;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (position < length) {
+                long transferred = channel.transferTo(position, length - position, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+        return position;
+    }
+
+    private static boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag,
+            long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            notModified = matches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                ifModifiedSince = -1;
+            }
+            notModified = ifModifiedSince != -1 && lastModified / 1000 * 1000 <= ifModifiedSince;
+        }
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+        }
+        return notModified;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        // Weak comparison: W/"x" and "x" match each other
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void setHeaders(HttpServletResponse response, String contentType, String etag,
+            long lastModified) {
+        if (contentType != null) {
+            response.setContentType(contentType);
+        }
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.contains("json") || type.contains("javascript")
+                || type.contains("xml") || type.startsWith("image/svg");
+    }
+
+    private static boolean isProtected(String path) {
+        String upper = path.toUpperCase(Locale.ROOT);
+        return upper.startsWith("/WEB-INF") || upper.startsWith("/META-INF") || upper.contains("..")
+                || upper.indexOf('\\') >= 0 || upper.indexOf('\0') >= 0;
+    }
+
+    private static long getLong(FilterConfig config, String name, long defaultValue) {
+        String value = config.getInitParameter(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid value {0} of init parameter {1}, using {2}",
+                    new Object[] { value, name, defaultValue });
+            return defaultValue;
+        }
+    }
+}
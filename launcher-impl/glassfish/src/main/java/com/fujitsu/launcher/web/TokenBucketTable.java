@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.web;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets of a rate limit, one per key.
+ * <p>
+ * The buckets are refilled lazily when a token is taken, so no thread is
+ * needed to maintain them. The table is split into stripes, each locked on
+ * its own and holding a bounded number of buckets. A new key of a full stripe
+ * only replaces the least recently used bucket once that bucket is full
+ * again, so forgetting it grants nothing; otherwise the new key shares the
+ * overflow bucket of the stripe with the other keys not tracked. A flood of
+ * new keys thus neither refills the buckets of the tracked keys nor gets more
+ * than the rate of a single key per stripe.
+ */
+public final class TokenBucketTable {
+
+    private static final int STRIPES = 64;
+
+    private final double tokensPerNano;
+    private final double burst;
+    private final Stripe[] stripes;
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param ratePerSecond the number of tokens added to a bucket per second
+     * @param burst the capacity of a bucket
+     * @param maxKeys the maximum number of buckets held
+     */
+    public TokenBucketTable(double ratePerSecond, int burst, int maxKeys) {
+        this(ratePerSecond, burst, maxKeys, STRIPES);
+    }
+
+    /**
+     * @param stripeCount the number of stripes, a power of two
+     */
+    TokenBucketTable(double ratePerSecond, int burst, int maxKeys, int stripeCount) {
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.stripes = new Stripe[stripeCount];
+        int capacity = Math.max(1, maxKeys / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacity, this.burst);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the given key.
+     *
+     * @return {@code 0} if a token was taken, otherwise the number of
+     *         nanoseconds until the next token is available
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = stripe.size() < stripe.capacity || stripe.evictFull(now, tokensPerNano)
+                        ? stripe.add(key, now) : stripe.overflow;
+            }
+            bucket.refill(now, tokensPerNano, burst);
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            rejections.increment();
+            return Math.max(1, (long) Math.ceil((1 - bucket.tokens) / tokensPerNano));
+        }
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public int getKeys() {
+        int keys = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                keys += stripe.size();
+            }
+        }
+        return keys;
+    }
+
+    private static final class Bucket {
+
+        double tokens;
+        long refilled;
+
+        Bucket(double tokens, long refilled) {
+            this.tokens = tokens;
+            this.refilled = refilled;
+        }
+
+        void refill(long now, double tokensPerNano, double burst) {
+            // The time may have been read before another thread refilled
+            if (now > refilled) {
+                tokens = Math.min(burst, tokens + (now - refilled) * tokensPerNano);
+                refilled = now;
+            }
+        }
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+
+        private static final long serialVersionUID = 1L;
+
+        final int capacity;
+        final double burst;
+        final Bucket overflow;
+
+        Stripe(int capacity, double burst) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.burst = burst;
+            this.overflow = new Bucket(burst, System.nanoTime());
+        }
+
+        Bucket add(String key, long now) {
+            Bucket bucket = new Bucket(burst, now);
+            put(key, bucket);
+            return bucket;
+        }
+
+        /**
+         * Removes the least recently used bucket if it is full by now.
+         */
+        boolean evictFull(long now, double tokensPerNano) {
+            Iterator<Bucket> eldest = values().iterator();
+            Bucket bucket = eldest.next();
+            if (bucket.tokens + (now - bucket.refilled) * tokensPerNano < burst) {
+                return false;
+            }
+            eldest.remove();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.glassfish.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.glassfish.embeddable.GlassFishProperties;
+
+/**
+ * A populated instance root shared by all boots of the same launcher build
+ * and configuration.
+ * <p>
+ * The template holds the configuration files and the extracted system
+ * resource adapters, and serves as the install root. Each boot still gets its
+ * own instance root, but only its configuration directory is cloned from the
+ * template: files GlassFish may rewrite are copied, the others are hard
+ * linked. The template is never written to once it is published, so the
+ * shutdown only removes the small per-boot directory.
+ * <p>
+ * A manifest of the sizes of all files of the template is written last, and
+ * is checked before the template is used, so that a template partly deleted
+ * by a temporary file cleaner is replaced instead of being cloned.
+ * <p>
+ * Every process using a template holds a shared lock on its lock file until
+ * it exits. Templates of other builds or configurations, and staging
+ * directories left by a crash, are deleted by the next boot that can lock
+ * them exclusively.
+ */
+final class InstanceRootTemplate {
+
+    static final String DISABLE_PROPERTY = "com.fujitsu.launcher.disableInstanceRootTemplate";
+
+    private static final Logger LOGGER = Util.getLogger();
+
+    private static final String PREFIX = "launcher-template-";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String EVICTED_SUFFIX = "-evicted";
+    private static final String MANIFEST = ".template-manifest";
+    private static final String DIRECTORY_ENTRY = "d";
+
+    /** Hard links share the read-only attribute, which blocks their deletion on Windows. */
+    private static final boolean LINKS = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    /** Templates used by this process, locked until it exits. */
+    private static final Map<Path, FileLock> LOCKS = new HashMap<>();
+
+    /** Configuration files that are updated at runtime and must not be shared. */
+    private static final Set<String> MUTABLE_FILES = Set.of("domain.xml", "keyfile", "admin-keyfile",
+            "cacerts.jks", "keystore.jks");
+
+    private InstanceRootTemplate() {
+    }
+
+    /**
+     * Returns the template for the running launcher and the given properties,
+     * populating it first if it does not exist yet. Returns {@code null} if
+     * the template cannot be used, in which case the caller populates the
+     * instance root itself.
+     *
+     * @param tmpDir the directory holding the instance roots
+     * @param owner an instance root just created by this process; a template
+     *            owned by anybody else is not trusted
+     * @param populator fills a directory the same way as an instance root
+     */
+    static File get(File tmpDir, File owner, GlassFishProperties gfProps, Populator populator) {
+        if (Boolean.getBoolean(DISABLE_PROPERTY)) {
+            return null;
+        }
+        try {
+            Path template = tmpDir.toPath().resolve(PREFIX + getKey(gfProps));
+            UserPrincipal expected = Files.getOwner(owner.toPath());
+            if (Files.isDirectory(template) && expected.equals(Files.getOwner(template)) && !isComplete(template)) {
+                LOGGER.log(Level.WARNING, "Instance root template {0} is incomplete and is replaced", template);
+                if (!discard(template)) {
+                    LOGGER.log(Level.FINE, "Incomplete instance root template {0} is still in use", template);
+                    return null;
+                }
+            }
+            if (!Files.isDirectory(template)) {
+                populate(tmpDir.toPath(), template, populator);
+            }
+            if (!expected.equals(Files.getOwner(template))) {
+                LOGGER.log(Level.WARNING, "Ignoring instance root template {0} not owned by {1}",
+                        new Object[] { template, expected.getName() });
+                return null;
+            }
+            if (!lock(template)) {
+                LOGGER.log(Level.FINE, "Instance root template {0} is being deleted", template);
+                return null;
+            }
+            evict(tmpDir.toPath(), template, expected);
+            return template.toFile();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Instance root template cannot be used", e);
+            return null;
+        }
+    }
+
+    /**
+     * Clones the configuration directory of the template into the instance
+     * root.
+     */
+    static void cloneConfig(File template, File instanceRoot) throws IOException {
+        Path source = template.toPath().resolve("config");
+        Path target = instanceRoot.toPath().resolve("config");
+        try (Stream<Path> files = Files.walk(source)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Path destination = target.resolve(source.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(destination);
+                } else if (!LINKS || MUTABLE_FILES.contains(file.getFileName().toString())) {
+                    Files.copy(file, destination);
+                } else {
+                    try {
+                        Files.createLink(destination, file);
+                    } catch (IOException | UnsupportedOperationException e) {
+                        // e.g. the template is on another file system
+                        Files.copy(file, destination);
+                    }
+                }
+            }
+        }
+        Files.createDirectories(instanceRoot.toPath().resolve("docroot"));
+    }
+
+    private static void populate(Path tmpDir, Path template, Populator populator) throws IOException {
+        Path staging = Files.createTempDirectory(tmpDir, template.getFileName() + "-");
+        try {
+            // Locked like a template, so that only a staging directory left
+            // by a crash is evicted
+            lock(staging);
+            populator.populate(staging.toFile());
+            if (LINKS) {
+                makeShareableReadOnly(staging.resolve("config"));
+            }
+            writeManifest(staging);
+            // Publish the complete template at once; a concurrent boot may
+            // have won the race, in which case its template is used
+            Files.move(staging, template, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(Level.FINE, "Instance root template created: {0}", template);
+        } catch (FileAlreadyExistsException e) {
+            LOGGER.log(Level.FINE, "Instance root template already created: {0}", template);
+        } catch (IOException e) {
+            if (!Files.isDirectory(template)) {
+                throw e;
+            }
+        } finally {
+            if (Files.exists(staging)) {
+                deleteRecursive(staging);
+            }
+            unlock(staging);
+        }
+    }
+
+    /**
+     * Takes a shared lock on the template for the lifetime of this process,
+     * returning {@code false} if it is being evicted.
+     */
+    private static synchronized boolean lock(Path template) throws IOException {
+        if (LOCKS.containsKey(template)) {
+            return true;
+        }
+        FileChannel channel = FileChannel.open(getLockFile(template), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileLock lock = null;
+        try {
+            lock = channel.tryLock(0, Long.MAX_VALUE, true);
+            if (lock == null || !Files.isDirectory(template) || !Files.exists(getLockFile(template))) {
+                // An evicting process holds, or has just released, the
+                // exclusive lock
+                return false;
+            }
+            LOCKS.put(template, lock);
+            return true;
+        } finally {
+            if (!LOCKS.containsKey(template)) {
+                channel.close();
+            }
+        }
+    }
+
+    private static synchronized void unlock(Path directory) throws IOException {
+        FileLock lock = LOCKS.remove(directory);
+        if (lock != null) {
+            lock.channel().close();
+            Files.deleteIfExists(getLockFile(directory));
+        }
+    }
+
+    /**
+     * Deletes the templates and staging directories of the same owner that no
+     * process has locked, and the lock files left without a directory.
+     */
+    private static void evict(Path tmpDir, Path current, UserPrincipal owner) {
+        try (DirectoryStream<Path> candidates = Files.newDirectoryStream(tmpDir, PREFIX + "*")) {
+            for (Path candidate : candidates) {
+                try {
+                    String name = candidate.getFileName().toString();
+                    if (candidate.equals(current) || !owner.equals(Files.getOwner(candidate))) {
+                        continue;
+                    } else if (name.endsWith(EVICTED_SUFFIX)) {
+                        // left by an interrupted eviction
+                        deleteRecursive(candidate);
+                    } else if (name.endsWith(LOCK_SUFFIX)) {
+                        Path directory = candidate.resolveSibling(
+                                name.substring(0, name.length() - LOCK_SUFFIX.length()));
+                        if (!Files.exists(directory)) {
+                            evict(directory, candidate);
+                        }
+                    } else if (Files.isRegularFile(getLockFile(candidate))) {
+                        // A directory without a lock file is either being
+                        // staged or used by an older launcher
+                        evict(candidate, getLockFile(candidate));
+                    }
+                } catch (IOException | OverlappingFileLockException e) {
+                    LOGGER.log(Level.FINE, "Instance root template " + candidate + " cannot be deleted", e);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Unused instance root templates cannot be deleted", e);
+        }
+    }
+
+    private static void evict(Path directory, Path lockFile) throws IOException {
+        Path evicted = directory.resolveSibling(directory.getFileName() + EVICTED_SUFFIX);
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                // still in use
+                return;
+            }
+            if (Files.exists(directory)) {
+                // Moved away while locked, so no boot starts using a
+                // partially deleted template
+                Files.move(directory, evicted, StandardCopyOption.ATOMIC_MOVE);
+            }
+            // Deleted while locked, so that a boot locking it afterwards
+            // notices
+            Files.deleteIfExists(lockFile);
+        }
+        if (Files.exists(evicted)) {
+            deleteRecursive(evicted);
+            LOGGER.log(Level.FINE, "Unused instance root template deleted: {0}", directory);
+        }
+    }
+
+    /**
+     * Deletes a template that no process uses, returning {@code false} if it
+     * is still in use.
+     */
+    private static boolean discard(Path template) throws IOException {
+        Path lockFile = getLockFile(template);
+        try {
+            Files.createFile(lockFile);
+        } catch (FileAlreadyExistsException e) {
+            // left by the processes that used the template
+        }
+        try {
+            evict(template, lockFile);
+        } catch (OverlappingFileLockException e) {
+            // used by this process
+            return false;
+        }
+        return !Files.exists(template);
+    }
+
+    /**
+     * Lists the directories and the sizes of the files of a populated
+     * template, relative to the template and in a stable order.
+     */
+    private static void writeManifest(Path template) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(template)) {
+            for (Path file : (Iterable<Path>) files.sorted()::iterator) {
+                if (file.equals(template)) {
+                    continue;
+                }
+                String name = template.relativize(file).toString().replace(File.separatorChar, '/');
+                entries.add((Files.isDirectory(file) ? DIRECTORY_ENTRY : Long.toString(Files.size(file))) + " " + name);
+            }
+        }
+        Files.write(template.resolve(MANIFEST), entries, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks that every directory and file listed in the manifest of the
+     * template still exists with its size.
+     */
+    private static boolean isComplete(Path template) throws IOException {
+        Path manifest = template.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifest)) {
+            return false;
+        }
+        for (String entry : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            int separator = entry.indexOf(' ');
+            if (separator < 0) {
+                return false;
+            }
+            String size = entry.substring(0, separator);
+            Path file = template.resolve(entry.substring(separator + 1));
+            if (DIRECTORY_ENTRY.equals(size)) {
+                if (!Files.isDirectory(file)) {
+                    return false;
+                }
+            } else if (!Files.isRegularFile(file) || !size.equals(Long.toString(Files.size(file)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Path getLockFile(Path directory) {
+        // Kept outside the directory, which cannot be moved on Windows while
+        // a file in it is open
+        return directory.resolveSibling(directory.getFileName() + LOCK_SUFFIX);
+    }
+
+    private static void makeShareableReadOnly(Path config) throws IOException {
+        // Hard links share the file, so an accidental write must fail rather
+        // than change the template under all other boots
+        try (Stream<Path> files = Files.walk(config)) {
+            files.filter(Files::isRegularFile)
+                    .filter(file -> !MUTABLE_FILES.contains(file.getFileName().toString()))
+                    .forEach(file -> file.toFile().setReadOnly());
+        }
+    }
+
+    private static void deleteRecursive(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    /**
+     * Fills a directory the same way as an instance root.
+     */
+    @FunctionalInterface
+    interface Populator {
+        void populate(File root) throws IOException;
+    }
+
+    /**
+     * Identifies the launcher build by the location, size and timestamp of
+     * the archive containing GlassFish, and the configuration by the content
+     * of the custom domain.xml.
+     */
+    private static String getKey(GlassFishProperties gfProps) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        CodeSource codeSource = InstanceRootTemplate.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            throw new IOException("Location of the launcher is unknown");
+        }
+        URL location = codeSource.getLocation();
+        digest.update(location.toString().getBytes(StandardCharsets.UTF_8));
+        if ("file".equals(location.getProtocol())) {
+            try {
+                File archive = new File(location.toURI());
+                digest.update((archive.length() + ":" + archive.lastModified()).getBytes(StandardCharsets.UTF_8));
+            } catch (Exception e) {
+                throw new IOException("Location of the launcher is not a file: " + location, e);
+            }
+        }
+
+        String configFileURI = gfProps.getConfigFileURI();
+        if (configFileURI != null) {
+            try (InputStream in = URI.create(configFileURI).toURL().openStream()) {
+                digest.update(in.readAllBytes());
+            }
+        }
+
+        StringBuilder key = new StringBuilder();
+        byte[] hash = digest.digest();
+        for (int i = 0; i < 16; i++) {
+            key.append(String.format("%02x", hash[i]));
+        }
+        return key.toString();
+    }
+}
@@ -1,6 +1,6 @@
 /*
  * Copyright (c) 2010, 2018 Oracle and/or its affiliates. All rights reserved.
- * Copyright (c) 2019, 2021, 2022 Fujitsu Limited.
+ * Copyright (c) 2019, 2021, 2022, 2023 Fujitsu Limited.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -18,10 +18,13 @@
 package com.sun.enterprise.glassfish.bootstrap;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -55,6 +58,7 @@ public class StaticGlassFishRuntime extends GlassFishRuntime {
     private HashMap gfMap = new HashMap<String, GlassFish>();
     private static Logger logger = Util.getLogger();
     private static final String autoDelete = "org.glassfish.embeddable.autoDelete";
+    private File instanceRootTemplate;
 
     public StaticGlassFishRuntime(Main main) {
         this.main = main;
@@ -147,6 +151,7 @@ public class StaticGlassFishRuntime extends GlassFishRuntime {
         System.setProperty(Constants.INSTALL_ROOT_URI_PROP_NAME, installRoot.toURI().toString());
         } */
         String instanceRootValue = gfProps.getInstanceRoot();
+        instanceRootTemplate = null;
         if (instanceRootValue == null) {
             instanceRootValue = createTempInstanceRoot(gfProps);
             gfProps.setInstanceRoot(instanceRootValue);
@@ -160,8 +165,13 @@ public class StaticGlassFishRuntime extends GlassFishRuntime {
 
         String installRootValue = System.getProperty("org.glassfish.embeddable.installRoot");
         if (installRootValue == null) {
-            installRootValue = instanceRoot.getAbsolutePath();
-            JarUtil.extractRars(installRootValue);
+            if (instanceRootTemplate != null) {
+                // The template already holds the extracted resource adapters
+                installRootValue = instanceRootTemplate.getAbsolutePath();
+            } else {
+                installRootValue = instanceRoot.getAbsolutePath();
+                JarUtil.extractRars(installRootValue);
+            }
         }
         JarUtil.setEnv(installRootValue);
 
@@ -199,73 +209,93 @@ public class StaticGlassFishRuntime extends GlassFishRuntime {
         if (!instanceRoot.delete() || !instanceRoot.mkdir()) { // convert the file into a directory.
             throw new Exception("cannot create directory: " + instanceRoot.getAbsolutePath());
         }
-        try {
-            String[] configFiles = new String[]{"config/keyfile",
-                    "config/server.policy",
-                    "config/cacerts.jks",
-                    "config/keystore.jks",
-                    "config/login.conf",
-                    "config/admin-keyfile",
-                    "org/glassfish/web/embed/default-web.xml",
-                    "org/glassfish/embed/domain.xml"
-            };
-            /**
-             * Create instance config directory
-             */
-            File instanceConfigDir = new File(instanceRoot, "config");
-            instanceConfigDir.mkdirs();
-            /**
-             * Create instance branding directory
-             */
-            File instanceBrandingDir = new File(instanceConfigDir, "branding");
-            instanceBrandingDir.mkdirs();
-            /**
-             * Create instance docroot directory.
-             */
-            new File(instanceRoot, "docroot").mkdirs();
-            /**
-             * Copy all the config files from uber jar to the instanceConfigDir
-             */
-            ClassLoader cl = getClass().getClassLoader();
-            for (String configFile : configFiles) {
-                copy(cl.getResource(configFile), new File(instanceConfigDir,
-                        configFile.substring(configFile.lastIndexOf('/') + 1)), false);
+        File template = InstanceRootTemplate.get(new File(tmpDir), instanceRoot, gfProps, root -> {
+            populateInstanceRoot(root, gfProps);
+            if (!JarUtil.extractRars(root.getAbsolutePath())) {
+                throw new IOException("System resource adapters cannot be extracted into " + root);
             }
-            /**
-             * Copy branding files from uber jar to the instanceBrandingDir
-             */
-            copy(cl.getResource("config/branding/glassfish-version.properties"),
-                    new File(instanceBrandingDir, "glassfish-version.properties"), false);
-            /**
-             * If the user has specified a custom domain.xml then copy it.
-             */
-            String configFileURI = gfProps.getConfigFileURI();
-            if(configFileURI != null) {
-                copy(URI.create(configFileURI).toURL(),
-                        new File(instanceConfigDir, "domain.xml"), true);
+        });
+        if (template != null) {
+            try {
+                InstanceRootTemplate.cloneConfig(template, instanceRoot);
+                instanceRootTemplate = template;
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Instance root cannot be cloned from " + template, ex);
+                Util.deleteRecursive(instanceRoot);
+                instanceRoot.mkdir();
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+        }
+        if (instanceRootTemplate == null) {
+            populateInstanceRoot(instanceRoot, gfProps);
         }
         String autoDeleteVal = gfProps.getProperties().getProperty(autoDelete, "true");
         gfProps.getProperties().setProperty(autoDelete, autoDeleteVal);
         return instanceRoot.getAbsolutePath();
     }
 
-    public static void copy(URL u, File destFile, boolean overwrite) {
+    private void populateInstanceRoot(File instanceRoot, GlassFishProperties gfProps) throws IOException {
+        String[] configFiles = new String[]{"config/keyfile",
+                "config/server.policy",
+                "config/cacerts.jks",
+                "config/keystore.jks",
+                "config/login.conf",
+                "config/admin-keyfile",
+                "org/glassfish/web/embed/default-web.xml",
+                "org/glassfish/embed/domain.xml"
+        };
+        /**
+         * Create instance config directory
+         */
+        File instanceConfigDir = new File(instanceRoot, "config");
+        instanceConfigDir.mkdirs();
+        /**
+         * Create instance branding directory
+         */
+        File instanceBrandingDir = new File(instanceConfigDir, "branding");
+        instanceBrandingDir.mkdirs();
+        /**
+         * Create instance docroot directory.
+         */
+        new File(instanceRoot, "docroot").mkdirs();
+        /**
+         * Copy all the config files from uber jar to the instanceConfigDir
+         */
+        ClassLoader cl = getClass().getClassLoader();
+        for (String configFile : configFiles) {
+            copy(cl.getResource(configFile), new File(instanceConfigDir,
+                    configFile.substring(configFile.lastIndexOf('/') + 1)), false);
+        }
+        /**
+         * Copy branding files from uber jar to the instanceBrandingDir
+         */
+        copy(cl.getResource("config/branding/glassfish-version.properties"),
+                new File(instanceBrandingDir, "glassfish-version.properties"), false);
+        /**
+         * If the user has specified a custom domain.xml then copy it.
+         */
+        String configFileURI = gfProps.getConfigFileURI();
+        if(configFileURI != null) {
+            copy(URI.create(configFileURI).toURL(),
+                    new File(instanceConfigDir, "domain.xml"), true);
+        }
+    }
+
+    public static void copy(URL u, File destFile, boolean overwrite) throws IOException {
         if (u == null || destFile == null) return;
         try {
             if (!destFile.exists() || overwrite) {
                 if (!destFile.toURI().equals(u.toURI())) {
-                    InputStream stream = u.openStream();
                     destFile.getParentFile().mkdirs();
-                    Util.copy(stream, new FileOutputStream(destFile), stream.available());
+                    try (InputStream stream = u.openStream()) {
+                        Files.copy(stream, destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
                     if (logger.isLoggable(Level.FINER)) {
                         logger.finer("Copied " + u.toURI() + " to " + destFile.toURI());
                     }
                 }
             }
-        } catch (Exception ex) {
+        } catch (URISyntaxException ex) {
+            throw new IOException(ex);
         }
     }
 
@@ -1,6 +1,6 @@
 /*
  * Copyright (c) 2008, 2018 Oracle and/or its affiliates. All rights reserved.
- * Copyright (c) 2019, 2022 Fujitsu Limited.
+ * Copyright (c) 2019, 2023 Fujitsu Limited.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -18,6 +18,7 @@
 package com.sun.enterprise.v3.server;
 
 
+import com.fujitsu.launcher.startup.StartupProfiler;
 import com.sun.appserv.server.util.Version;
 import com.sun.enterprise.module.HK2Module;
 import com.sun.enterprise.module.ModuleState;
@@ -202,7 +203,9 @@ public class AppServerStartup implements PostConstruct, ModuleStartup {
 
     private void doStart() {
 
-        run();
+        try (StartupProfiler.Span span = StartupProfiler.begin("server", "start")) {
+            run();
+        }
 
         final CountDownLatch latch = new CountDownLatch(1);
 
@@ -310,7 +313,11 @@ public class AppServerStartup implements PostConstruct, ModuleStartup {
             return;
         }
 
-        if (!postStartupJob()) {
+        boolean postStartupDone;
+        try (StartupProfiler.Span span = StartupProfiler.begin("server", "postStartupJob")) {
+            postStartupDone = postStartupJob();
+        }
+        if (!postStartupDone) {
             appInstanceListener.stopRecordingTimes();
 
             // tell failure to caller
@@ -509,7 +516,7 @@ public class AppServerStartup implements PostConstruct, ModuleStartup {
      */
     private boolean proceedTo(int runLevel) {
 
-        try {
+        try (StartupProfiler.Span span = StartupProfiler.begin("runLevel", getRunLevelName(runLevel))) {
             runLevelController.proceedTo(runLevel);
         } catch (Exception e) {
             logger.log(Level.SEVERE, KernelLoggerInfo.shutdownRequired, e);
@@ -520,6 +527,19 @@ public class AppServerStartup implements PostConstruct, ModuleStartup {
         return !masterListener.isForcedShutdown();
     }
 
+    private static String getRunLevelName(int runLevel) {
+        switch (runLevel) {
+        case InitRunLevel.VAL:
+            return "init";
+        case StartupRunLevel.VAL:
+            return "startup";
+        case PostStartupRunLevel.VAL:
+            return "postStartup";
+        default:
+            return Integer.toString(runLevel);
+        }
+    }
+
     @Service
     public static class AppInstanceListener implements InstanceLifecycleListener {
         private static final Filter FILTER = new Filter() {
@@ -594,6 +614,8 @@ public class AppServerStartup implements PostConstruct, ModuleStartup {
         }
 
         private void doPreProduction(ActiveDescriptor<?> descriptor) {
+            StartupProfiler.begin("service", descriptor.getImplementation());
+
             if (startTimes != null) {
                 startTimes.put(descriptor.getImplementation(), System.currentTimeMillis());
             }
@@ -606,6 +628,7 @@ public class AppServerStartup implements PostConstruct, ModuleStartup {
         @SuppressWarnings("unchecked")
         private void doPostProduction(InstanceLifecycleEvent event) {
             ActiveDescriptor<?> descriptor = event.getActiveDescriptor();
+            StartupProfiler.end(descriptor.getImplementation());
 
             if (startTimes != null && recordedTimes != null) {
 
@@ -18,6 +18,8 @@
 
 package com.sun.enterprise.v3.server;
 
+import com.fujitsu.launcher.deployment.DeploymentGate;
+import com.fujitsu.launcher.startup.StartupProfiler;
 import com.sun.enterprise.config.serverbeans.AppTenant;
 import com.sun.enterprise.config.serverbeans.AppTenants;
 import com.sun.enterprise.config.serverbeans.Application;
@@ -354,6 +356,7 @@ public class ApplicationLifecycle implements Deployment, PostConstruct {
 
         context.addTransientAppMetaData(ExtendedDeploymentContext.TRACKER, tracker);
         context.setPhase(DeploymentContextImpl.Phase.PREPARE);
+        DeploymentGate.progress(DeploymentGate.Phase.PREPARE);
         ApplicationInfo appInfo = null;
 
         try {
@@ -467,7 +470,9 @@ public class ApplicationLifecycle implements Deployment, PostConstruct {
                 // todo : we should come up with a general Composite API solution
                 ModuleInfo moduleInfo = null;
                 try {
-                    moduleInfo = prepareModule(sortedEngineInfos, appName, context, tracker);
+                    try (StartupProfiler.Span span = StartupProfiler.begin("deployment", "prepare " + appName)) {
+                        moduleInfo = prepareModule(sortedEngineInfos, appName, context, tracker);
+                    }
                     // Now that the prepare phase is done, any artifacts
                     // should be available. Go ahead and create the
                     // downloadable client JAR. We want to do this now, or
@@ -528,13 +533,20 @@ public class ApplicationLifecycle implements Deployment, PostConstruct {
                 if (loadOnCurrentInstance(context)) {
                     appInfo.setLibraries(commandParams.libraries());
                     try {
-                        notifyLifecycleInterceptorsBefore(ExtendedDeploymentContext.Phase.LOAD, context);
-                        appInfo.load(context, tracker);
-                        notifyLifecycleInterceptorsAfter(ExtendedDeploymentContext.Phase.LOAD, context);
+                        DeploymentGate.progress(DeploymentGate.Phase.LOAD);
+                        try (StartupProfiler.Span span = StartupProfiler.begin("deployment", "load " + appName)) {
+                            notifyLifecycleInterceptorsBefore(ExtendedDeploymentContext.Phase.LOAD, context);
+                            appInfo.load(context, tracker);
+                            notifyLifecycleInterceptorsAfter(ExtendedDeploymentContext.Phase.LOAD, context);
+                        }
 
-                        notifyLifecycleInterceptorsBefore(ExtendedDeploymentContext.Phase.START, context);
-                        appInfo.start(context, tracker);
-                        notifyLifecycleInterceptorsAfter(ExtendedDeploymentContext.Phase.START, context);
+                        DeploymentGate.progress(DeploymentGate.Phase.START);
+                        try (StartupProfiler.Span span = StartupProfiler.begin("deployment", "start " + appName)) {
+                            notifyLifecycleInterceptorsBefore(ExtendedDeploymentContext.Phase.START, context);
+                            appInfo.start(context, tracker);
+                            notifyLifecycleInterceptorsAfter(ExtendedDeploymentContext.Phase.START, context);
+                        }
+                        DeploymentGate.open();
                     } catch (Throwable loadException) {
                         LOG.log(SEVERE, KernelLoggerInfo.lifecycleException, loadException);
                         report.failure(LOG, "Exception while loading the app", null);
@@ -566,6 +578,7 @@ public class ApplicationLifecycle implements Deployment, PostConstruct {
                             String.valueOf(operationTime));
                 }
             } else {
+                DeploymentGate.fail();
                 events.send(new Event<>(Deployment.DEPLOYMENT_FAILURE, context));
                 throw new jakarta.enterprise.inject.spi.DeploymentException(report.getFailureCause());
             }
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.config.dom.NetworkListener;
+import org.glassfish.grizzly.config.dom.ThreadPool;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.memory.ThreadLocalPoolProvider;
+import org.glassfish.grizzly.threadpool.DefaultWorkerThread;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+/**
+ * Adjusts the size of the worker thread pool of a network listener between
+ * the minimum and maximum sizes of its thread-pool.
+ *
+ * <p>At every interval the queue wait time is estimated from the queue
+ * length and the throughput. While it is above the target, the pool is
+ * resized by hill climbing: it keeps moving in the same direction as long as
+ * the throughput improves, and turns around otherwise. The pool shrinks when
+ * the CPU is saturated or half of the threads are idle. When the direction
+ * keeps changing, the size is held for a while instead.
+ *
+ * <p>The pool is resized in place, which requires a worker thread pool
+ * extending {@link ThreadPoolExecutor}. The pools of Grizzly can only be
+ * replaced as a whole, so the listener runs its workers on the executor of
+ * {@link #newExecutor} instead, unless another executor is configured.
+ */
+class AdaptiveThreadPool implements Runnable {
+
+    static final String ENABLED = "adaptiveThreadPool";
+    static final String INTERVAL = "adaptiveThreadPoolInterval";
+    static final String TARGET_QUEUE_WAIT = "adaptiveThreadPoolTargetQueueWait";
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveThreadPool.class.getName());
+
+    /** Throughput changes within this ratio are taken as noise. */
+    private static final double NOISE = 0.05;
+    private static final double CPU_CEILING = 0.9;
+    /** Number of recent moves checked for oscillation. */
+    private static final int HISTORY = 6;
+    private static final int MAX_REVERSALS = 3;
+    /** Number of intervals the size is held once oscillation is detected. */
+    private static final int HOLD_INTERVALS = 6;
+
+    private final String listenerName;
+    private final ThreadPoolExecutor executor;
+    private final long interval;
+    private final double targetQueueWait;
+    private final int minSize;
+    private final int maxSize;
+    private final ScheduledExecutorService scheduler;
+    private final List<Statistic> registered = new ArrayList<>();
+
+    private final int[] moves = new int[HISTORY];
+    private int moveCount;
+    private int holdIntervals;
+
+    private volatile int size;
+    private volatile double throughput;
+    private volatile double queueWait;
+    private volatile double cpuLoad;
+    private int lastMove;
+    private double lastThroughput;
+    private long lastCompleted;
+
+    AdaptiveThreadPool(final String listenerName, final ThreadPoolExecutor executor, final int minSize,
+            final int maxSize, final long interval, final double targetQueueWait) {
+        this.listenerName = listenerName;
+        this.executor = executor;
+        this.interval = interval;
+        this.targetQueueWait = targetQueueWait;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.size = Math.max(minSize, Math.min(maxSize, executor.getCorePoolSize()));
+        this.lastCompleted = executor.getCompletedTaskCount();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "adaptive-thread-pool-" + listenerName);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final Map<String, String> tags = Map.of("listener", listenerName);
+        registered.add(LauncherStatistics.register("networkListener.threadPool.adaptive.size",
+                "Number of worker threads chosen by the adaptive thread pool", null, tags, () -> size));
+        registered.add(LauncherStatistics.register("networkListener.threadPool.adaptive.throughput",
+                "Number of tasks completed per second in the last interval", null, tags, () -> throughput));
+        registered.add(LauncherStatistics.register("networkListener.threadPool.adaptive.queueWait",
+                "Estimated time tasks waited for a worker thread in the last interval", "milliseconds", tags,
+                () -> queueWait));
+        registered.add(LauncherStatistics.register("networkListener.threadPool.adaptive.cpuLoad",
+                "CPU load of the process in the last interval", null, tags, () -> cpuLoad));
+    }
+
+    static boolean isEnabled(final NetworkListener networkListener) {
+        return Boolean.parseBoolean(networkListener.getPropertyValue(ENABLED));
+    }
+
+    /**
+     * Creates a worker thread pool that can be resized in place, with the
+     * sizes, queue limit and idle timeout of the given configuration. Its
+     * threads are worker threads of Grizzly, with the thread local memory
+     * pools of the memory manager, as in the pools of Grizzly.
+     */
+    static ThreadPoolExecutor newExecutor(final ThreadPoolConfig config,
+            final Supplier<MemoryManager> memoryManager) {
+        final int maxSize = Math.max(1, config.getMaxPoolSize());
+        final int coreSize = Math.max(1, Math.min(maxSize, config.getCorePoolSize()));
+        final int queueLimit = config.getQueueLimit() > 0 ? config.getQueueLimit() : Integer.MAX_VALUE;
+        final long keepAlive = config.getKeepAliveTime(TimeUnit.MILLISECONDS);
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(coreSize, maxSize, keepAlive < 0 ? Long.MAX_VALUE : keepAlive,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueLimit), r -> {
+                    final MemoryManager manager = memoryManager.get();
+                    final DefaultWorkerThread thread = new DefaultWorkerThread(Grizzly.DEFAULT_ATTRIBUTE_BUILDER,
+                            config.getPoolName() + '(' + counter.incrementAndGet() + ')',
+                            manager instanceof ThreadLocalPoolProvider
+                                    ? ((ThreadLocalPoolProvider) manager).createThreadLocalPool() : null,
+                            r);
+                    thread.setPriority(config.getPriority());
+                    thread.setDaemon(config.isDaemon());
+                    if (config.getInitialClassLoader() != null) {
+                        thread.setContextClassLoader(config.getInitialClassLoader());
+                    }
+                    return thread;
+                });
+    }
+
+    /**
+     * Starts adjusting the worker thread pool if enabled for the network
+     * listener, and returns the controller to stop, or {@code null}.
+     */
+    static AdaptiveThreadPool start(final NetworkListener networkListener, final Object workerThreadPool) {
+        if (!isEnabled(networkListener)) {
+            return null;
+        }
+        if (!(workerThreadPool instanceof ThreadPoolExecutor)) {
+            LOGGER.log(Level.WARNING, "Worker thread pool of network listener {0} cannot be resized in place, set"
+                    + " the classname of its thread-pool to a ThreadPoolExecutor", networkListener.getName());
+            return null;
+        }
+        final ThreadPoolExecutor executor = (ThreadPoolExecutor) workerThreadPool;
+        final long interval;
+        final double targetQueueWait;
+        int minSize = executor.getCorePoolSize();
+        int maxSize = executor.getMaximumPoolSize();
+        try {
+            interval = Long.parseLong(networkListener.getPropertyValue(INTERVAL, "5000"));
+            targetQueueWait = Double.parseDouble(networkListener.getPropertyValue(TARGET_QUEUE_WAIT, "10"));
+            final ThreadPool threadPool = networkListener.findThreadPool();
+            if (threadPool != null) {
+                minSize = Integer.parseInt(threadPool.getMinThreadPoolSize());
+                maxSize = Integer.parseInt(threadPool.getMaxThreadPoolSize());
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid adaptive thread pool of network listener {0}, it is disabled",
+                    networkListener.getName());
+            return null;
+        }
+        minSize = Math.max(1, minSize);
+
+        final AdaptiveThreadPool pool = new AdaptiveThreadPool(networkListener.getName(), executor, minSize,
+                Math.max(minSize, maxSize), Math.max(100, interval), targetQueueWait);
+        pool.scheduler.scheduleWithFixedDelay(pool, pool.interval, pool.interval, TimeUnit.MILLISECONDS);
+        return pool;
+    }
+
+    void stop() {
+        scheduler.shutdownNow();
+        LauncherStatistics.unregisterAll(registered);
+    }
+
+    @Override
+    public void run() {
+        try {
+            adjust();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Adaptive thread pool of network listener " + listenerName + " failed", e);
+        }
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    private void adjust() {
+        adjust(executor.getCompletedTaskCount(), executor.getQueue().size(), executor.getActiveCount(), getCpuLoad());
+    }
+
+    /**
+     * Chooses the size of the pool from its state at the end of an interval.
+     *
+     * @param completed the number of tasks completed since the pool started
+     * @param queued the number of tasks waiting for a thread
+     * @param busy the number of threads running a task
+     * @param cpuLoad the CPU load of the process, from 0 to 1
+     */
+    void adjust(final long completed, final long queued, final long busy, final double cpuLoad) {
+        throughput = (completed - lastCompleted) * 1000.0 / interval;
+        lastCompleted = completed;
+        // Little's law: the tasks in the queue are served at the throughput
+        queueWait = queued == 0 ? 0 : throughput == 0 ? interval : queued * 1000.0 / throughput;
+        this.cpuLoad = cpuLoad;
+
+        if (holdIntervals > 0) {
+            holdIntervals--;
+            LOGGER.log(Level.FINE, "Adaptive thread pool of {0} holds {1} threads", new Object[] { listenerName, size });
+            return;
+        }
+
+        final int step = Math.max(1, size / 8);
+        int move;
+        final String reason;
+        if (cpuLoad >= CPU_CEILING) {
+            move = -1;
+            reason = "CPU is saturated";
+        } else if (queueWait > targetQueueWait) {
+            if (lastMove == 0 || throughput > lastThroughput * (1 + NOISE)) {
+                move = lastMove == 0 ? 1 : lastMove;
+            } else {
+                move = -lastMove;
+            }
+            reason = "tasks are queued";
+        } else if (queued == 0 && busy < size / 2) {
+            move = -1;
+            reason = "threads are idle";
+        } else {
+            move = 0;
+            reason = null;
+        }
+
+        final int next = Math.max(minSize, Math.min(maxSize, size + move * step));
+        lastThroughput = throughput;
+        if (next == size) {
+            lastMove = 0;
+            return;
+        }
+        lastMove = move;
+
+        if (isOscillating(move)) {
+            holdIntervals = HOLD_INTERVALS;
+            moveCount = 0;
+            lastMove = 0;
+            LOGGER.log(Level.INFO, "Adaptive thread pool of {0} is oscillating, holding {1} threads for {2} ms",
+                    new Object[] { listenerName, size, HOLD_INTERVALS * interval });
+            return;
+        }
+
+        LOGGER.log(Level.INFO, "Adaptive thread pool of {0} resized from {1} to {2} threads as {3}: "
+                + "throughput {4}/s, queue wait {5} ms, CPU load {6}",
+                new Object[] { listenerName, size, next, reason, Math.round(throughput), Math.round(queueWait),
+                        cpuLoad });
+        resize(next);
+    }
+
+    private boolean isOscillating(final int move) {
+        moves[moveCount++ % HISTORY] = move;
+        if (moveCount < HISTORY) {
+            return false;
+        }
+        int reversals = 0;
+        for (int i = 1; i < HISTORY; i++) {
+            if (moves[(moveCount - i) % HISTORY] != moves[(moveCount - i - 1) % HISTORY]) {
+                reversals++;
+            }
+        }
+        return reversals >= MAX_REVERSALS;
+    }
+
+    private void resize(final int next) {
+        // Threads are started for the queued tasks as the core size grows,
+        // and idle ones stop as it shrinks; the maximum never drops below it
+        if (next > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(next);
+        }
+        executor.setCorePoolSize(next);
+        size = next;
+    }
+
+    private static double getCpuLoad() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return Math.max(0, ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuLoad());
+        }
+        return 0;
+    }
+}
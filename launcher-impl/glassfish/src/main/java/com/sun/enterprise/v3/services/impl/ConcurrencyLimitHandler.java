@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.CharConversionException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+import com.fujitsu.launcher.web.ConcurrencyLimit;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.http.util.ContentType;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.memory.Buffers;
+
+/**
+ * Sheds the requests exceeding an adaptive {@link ConcurrencyLimit} before
+ * they reach the {@link ContainerMapper}.
+ *
+ * <p>Requests to the critical paths, by default the health checks and the
+ * metrics, are always admitted and not counted. Requests to the low priority
+ * paths are only admitted up to a share of the limit. Paths are matched after
+ * decoding and normalization, as the mapper sees them. Rejected requests are
+ * answered at once with a pre-encoded 503: the status line comes from
+ * {@link org.glassfish.grizzly.http.PreEncodedResponseHeaders}, the content
+ * type and {@code Retry-After} are serialized once, and the body is written
+ * without being copied.
+ */
+class ConcurrencyLimitHandler extends HttpHandler {
+
+    static final String ENABLED = "com.fujitsu.launcher.http.concurrencyLimit.enabled";
+    static final String INITIAL = "com.fujitsu.launcher.http.concurrencyLimit.initial";
+    static final String MIN = "com.fujitsu.launcher.http.concurrencyLimit.min";
+    static final String MAX = "com.fujitsu.launcher.http.concurrencyLimit.max";
+    static final String CRITICAL_PATHS = "com.fujitsu.launcher.http.concurrencyLimit.criticalPaths";
+    static final String LOW_PRIORITY_PATHS = "com.fujitsu.launcher.http.concurrencyLimit.lowPriorityPaths";
+
+    private static final ContentType TEXT = ContentType.newContentType("text/plain").prepare();
+    private static final byte[] RETRY_AFTER = "1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OVERLOADED = "The server is overloaded".getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpHandler delegate;
+    private final ConcurrencyLimit limit;
+    private final String[] criticalPaths;
+    private final String[] lowPriorityPaths;
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    private ConcurrencyLimitHandler(final HttpHandler delegate, final String listenerName) {
+        super(delegate.getName());
+        this.delegate = delegate;
+        this.limit = new ConcurrencyLimit(Integer.getInteger(INITIAL, 20), Integer.getInteger(MIN, 5),
+                Integer.getInteger(MAX, 1000));
+        this.criticalPaths = toPaths(System.getProperty(CRITICAL_PATHS, "/health,/metrics"));
+        this.lowPriorityPaths = toPaths(System.getProperty(LOW_PRIORITY_PATHS, ""));
+
+        final Map<String, String> tags = Map.of("listener", listenerName);
+        statistics.add(LauncherStatistics.register("networkListener.concurrency.limit",
+                "Current limit of concurrent requests", null, tags, limit::getLimit));
+        statistics.add(LauncherStatistics.register("networkListener.concurrency.inFlight",
+                "Number of admitted requests being processed", null, tags, limit::getInFlight));
+        statistics.add(LauncherStatistics.register("networkListener.concurrency.rejections",
+                "Number of requests rejected by the concurrency limit", null, tags, limit::getRejections));
+    }
+
+    /**
+     * Returns the given handler behind a concurrency limit, or the handler
+     * itself if the limit is not enabled.
+     */
+    static HttpHandler wrap(final HttpHandler delegate, final String listenerName) {
+        if (!Boolean.getBoolean(ENABLED)) {
+            return delegate;
+        }
+        return new ConcurrencyLimitHandler(delegate, listenerName);
+    }
+
+    /**
+     * Admits or rejects the request. Grizzly has already prepared it with the
+     * settings the listener configured on this handler, as it would have
+     * for the mapper.
+     */
+    @Override
+    public void service(final Request request, final Response response) throws Exception {
+        final String path = getPath(request);
+        if (path != null && matches(criticalPaths, path)) {
+            delegate.service(request, response);
+            return;
+        }
+        if (!limit.tryAcquire(path != null && matches(lowPriorityPaths, path))) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+            response.setContentType(TEXT);
+            response.getResponse().getHeaders().addValue(Header.RetryAfter).setBytes(RETRY_AFTER);
+            response.setContentLength(OVERLOADED.length);
+            response.getOutputBuffer().writeBuffer(
+                    Buffers.wrap(request.getContext().getMemoryManager(), OVERLOADED));
+            return;
+        }
+
+        // Released once the response is completed, also for suspended requests
+        final long start = System.nanoTime();
+        request.addAfterServiceListener(r -> limit.release(start));
+        delegate.service(request, response);
+    }
+
+    @Override
+    public void start() {
+        delegate.start();
+    }
+
+    @Override
+    public void destroy() {
+        delegate.destroy();
+    }
+
+    void unregister() {
+        LauncherStatistics.unregisterAll(statistics);
+    }
+
+    /**
+     * Returns the decoded and normalized path, so that e.g.
+     * {@code /health/../api} is not taken for a health check, or {@code null}
+     * if the request URI is invalid, in which case the mapper rejects it.
+     */
+    private static String getPath(final Request request) {
+        try {
+            return request.getDecodedRequestURI();
+        } catch (CharConversionException e) {
+            return null;
+        }
+    }
+
+    private static boolean matches(final String[] prefixes, final String path) {
+        for (final String prefix : prefixes) {
+            if (path.startsWith(prefix)
+                    && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] toPaths(final String value) {
+        final List<String> paths = new ArrayList<>();
+        for (final String path : GlassfishNetworkListener.toArray(value, ",")) {
+            if (!path.isEmpty()) {
+                paths.add(path.endsWith("/") ? path.substring(0, path.length() - 1) : path);
+            }
+        }
+        return paths.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fujitsu.launcher.deployment.DeploymentGate;
+import com.fujitsu.launcher.shutdown.RequestDrain;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.memory.Buffers;
+
+/**
+ * Answers requests with {@code 503 Service Unavailable} while the
+ * {@link DeploymentGate} is closed, so that clients and load balancers can
+ * tell a deploying server from a missing application.
+ *
+ * <p>The health check endpoints report the deployment progress instead:
+ * liveness is {@code UP}, readiness and startup are {@code DOWN}.
+ *
+ * <p>While the {@link RequestDrain} is draining, requests are passed on but
+ * their connections are closed after the response, and readiness is reported
+ * as {@code DOWN}.
+ */
+class DeploymentGateFilter extends BaseFilter {
+
+    private static final String HEALTH = "/health";
+    private static final String HEALTH_LIVE = "/health/live";
+    private static final String HEALTH_READY = "/health/ready";
+    private static final String HEALTH_STARTED = "/health/started";
+
+    private static final String JSON = "application/json";
+    private static final String TEXT = "text/plain";
+    private static final byte[] RETRY_AFTER = "1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UNAVAILABLE = "The application is being deployed".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx) throws IOException {
+        final Object message = ctx.getMessage();
+        final boolean open = DeploymentGate.isOpen();
+        if (open && !RequestDrain.isDraining() || !(message instanceof HttpContent)) {
+            return ctx.getInvokeAction();
+        }
+
+        final HttpContent content = (HttpContent) message;
+        final HttpRequestPacket request = (HttpRequestPacket) content.getHttpHeader();
+        final HttpResponsePacket response = request.getResponse();
+        final String path = request.getRequestURI();
+
+        if (open) {
+            request.getProcessingState().setKeepAlive(false);
+            if (!HEALTH.equals(path) && !HEALTH_READY.equals(path)) {
+                return ctx.getInvokeAction();
+            }
+            if (!content.isLast()) {
+                return ctx.getStopAction();
+            }
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+            response.setContentType(JSON);
+            return respond(ctx, response, RequestDrain.getHealthDown());
+        }
+
+        if (!content.isLast()) {
+            // Discard the request body, the response is sent once it is read
+            return ctx.getStopAction();
+        }
+
+        final byte[] body;
+        if (HEALTH_LIVE.equals(path)) {
+            response.setStatus(HttpStatus.OK_200);
+            response.setContentType(JSON);
+            body = DeploymentGate.getHealthLive();
+        } else if (HEALTH.equals(path) || HEALTH_READY.equals(path) || HEALTH_STARTED.equals(path)) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+            response.setContentType(JSON);
+            body = DeploymentGate.getPhase().getHealthDown();
+        } else {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+            response.setContentType(TEXT);
+            response.getHeaders().addValue("Retry-After").setBytes(RETRY_AFTER);
+            body = UNAVAILABLE;
+        }
+        return respond(ctx, response, body);
+    }
+
+    private static NextAction respond(final FilterChainContext ctx, final HttpResponsePacket response,
+            final byte[] body) {
+        response.setContentLength(body.length);
+
+        ctx.write(HttpContent.builder(response)
+                .content(Buffers.wrap(ctx.getMemoryManager(), body))
+                .last(true)
+                .build());
+        return ctx.getStopAction();
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import org.glassfish.grizzly.memory.MemoryProbe;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
+
+/**
+ * Memory manager of the transports whose {@code byte-buffer-type} is
+ * {@code direct}, shared by all of them.
+ *
+ * <p>Buffers are taken from off-heap pools of a few size classes. Each pool
+ * is split into slices selected by the calling thread, so threads rarely
+ * contend, and sockets are read and written without copying through
+ * temporary direct buffers. The pools are filled lazily by the buffers
+ * returned to them unless a part of them is preallocated.
+ */
+final class DirectMemoryPool {
+
+    static final String DIRECT = "direct";
+    static final String LEAK_DETECTION = "com.fujitsu.launcher.memory.leakDetection";
+    static final String SIZE = "com.fujitsu.launcher.memory.directPool.size";
+    static final String PREALLOCATED = "com.fujitsu.launcher.memory.directPool.preallocated";
+
+    private static final long DEFAULT_SIZE = 64L * 1024 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(DirectMemoryPool.class.getName());
+
+    private static volatile PooledMemoryManager memoryManager;
+    /** Number of network listeners using the pool and not stopped yet. */
+    private static int users;
+
+    private static final Usage USAGE = new Usage();
+
+    private DirectMemoryPool() {
+    }
+
+    /**
+     * Returns the shared memory manager for a network listener, creating it
+     * on first use. The listener calls {@link #release} once stopped.
+     */
+    static synchronized PooledMemoryManager get() {
+        users++;
+        if (memoryManager == null) {
+            memoryManager = new PooledMemoryManager(PooledMemoryManager.DEFAULT_BASE_BUFFER_SIZE,
+                    PooledMemoryManager.DEFAULT_NUMBER_OF_POOLS, PooledMemoryManager.DEFAULT_GROWTH_FACTOR,
+                    Runtime.getRuntime().availableProcessors(), getSizeRatio(), getPreallocated(), true);
+            // Registered after the preallocation, so that preallocated
+            // buffers are neither taken nor returned
+            memoryManager.getMonitoringConfig().addProbes(USAGE);
+
+            final Map<String, String> tags = Map.of();
+            LauncherStatistics.register("memory.directPool.allocatedBytes",
+                    "Total size of the buffers allocated by the direct memory pool", "bytes", tags,
+                    USAGE.allocatedBytes::sum);
+            LauncherStatistics.register("memory.directPool.inUse",
+                    "Number of buffers taken from the direct memory pool and not disposed", null, tags,
+                    USAGE::getInUse);
+            LauncherStatistics.register("memory.directPool.misses",
+                    "Number of buffers allocated because the direct memory pool was empty", null, tags,
+                    USAGE.misses::sum);
+            LauncherStatistics.register("memory.directPool.discarded",
+                    "Number of disposed buffers dropped because their slice of the direct memory pool was full",
+                    null, tags, USAGE.discarded::sum);
+        }
+        return memoryManager;
+    }
+
+    /**
+     * Called when a network listener using the pool stopped. Once none is
+     * running, no buffer should be in use, so the buffers not returned are
+     * reported when leak detection is enabled.
+     */
+    static synchronized void release(final String listenerName) {
+        if (users == 0 || --users > 0 || !Boolean.getBoolean(LEAK_DETECTION)) {
+            return;
+        }
+        final long inUse = USAGE.getInUse();
+        if (inUse > 0) {
+            LOGGER.log(Level.WARNING, "{0} buffers of the direct memory pool were not disposed when network"
+                    + " listener {1}, the last one using it, stopped", new Object[] { inUse, listenerName });
+        }
+    }
+
+    /**
+     * Returns the size of the pool as the ratio of the maximum heap size
+     * expected by Grizzly.
+     */
+    private static float getSizeRatio() {
+        final long size = Long.getLong(SIZE, DEFAULT_SIZE);
+        final float ratio = (float) size / Runtime.getRuntime().maxMemory();
+        if (size <= 0 || ratio >= 1) {
+            LOGGER.log(Level.WARNING, "{0} must be positive and less than the maximum heap size, using {1} bytes",
+                    new Object[] { SIZE, DEFAULT_SIZE });
+            return Math.min(0.5f, (float) DEFAULT_SIZE / Runtime.getRuntime().maxMemory());
+        }
+        return ratio;
+    }
+
+    private static float getPreallocated() {
+        final String value = System.getProperty(PREALLOCATED, "0");
+        try {
+            final float preallocated = Float.parseFloat(value);
+            if (preallocated >= 0 && preallocated <= 1) {
+                return preallocated;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        LOGGER.log(Level.WARNING, "{0} must be between 0 and 1, the pool is allocated lazily", PREALLOCATED);
+        return 0;
+    }
+
+    /**
+     * Counts the buffers taken from a pooled memory manager and disposed.
+     * A disposed buffer is either returned to its pool slice or, when the
+     * slice is full, discarded, so the buffers in use are exactly those
+     * taken and neither returned nor discarded.
+     */
+    static final class Usage extends MemoryProbe.Adapter implements PooledMemoryManager.DiscardProbe {
+
+        final LongAdder taken = new LongAdder();
+        final LongAdder returned = new LongAdder();
+        final LongAdder discarded = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+        final LongAdder misses = new LongAdder();
+
+        @Override
+        public void onBufferAllocateEvent(int size) {
+            taken.increment();
+            misses.increment();
+            allocatedBytes.add(size);
+        }
+
+        @Override
+        public void onBufferAllocateFromPoolEvent(int size) {
+            taken.increment();
+            allocatedBytes.add(size);
+        }
+
+        @Override
+        public void onBufferReleaseToPoolEvent(int size) {
+            returned.increment();
+        }
+
+        @Override
+        public void onBufferDiscardEvent(int size) {
+            discarded.increment();
+        }
+
+        long getInUse() {
+            // Disposals are counted after the buffers are taken, but the
+            // adders may be read while both are being updated
+            return Math.max(0, taken.sum() - returned.sum() - discarded.sum());
+        }
+    }
+}
@@ -18,11 +18,16 @@
 
 package com.sun.enterprise.v3.services.impl;
 
+import com.fujitsu.launcher.shutdown.RequestDrain;
 import com.sun.appserv.server.util.Version;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +38,12 @@ import com.sun.enterprise.v3.services.impl.monitor.GrizzlyMonitoring;
 import com.sun.enterprise.v3.services.impl.monitor.KeepAliveMonitor;
 import com.sun.enterprise.v3.services.impl.monitor.ThreadPoolMonitor;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.CloseListener;
+import org.glassfish.grizzly.CloseType;
+import org.glassfish.grizzly.Closeable;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.config.GenericGrizzlyListener;
 import org.glassfish.grizzly.config.dom.Http;
 import org.glassfish.grizzly.config.dom.NetworkListener;
@@ -46,10 +57,17 @@ import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.HttpResponsePacket;
 import org.glassfish.grizzly.http.KeepAlive;
 import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServerProbe;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
 import org.glassfish.grizzly.http.server.ServerFilterConfiguration;
 import org.glassfish.grizzly.http.server.filecache.FileCache;
 import org.glassfish.grizzly.http.server.util.Mapper;
 import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
+import org.glassfish.grizzly.nio.NIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import org.glassfish.grizzly.utils.DelayedExecutor;
 import org.glassfish.hk2.api.DynamicConfiguration;
@@ -63,11 +81,24 @@ import org.glassfish.internal.grizzly.V3Mapper;
 import org.jvnet.hk2.config.types.Property;
 
 public class GlassfishNetworkListener extends GenericGrizzlyListener {
+    private static final Attribute<RequestDrain.ConnectionRequests> CONNECTION_REQUESTS =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(GlassfishNetworkListener.class.getName() + ".requests");
+
     private final GrizzlyService grizzlyService;
     private final NetworkListener networkListener;
     private final Logger logger;
 
     private volatile HttpAdapter httpAdapter;
+    private NetworkListenerStatistics statistics;
+    private HttpHandler httpHandler;
+    private RateLimitFilter rateLimitFilter;
+    private AdaptiveThreadPool adaptiveThreadPool;
+    private ThreadPoolExecutor resizableWorkerPool;
+    private int acceptorCount = 1;
+    private ReusePortAcceptors acceptors;
+    private Path unixDomainSocketPath;
+    private UnixDomainSocketAcceptor unixDomainSocket;
+    private final Runnable stopAccepting = this::stopAccepting;
 
     public GlassfishNetworkListener(final GrizzlyService grizzlyService,
             final NetworkListener networkListener,
@@ -81,8 +112,54 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
         return networkListener;
     }
 
+    @Override
+    public void start() throws IOException {
+        if (unixDomainSocketPath != null) {
+            startUnixDomainSocket();
+        } else {
+            super.start();
+        }
+        if (acceptorCount > 1) {
+            acceptors = ReusePortAcceptors.start((TCPNIOTransport) transport, acceptorCount - 1,
+                    new InetSocketAddress(address, port), this::addConnectionProbes);
+        }
+        adaptiveThreadPool = AdaptiveThreadPool.start(networkListener, transport.getWorkerThreadPool());
+    }
+
+    /**
+     * Starts the transport without binding the port of the listener, and
+     * accepts the connections on its Unix domain socket instead.
+     */
+    private void startUnixDomainSocket() throws IOException {
+        startDelayedExecutor();
+        try {
+            transport.start();
+            unixDomainSocket = UnixDomainSocketAcceptor.start((TCPNIOTransport) transport, unixDomainSocketPath,
+                    port);
+        } catch (Exception e) {
+            transport.shutdownNow();
+            throw new IOException("Failed to start listener " + this + " on " + unixDomainSocketPath, e);
+        } finally {
+            if (transport.isStopped()) {
+                stopDelayedExecutor();
+            }
+        }
+    }
+
     @Override
     public void stop() throws IOException {
+        if (adaptiveThreadPool != null) {
+            adaptiveThreadPool.stop();
+            adaptiveThreadPool = null;
+        }
+        if (acceptors != null) {
+            acceptors.stop();
+            acceptors = null;
+        }
+        if (unixDomainSocket != null) {
+            unixDomainSocket.stop();
+            unixDomainSocket = null;
+        }
         ServiceLocator locator = grizzlyService.getHabitat();
         IndexedFilter removeFilter = BuilderHelper.createNameAndContractFilter(Mapper.class.getName(),
                 (address.toString() + port));
@@ -95,7 +172,30 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
         config.commit();
 
         unregisterMonitoringStatsProviders();
+        RequestDrain.removeListener(stopAccepting);
+        if (statistics != null) {
+            statistics.unregister();
+            statistics = null;
+        }
+        if (httpHandler instanceof ConcurrencyLimitHandler) {
+            ((ConcurrencyLimitHandler) httpHandler).unregister();
+        }
+        httpHandler = null;
+        if (rateLimitFilter != null) {
+            rateLimitFilter.unregister();
+            rateLimitFilter = null;
+        }
+        final boolean directMemoryPool = transport != null
+                && transport.getMemoryManager() instanceof PooledMemoryManager;
         super.stop();
+        if (resizableWorkerPool != null) {
+            resizableWorkerPool.shutdownNow();
+            resizableWorkerPool = null;
+        }
+        if (directMemoryPool) {
+            // No connection of the listener holds a buffer any more
+            DirectMemoryPool.release(name);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -116,8 +216,31 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
         super.configureTransport(networkListener, transportConfig,
                 filterChainBuilder);
 
+        addConnectionProbes(transport);
+
+        if (DirectMemoryPool.DIRECT.equals(transportConfig.getByteBufferType())) {
+            transport.setMemoryManager(DirectMemoryPool.get());
+        }
+
+        if (transport instanceof TCPNIOTransport) {
+            unixDomainSocketPath = UnixDomainSocketAcceptor.getPath(networkListener);
+            acceptorCount = unixDomainSocketPath == null ? ReusePortAcceptors.getCount(networkListener) : 1;
+            if (acceptorCount > 1) {
+                // Every server socket gets its share of the selector runners
+                final TCPNIOTransport tcpTransport = (TCPNIOTransport) transport;
+                tcpTransport.setSelectorRunnersCount(
+                        Math.max(1, tcpTransport.getSelectorRunnersCount() / acceptorCount));
+                ReusePortAcceptors.reusePort(tcpTransport);
+            }
+        }
+    }
+
+    private void addConnectionProbes(final NIOTransport transport) {
+        // The probes of all server sockets of the listener report under its
+        // name, so the monitoring aggregates across them
         transport.getConnectionMonitoringConfig().addProbes(new ConnectionMonitor(
                 grizzlyService.getMonitoring(), name, transport));
+        transport.getConnectionMonitoringConfig().addProbes(getStatistics().getConnectionProbe());
     }
 
     @Override
@@ -189,6 +312,72 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
         } else {
             super.configureHttpProtocol(habitat, networkListener, http, filterChainBuilder, securityEnabled);
         }
+
+        final int index = filterChainBuilder.indexOfType(org.glassfish.grizzly.http.server.HttpServerFilter.class);
+        if (index >= 0) {
+            // Count the requests in flight, so that the shutdown can wait for them
+            ((org.glassfish.grizzly.http.server.HttpServerFilter) filterChainBuilder.get(index))
+                    .getMonitoringConfig().addProbes(new HttpServerProbe.Adapter() {
+                        @Override
+                        public void onRequestReceiveEvent(org.glassfish.grizzly.http.server.HttpServerFilter filter,
+                                Connection connection, Request request) {
+                            getConnectionRequests(connection).started();
+                        }
+
+                        @Override
+                        public void onRequestCompleteEvent(org.glassfish.grizzly.http.server.HttpServerFilter filter,
+                                Connection connection, Response response) {
+                            getConnectionRequests(connection).completed();
+                        }
+                    });
+            RequestDrain.addListener(stopAccepting);
+
+            // Reject requests ahead of the HTTP server filter until the
+            // application is started, rather than letting the empty mapper
+            // answer them with 404, and close connections while draining
+            filterChainBuilder.add(index, new DeploymentGateFilter());
+
+            if (rateLimitFilter == null) {
+                rateLimitFilter = RateLimitFilter.create(networkListener);
+            }
+            if (rateLimitFilter != null) {
+                filterChainBuilder.add(index + 1, rateLimitFilter);
+            }
+        }
+    }
+
+    private static RequestDrain.ConnectionRequests getConnectionRequests(Connection connection) {
+        RequestDrain.ConnectionRequests requests = CONNECTION_REQUESTS.get(connection);
+        if (requests == null) {
+            // HTTP/2 streams of a connection may be received concurrently
+            synchronized (connection) {
+                requests = CONNECTION_REQUESTS.get(connection);
+                if (requests == null) {
+                    final RequestDrain.ConnectionRequests created = RequestDrain.newConnection();
+                    CONNECTION_REQUESTS.set(connection, created);
+                    // Requests of a connection closed before they complete
+                    // are never reported as completed
+                    connection.addCloseListener(new CloseListener<Closeable, CloseType>() {
+                        @Override
+                        public void onClosed(Closeable closeable, CloseType type) {
+                            created.closed();
+                        }
+                    });
+                    requests = created;
+                }
+            }
+        }
+        return requests;
+    }
+
+    private void stopAccepting() {
+        transport.unbindAll();
+        if (acceptors != null) {
+            acceptors.unbindAll();
+        }
+        if (unixDomainSocket != null) {
+            unixDomainSocket.stop();
+        }
     }
 
     @Override
@@ -202,7 +391,10 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
 
     @Override
     protected HttpHandler getHttpHandler() {
-        return httpAdapter.getMapper();
+        if (httpHandler == null) {
+            httpHandler = ConcurrencyLimitHandler.wrap(httpAdapter.getMapper(), name);
+        }
+        return httpHandler;
     }
 
     @Override
@@ -210,6 +402,7 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
         final KeepAlive keepAlive = super.configureKeepAlive(http);
         keepAlive.getMonitoringConfig().addProbes(new KeepAliveMonitor(
                 grizzlyService.getMonitoring(), name, keepAlive));
+        keepAlive.getMonitoringConfig().addProbes(getStatistics().getKeepAliveProbe());
         return keepAlive;
     }
 
@@ -219,10 +412,35 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
         final FileCache fileCache = super.configureHttpFileCache(cache);
         fileCache.getMonitoringConfig().addProbes(new FileCacheMonitor(
                 grizzlyService.getMonitoring(), name, fileCache));
+        fileCache.getMonitoringConfig().addProbes(getStatistics().getFileCacheProbe());
 
         return fileCache;
     }
 
+    @Override
+    protected void configureThreadPool(final ServiceLocator habitat,
+                                       final NetworkListener networkListener,
+                                       final ThreadPool threadPool) {
+        final String classname = threadPool.getClassname();
+        if (!AdaptiveThreadPool.isEnabled(networkListener)
+                || classname != null && !GrizzlyExecutorService.class.getName().equals(classname)) {
+            super.configureThreadPool(habitat, networkListener, threadPool);
+            return;
+        }
+        // The pools of Grizzly cannot be resized in place
+        final ThreadPoolConfig config;
+        try {
+            config = configureThreadPoolConfig(networkListener, threadPool);
+        } catch (NumberFormatException e) {
+            // Reported by the default configuration
+            super.configureThreadPool(habitat, networkListener, threadPool);
+            return;
+        }
+        final NIOTransport workerTransport = transport;
+        resizableWorkerPool = AdaptiveThreadPool.newExecutor(config, workerTransport::getMemoryManager);
+        transport.setWorkerThreadPool(resizableWorkerPool);
+    }
+
     @Override
     protected ThreadPoolConfig configureThreadPoolConfig(final NetworkListener networkListener,
                                                          final ThreadPool threadPool) {
@@ -231,9 +449,17 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
                 networkListener, threadPool);
         config.getInitialMonitoringConfig().addProbes(new ThreadPoolMonitor(
                 grizzlyService.getMonitoring(), name, config));
+        config.getInitialMonitoringConfig().addProbes(getStatistics().getThreadPoolProbe());
         return config;
     }
 
+    private NetworkListenerStatistics getStatistics() {
+        if (statistics == null) {
+            statistics = new NetworkListenerStatistics(name);
+        }
+        return statistics;
+    }
+
     @Override
     protected org.glassfish.grizzly.http.HttpServerFilter createHttpServerCodecFilter(
             final Http http,
@@ -340,8 +566,10 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
      * Glassfish specific HttpCodecFilter extension.
      */
     private static class GlassfishHttpCodecFilter extends org.glassfish.grizzly.http.HttpServerFilter {
-        private final String serverVersion;
-        private final String xPoweredBy;
+        // Both values are constant for the listener, so they are encoded
+        // once here instead of on every response.
+        private final byte[] serverVersion;
+        private final byte[] xPoweredBy;
 
         public GlassfishHttpCodecFilter(
                 final boolean isXPoweredByEnabled,
@@ -370,15 +598,16 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
             */
             String serverInfo = System.getProperty("product.name");
 
-            serverVersion = serverInfo != null ? serverInfo : Version.getVersion();
+            final String version = serverInfo != null ? serverInfo : Version.getVersion();
+            serverVersion = version != null && !version.isEmpty() ? encode(version) : null;
 
             if (isXPoweredByEnabled) {
-                xPoweredBy = "Servlet/6.0 JSP/3.1"
+                xPoweredBy = encode("Servlet/6.0 JSP/3.1"
                         + " "
                         + "(" + ((serverInfo != null && !serverInfo.isEmpty()) ? serverInfo : Version.getVersion())
                         + " Java/"
                         + System.getProperty("java.vm.vendor") + "/"
-                        + System.getProperty("java.specification.version") + ")";
+                        + System.getProperty("java.specification.version") + ")");
             } else {
                 xPoweredBy = null;
             }
@@ -396,16 +625,20 @@ public class GlassfishNetworkListener extends GenericGrizzlyListener {
             final HttpResponsePacket response = request.getResponse();
 
             // Set response "Server" header
-            if (serverVersion != null && !serverVersion.isEmpty()) {
-                response.addHeader(Header.Server, serverVersion);
+            if (serverVersion != null) {
+                response.getHeaders().addValue(Header.Server).setBytes(serverVersion);
             }
 
             // Set response "X-Powered-By" header
             if (xPoweredBy != null) {
-                response.addHeader(Header.XPoweredBy, xPoweredBy);
+                response.getHeaders().addValue(Header.XPoweredBy).setBytes(xPoweredBy);
             }
 
             return result;
         }
+
+        private static byte[] encode(final String value) {
+            return value.getBytes(StandardCharsets.ISO_8859_1);
+        }
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.ConnectionProbe;
+import org.glassfish.grizzly.http.KeepAliveProbe;
+import org.glassfish.grizzly.http.server.filecache.FileCache;
+import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
+import org.glassfish.grizzly.http.server.filecache.FileCacheProbe;
+import org.glassfish.grizzly.nio.transport.TCPNIOServerConnection;
+import org.glassfish.grizzly.threadpool.AbstractThreadPool;
+import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+
+/**
+ * Statistics of a network listener collected by plain Grizzly probes and
+ * published through {@link LauncherStatistics}.
+ * <p>
+ * The probes only update {@link LongAdder}s, so unlike the flashlight based
+ * monitoring they need neither an instrumentation agent nor class
+ * retransformation, and are always enabled.
+ */
+class NetworkListenerStatistics {
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+
+    private final LongAdder threads = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder busy = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    private final LongAdder keepAliveHits = new LongAdder();
+    private final LongAdder keepAliveRefusals = new LongAdder();
+    private final LongAdder keepAliveTimeouts = new LongAdder();
+
+    private final LongAdder fileCacheHits = new LongAdder();
+    private final LongAdder fileCacheMisses = new LongAdder();
+
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    NetworkListenerStatistics(String listenerName) {
+        Map<String, String> tags = Map.of("listener", listenerName);
+        statistics.add(LauncherStatistics.register("networkListener.connections.active",
+                "Number of open connections", null, tags, () -> accepted.sum() - closed.sum()));
+        statistics.add(LauncherStatistics.register("networkListener.connections.accepted",
+                "Number of accepted connections", null, tags, accepted::sum));
+        statistics.add(LauncherStatistics.register("networkListener.threadPool.threads",
+                "Number of worker threads", null, tags, threads::sum));
+        statistics.add(LauncherStatistics.register("networkListener.threadPool.busyThreads",
+                "Number of worker threads running a task", null, tags, busy::sum));
+        statistics.add(LauncherStatistics.register("networkListener.threadPool.queueLength",
+                "Number of tasks waiting for a worker thread", null, tags, queued::sum));
+        statistics.add(LauncherStatistics.register("networkListener.threadPool.completedTasks",
+                "Number of tasks completed by the worker threads", null, tags, completed::sum));
+        statistics.add(LauncherStatistics.register("networkListener.threadPool.queueOverflows",
+                "Number of tasks rejected because the queue was full", null, tags, overflows::sum));
+        statistics.add(LauncherStatistics.register("networkListener.keepAlive.hits",
+                "Number of requests received on kept-alive connections", null, tags, keepAliveHits::sum));
+        statistics.add(LauncherStatistics.register("networkListener.keepAlive.refusals",
+                "Number of connections closed because the keep-alive limit was reached", null, tags,
+                keepAliveRefusals::sum));
+        statistics.add(LauncherStatistics.register("networkListener.keepAlive.timeouts",
+                "Number of kept-alive connections closed by the idle timeout", null, tags, keepAliveTimeouts::sum));
+        statistics.add(LauncherStatistics.register("networkListener.fileCache.hits",
+                "Number of requests served from the file cache", null, tags, fileCacheHits::sum));
+        statistics.add(LauncherStatistics.register("networkListener.fileCache.misses",
+                "Number of requests not found in the file cache", null, tags, fileCacheMisses::sum));
+        statistics.add(LauncherStatistics.register("networkListener.fileCache.hitRatio",
+                "Ratio of requests served from the file cache", null, tags, this::getFileCacheHitRatio));
+    }
+
+    void unregister() {
+        LauncherStatistics.unregisterAll(statistics);
+    }
+
+    ConnectionProbe getConnectionProbe() {
+        return new ConnectionProbe.Adapter() {
+            @Override
+            public void onAcceptEvent(Connection serverConnection, Connection clientConnection) {
+                accepted.increment();
+            }
+
+            @Override
+            public void onCloseEvent(Connection connection) {
+                if (!(connection instanceof TCPNIOServerConnection)) {
+                    closed.increment();
+                }
+            }
+        };
+    }
+
+    ThreadPoolProbe getThreadPoolProbe() {
+        return new ThreadPoolProbe.Adapter() {
+            @Override
+            public void onThreadAllocateEvent(AbstractThreadPool threadPool, Thread thread) {
+                threads.increment();
+            }
+
+            @Override
+            public void onThreadReleaseEvent(AbstractThreadPool threadPool, Thread thread) {
+                threads.decrement();
+            }
+
+            @Override
+            public void onTaskQueueEvent(AbstractThreadPool threadPool, Runnable task) {
+                queued.increment();
+            }
+
+            @Override
+            public void onTaskDequeueEvent(AbstractThreadPool threadPool, Runnable task) {
+                queued.decrement();
+                busy.increment();
+            }
+
+            @Override
+            public void onTaskCancelEvent(AbstractThreadPool threadPool, Runnable task) {
+                queued.decrement();
+            }
+
+            @Override
+            public void onTaskCompleteEvent(AbstractThreadPool threadPool, Runnable task) {
+                busy.decrement();
+                completed.increment();
+            }
+
+            @Override
+            public void onTaskQueueOverflowEvent(AbstractThreadPool threadPool) {
+                overflows.increment();
+            }
+        };
+    }
+
+    KeepAliveProbe getKeepAliveProbe() {
+        return new KeepAliveProbe.Adapter() {
+            @Override
+            public void onHitEvent(Connection connection, int requestNumber) {
+                keepAliveHits.increment();
+            }
+
+            @Override
+            public void onRefuseEvent(Connection connection) {
+                keepAliveRefusals.increment();
+            }
+
+            @Override
+            public void onTimeoutEvent(Connection connection) {
+                keepAliveTimeouts.increment();
+            }
+        };
+    }
+
+    FileCacheProbe getFileCacheProbe() {
+        return new FileCacheProbe.Adapter() {
+            @Override
+            public void onEntryHitEvent(FileCache fileCache, FileCacheEntry entry) {
+                fileCacheHits.increment();
+            }
+
+            @Override
+            public void onEntryMissedEvent(FileCache fileCache, String host, String requestURI) {
+                fileCacheMisses.increment();
+            }
+        };
+    }
+
+    private double getFileCacheHitRatio() {
+        long hits = fileCacheHits.sum();
+        long total = hits + fileCacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
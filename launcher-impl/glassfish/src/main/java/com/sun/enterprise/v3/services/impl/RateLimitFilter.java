@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+import com.fujitsu.launcher.web.TokenBucketTable;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.config.dom.NetworkListener;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.http.HttpContent;
+import org.glassfish.grizzly.http.HttpRequestPacket;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.memory.Buffers;
+
+/**
+ * Limits the request rate of each client of a network listener by token
+ * buckets, answering the requests over the limit with 429.
+ *
+ * <p>The limit is configured by properties of the network listener in
+ * domain.xml. The client is identified by its address, a request header, or
+ * the subject of a bearer JWT signed by the configured key; requests without
+ * the header or a valid token are identified by their address. The subjects
+ * of verified tokens are cached, and a token not verified yet is charged to
+ * the address first, so that a client cannot make the server verify
+ * signatures faster than its own rate.
+ *
+ * <p>A request is judged on its first content and the decision is kept on the
+ * request itself, so the streams of an HTTP/2 connection are judged
+ * independently.
+ */
+class RateLimitFilter extends BaseFilter {
+
+    static final String RATE = "rateLimitRequestsPerSecond";
+    static final String BURST = "rateLimitBurst";
+    static final String KEY = "rateLimitKey";
+    static final String MAX_KEYS = "rateLimitMaxKeys";
+    static final String JWT_PUBLIC_KEY = "rateLimitJwtPublicKey";
+    static final String JWT_ISSUER = "rateLimitJwtIssuer";
+    static final String JWT_AUDIENCE = "rateLimitJwtAudience";
+
+    private static final Logger LOGGER = Logger.getLogger(RateLimitFilter.class.getName());
+
+    private static final String HEADER_KEY = "header:";
+    private static final String JWT_SUBJECT_KEY = "jwt-subject";
+    private static final String BEARER = "Bearer ";
+    private static final String RS256 = "RS256";
+    private static final int MAX_KEY_LENGTH = 256;
+    /** Seconds a token without a nearer expiration is trusted before it is verified again. */
+    private static final long MAX_SUBJECT_AGE = TimeUnit.MINUTES.toSeconds(5);
+
+    private static final String TEXT = "text/plain";
+    private static final byte[] TOO_MANY_REQUESTS = "Too many requests".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Whether the request has been admitted; absent until its first content is
+     * judged. Cleared with the other attributes when the packet is recycled.
+     */
+    private static final Attribute<Boolean> ADMITTED = Grizzly.DEFAULT_ATTRIBUTE_BUILDER
+            .createAttribute(RateLimitFilter.class.getName() + ".admitted");
+
+    private final TokenBucketTable buckets;
+    private final String header;
+    private final PublicKey jwtKey;
+    private final String jwtIssuer;
+    private final String jwtAudience;
+    private final SubjectCache subjects;
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    private RateLimitFilter(final String listenerName, final double rate, final int burst, final String key,
+            final int maxKeys, final PublicKey jwtKey, final String jwtIssuer, final String jwtAudience) {
+        this.buckets = new TokenBucketTable(rate, burst, maxKeys);
+        this.header = key.startsWith(HEADER_KEY) ? key.substring(HEADER_KEY.length()) : null;
+        this.jwtKey = JWT_SUBJECT_KEY.equals(key) ? jwtKey : null;
+        this.jwtIssuer = jwtIssuer;
+        this.jwtAudience = jwtAudience;
+        this.subjects = this.jwtKey != null ? new SubjectCache(maxKeys) : null;
+
+        final Map<String, String> tags = Map.of("listener", listenerName);
+        statistics.add(LauncherStatistics.register("networkListener.rateLimit.rejections",
+                "Number of requests rejected by the rate limit", null, tags, buckets::getRejections));
+        statistics.add(LauncherStatistics.register("networkListener.rateLimit.keys",
+                "Number of clients tracked by the rate limit", null, tags, buckets::getKeys));
+    }
+
+    /**
+     * Returns the filter configured for the network listener, or {@code null}
+     * if no rate limit is configured.
+     */
+    static RateLimitFilter create(final NetworkListener networkListener) {
+        final String rate = networkListener.getPropertyValue(RATE);
+        if (rate == null) {
+            return null;
+        }
+        try {
+            final double ratePerSecond = Double.parseDouble(rate);
+            if (ratePerSecond <= 0) {
+                return null;
+            }
+            final int burst = Integer.parseInt(networkListener.getPropertyValue(BURST,
+                    Integer.toString((int) Math.ceil(ratePerSecond))));
+            final int maxKeys = Integer.parseInt(networkListener.getPropertyValue(MAX_KEYS, "100000"));
+            final String key = networkListener.getPropertyValue(KEY, "ip");
+            PublicKey jwtKey = null;
+            if (JWT_SUBJECT_KEY.equals(key)) {
+                jwtKey = loadPublicKey(networkListener);
+            }
+            return new RateLimitFilter(networkListener.getName(), ratePerSecond, burst, key, maxKeys, jwtKey,
+                    networkListener.getPropertyValue(JWT_ISSUER), networkListener.getPropertyValue(JWT_AUDIENCE));
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid rate limit of network listener {0}, rate limiting is disabled",
+                    networkListener.getName());
+            return null;
+        }
+    }
+
+    /**
+     * Loads the PEM encoded RSA public key verifying the tokens, or returns
+     * {@code null} so that clients are identified by their address.
+     */
+    private static PublicKey loadPublicKey(final NetworkListener networkListener) {
+        final String location = networkListener.getPropertyValue(JWT_PUBLIC_KEY);
+        if (location == null) {
+            LOGGER.log(Level.WARNING, "{0} of network listener {1} is not set, clients are identified by their"
+                    + " address", new Object[] { JWT_PUBLIC_KEY, networkListener.getName() });
+            return null;
+        }
+        try {
+            return parsePublicKey(new String(Files.readAllBytes(Paths.get(location)), StandardCharsets.US_ASCII));
+        } catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Unable to load the JWT public key " + location + " of network listener "
+                    + networkListener.getName() + ", clients are identified by their address", e);
+            return null;
+        }
+    }
+
+    static PublicKey parsePublicKey(final String pem) throws GeneralSecurityException {
+        final String base64 = pem.replaceAll("-----(BEGIN|END) PUBLIC KEY-----", "").replaceAll("\\s", "");
+        return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+    }
+
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx) throws IOException {
+        final Object message = ctx.getMessage();
+        if (!(message instanceof HttpContent)) {
+            return ctx.getInvokeAction();
+        }
+
+        final HttpContent content = (HttpContent) message;
+        final HttpRequestPacket request = (HttpRequestPacket) content.getHttpHeader();
+
+        Boolean admitted = ADMITTED.get(request);
+        if (admitted == null) {
+            final long wait = acquire(request);
+            admitted = wait == 0;
+            ADMITTED.set(request, admitted);
+            if (!admitted) {
+                final long second = TimeUnit.SECONDS.toNanos(1);
+                request.getResponse().setHeader("Retry-After", Long.toString((wait + second - 1) / second));
+            }
+        }
+        if (admitted) {
+            return ctx.getInvokeAction();
+        }
+        if (!content.isLast()) {
+            // Discard the request body, the response is sent once it is read
+            return ctx.getStopAction();
+        }
+
+        final HttpResponsePacket response = request.getResponse();
+        response.setStatus(429);
+        response.setReasonPhrase("Too Many Requests");
+        response.setContentType(TEXT);
+        response.setContentLength(TOO_MANY_REQUESTS.length);
+        ctx.write(HttpContent.builder(response)
+                .content(Buffers.wrap(ctx.getMemoryManager(), TOO_MANY_REQUESTS))
+                .last(true)
+                .build());
+        return ctx.getStopAction();
+    }
+
+    void unregister() {
+        LauncherStatistics.unregisterAll(statistics);
+    }
+
+    /**
+     * Takes a token from the bucket of the client of the request.
+     *
+     * @return {@code 0} if a token was taken, otherwise the number of
+     *         nanoseconds until the next token is available
+     */
+    private long acquire(final HttpRequestPacket request) {
+        String key = null;
+        if (header != null) {
+            key = request.getHeader(header);
+        } else if (jwtKey != null) {
+            final String token = getBearerToken(request.getHeader("Authorization"));
+            if (token != null) {
+                final long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+                final String digest = digest(token);
+                key = subjects.get(digest, now);
+                if (key == null) {
+                    // A signature costs far more to verify than to send, so
+                    // the tokens not verified yet are charged to the address
+                    final long wait = buckets.tryAcquire(request.getRemoteAddress());
+                    if (wait != 0) {
+                        return wait;
+                    }
+                    final VerifiedToken verified = verify(token, jwtKey, jwtIssuer, jwtAudience, now);
+                    if (verified == null) {
+                        return 0;
+                    }
+                    subjects.put(digest, verified.subject, Math.min(verified.expires, now + MAX_SUBJECT_AGE));
+                    key = verified.subject;
+                }
+            }
+        }
+        if (key == null || key.isEmpty()) {
+            return buckets.tryAcquire(request.getRemoteAddress());
+        }
+        // Keep the memory held by a bucket bounded
+        return buckets.tryAcquire(key.length() > MAX_KEY_LENGTH ? key.substring(0, MAX_KEY_LENGTH) : key);
+    }
+
+    /**
+     * Returns the token of a bearer authorization, or {@code null}.
+     */
+    static String getBearerToken(final String authorization) {
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return null;
+        }
+        final String token = authorization.substring(BEARER.length()).trim();
+        return token.isEmpty() ? null : token;
+    }
+
+    private static String digest(final String token) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verifies a JWT, or returns {@code null} unless it is signed with RS256
+     * by the given key, is valid at the given time, was issued by the given
+     * issuer and is intended for the given audience, where configured, and
+     * has a subject, so that clients cannot choose their bucket.
+     */
+    static VerifiedToken verify(final String token, final PublicKey key, final String issuer,
+            final String audience, final long now) {
+        final int start = token.indexOf('.');
+        final int end = token.indexOf('.', start + 1);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+        final String header;
+        final String payload;
+        try {
+            final Base64.Decoder decoder = Base64.getUrlDecoder();
+            header = new String(decoder.decode(token.substring(0, start)), StandardCharsets.UTF_8);
+            if (!RS256.equals(getClaim(header, "alg"))) {
+                return null;
+            }
+            final Signature signature = Signature.getInstance("SHA256withRSA");
+            signature.initVerify(key);
+            signature.update(token.substring(0, end).getBytes(StandardCharsets.US_ASCII));
+            if (!signature.verify(decoder.decode(token.substring(end + 1)))) {
+                return null;
+            }
+            payload = new String(decoder.decode(token.substring(start + 1, end)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            return null;
+        }
+
+        final long expires;
+        try {
+            final String expiration = getClaim(payload, "exp");
+            expires = expiration == null ? Long.MAX_VALUE : Long.parseLong(expiration);
+            final String notBefore = getClaim(payload, "nbf");
+            if (expires <= now || notBefore != null && Long.parseLong(notBefore) > now) {
+                return null;
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (issuer != null && !issuer.equals(getClaim(payload, "iss"))) {
+            return null;
+        }
+        if (audience != null && !hasAudience(payload, audience)) {
+            return null;
+        }
+        final String subject = getClaim(payload, "sub");
+        return subject == null || subject.isEmpty() ? null : new VerifiedToken(subject, expires);
+    }
+
+    /**
+     * Returns the index of the value of a top level member of a JSON object,
+     * or {@code -1} if absent. Only parses trusted objects.
+     */
+    private static int indexOfValue(final String json, final String name) {
+        final String quoted = '"' + name + '"';
+        int index = json.indexOf(quoted);
+        while (index >= 0) {
+            int colon = index + quoted.length();
+            while (colon < json.length() && Character.isWhitespace(json.charAt(colon))) {
+                colon++;
+            }
+            // Skip the strings with the same content, such as a subject
+            if (colon < json.length() && json.charAt(colon) == ':') {
+                int value = colon + 1;
+                while (value < json.length() && Character.isWhitespace(json.charAt(value))) {
+                    value++;
+                }
+                return value < json.length() ? value : -1;
+            }
+            index = json.indexOf(quoted, index + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a top level string or integer member of a JSON
+     * object, or {@code null} if absent. Only parses trusted objects.
+     */
+    private static String getClaim(final String json, final String name) {
+        final int index = indexOfValue(json, name);
+        if (index < 0) {
+            return null;
+        }
+        if (json.charAt(index) != '"') {
+            int end = index;
+            while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '-')) {
+                end++;
+            }
+            return end == index ? null : json.substring(index, end);
+        }
+        final StringBuilder value = new StringBuilder();
+        return readString(json, index, value) < 0 ? null : value.toString();
+    }
+
+    /**
+     * Returns whether the {@code aud} claim, a string or an array of strings,
+     * contains the given audience.
+     */
+    private static boolean hasAudience(final String json, final String audience) {
+        int index = indexOfValue(json, "aud");
+        if (index < 0) {
+            return false;
+        }
+        if (json.charAt(index) != '[') {
+            return audience.equals(getClaim(json, "aud"));
+        }
+        final StringBuilder value = new StringBuilder();
+        for (index++; index < json.length() && json.charAt(index) != ']'; index++) {
+            if (json.charAt(index) == '"') {
+                value.setLength(0);
+                index = readString(json, index, value);
+                if (index < 0) {
+                    return false;
+                }
+                if (audience.contentEquals(value)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the JSON string starting at the given quote to the builder.
+     *
+     * @return the index of the closing quote, or {@code -1} if there is none
+     */
+    private static int readString(final String json, final int index, final StringBuilder value) {
+        for (int i = index + 1; i < json.length(); i++) {
+            final char c = json.charAt(i);
+            if (c == '"') {
+                return i;
+            }
+            if (c == '\\' && i + 1 < json.length()) {
+                value.append(json.charAt(++i));
+                continue;
+            }
+            value.append(c);
+        }
+        return -1;
+    }
+
+    static final class VerifiedToken {
+
+        final String subject;
+        final long expires;
+
+        VerifiedToken(final String subject, final long expires) {
+            this.subject = subject;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Bounded cache of the subjects of verified tokens, keyed by the SHA-256
+     * digest of the token, so that a token is verified once until it expires
+     * or is dropped as the least recently used of its stripe.
+     */
+    static final class SubjectCache {
+
+        private static final int STRIPES = 16;
+
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        SubjectCache(final int maxSize) {
+            final int capacity = Math.max(1, maxSize / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(capacity);
+            }
+        }
+
+        /**
+         * Returns the subject of the token, or {@code null} when it has to be
+         * verified.
+         */
+        String get(final String digest, final long now) {
+            final Stripe stripe = getStripe(digest);
+            synchronized (stripe) {
+                final VerifiedToken token = stripe.get(digest);
+                if (token == null) {
+                    return null;
+                }
+                if (now >= token.expires) {
+                    stripe.remove(digest);
+                    return null;
+                }
+                return token.subject;
+            }
+        }
+
+        void put(final String digest, final String subject, final long expires) {
+            final Stripe stripe = getStripe(digest);
+            synchronized (stripe) {
+                stripe.put(digest, new VerifiedToken(subject, expires));
+            }
+        }
+
+        int size() {
+            int size = 0;
+            for (Stripe stripe : stripes) {
+                synchronized (stripe) {
+                    size += stripe.size();
+                }
+            }
+            return size;
+        }
+
+        private Stripe getStripe(final String digest) {
+            final int hash = digest.hashCode();
+            return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        }
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, VerifiedToken> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(final int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, VerifiedToken> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.IOException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.Pipe;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.AbstractSelector;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.config.dom.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.asyncqueue.AsyncQueueWriter;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+/**
+ * Additional transports of a network listener, each binding its own server
+ * socket to the port of the listener with {@code SO_REUSEPORT}, so that the
+ * kernel balances the accepted connections across them.
+ *
+ * <p>The transports share the filter chain and the worker thread pool of the
+ * listener, but each has its own selector runners and kernel thread pool.
+ * All other settings, e.g. the timeouts and the limit of pending writes, are
+ * copied from the transport of the listener.
+ *
+ * <p>{@code SO_REUSEPORT} also lets any other process of the same user bind
+ * the port while the listener is running, and receive a share of its
+ * connections.
+ */
+final class ReusePortAcceptors {
+
+    static final String ACCEPTORS = "reusePortAcceptors";
+
+    private static final Logger LOGGER = Logger.getLogger(ReusePortAcceptors.class.getName());
+
+    private final List<TCPNIOTransport> transports = new ArrayList<>();
+
+    private ReusePortAcceptors() {
+    }
+
+    /**
+     * Returns the number of server sockets configured for the network
+     * listener, which is {@code 1} if {@code SO_REUSEPORT} is not supported.
+     */
+    static int getCount(final NetworkListener networkListener) {
+        final int count;
+        try {
+            count = Integer.parseInt(networkListener.getPropertyValue(ACCEPTORS, "1"));
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid {0} of network listener {1}, a single server socket is used",
+                    new Object[] { ACCEPTORS, networkListener.getName() });
+            return 1;
+        }
+        if (count <= 1) {
+            return 1;
+        }
+        try (ServerSocketChannel channel = SelectorProvider.provider().openServerSocketChannel()) {
+            if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+                LOGGER.log(Level.WARNING, "SO_REUSEPORT is not supported, network listener {0} uses a single"
+                        + " server socket", networkListener.getName());
+                return 1;
+            }
+        } catch (IOException e) {
+            return 1;
+        }
+        return count;
+    }
+
+    /**
+     * Makes the server sockets opened by the transport bind with
+     * {@code SO_REUSEPORT}.
+     */
+    static void reusePort(final TCPNIOTransport transport) {
+        transport.setSelectorProvider(new ReusePortSelectorProvider(transport.getSelectorProvider()));
+    }
+
+    /**
+     * Binds and starts the given number of transports configured like the
+     * given started one.
+     *
+     * @param probes adds the monitoring probes to a transport
+     */
+    static ReusePortAcceptors start(final TCPNIOTransport transport, final int count,
+            final SocketAddress address, final Consumer<TCPNIOTransport> probes) throws IOException {
+        final ReusePortAcceptors acceptors = new ReusePortAcceptors();
+        try {
+            for (int i = 0; i < count; i++) {
+                final TCPNIOTransport acceptor = TCPNIOTransportBuilder.newInstance().build();
+                configure(acceptor, transport, transport.getName() + "-" + (i + 1));
+                probes.accept(acceptor);
+
+                acceptors.transports.add(acceptor);
+                acceptor.bind(address);
+                acceptor.start();
+            }
+        } catch (IOException | RuntimeException e) {
+            acceptors.stop();
+            throw e;
+        }
+        return acceptors;
+    }
+
+    private static void configure(final TCPNIOTransport acceptor, final TCPNIOTransport transport,
+            final String name) {
+        acceptor.setName(name);
+        acceptor.setSelectorProvider(transport.getSelectorProvider());
+        acceptor.setSelectorRunnersCount(transport.getSelectorRunnersCount());
+        final ThreadPoolConfig kernelConfig = transport.getKernelThreadPoolConfig();
+        if (kernelConfig != null) {
+            acceptor.setKernelThreadPoolConfig(kernelConfig.copy().setPoolName(name + "-kernel"));
+        }
+        acceptor.setSelectorHandler(transport.getSelectorHandler());
+        acceptor.setSelectionKeyHandler(transport.getSelectionKeyHandler());
+        acceptor.setAttributeBuilder(transport.getAttributeBuilder());
+        acceptor.setProcessor(transport.getProcessor());
+        acceptor.setProcessorSelector(transport.getProcessorSelector());
+        acceptor.setIOStrategy(transport.getIOStrategy());
+        acceptor.setWorkerThreadPool(transport.getWorkerThreadPool());
+        acceptor.setMemoryManager(transport.getMemoryManager());
+        acceptor.setOptimizedForMultiplexing(transport.isOptimizedForMultiplexing());
+
+        acceptor.setReadBufferSize(transport.getReadBufferSize());
+        acceptor.setWriteBufferSize(transport.getWriteBufferSize());
+        acceptor.setReadTimeout(transport.getReadTimeout(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        acceptor.setWriteTimeout(transport.getWriteTimeout(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        final AsyncQueueWriter<?> writer = transport.getAsyncQueueIO().getWriter();
+        acceptor.getAsyncQueueIO().getWriter().setMaxPendingBytesPerConnection(
+                writer.getMaxPendingBytesPerConnection());
+        acceptor.getAsyncQueueIO().getWriter().setAllowDirectWrite(writer.isAllowDirectWrite());
+
+        acceptor.setTcpNoDelay(transport.isTcpNoDelay());
+        acceptor.setKeepAlive(transport.isKeepAlive());
+        acceptor.setLinger(transport.getLinger());
+        acceptor.setReuseAddress(transport.isReuseAddress());
+        acceptor.setServerConnectionBackLog(transport.getServerConnectionBackLog());
+        acceptor.setClientSocketSoTimeout(transport.getClientSocketSoTimeout());
+        acceptor.setServerSocketSoTimeout(transport.getServerSocketSoTimeout());
+    }
+
+    void unbindAll() {
+        for (final TCPNIOTransport transport : transports) {
+            transport.unbindAll();
+        }
+    }
+
+    void stop() {
+        for (final TCPNIOTransport transport : transports) {
+            try {
+                transport.shutdownNow();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to stop transport " + transport.getName(), e);
+            }
+        }
+        transports.clear();
+    }
+
+    /**
+     * Sets {@code SO_REUSEPORT} on the server socket channels; all channels
+     * and selectors are still opened by the default provider, so they can be
+     * registered with each other.
+     */
+    private static final class ReusePortSelectorProvider extends SelectorProvider {
+
+        private final SelectorProvider delegate;
+
+        ReusePortSelectorProvider(final SelectorProvider delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ServerSocketChannel openServerSocketChannel() throws IOException {
+            final ServerSocketChannel channel = delegate.openServerSocketChannel();
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            return channel;
+        }
+
+        @Override
+        public DatagramChannel openDatagramChannel() throws IOException {
+            return delegate.openDatagramChannel();
+        }
+
+        @Override
+        public DatagramChannel openDatagramChannel(final ProtocolFamily family) throws IOException {
+            return delegate.openDatagramChannel(family);
+        }
+
+        @Override
+        public Pipe openPipe() throws IOException {
+            return delegate.openPipe();
+        }
+
+        @Override
+        public AbstractSelector openSelector() throws IOException {
+            return delegate.openSelector();
+        }
+
+        @Override
+        public SocketChannel openSocketChannel() throws IOException {
+            return delegate.openSocketChannel();
+        }
+    }
+}
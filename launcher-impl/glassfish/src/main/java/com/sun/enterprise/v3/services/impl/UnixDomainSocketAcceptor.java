@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.config.dom.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.UnixDomainSocketConnection;
+
+/**
+ * Accepts the connections of a network listener on a Unix domain socket
+ * instead of its TCP port, and hands them to the transport of the listener,
+ * which serves them like TCP connections.
+ *
+ * <p>Unix domain socket channels are available from Java 16, so they are
+ * opened reflectively; on an older runtime the listener fails to start. The
+ * socket file is created with the permissions of the process umask, and a
+ * socket file left by an earlier process is replaced.
+ *
+ * <p>The channel is accepted in blocking mode on a thread of its own, as
+ * connections to a local proxy or sidecar are long-lived and few.
+ */
+final class UnixDomainSocketAcceptor implements Runnable {
+
+    static final String PATH = "unixDomainSocketPath";
+
+    private static final Logger LOGGER = Logger.getLogger(UnixDomainSocketAcceptor.class.getName());
+
+    private static final long ACCEPT_FAILURE_DELAY_MILLIS = 100;
+
+    private final TCPNIOTransport transport;
+    private final Path path;
+    private final int port;
+    private final ServerSocketChannel serverChannel;
+    private final Thread thread;
+
+    private UnixDomainSocketAcceptor(final TCPNIOTransport transport, final Path path, final int port,
+            final ServerSocketChannel serverChannel) {
+        this.transport = transport;
+        this.path = path;
+        this.port = port;
+        this.serverChannel = serverChannel;
+        this.thread = new Thread(this, transport.getName() + "-unix-acceptor");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Returns the path of the Unix domain socket configured for the network
+     * listener, or {@code null} if it listens on its TCP port.
+     */
+    static Path getPath(final NetworkListener networkListener) {
+        final String path = networkListener.getPropertyValue(PATH);
+        if (path == null || path.trim().isEmpty()) {
+            return null;
+        }
+        return Paths.get(path.trim()).toAbsolutePath();
+    }
+
+    /**
+     * Binds the Unix domain socket and starts accepting its connections for
+     * the given started transport.
+     *
+     * @param port the port reported as the local port of the connections
+     */
+    static UnixDomainSocketAcceptor start(final TCPNIOTransport transport, final Path path, final int port)
+            throws IOException {
+        deleteSocketFile(path);
+        final ServerSocketChannel serverChannel = openServerSocketChannel();
+        try {
+            serverChannel.bind(getAddress(path), transport.getServerConnectionBackLog());
+        } catch (IOException | RuntimeException e) {
+            serverChannel.close();
+            throw e;
+        }
+        final UnixDomainSocketAcceptor acceptor = new UnixDomainSocketAcceptor(transport, path, port, serverChannel);
+        acceptor.thread.start();
+        return acceptor;
+    }
+
+    @Override
+    public void run() {
+        while (serverChannel.isOpen()) {
+            final SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (AsynchronousCloseException e) {
+                break;
+            } catch (IOException e) {
+                // e.g. the process is out of file descriptors
+                LOGGER.log(Level.WARNING, "Failed to accept a connection on " + path, e);
+                if (!pause()) {
+                    break;
+                }
+                continue;
+            }
+            try {
+                new UnixDomainSocketConnection(transport, channel, port).register();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Failed to register a connection accepted on " + path, e);
+                closeSilently(channel);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections and deletes the socket file; accepted
+     * connections are served until the transport stops.
+     */
+    void stop() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close " + path, e);
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            deleteSocketFile(path);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to delete " + path, e);
+        }
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(ACCEPT_FAILURE_DELAY_MILLIS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void closeSilently(final SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close a connection accepted on a Unix domain socket", e);
+        }
+    }
+
+    /**
+     * Deletes a socket file, but no regular file or directory that happens to
+     * have its name.
+     */
+    private static void deleteSocketFile(final Path path) throws IOException {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)
+                && Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+            Files.delete(path);
+        }
+    }
+
+    static ServerSocketChannel openServerSocketChannel() throws IOException {
+        return (ServerSocketChannel) invoke(ServerSocketChannel.class, "open", ProtocolFamily.class,
+                unixProtocolFamily());
+    }
+
+    static SocketChannel openSocketChannel() throws IOException {
+        return (SocketChannel) invoke(SocketChannel.class, "open", ProtocolFamily.class, unixProtocolFamily());
+    }
+
+    static SocketAddress getAddress(final Path path) throws IOException {
+        final Class<?> addressClass;
+        try {
+            addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+        } catch (ClassNotFoundException e) {
+            throw unsupported(e);
+        }
+        return (SocketAddress) invoke(addressClass, "of", Path.class, path);
+    }
+
+    private static ProtocolFamily unixProtocolFamily() throws IOException {
+        try {
+            return StandardProtocolFamily.valueOf("UNIX");
+        } catch (IllegalArgumentException e) {
+            throw unsupported(e);
+        }
+    }
+
+    /**
+     * Invokes a static factory method of Java 16.
+     */
+    private static Object invoke(final Class<?> type, final String name, final Class<?> parameterType,
+            final Object argument) throws IOException {
+        try {
+            return type.getMethod(name, parameterType).invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw unsupported(e);
+        }
+    }
+
+    private static IOException unsupported(final Exception e) {
+        return new IOException("Unix domain sockets require Java 16 or later", e);
+    }
+}
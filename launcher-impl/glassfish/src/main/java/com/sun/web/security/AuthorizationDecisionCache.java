@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.web.security;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+import com.sun.enterprise.security.SecurityContext;
+
+/**
+ * Caches the decisions of the web resource permission checks of a web
+ * module, keyed by the resource name, the HTTP method and the principals of
+ * the caller.
+ *
+ * <p>The cache is split into stripes, each locked on its own and dropping
+ * its least recently used decision once full. It is invalidated whenever the
+ * policy of the module is committed or its <code>WebSecurityManager</code> is
+ * replaced. Decisions are only stored when no invalidation happened during
+ * their evaluation.
+ *
+ * <p>The principals of a caller are copied once per security context, which
+ * an authenticated caller keeps for its session, so that a hit neither copies
+ * nor hashes them.
+ */
+final class AuthorizationDecisionCache {
+
+    static final String DISABLED = "com.fujitsu.launcher.security.authorizationCache.disabled";
+    static final String SIZE = "com.fujitsu.launcher.security.authorizationCache.size";
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final PrincipalsStripe[] principalsStripes = new PrincipalsStripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    private volatile Object owner;
+    private volatile long generation;
+
+    AuthorizationDecisionCache(String contextId, int maxSize) {
+        int capacity = Math.max(1, maxSize / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(capacity);
+            principalsStripes[i] = new PrincipalsStripe();
+        }
+
+        Map<String, String> tags = Map.of("context", contextId == null ? "" : contextId);
+        statistics.add(LauncherStatistics.register("security.authorizationCache.hits",
+                "Number of authorization decisions taken from the cache", null, tags, hits::sum));
+        statistics.add(LauncherStatistics.register("security.authorizationCache.misses",
+                "Number of authorization decisions evaluated against the policy", null, tags, misses::sum));
+        statistics.add(LauncherStatistics.register("security.authorizationCache.hitRatio",
+                "Ratio of authorization decisions taken from the cache", null, tags, this::getHitRatio));
+    }
+
+    /**
+     * Returns the cache of a web module, or {@code null} if disabled.
+     */
+    static AuthorizationDecisionCache create(String contextId) {
+        int maxSize = Integer.getInteger(SIZE, 10000);
+        if (Boolean.getBoolean(DISABLED) || maxSize <= 0) {
+            return null;
+        }
+        return new AuthorizationDecisionCache(contextId, maxSize);
+    }
+
+    static Key key(String resource, String method, Principals principals) {
+        return new Key(resource, method, principals);
+    }
+
+    /**
+     * Returns the principals of the subject of a security context, copied on
+     * the first call for the context.
+     */
+    Principals getPrincipals(SecurityContext securityContext) {
+        if (securityContext == null) {
+            return Principals.NONE;
+        }
+        // SecurityContext compares by identity
+        PrincipalsStripe stripe = principalsStripes[System.identityHashCode(securityContext) & (STRIPES - 1)];
+        synchronized (stripe) {
+            Principals principals = stripe.get(securityContext);
+            if (principals == null) {
+                principals = Principals.of(securityContext.getSubject().getPrincipals());
+                stripe.put(securityContext, principals);
+            }
+            return principals;
+        }
+    }
+
+    /**
+     * Returns the generation to pass to {@link #put} for a decision evaluated
+     * by the given manager, invalidating the cache if the manager has been
+     * replaced.
+     */
+    long getGeneration(Object manager) {
+        if (owner != manager) {
+            synchronized (this) {
+                if (owner != manager) {
+                    owner = manager;
+                    invalidate();
+                }
+            }
+        }
+        return generation;
+    }
+
+    Boolean get(Key key) {
+        Stripe stripe = getStripe(key);
+        Boolean granted;
+        synchronized (stripe) {
+            granted = stripe.get(key);
+        }
+        if (granted == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return granted;
+    }
+
+    void put(Key key, boolean granted, long evaluatedGeneration) {
+        Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            stripe.put(key, granted);
+            // An invalidation may have cleared the cache while the decision
+            // was evaluated against the previous policy
+            if (generation != evaluatedGeneration) {
+                stripe.remove(key);
+            }
+        }
+    }
+
+    synchronized void invalidate() {
+        generation++;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    void close() {
+        invalidate();
+        for (PrincipalsStripe stripe : principalsStripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        LauncherStatistics.unregisterAll(statistics);
+    }
+
+    private Stripe getStripe(Key key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+    }
+
+    private double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Principals of the callers by security context, dropped with the
+     * contexts once their sessions end.
+     */
+    private static final class PrincipalsStripe extends WeakHashMap<SecurityContext, Principals> {
+    }
+
+    private static final class Stripe extends LinkedHashMap<Key, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * An immutable copy of the principals of a caller with its hash code.
+     */
+    static final class Principals {
+
+        static final Principals NONE = new Principals(Set.of());
+
+        private final Set<Principal> principals;
+        private final int hash;
+
+        private Principals(Set<Principal> principals) {
+            this.principals = principals;
+            this.hash = principals.hashCode();
+        }
+
+        static Principals of(Set<Principal> principals) {
+            return principals == null || principals.isEmpty() ? NONE : new Principals(Set.copyOf(principals));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Principals)) {
+                return false;
+            }
+            Principals other = (Principals) obj;
+            return hash == other.hash && principals.equals(other.principals);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    static final class Key {
+
+        private final String resource;
+        private final String method;
+        private final Principals principals;
+        private final int hash;
+
+        Key(String resource, String method, Principals principals) {
+            this.resource = resource;
+            this.method = method;
+            this.principals = principals == null ? Principals.NONE : principals;
+            this.hash = (resource.hashCode() * 31 + method.hashCode()) * 31 + this.principals.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && resource.equals(other.resource) && method.equals(other.method)
+                    && principals.equals(other.principals);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
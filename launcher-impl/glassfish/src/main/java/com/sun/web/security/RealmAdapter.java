@@ -25,7 +25,9 @@ import com.sun.enterprise.deployment.web.LoginConfiguration;
 import com.sun.enterprise.security.AppCNonceCacheMap;
 import com.sun.enterprise.security.CNonceCacheFactory;
 import com.sun.enterprise.security.SecurityContext;
+import com.sun.enterprise.security.SecurityServicesUtil;
 import com.sun.enterprise.security.WebSecurityDeployerProbeProvider;
+import com.sun.enterprise.security.audit.AuditManager;
 import com.sun.enterprise.security.auth.digest.api.DigestAlgorithmParameter;
 import com.sun.enterprise.security.auth.digest.api.Key;
 import com.sun.enterprise.security.auth.digest.impl.DigestParameterGenerator;
@@ -34,6 +36,7 @@ import com.sun.enterprise.security.auth.digest.impl.NestedDigestAlgoParamImpl;
 import com.sun.enterprise.security.auth.login.DigestCredentials;
 import com.sun.enterprise.security.auth.login.LoginContextDriver;
 import com.sun.enterprise.security.authorize.PolicyContextHandlerImpl;
+import com.sun.enterprise.security.ee.audit.AppServerAuditManager;
 import com.sun.enterprise.security.integration.RealmInitializer;
 import com.sun.enterprise.security.jmac.config.HttpServletConstants;
 import com.sun.enterprise.security.jmac.config.HttpServletHelper;
@@ -97,6 +100,7 @@ import org.apache.catalina.realm.Constants;
 import org.apache.catalina.realm.RealmBase;
 import org.glassfish.api.admin.ServerEnvironment;
 import org.glassfish.api.invocation.ComponentInvocation;
+import org.glassfish.exousia.AuthorizationService;
 import org.glassfish.grizzly.config.dom.NetworkConfig;
 import org.glassfish.grizzly.config.dom.NetworkListener;
 import org.glassfish.grizzly.config.dom.NetworkListeners;
@@ -178,6 +182,11 @@ public class RealmAdapter extends RealmBase implements RealmInitializer, PostCon
      */
     protected volatile WebSecurityManager webSecurityManager;
 
+    /**
+     * Decisions of the web resource permission checks, or null if disabled
+     */
+    private AuthorizationDecisionCache authorizationCache;
+
     protected boolean isCurrentURIincluded = false;
     /*
      * the following fields are used to implement a bypass of FBL related targets
@@ -254,6 +263,7 @@ public class RealmAdapter extends RealmBase implements RealmInitializer, PostCon
         realmName = findRealmName(initialRealmName);
         contextId = WebSecurityManager.getContextID(webBundleDescriptor);
         moduleID = webBundleDescriptor.getModuleID();
+        authorizationCache = AuthorizationDecisionCache.create(contextId);
 
         collectRunAsPrincipals();
     }
@@ -519,6 +529,9 @@ public class RealmAdapter extends RealmBase implements RealmInitializer, PostCon
 
     @Override
     public void updateWebSecurityManager() {
+        if (authorizationCache != null) {
+            authorizationCache.invalidate();
+        }
         if (webSecurityManager == null) {
             webSecurityManager = getWebSecurityManager(true);
         }
@@ -707,6 +720,9 @@ public class RealmAdapter extends RealmBase implements RealmInitializer, PostCon
         if (helper != null) {
             helper.disable();
         }
+        if (authorizationCache != null) {
+            authorizationCache.close();
+        }
     }
 
     public WebBundleDescriptor getWebDescriptor() {
@@ -1120,7 +1136,51 @@ public class RealmAdapter extends RealmBase implements RealmInitializer, PostCon
             return false;
         }
 
-        return webSecurityManager.hasResourcePermission(httpServletRequest);
+        if (authorizationCache == null) {
+            return webSecurityManager.hasResourcePermission(httpServletRequest);
+        }
+
+        // The same resources are requested by callers of the same roles over
+        // and over, so the decisions of the policy are cached. The permission
+        // is checked against the constraint URI instead of the request URI
+        // when it is set, as the WebSecurityManager does
+        SecurityContext securityContext = getSecurityContextForPrincipal(httpServletRequest.getUserPrincipal());
+        String resource = (String) httpServletRequest.getAttribute(Globals.CONSTRAINT_URI);
+        if (resource == null) {
+            resource = getResourceName(httpServletRequest.getRequestURI(), httpServletRequest.getContextPath());
+        }
+        AuthorizationDecisionCache.Key key = AuthorizationDecisionCache.key(resource,
+                httpServletRequest.getMethod(), authorizationCache.getPrincipals(securityContext));
+        long generation = authorizationCache.getGeneration(webSecurityManager);
+        Boolean granted = authorizationCache.get(key);
+        if (granted == null) {
+            granted = webSecurityManager.hasResourcePermission(httpServletRequest);
+            authorizationCache.put(key, granted, generation);
+        } else {
+            setResourcePermissionChecked(httpServletRequest, securityContext, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Does what <code>WebSecurityManager.hasResourcePermission</code> does
+     * besides evaluating the policy, for a decision taken from the cache: the
+     * request is made available to the policy context handlers, the policy
+     * context and the security context of the caller are set on the thread,
+     * and the invocation is audited.
+     */
+    private void setResourcePermissionChecked(HttpServletRequest httpServletRequest,
+            SecurityContext securityContext, boolean granted) {
+        PolicyContextHandlerImpl.getInstance().getHandlerData().setHttpServletRequest(httpServletRequest);
+        AuthorizationService.setThreadContextId(contextId);
+        SecurityContext.setCurrent(securityContext == null ? SecurityContext.getDefaultSecurityContext() : securityContext);
+
+        AuditManager auditManager = SecurityServicesUtil.getInstance().getAuditManager();
+        if (auditManager != null && auditManager.isAuditOn() && auditManager instanceof AppServerAuditManager) {
+            Principal principal = httpServletRequest.getUserPrincipal();
+            ((AppServerAuditManager) auditManager).webInvocation(principal == null ? null : principal.getName(),
+                    httpServletRequest, "hasResourcePermission", granted);
+        }
     }
 
     private List<String> getHostAndPort(HttpRequest request) throws IOException {
@@ -1542,6 +1602,9 @@ public class RealmAdapter extends RealmBase implements RealmInitializer, PostCon
     protected void configureSecurity(WebBundleDescriptor webBundleDescriptor, boolean isSystem) {
         try {
             webSecurityManagerFactory.createManager(webBundleDescriptor, true, serverContext).commitPolicy();
+            if (authorizationCache != null) {
+                authorizationCache.invalidate();
+            }
 
             String contextId = getContextID(webBundleDescriptor);
             if (isSystem && contextId.equals("__admingui/__admingui")) {
@@ -1,6 +1,6 @@
 /*
  * Copyright (c) 2010, 2020 Oracle and/or its affiliates. All rights reserved.
- * Copyright (c) 2022 Fujitsu Limited.
+ * Copyright (c) 2022, 2023 Fujitsu Limited.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -38,7 +38,6 @@ import org.glassfish.grizzly.http.Method.PayloadExpectation;
 import org.glassfish.grizzly.http.util.Constants;
 import org.glassfish.grizzly.http.util.ContentType;
 import org.glassfish.grizzly.http.util.DataChunk;
-import org.glassfish.grizzly.http.util.FastHttpDateFormat;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HttpStatus;
 import org.glassfish.grizzly.http.util.HttpUtils;
@@ -847,7 +846,7 @@ public class HttpServerFilter extends HttpCodecFilter {
         }
 
         if (!response.containsHeader(Header.Date)) {
-            response.getHeaders().addValueWithoutValidation(Header.Date).setBytes(FastHttpDateFormat.getCurrentDateBytes());
+            response.getHeaders().addValueWithoutValidation(Header.Date).setBytes(PreEncodedResponseHeaders.getCurrentDateBytes());
         }
 
         final ProcessingState state = response.getProcessingState();
@@ -889,6 +888,14 @@ public class HttpServerFilter extends HttpCodecFilter {
     @Override
     Buffer encodeInitialLine(HttpPacket httpPacket, Buffer output, MemoryManager memoryManager) {
         final HttpResponsePacket httpResponse = (HttpResponsePacket) httpPacket;
+        if (!httpResponse.isCustomReasonPhraseSet()) {
+            final byte[] statusLine = PreEncodedResponseHeaders.getStatusLineBytes(
+                    httpResponse.getProtocol(), httpResponse.getHttpStatus());
+            if (statusLine != null) {
+                return put(memoryManager, output, statusLine);
+            }
+        }
+
         output = put(memoryManager, output, httpResponse.getProtocol().getProtocolBytes());
         output = put(memoryManager, output, Constants.SP);
         output = put(memoryManager, output, httpResponse.getHttpStatus().getStatusBytes());
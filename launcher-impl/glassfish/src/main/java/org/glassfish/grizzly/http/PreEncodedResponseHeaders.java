@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.grizzly.http;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.glassfish.grizzly.http.util.HttpStatus;
+
+/**
+ * Pre-encoded byte representations of response header parts that are
+ * identical for most responses: the status line of the standard statuses
+ * and the {@code Date} header value.
+ *
+ * <p>Returned arrays are shared and must not be modified.
+ */
+public final class PreEncodedResponseHeaders {
+
+    private static final DateTimeFormatter HTTP_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+                    .withZone(ZoneOffset.UTC);
+
+    private static final int MIN_STATUS_CODE = 100;
+    private static final int MAX_STATUS_CODE = 599;
+
+    private static final AtomicReferenceArray<StatusLine> HTTP_1_1_STATUS_LINES =
+            new AtomicReferenceArray<>(MAX_STATUS_CODE - MIN_STATUS_CODE + 1);
+    private static final AtomicReferenceArray<StatusLine> HTTP_1_0_STATUS_LINES =
+            new AtomicReferenceArray<>(MAX_STATUS_CODE - MIN_STATUS_CODE + 1);
+
+    private static volatile CurrentDate currentDate = new CurrentDate(-1, null);
+
+    private PreEncodedResponseHeaders() {
+    }
+
+    /**
+     * Returns the encoded value of the {@code Date} header for the current
+     * time. The value is formatted at most once per second and shared by all
+     * listeners.
+     */
+    public static byte[] getCurrentDateBytes() {
+        final long second = System.currentTimeMillis() / 1000;
+        CurrentDate date = currentDate;
+        if (date.second != second) {
+            date = new CurrentDate(second,
+                    HTTP_DATE_FORMAT.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.ISO_8859_1));
+            currentDate = date;
+        }
+        return date.bytes;
+    }
+
+    /**
+     * Returns the encoded status line, without the trailing CRLF, for the
+     * given protocol and status, or {@code null} if it is not cacheable.
+     * Only HTTP/1.0 and HTTP/1.1 status lines with the default reason phrase
+     * of a status code between 100 and 599 are cached.
+     */
+    static byte[] getStatusLineBytes(final Protocol protocol, final HttpStatus status) {
+        final AtomicReferenceArray<StatusLine> lines;
+        if (protocol == Protocol.HTTP_1_1) {
+            lines = HTTP_1_1_STATUS_LINES;
+        } else if (protocol == Protocol.HTTP_1_0) {
+            lines = HTTP_1_0_STATUS_LINES;
+        } else {
+            return null;
+        }
+
+        final int code = status.getStatusCode();
+        if (code < MIN_STATUS_CODE || code > MAX_STATUS_CODE) {
+            return null;
+        }
+
+        final int index = code - MIN_STATUS_CODE;
+        StatusLine line = lines.get(index);
+        if (line == null || line.status != status) {
+            // A status that is not the registered constant for its code
+            // replaces the cached line; the next lookup of the constant
+            // re-encodes it, so the cache stays bounded by the code range.
+            line = new StatusLine(status, encodeStatusLine(protocol, status));
+            lines.set(index, line);
+        }
+        return line.bytes;
+    }
+
+    private static byte[] encodeStatusLine(final Protocol protocol, final HttpStatus status) {
+        final byte[] protocolBytes = protocol.getProtocolBytes();
+        final byte[] statusBytes = status.getStatusBytes();
+        final byte[] reasonPhraseBytes = status.getReasonPhraseBytes();
+
+        final byte[] line = new byte[protocolBytes.length + statusBytes.length + reasonPhraseBytes.length + 2];
+        int pos = 0;
+        System.arraycopy(protocolBytes, 0, line, pos, protocolBytes.length);
+        pos += protocolBytes.length;
+        line[pos++] = ' ';
+        System.arraycopy(statusBytes, 0, line, pos, statusBytes.length);
+        pos += statusBytes.length;
+        line[pos++] = ' ';
+        System.arraycopy(reasonPhraseBytes, 0, line, pos, reasonPhraseBytes.length);
+        return line;
+    }
+
+    private static final class CurrentDate {
+        final long second;
+        final byte[] bytes;
+
+        CurrentDate(final long second, final byte[] bytes) {
+            this.second = second;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class StatusLine {
+        final HttpStatus status;
+        final byte[] bytes;
+
+        StatusLine(final HttpStatus status, final byte[] bytes) {
+            this.status = status;
+            this.bytes = bytes;
+        }
+    }
+}
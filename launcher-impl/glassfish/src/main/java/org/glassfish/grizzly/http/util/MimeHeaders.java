@@ -1,7 +1,7 @@
 /*
  * Copyright (c) 2010, 2020 Oracle and/or its affiliates. All rights reserved.
  * Copyright 2004 The Apache Software Foundation
- * Copyright (c) 2022 Fujitsu Limited.
+ * Copyright (c) 2022-2023 Fujitsu Limited.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -107,6 +107,13 @@ public class MimeHeaders {
 
     public static DataChunk NOOP_CHUNK = new DataChunk.Immutable(null);
 
+    /**
+     * Minimum number of headers for which lookups by name use the hashed index, {@code 0} to disable the index. Below
+     * it a linear scan is cheaper than hashing the names: most scanned names differ in length and are rejected without
+     * comparing their characters. See MimeHeadersBenchmark for lookups across header counts.
+     */
+    static final int INDEX_THRESHOLD = getIndexThreshold();
+
     /**
      * The header fields.
      */
@@ -120,6 +127,24 @@ public class MimeHeaders {
 
     private int maxNumHeaders = MAX_NUM_HEADERS_DEFAULT;
 
+    /**
+     * Open addressing table of header positions + 1 (0 marks an empty slot), built lazily once the headers are looked
+     * up twice without a change in between, so that interleaved changes and lookups while a message is being built
+     * keep using the scan. Added headers are inserted into the table on the next lookup, a removal rebuilds it. The
+     * arrays are kept across recycling.
+     */
+    private int[] indexPositions;
+    private int[] indexHashes;
+    private int indexMask;
+    /**
+     * Number of headers in the index, {@code -1} if it must be rebuilt.
+     */
+    private int indexedCount = -1;
+    /**
+     * Whether the headers have been looked up since their last change.
+     */
+    private boolean lookedUp;
+
     /**
      * The header names {@link Iterable}.
      */
@@ -162,6 +187,8 @@ public class MimeHeaders {
         count = 0;
         mark = 0;
         marked = false;
+        indexedCount = -1;
+        lookedUp = false;
 
     }
 
@@ -187,6 +214,8 @@ public class MimeHeaders {
         }
         this.maxNumHeaders = source.maxNumHeaders;
         this.count = source.count;
+        this.indexedCount = -1;
+        this.lookedUp = false;
         if (headers.length < count) {
             MimeHeaderField tmp[] = new MimeHeaderField[count * 2];
             System.arraycopy(headers, 0, tmp, 0, headers.length);
@@ -300,13 +329,11 @@ public class MimeHeaders {
      * Find the index of a header with the given name.
      */
     public int indexOf(String name, int fromIndex) {
-        // We can use a hash - but it's not clear how much
-        // benefit you can get - there is an overhead
-        // and the number of headers is small (4-5 ?)
-        // Another problem is that we'll pay the overhead
-        // of constructing the hashtable
-
-        // A custom search tree may be better
+        // Most requests carry few headers, a hash is only used
+        // when there are at least INDEX_THRESHOLD of them
+        if (fromIndex == 0 && useIndex()) {
+            return indexedPosition(name);
+        }
         for (int i = fromIndex; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 return i;
@@ -319,14 +346,12 @@ public class MimeHeaders {
      * Find the index of a header with the given name.
      */
     public int indexOf(final Header header, final int fromIndex) {
-        // We can use a hash - but it's not clear how much
-        // benefit you can get - there is an overhead
-        // and the number of headers is small (4-5 ?)
-        // Another problem is that we'll pay the overhead
-        // of constructing the hashtable
-
-        // A custom search tree may be better
+        // Most requests carry few headers, a hash is only used
+        // when there are at least INDEX_THRESHOLD of them
         final byte[] bytes = header.getLowerCaseBytes();
+        if (fromIndex == 0 && useIndex()) {
+            return indexedPosition(bytes);
+        }
         for (int i = fromIndex; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCaseLowerCase(bytes)) {
                 return i;
@@ -416,6 +441,7 @@ public class MimeHeaders {
             headers[count] = mh = new MimeHeaderField();
         }
         count++;
+        lookedUp = false;
         return mh;
     }
 
@@ -529,6 +555,10 @@ public class MimeHeaders {
      * such field is in the header, an arbitrary one is returned.
      */
     public DataChunk getValue(String name) {
+        if (useIndex()) {
+            final int i = indexedPosition(name);
+            return i >= 0 ? headers[i].getValue() : null;
+        }
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCase(name)) {
                 return headers[i].getValue();
@@ -543,6 +573,10 @@ public class MimeHeaders {
      */
     public DataChunk getValue(final Header header) {
         final byte[] bytes = header.getLowerCaseBytes();
+        if (useIndex()) {
+            final int i = indexedPosition(bytes);
+            return i >= 0 ? headers[i].getValue() : null;
+        }
         for (int i = 0; i < count; i++) {
             if (headers[i].getName().equalsIgnoreCaseLowerCase(bytes)) {
                 return headers[i].getValue();
@@ -647,6 +681,157 @@ public class MimeHeaders {
         headers[idx] = headers[count - 1];
         headers[count - 1] = mh;
         count--;
+        indexedCount = -1;
+        lookedUp = false;
+    }
+
+    // -------------------- Hashed index --------------------
+
+    /**
+     * Returns the position of the first header with the given name using the index.
+     */
+    private int indexedPosition(final String name) {
+        ensureIndex();
+        final int hash = hashIgnoreCase(name);
+        final int mask = indexMask;
+        for (int slot = hash & mask; indexPositions[slot] != 0; slot = (slot + 1) & mask) {
+            final int i = indexPositions[slot] - 1;
+            if (indexHashes[slot] == hash && headers[i].getName().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexedPosition(final byte[] lowerCaseName) {
+        ensureIndex();
+        final int hash = hashLowerCase(lowerCaseName);
+        final int mask = indexMask;
+        for (int slot = hash & mask; indexPositions[slot] != 0; slot = (slot + 1) & mask) {
+            final int i = indexPositions[slot] - 1;
+            if (indexHashes[slot] == hash && headers[i].getName().equalsIgnoreCaseLowerCase(lowerCaseName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether a lookup by name uses the index: there are enough headers and they have already been looked up
+     * since their last change.
+     */
+    private boolean useIndex() {
+        if (count < INDEX_THRESHOLD) {
+            return false;
+        }
+        if (!lookedUp) {
+            lookedUp = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Brings the index up to date. Headers are inserted in their order, so with linear probing the first header of a
+     * name is found before the later ones.
+     */
+    private void ensureIndex() {
+        if (indexedCount == count) {
+            return;
+        }
+        int from = indexedCount;
+        // keep the load factor at most 1/2
+        if (from < 0 || count * 2 > indexMask + 1) {
+            final int capacity = Integer.highestOneBit(count * 2 - 1) << 1;
+            if (indexPositions == null || indexPositions.length < capacity) {
+                indexPositions = new int[capacity];
+                indexHashes = new int[capacity];
+            } else {
+                Arrays.fill(indexPositions, 0, capacity, 0);
+            }
+            indexMask = capacity - 1;
+            from = 0;
+        }
+        final int mask = indexMask;
+        for (int i = from; i < count; i++) {
+            final int hash = hashIgnoreCase(headers[i].getName());
+            int slot = hash & mask;
+            while (indexPositions[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            indexPositions[slot] = i + 1;
+            indexHashes[slot] = hash;
+        }
+        indexedCount = count;
+    }
+
+    private static int getIndexThreshold() {
+        final int threshold = Integer.getInteger("com.fujitsu.launcher.http.headerIndexThreshold", 16);
+        return threshold > 0 ? threshold : Integer.MAX_VALUE;
+    }
+
+    private static int hashIgnoreCase(final DataChunk name) {
+        switch (name.getType()) {
+        case Bytes: {
+            final ByteChunk bc = name.getByteChunk();
+            final byte[] bytes = bc.getBuffer();
+            int hash = 0;
+            for (int i = bc.getStart(), end = bc.getEnd(); i < end; i++) {
+                hash = 31 * hash + toLower(bytes[i]);
+            }
+            return spread(hash);
+        }
+        case Buffer: {
+            final BufferChunk bc = name.getBufferChunk();
+            final Buffer buffer = bc.getBuffer();
+            int hash = 0;
+            for (int i = bc.getStart(), end = bc.getEnd(); i < end; i++) {
+                hash = 31 * hash + toLower(buffer.get(i));
+            }
+            return spread(hash);
+        }
+        case Chars: {
+            final CharChunk cc = name.getCharChunk();
+            final char[] chars = cc.getBuffer();
+            int hash = 0;
+            for (int i = cc.getStart(), end = cc.getEnd(); i < end; i++) {
+                hash = 31 * hash + toLower(chars[i]);
+            }
+            return spread(hash);
+        }
+        default:
+            final String value = name.toString();
+            return value != null ? hashIgnoreCase(value) : 0;
+        }
+    }
+
+    private static int hashIgnoreCase(final String name) {
+        int hash = 0;
+        for (int i = 0, len = name.length(); i < len; i++) {
+            hash = 31 * hash + toLower(name.charAt(i));
+        }
+        return spread(hash);
+    }
+
+    private static int hashLowerCase(final byte[] lowerCaseName) {
+        int hash = 0;
+        for (final byte b : lowerCaseName) {
+            hash = 31 * hash + (b & 0xff);
+        }
+        return spread(hash);
+    }
+
+    private static int toLower(final int c) {
+        final int ch = c & 0xffff;
+        return ch >= 'A' && ch <= 'Z' ? ch + ('a' - 'A') : ch;
+    }
+
+    private static int toLower(final byte b) {
+        return toLower(b & 0xff);
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
     }
 
     // ----------------------------------------------------- Max Header Handling
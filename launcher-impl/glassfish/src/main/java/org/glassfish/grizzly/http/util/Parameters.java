@@ -1,7 +1,7 @@
 /*
  * Copyright (c) 2010, 2020 Oracle and/or its affiliates. All rights reserved.
  * Copyright 2004 The Apache Software Foundation
- * Copyright (c) 2022 Fujitsu Limited.
+ * Copyright (c) 2022-2023 Fujitsu Limited.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,10 +19,11 @@
 package org.glassfish.grizzly.http.util;
 
 import java.io.CharConversionException;
-import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Set;
@@ -112,6 +113,7 @@ public final class Parameters {
         queryStringEncoding = null;
         parameterCount = 0;
         decodedQuery.recycle();
+        clearPending();
 
     }
     // -------------------- Sub-request support --------------------
@@ -176,6 +178,7 @@ public final class Parameters {
         if (key == null) {
             return;
         }
+        materialize();
         ArrayList<String> values;
         if (paramHashValues.containsKey(key)) {
             values = paramHashValues.get(key);
@@ -196,13 +199,14 @@ public final class Parameters {
             values = currentChild.paramHashValues.get(name);
         } else {
             // no "facade"
-            values = paramHashValues.get(name);
+            values = lookupValues(name);
         }
         return values != null ? values.toArray(new String[values.size()]) : null;
     }
 
     public Set<String> getParameterNames() {
         handleQueryParameters();
+        materialize();
         // Slow - the original code
         if (currentChild != null) {
             currentChild.merge();
@@ -234,6 +238,7 @@ public final class Parameters {
 
         // Local parameters first - they take precedence as in spec.
         handleQueryParameters();
+        materialize();
         // we already merged with the parent
         if (didMerge) {
             return;
@@ -265,10 +270,46 @@ public final class Parameters {
                 return "";
             }
             return values.get(0);
+        } else if (pendingCount > 0) {
+            if (++pendingLookups > PENDING_LOOKUPS_BEFORE_MATERIALIZE) {
+                materialize();
+                return getParameter(name);
+            }
+            for (int i = 0; i < pendingCount; i++) {
+                if (pendingNameEquals(i, name)) {
+                    return pendingValue(i);
+                }
+            }
+            return null;
         } else {
             return null;
         }
     }
+
+    /**
+     * Returns the values of the name, looking through the parameters that have not been decoded yet.
+     */
+    private ArrayList<String> lookupValues(final String name) {
+        ArrayList<String> values = paramHashValues.get(name);
+        if (pendingCount == 0) {
+            return values;
+        }
+        if (++pendingLookups > PENDING_LOOKUPS_BEFORE_MATERIALIZE) {
+            materialize();
+            return paramHashValues.get(name);
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            if (pendingNameEquals(i, name)) {
+                if (values == null) {
+                    values = new ArrayList<>(1);
+                } else if (values == paramHashValues.get(name)) {
+                    values = new ArrayList<>(values);
+                }
+                values.add(pendingValue(i));
+            }
+        }
+        return values;
+    }
     // -------------------- Processing --------------------
 
     /**
@@ -336,6 +377,7 @@ public final class Parameters {
         if (key == null) {
             return;
         }
+        materialize();
 
         parameterCount++;
         if (limit > -1 && parameterCount > limit) {
@@ -362,10 +404,6 @@ public final class Parameters {
     // of the above.
     // we are called from a single thread - we can do it the hard way
     // if needed
-    final BufferChunk tmpName = new BufferChunk();
-    final BufferChunk tmpValue = new BufferChunk();
-    private final BufferChunk origName = new BufferChunk();
-    private final BufferChunk origValue = new BufferChunk();
     final CharChunk tmpNameC = new CharChunk(1024);
     final CharChunk tmpValueC = new CharChunk(1024);
 
@@ -376,6 +414,10 @@ public final class Parameters {
         processParameters(buffer, start, len, encoding);
     }
 
+    /**
+     * Records the parameters of the buffer without decoding them. The raw bytes are copied, as the buffer of a form
+     * post is released once the body has been read, and the names and values are decoded when they are looked up.
+     */
     public void processParameters(final Buffer buffer, final int start, final int len, final Charset enc) {
 
         if (LOGGER.isLoggable(Level.FINEST)) {
@@ -385,8 +427,20 @@ public final class Parameters {
 
         int decodeFailCount = 0;
 
-        int end = start + len;
-        int pos = start;
+        final byte[] bytes = reservePendingBytes(len);
+        final int base = pendingBytesLength;
+        final int oldPos = buffer.position();
+        try {
+            buffer.position(start);
+            buffer.get(bytes, base, len);
+        } finally {
+            buffer.position(oldPos);
+        }
+        pendingBytesLength += len;
+        final boolean asciiCompatible = isAsciiCompatible(enc);
+
+        int end = base + len;
+        int pos = base;
         while (pos < end) {
             if (limit > -1 && parameterCount >= limit) {
                 LOGGER.warning(LogMessages.WARNING_GRIZZLY_HTTP_SEVERE_GRIZZLY_HTTP_PARAMETERS_MAX_COUNT_FAIL(limit));
@@ -400,10 +454,11 @@ public final class Parameters {
             boolean parsingName = true;
             boolean decodeName = false;
             boolean decodeValue = false;
+            boolean asciiName = asciiCompatible;
             boolean parameterComplete = false;
 
             do {
-                switch (buffer.get(pos)) {
+                switch (bytes[pos]) {
                 case '=':
                     if (parsingName) {
                         // Name finished. Value starts from next character
@@ -437,6 +492,9 @@ public final class Parameters {
                     pos++;
                     break;
                 default:
+                    if (parsingName && bytes[pos] < 0) {
+                        asciiName = false;
+                    }
                     pos++;
                     break;
                 }
@@ -452,65 +510,41 @@ public final class Parameters {
 
             if (LOGGER.isLoggable(Level.FINEST) && valueStart == -1) {
                 LOGGER.log(Level.FINEST,
-                        LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_NOEQUAL(nameStart, nameEnd, buffer.toStringContent(DEFAULT_CHARSET, nameStart, nameEnd)));
+                        LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_NOEQUAL(nameStart - base, nameEnd - base,
+                                new String(bytes, nameStart, nameEnd - nameStart, DEFAULT_CHARSET)));
             }
 
             if (nameEnd <= nameStart) {
                 if (LOGGER.isLoggable(Level.INFO)) {
                     if (valueEnd < nameStart) {
-                        LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_INVALID_CHUNK(nameStart, nameEnd, null));
+                        LOGGER.info(LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_INVALID_CHUNK(nameStart - base, nameEnd - base, null));
                     }
                 }
                 continue;
                 // invalid chunk - it's better to ignore
             }
-            tmpName.setBufferChunk(buffer, nameStart, nameEnd);
-            tmpValue.setBufferChunk(buffer, valueStart, valueEnd);
 
-            // Take copies as if anything goes wrong originals will be
-            // corrupted. This means original values can be logged.
-            // For performance - only done for debug
-            if (LOGGER.isLoggable(Level.FINEST)) {
-                origName.setBufferChunk(buffer, nameStart, nameEnd);
-                origValue.setBufferChunk(buffer, valueStart, valueEnd);
-            }
-
-            try {
-                String name;
-                String value;
-
-                if (decodeName) {
-                    name = urlDecode(tmpName, enc);
-                } else {
-                    name = tmpName.toString(enc);
-                }
-
-                if (valueStart != -1) {
-                    if (decodeValue) {
-                        value = urlDecode(tmpValue, enc);
-                    } else {
-                        value = tmpValue.toString(enc);
-                    }
-                } else {
-                    value = "";
-                }
-
-                addParameter(name, value);
-            } catch (Exception e) {
+            // malformed escapes are the only decoding failures, check them now
+            // so that the parameter count and the limit stay as before
+            if (decodeName && !hasValidEscapes(bytes, nameStart, nameEnd)
+                    || decodeValue && !hasValidEscapes(bytes, valueStart, valueEnd)) {
                 decodeFailCount++;
+                final String name = new String(bytes, nameStart, nameEnd - nameStart, DEFAULT_CHARSET);
+                final String value = valueStart != -1 && valueEnd > valueStart
+                        ? new String(bytes, valueStart, valueEnd - valueStart, DEFAULT_CHARSET)
+                        : "unavailable";
                 if (LOGGER.isLoggable(Level.FINEST)) {
-                    LOGGER.log(Level.FINEST, LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(origName.toString(), origValue.toString()));
+                    LOGGER.log(Level.FINEST, LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(name, value));
                 } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
-                    final String name = tmpName.getLength() > 0 ? tmpName.toString() : "unavailable";
-                    final String value = tmpValue.getLength() > 0 ? tmpValue.toString() : "unavailable";
-                    LOGGER.log(Level.INFO, LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_INFO(e.getMessage(), name, value));
-                    LOGGER.log(Level.FINE, "Decoding stacktrace.", e);
+                    LOGGER.log(Level.INFO, LogMessages.INFO_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_INFO("Invalid URL encoding", name, value));
                 }
-            } finally {
-                tmpName.recycle();
-                tmpValue.recycle();
+                continue;
             }
 
+            parameterCount++;
+            addPending(nameStart, nameEnd, valueStart, valueEnd,
+                    (decodeName ? DECODE_NAME : 0) | (decodeValue ? DECODE_VALUE : 0) | (asciiName && !decodeName ? ASCII_NAME : 0),
+                    enc);
         }
 
         if (!LOGGER.isLoggable(Level.FINEST) && decodeFailCount > 1) {
@@ -518,34 +552,197 @@ public final class Parameters {
         }
     }
 
-    private String urlDecode(final BufferChunk bc, final Charset enc) throws IOException {
-//        if (urlDec == null) {
-//            urlDec = new UDecoder();
-//        }
-        URLDecoder.decode(bc, true);
-        String result;
-        if (enc != null) {
-            if (bc.getStart() == -1 && bc.getEnd() == -1) {
-                return "";
+    // -------------------- Pending parameters --------------------
+    // Parameters recorded by processParameters(Buffer, ...) that have not
+    // been decoded into paramHashValues yet. A lookup scans them and only
+    // decodes the names that can't be compared as raw bytes, and the values
+    // that match. They are decoded all at once, in order, when the whole
+    // map is needed or after a few lookups. The arrays are reused across
+    // recycle().
+
+    private static final int PENDING_LOOKUPS_BEFORE_MATERIALIZE = 4;
+    private static final int MAX_POOLED_BYTES = 64 * 1024;
+    private static final int NAME_START = 0;
+    private static final int NAME_END = 1;
+    private static final int VALUE_START = 2;
+    private static final int VALUE_END = 3;
+    private static final int FLAGS = 4;
+    private static final int ENTRY_SIZE = 5;
+    private static final int DECODE_NAME = 1;
+    private static final int DECODE_VALUE = 2;
+    private static final int ASCII_NAME = 4;
+
+    private byte[] pendingBytes;
+    private int pendingBytesLength;
+    private int[] pendingEntries = new int[INITIAL_SIZE * ENTRY_SIZE];
+    private Charset[] pendingCharsets = new Charset[INITIAL_SIZE];
+    private String[] pendingNames = new String[INITIAL_SIZE];
+    private String[] pendingValues = new String[INITIAL_SIZE];
+    private int pendingCount;
+    private int pendingLookups;
+    private byte[] decodeBuffer;
+
+    private byte[] reservePendingBytes(final int len) {
+        final int required = pendingBytesLength + len;
+        if (pendingBytes == null || pendingBytes.length < required) {
+            final byte[] tmp = new byte[Math.max(required, pendingBytes == null ? 256 : pendingBytes.length * 2)];
+            if (pendingBytes != null) {
+                System.arraycopy(pendingBytes, 0, tmp, 0, pendingBytesLength);
             }
-            result = bc.toString(enc);
-        } else {
-            final CharChunk cc = tmpNameC;
-            final int length = bc.getLength();
-            cc.allocate(length, -1);
-            // Default encoding: fast conversion
-            final Buffer bbuf = bc.getBuffer();
-            final char[] cbuf = cc.getBuffer();
-            final int start = bc.getStart();
-            for (int i = 0; i < length; i++) {
-                cbuf[i] = (char) (bbuf.get(i + start) & 0xff);
+            pendingBytes = tmp;
+        }
+        return pendingBytes;
+    }
+
+    private void addPending(final int nameStart, final int nameEnd, final int valueStart, final int valueEnd,
+            final int flags, final Charset enc) {
+        if (pendingCount == pendingCharsets.length) {
+            final int newSize = pendingCount * 2;
+            pendingEntries = Arrays.copyOf(pendingEntries, newSize * ENTRY_SIZE);
+            pendingCharsets = Arrays.copyOf(pendingCharsets, newSize);
+            pendingNames = Arrays.copyOf(pendingNames, newSize);
+            pendingValues = Arrays.copyOf(pendingValues, newSize);
+        }
+        final int e = pendingCount * ENTRY_SIZE;
+        pendingEntries[e + NAME_START] = nameStart;
+        pendingEntries[e + NAME_END] = nameEnd;
+        pendingEntries[e + VALUE_START] = valueStart;
+        pendingEntries[e + VALUE_END] = valueEnd;
+        pendingEntries[e + FLAGS] = flags;
+        pendingCharsets[pendingCount] = enc;
+        pendingCount++;
+    }
+
+    private boolean pendingNameEquals(final int i, final String name) {
+        final int e = i * ENTRY_SIZE;
+        if ((pendingEntries[e + FLAGS] & ASCII_NAME) != 0) {
+            final int from = pendingEntries[e + NAME_START];
+            final int len = pendingEntries[e + NAME_END] - from;
+            if (len != name.length()) {
+                return false;
+            }
+            for (int j = 0; j < len; j++) {
+                if (name.charAt(j) != pendingBytes[from + j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return name.equals(pendingName(i));
+    }
+
+    private String pendingName(final int i) {
+        String name = pendingNames[i];
+        if (name == null) {
+            final int e = i * ENTRY_SIZE;
+            name = decodePending(pendingEntries[e + NAME_START], pendingEntries[e + NAME_END],
+                    (pendingEntries[e + FLAGS] & DECODE_NAME) != 0, pendingCharsets[i]);
+            pendingNames[i] = name;
+        }
+        return name;
+    }
+
+    private String pendingValue(final int i) {
+        String value = pendingValues[i];
+        if (value == null) {
+            final int e = i * ENTRY_SIZE;
+            final int valueStart = pendingEntries[e + VALUE_START];
+            value = valueStart == -1
+                    ? ""
+                    : decodePending(valueStart, pendingEntries[e + VALUE_END],
+                            (pendingEntries[e + FLAGS] & DECODE_VALUE) != 0, pendingCharsets[i]);
+            pendingValues[i] = value;
+        }
+        return value;
+    }
+
+    private String decodePending(final int from, final int to, final boolean decode, final Charset enc) {
+        if (!decode) {
+            return new String(pendingBytes, from, to - from, enc != null ? enc : DEFAULT_CHARSET);
+        }
+        if (decodeBuffer == null || decodeBuffer.length < to - from) {
+            decodeBuffer = new byte[Math.max(to - from, 128)];
+        }
+        final byte[] out = decodeBuffer;
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            final byte b = pendingBytes[i];
+            if (b == '+') {
+                out[n++] = ' ';
+            } else if (b == '%') {
+                out[n++] = (byte) ((hexValue(pendingBytes[i + 1]) << 4) + hexValue(pendingBytes[i + 2]));
+                i += 2;
+            } else {
+                out[n++] = b;
+            }
+        }
+        // without an encoding, bytes are mapped to chars as they are
+        return new String(out, 0, n, enc != null ? enc : DEFAULT_CHARSET);
+    }
+
+    /**
+     * Decodes the pending parameters into paramHashValues, after the parameters added before them.
+     */
+    private void materialize() {
+        final int count = pendingCount;
+        if (count == 0) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            final String name = pendingName(i);
+            ArrayList<String> values = paramHashValues.get(name);
+            if (values == null) {
+                values = new ArrayList<>(1);
+                paramHashValues.put(name, values);
+            }
+            values.add(pendingValue(i));
+        }
+        clearPending();
+    }
+
+    private void clearPending() {
+        Arrays.fill(pendingNames, 0, pendingCount, null);
+        Arrays.fill(pendingValues, 0, pendingCount, null);
+        Arrays.fill(pendingCharsets, 0, pendingCount, null);
+        pendingCount = 0;
+        pendingLookups = 0;
+        pendingBytesLength = 0;
+        if (pendingBytes != null && pendingBytes.length > MAX_POOLED_BYTES) {
+            pendingBytes = null;
+        }
+        if (decodeBuffer != null && decodeBuffer.length > MAX_POOLED_BYTES) {
+            decodeBuffer = null;
+        }
+    }
+
+    private static boolean hasValidEscapes(final byte[] bytes, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '%') {
+                if (i + 2 >= to || hexValue(bytes[i + 1]) < 0 || hexValue(bytes[i + 2]) < 0) {
+                    return false;
+                }
+                i += 2;
             }
+        }
+        return true;
+    }
 
-            cc.setChars(cbuf, 0, length);
-            result = cc.toString();
-            cc.recycle();
+    private static int hexValue(final byte b) {
+        if (b >= '0' && b <= '9') {
+            return b - '0';
+        }
+        if (b >= 'a' && b <= 'f') {
+            return b - 'a' + 10;
+        }
+        if (b >= 'A' && b <= 'F') {
+            return b - 'A' + 10;
         }
-        return result;
+        return -1;
+    }
+
+    private static boolean isAsciiCompatible(final Charset enc) {
+        return enc == null || StandardCharsets.UTF_8.equals(enc) || StandardCharsets.ISO_8859_1.equals(enc)
+                || StandardCharsets.US_ASCII.equals(enc);
     }
 
     public void processParameters(char chars[], int start, int len) {
@@ -609,7 +806,8 @@ public final class Parameters {
             } catch (Exception e) {
                 decodeFailCount++;
                 if (LOGGER.isLoggable(Level.FINEST)) {
-                    LOGGER.log(Level.FINEST, LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(origName.toString(), origValue.toString()));
+                    LOGGER.log(Level.FINEST, LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(
+                            new String(chars, nameStart, nameEnd - nameStart), new String(chars, valStart, valEnd - valStart)));
                 } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
                     final String name = tmpNameC.getLength() > 0 ? tmpNameC.toString() : "unavailable";
                     final String value = tmpValueC.getLength() > 0 ? tmpValueC.toString() : "unavailable";
@@ -658,6 +856,7 @@ public final class Parameters {
      * Debug purpose
      */
     public String paramsAsString() {
+        materialize();
         StringBuilder sb = new StringBuilder();
         for (final String s : paramHashValues.keySet()) {
             // END PWC 6057385
@@ -736,7 +935,8 @@ public final class Parameters {
             } catch (Exception e) {
                 decodeFailCount++;
                 if (LOGGER.isLoggable(Level.FINEST)) {
-                    LOGGER.log(Level.FINEST, LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(origName.toString(), origValue.toString()));
+                    LOGGER.log(Level.FINEST, LogMessages.FINE_GRIZZLY_HTTP_PARAMETERS_DECODE_FAIL_DEBUG(
+                            str.substring(nameStart, nameEnd), str.substring(valStart, valEnd)));
                 } else if (LOGGER.isLoggable(Level.INFO) && decodeFailCount == 1) {
                     final String name = tmpNameC.getLength() > 0 ? tmpNameC.toString() : "unavailable";
                     final String value = tmpValueC.getLength() > 0 ? tmpValueC.toString() : "unavailable";
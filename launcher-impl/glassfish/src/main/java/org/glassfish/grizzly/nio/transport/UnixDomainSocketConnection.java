@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.grizzly.nio.transport;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.grizzly.ConnectionProbe;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.nio.RegisterChannelResult;
+import org.glassfish.grizzly.utils.Holder;
+
+/**
+ * A connection accepted on a Unix domain socket and served by a
+ * {@link TCPNIOTransport} like the connections accepted on its TCP server
+ * socket.
+ *
+ * <p>A Unix domain socket channel has no {@link java.net.Socket}, so the
+ * buffer sizes are read and set through the options of the channel. Its
+ * addresses are not {@link InetSocketAddress}es, which the HTTP layer
+ * expects, so the peer is reported as the loopback address and the local
+ * address as the loopback address with the port of the network listener.
+ */
+public class UnixDomainSocketConnection extends TCPNIOConnection {
+
+    private static final Logger LOGGER = Grizzly.logger(UnixDomainSocketConnection.class);
+
+    private final SocketAddress localAddress;
+    private final SocketAddress peerAddress;
+
+    private int readBufferSize = -1;
+    private int writeBufferSize = -1;
+
+    public UnixDomainSocketConnection(final TCPNIOTransport transport, final SocketChannel channel,
+            final int localPort) {
+        super(transport, channel);
+        this.localAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), localPort);
+        this.peerAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    /**
+     * Configures the connection like the transport configures the
+     * connections it accepts, notifies the connection probes of the transport
+     * and registers the channel for reading.
+     */
+    public void register() throws IOException {
+        final TCPNIOTransport tcpTransport = (TCPNIOTransport) transport;
+        channel.configureBlocking(false);
+
+        configureBlocking(tcpTransport.isBlocking());
+        configureStandalone(tcpTransport.isStandalone());
+        setProcessor(tcpTransport.getProcessor());
+        setProcessorSelector(tcpTransport.getProcessorSelector());
+        setReadTimeout(tcpTransport.getReadTimeout(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        setWriteTimeout(tcpTransport.getWriteTimeout(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS);
+        final ConnectionProbe[] probes = tcpTransport.getConnectionMonitoringConfig().getProbes();
+        getMonitoringConfig().addProbes(probes);
+        resetProperties();
+
+        // There is no server connection, the transport has the probes of
+        // the listener
+        for (final ConnectionProbe probe : probes) {
+            probe.onAcceptEvent(null, this);
+        }
+
+        tcpTransport.getNIOChannelDistributor().registerChannelAsync(channel, SelectionKey.OP_READ, this,
+                new RegisterCompletionHandler(tcpTransport));
+    }
+
+    @Override
+    protected void resetProperties() {
+        super.resetProperties();
+        localSocketAddressHolder = Holder.staticHolder(localAddress);
+        peerSocketAddressHolder = Holder.staticHolder(peerAddress);
+    }
+
+    @Override
+    public int getReadBufferSize() {
+        if (readBufferSize < 0) {
+            readBufferSize = getOption(StandardSocketOptions.SO_RCVBUF);
+        }
+        return readBufferSize;
+    }
+
+    @Override
+    public void setReadBufferSize(final int readBufferSize) {
+        if (readBufferSize > 0) {
+            setOption(StandardSocketOptions.SO_RCVBUF, readBufferSize);
+            this.readBufferSize = readBufferSize;
+        }
+    }
+
+    @Override
+    public int getWriteBufferSize() {
+        if (writeBufferSize < 0) {
+            writeBufferSize = getOption(StandardSocketOptions.SO_SNDBUF);
+        }
+        return writeBufferSize;
+    }
+
+    @Override
+    public void setWriteBufferSize(final int writeBufferSize) {
+        if (writeBufferSize > 0) {
+            setOption(StandardSocketOptions.SO_SNDBUF, writeBufferSize);
+            this.writeBufferSize = writeBufferSize;
+        }
+    }
+
+    private int getOption(final SocketOption<Integer> option) {
+        try {
+            return ((SocketChannel) channel).getOption(option);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error getting " + option.name() + " of " + this, e);
+            return 0;
+        }
+    }
+
+    /**
+     * Raises the given buffer size option of the channel, as the TCP
+     * connections do.
+     */
+    private void setOption(final SocketOption<Integer> option, final int size) {
+        try {
+            final SocketChannel socketChannel = (SocketChannel) channel;
+            if (size > socketChannel.getOption(option)) {
+                socketChannel.setOption(option, size);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error setting " + option.name() + " of " + this, e);
+        }
+    }
+
+    private final class RegisterCompletionHandler extends EmptyCompletionHandler<RegisterChannelResult> {
+
+        private final TCPNIOTransport tcpTransport;
+
+        RegisterCompletionHandler(final TCPNIOTransport tcpTransport) {
+            this.tcpTransport = tcpTransport;
+        }
+
+        @Override
+        public void completed(final RegisterChannelResult result) {
+            try {
+                tcpTransport.selectorRegistrationHandler.completed(result);
+                if (notifyReady()) {
+                    tcpTransport.fireIOEvent(IOEvent.ACCEPTED, UnixDomainSocketConnection.this, null);
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Exception happened, when trying to accept the connection", e);
+            }
+        }
+
+        @Override
+        public void failed(final Throwable throwable) {
+            LOGGER.log(Level.FINE, "Failed to register the connection " + UnixDomainSocketConnection.this,
+                    throwable);
+            closeSilently();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.glassfish.internal.data;
 
+import com.fujitsu.launcher.startup.StartupProfiler;
 import com.sun.enterprise.config.serverbeans.Application;
 import com.sun.enterprise.config.serverbeans.Engine;
 import com.sun.enterprise.config.serverbeans.Module;
@@ -318,7 +319,9 @@ public class ApplicationInfo extends ModuleInfo {
                 tracing.addModuleMark(DeploymentTracing.ModuleMark.LOAD, module.getName());
             }
 
-            module.load(getSubContext(module, context), tracker);
+            try (StartupProfiler.Span span = StartupProfiler.begin("module", "load " + module.getName())) {
+                module.load(getSubContext(module, context), tracker);
+            }
             if (tracing != null) {
                 tracing.addModuleMark(DeploymentTracing.ModuleMark.LOADED, module.getName());
             }
@@ -333,7 +336,10 @@ public class ApplicationInfo extends ModuleInfo {
         }
 
         if (events != null) {
-            events.send(new Event<>(Deployment.APPLICATION_LOADED, this), false);
+            // Weld boots the CDI container while handling this event
+            try (StartupProfiler.Span span = StartupProfiler.begin("event", "APPLICATION_LOADED")) {
+                events.send(new Event<>(Deployment.APPLICATION_LOADED, this), false);
+            }
         }
 
         if (tracing != null) {
@@ -354,7 +360,9 @@ public class ApplicationInfo extends ModuleInfo {
             if (tracing != null) {
                 tracing.addModuleMark(DeploymentTracing.ModuleMark.START, module.getName());
             }
-            module.start(getSubContext(module, context), tracker);
+            try (StartupProfiler.Span span = StartupProfiler.begin("module", "start " + module.getName())) {
+                module.start(getSubContext(module, context), tracker);
+            }
             if (tracing != null) {
                 tracing.addModuleMark(DeploymentTracing.ModuleMark.STARTED, module.getName());
             }
@@ -365,7 +373,9 @@ public class ApplicationInfo extends ModuleInfo {
         }
 
         if (events != null) {
-            events.send(new Event<>(Deployment.APPLICATION_STARTED, this), false);
+            try (StartupProfiler.Span span = StartupProfiler.begin("event", "APPLICATION_STARTED")) {
+                events.send(new Event<>(Deployment.APPLICATION_STARTED, this), false);
+            }
         }
 
         if (tracing != null) {
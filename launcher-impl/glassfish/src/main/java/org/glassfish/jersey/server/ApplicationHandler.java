@@ -1,6 +1,7 @@
 /*
  * Copyright (c) 2011, 2021 Oracle and/or its affiliates. All rights reserved.
  * Copyright (c) 2018 Payara Foundation and/or its affiliates.
+ * Copyright (c) 2023 Fujitsu Limited.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -45,6 +46,8 @@ import jakarta.ws.rs.core.SecurityContext;
 import jakarta.ws.rs.ext.MessageBodyReader;
 import jakarta.ws.rs.ext.MessageBodyWriter;
 
+import com.fujitsu.launcher.startup.StartupProfiler;
+
 import org.glassfish.jersey.CommonProperties;
 import org.glassfish.jersey.internal.AutoDiscoverableConfigurator;
 import org.glassfish.jersey.internal.BootstrapBag;
@@ -201,6 +204,7 @@ public final class ApplicationHandler implements ContainerLifecycleListener {
     private Application application;
     private ResourceConfig runtimeConfig;
     private ServerRuntime runtime;
+    private EndpointLatency endpointLatency;
     private Iterable<ContainerLifecycleListener> containerLifecycleListeners;
     private InjectionManager injectionManager;
     private MessageBodyWorkers msgBodyWorkers;
@@ -276,6 +280,13 @@ public final class ApplicationHandler implements ContainerLifecycleListener {
 
     private void initialize(ApplicationConfigurator applicationConfigurator, InjectionManager injectionManager,
             Binder customBinder) {
+        try (StartupProfiler.Span span = StartupProfiler.begin("jersey", "initialize")) {
+            doInitialize(applicationConfigurator, injectionManager, customBinder);
+        }
+    }
+
+    private void doInitialize(ApplicationConfigurator applicationConfigurator, InjectionManager injectionManager,
+            Binder customBinder) {
         LOGGER.config(LocalizationMessages.INIT_MSG(Version.getBuildId()));
         this.injectionManager = injectionManager;
         this.injectionManager.register(CompositeBinder.wrap(new ServerBinder(), customBinder));
@@ -309,6 +320,11 @@ public final class ApplicationHandler implements ContainerLifecycleListener {
         this.runtime = Errors.processWithException(
                 () -> initialize(injectionManager, bootstrapConfigurators, bootstrapBag));
         this.containerLifecycleListeners = Providers.getAllProviders(injectionManager, ContainerLifecycleListener.class);
+
+        String applicationName = runtimeConfig.getApplicationName() != null
+                ? runtimeConfig.getApplicationName()
+                : ResourceConfig.unwrapApplication(application).getClass().getName();
+        this.endpointLatency = EndpointLatency.create(applicationName, runtimeConfig.getProperties());
     }
 
     /**
@@ -695,7 +711,14 @@ public final class ApplicationHandler implements ContainerLifecycleListener {
      */
     public void handle(final ContainerRequest request) {
         request.setWorkers(msgBodyWorkers);
-        runtime.process(request);
+        final EndpointLatency.TimingWriter timing = endpointLatency != null ? endpointLatency.start(request) : null;
+        try {
+            runtime.process(request);
+        } finally {
+            if (timing != null) {
+                endpointLatency.end(timing);
+            }
+        }
     }
 
     /**
@@ -748,6 +771,9 @@ public final class ApplicationHandler implements ContainerLifecycleListener {
                 // Takes care of the injected executors & schedulers shut-down too.
                 managedObjectsFinalizer.preDestroy();
                 injectionManager.shutdown();
+                if (endpointLatency != null) {
+                    endpointLatency.close();
+                }
             }
         }
     }
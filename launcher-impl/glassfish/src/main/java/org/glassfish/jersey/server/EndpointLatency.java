@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.server;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import com.fujitsu.launcher.monitoring.LatencyHistogram;
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+
+/**
+ * Records the processing time of each matched resource method of an
+ * application into a {@link LatencyHistogram}, published through
+ * {@link LauncherStatistics} and tagged with the route template.
+ * <p>
+ * A request is timed until its response is committed or fails, so that the
+ * time of asynchronous resources is recorded when they complete. The writer
+ * wrapper that observes this is kept per thread and reused by the next
+ * request, unless the request was suspended and still owns it.
+ */
+final class EndpointLatency {
+
+    /** Application property to enable recording for an application. */
+    static final String ENABLED = "com.fujitsu.launcher.jaxrs.latency.enabled";
+    /** Application property listing the bucket bounds in milliseconds. */
+    static final String BUCKETS = "com.fujitsu.launcher.jaxrs.latency.buckets";
+    /** Application property listing the published quantiles. */
+    static final String PERCENTILES = "com.fujitsu.launcher.jaxrs.latency.percentiles";
+
+    private static final Logger LOGGER = Logger.getLogger(EndpointLatency.class.getName());
+
+    private static final String DEFAULT_BUCKETS = "1,2.5,5,10,25,50,100,250,500,1000,2500,5000,10000";
+    private static final String DEFAULT_PERCENTILES = "0.5,0.75,0.95,0.99";
+
+    /** The writer released by the last request processed on the thread. */
+    private static final ThreadLocal<TimingWriter> IDLE_WRITER = new ThreadLocal<>();
+
+    private final String applicationName;
+    private final double[] buckets;
+    private final double[] percentiles;
+    private final Map<ResourceMethod, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    private EndpointLatency(String applicationName, double[] buckets, double[] percentiles) {
+        this.applicationName = applicationName;
+        this.buckets = buckets;
+        this.percentiles = percentiles;
+    }
+
+    /**
+     * Returns the recorder for the application, or {@code null} unless
+     * enabled by its configuration.
+     */
+    static EndpointLatency create(String applicationName, Map<String, Object> properties) {
+        if (!ServerProperties.getValue(properties, ENABLED, Boolean.FALSE, Boolean.class)) {
+            return null;
+        }
+        double[] buckets = parse(properties, BUCKETS, DEFAULT_BUCKETS);
+        double[] percentiles = parse(properties, PERCENTILES, DEFAULT_PERCENTILES);
+        return new EndpointLatency(applicationName, buckets, percentiles);
+    }
+
+    /**
+     * Starts timing a request about to be processed.
+     *
+     * @return the timing to pass to {@link #end(TimingWriter)} once the
+     *         request has been processed on this thread, or {@code null}
+     */
+    TimingWriter start(ContainerRequest request) {
+        ContainerResponseWriter writer = request.getResponseWriter();
+        if (writer == null) {
+            return null;
+        }
+        TimingWriter timing = IDLE_WRITER.get();
+        if (timing == null) {
+            timing = new TimingWriter();
+        } else {
+            // taken, so that a request nested on this thread gets its own
+            IDLE_WRITER.set(null);
+        }
+        timing.start(this, writer, request, System.nanoTime());
+        request.setWriter(timing);
+        return timing;
+    }
+
+    /**
+     * Ends the processing of a request on the thread that started it. A
+     * request that was not suspended has been written, so its time is
+     * recorded if it has not been already, and the wrapper is kept for the
+     * next request on this thread.
+     */
+    void end(TimingWriter timing) {
+        if (timing.release()) {
+            IDLE_WRITER.set(timing);
+        }
+    }
+
+    /**
+     * Records the processing time of a request; requests that matched no
+     * resource method are ignored.
+     */
+    private void record(ContainerRequest request, long nanos) {
+        ResourceMethod method = request.getUriInfo().getMatchedResourceMethod();
+        if (method == null) {
+            return;
+        }
+        LatencyHistogram histogram = histograms.get(method);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(method, m -> register(m, request));
+        }
+        histogram.record(nanos);
+    }
+
+    void close() {
+        synchronized (statistics) {
+            LauncherStatistics.unregisterAll(statistics);
+        }
+        histograms.clear();
+    }
+
+    private LatencyHistogram register(ResourceMethod method, ContainerRequest request) {
+        LatencyHistogram histogram = new LatencyHistogram(buckets);
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put("application", applicationName);
+        tags.put("method", method.getHttpMethod() == null ? "" : method.getHttpMethod());
+        tags.put("uri", getRouteTemplate(request));
+
+        List<Statistic> registered = new ArrayList<>();
+        registered.add(LauncherStatistics.register("jaxrs.endpoint.requests",
+                "Number of requests processed by the resource method", null, tags, histogram::getCount));
+        registered.add(LauncherStatistics.register("jaxrs.endpoint.responseTime.sum",
+                "Total processing time of the resource method", "milliseconds", tags, histogram::getSumMillis));
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            int bucket = i;
+            Map<String, String> bucketTags = new HashMap<>(tags);
+            bucketTags.put("le", format(histogram.getBoundMillis(bucket)));
+            registered.add(LauncherStatistics.register("jaxrs.endpoint.responseTime.bucket",
+                    "Number of requests processed within the bound", null, bucketTags,
+                    () -> histogram.getCumulativeCount(bucket)));
+        }
+        for (double percentile : percentiles) {
+            Map<String, String> quantileTags = new HashMap<>(tags);
+            quantileTags.put("quantile", format(percentile));
+            registered.add(LauncherStatistics.register("jaxrs.endpoint.responseTime",
+                    "Estimated quantile of the processing time of the resource method", "milliseconds", quantileTags,
+                    () -> histogram.getQuantileMillis(percentile)));
+        }
+        synchronized (statistics) {
+            statistics.addAll(registered);
+        }
+        return histogram;
+    }
+
+    private static String getRouteTemplate(ContainerRequest request) {
+        // Matched templates are listed from the innermost to the outermost
+        List<UriTemplate> templates = request.getUriInfo().getMatchedTemplates();
+        StringBuilder path = new StringBuilder();
+        for (int i = templates.size() - 1; i >= 0; i--) {
+            String template = templates.get(i).getTemplate();
+            if (!template.startsWith("/") && (path.length() == 0 || path.charAt(path.length() - 1) != '/')) {
+                path.append('/');
+            } else if (template.startsWith("/") && path.length() > 0 && path.charAt(path.length() - 1) == '/') {
+                path.setLength(path.length() - 1);
+            }
+            path.append(template);
+        }
+        return path.length() == 0 ? "/" : path.toString();
+    }
+
+    private static double[] parse(Map<String, Object> properties, String name, String defaultValue) {
+        String value = ServerProperties.getValue(properties, name, defaultValue, String.class);
+        try {
+            String[] items = value.split(",");
+            double[] values = new double[items.length];
+            for (int i = 0; i < items.length; i++) {
+                values[i] = Double.parseDouble(items[i].trim());
+            }
+            return values;
+        } catch (NumberFormatException e) {
+            LOGGER.log(Level.WARNING, "Invalid value {0} of property {1}, using {2}",
+                    new Object[] { value, name, defaultValue });
+            return parse(Map.of(), name, defaultValue);
+        }
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    /**
+     * Records the time of a request when its response is committed or fails.
+     */
+    static final class TimingWriter implements ContainerResponseWriter {
+
+        private EndpointLatency latency;
+        private ContainerResponseWriter delegate;
+        private ContainerRequest request;
+        private long start;
+        private volatile boolean suspended;
+        private volatile boolean recorded;
+
+        void start(EndpointLatency latency, ContainerResponseWriter delegate, ContainerRequest request, long start) {
+            this.latency = latency;
+            this.delegate = delegate;
+            this.request = request;
+            this.start = start;
+            this.suspended = false;
+            this.recorded = false;
+        }
+
+        /**
+         * Returns {@code true} and forgets the request if it was not
+         * suspended; a suspended request keeps this writer until it
+         * completes on another thread.
+         */
+        boolean release() {
+            if (suspended) {
+                return false;
+            }
+            complete();
+            latency = null;
+            delegate = null;
+            request = null;
+            return true;
+        }
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext) {
+            return delegate.writeResponseStatusAndHeaders(contentLength, responseContext);
+        }
+
+        @Override
+        public boolean suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+            // Asynchronous and chunked responses are suspended by the thread
+            // processing the request before it returns
+            suspended = true;
+            return delegate.suspend(timeOut, timeUnit, timeoutHandler);
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+            delegate.setSuspendTimeout(timeOut, timeUnit);
+        }
+
+        @Override
+        public void commit() {
+            try {
+                delegate.commit();
+            } finally {
+                complete();
+            }
+        }
+
+        @Override
+        public void failure(Throwable error) {
+            try {
+                delegate.failure(error);
+            } finally {
+                complete();
+            }
+        }
+
+        @Override
+        public boolean enableResponseBuffering() {
+            return delegate.enableResponseBuffering();
+        }
+
+        private void complete() {
+            if (!recorded) {
+                recorded = true;
+                latency.record(request, System.nanoTime() - start);
+            }
+        }
+    }
+}
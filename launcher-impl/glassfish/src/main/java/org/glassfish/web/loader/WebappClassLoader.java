@@ -19,6 +19,7 @@
 
 package org.glassfish.web.loader;
 
+import com.fujitsu.launcher.web.StaticResourceCache;
 import com.sun.appserv.BytecodePreprocessor;
 import com.sun.enterprise.loader.ResourceLocator;
 import com.sun.enterprise.security.integration.DDPermissionsLoader;
@@ -1101,6 +1102,7 @@ public final class WebappClassLoader extends GlassfishUrlClassLoader
     public void reload() {
         checkStatus(LifeCycleStatus.RUNNING);
         jarFiles.closeJarFiles();
+        StaticResourceCache.invalidate(this);
     }
 
 
@@ -1132,6 +1134,7 @@ public final class WebappClassLoader extends GlassfishUrlClassLoader
         notFoundResources.clear();
         resourceEntryCache.clear();
         pathTimestamps.clear();
+        StaticResourceCache.invalidate(this);
 
         jndiResources = null;
         repositoryURLs = null;
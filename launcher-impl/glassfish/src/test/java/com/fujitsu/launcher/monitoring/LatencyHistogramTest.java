@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.monitoring;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the bucket and quantile arithmetic of {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    static final double DELTA = 1e-9;
+
+    @Test
+    public void testBucketsAreInclusive() {
+        LatencyHistogram histogram = new LatencyHistogram(new double[] { 1, 2, 5 });
+        record(histogram, 0.5, 1, 1.5, 3, 10);
+
+        assertEquals(3, histogram.getBucketCount());
+        assertEquals(5, histogram.getCount());
+        assertEquals(2, histogram.getCumulativeCount(0));
+        assertEquals(3, histogram.getCumulativeCount(1));
+        assertEquals(4, histogram.getCumulativeCount(2));
+        assertEquals(16, histogram.getSumMillis(), DELTA);
+    }
+
+    @Test
+    public void testQuantilesAreInterpolatedWithinBucket() {
+        LatencyHistogram histogram = new LatencyHistogram(new double[] { 1, 2, 5 });
+        record(histogram, 0.5, 1, 1.5, 3, 10);
+
+        // rank 1 of the 2 durations up to 1 ms
+        assertEquals(0.5, histogram.getQuantileMillis(0.2), DELTA);
+        // rank 3 is the only duration between 1 and 2 ms
+        assertEquals(2, histogram.getQuantileMillis(0.5), DELTA);
+        // rank 5 falls into the overflow bucket
+        assertEquals(10, histogram.getQuantileMillis(0.99), DELTA);
+    }
+
+    @Test
+    public void testQuantileIsBoundedByMaximum() {
+        LatencyHistogram histogram = new LatencyHistogram(new double[] { 10 });
+        record(histogram, 2, 4);
+
+        assertEquals(2, histogram.getQuantileMillis(0.5), DELTA);
+        assertEquals(4, histogram.getQuantileMillis(1), DELTA);
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(new double[] { 1, 2 });
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getCumulativeCount(1));
+        assertEquals(0, histogram.getQuantileMillis(0.99), DELTA);
+    }
+
+    @Test
+    public void testStripesAreMerged() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram(new double[] { 1, 2 }, 2);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(0, histogram.getCumulativeCount(0));
+        assertEquals(40000, histogram.getCumulativeCount(1));
+        assertEquals(80000, histogram.getSumMillis(), DELTA);
+        assertEquals(2, histogram.getQuantileMillis(1), DELTA);
+    }
+
+    private static void record(LatencyHistogram histogram, double... millis) {
+        for (double value : millis) {
+            histogram.record((long) (value * 1_000_000));
+        }
+    }
+}
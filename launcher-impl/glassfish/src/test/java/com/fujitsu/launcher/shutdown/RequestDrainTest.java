@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.shutdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the counting of the requests in flight by {@link RequestDrain}.
+ */
+public class RequestDrainTest {
+
+    @Test
+    public void testCompletedRequestsAreNotInFlight() {
+        long base = RequestDrain.getInFlight();
+        RequestDrain.ConnectionRequests connection = RequestDrain.newConnection();
+
+        connection.started();
+        assertEquals(base + 1, RequestDrain.getInFlight());
+        connection.completed();
+        assertEquals(base, RequestDrain.getInFlight());
+        // a duplicate completion must not make the count negative
+        connection.completed();
+        assertEquals(base, RequestDrain.getInFlight());
+    }
+
+    @Test
+    public void testClosedConnectionReleasesItsRequests() {
+        long base = RequestDrain.getInFlight();
+        RequestDrain.ConnectionRequests connection = RequestDrain.newConnection();
+
+        connection.started();
+        connection.started();
+        assertEquals(base + 2, RequestDrain.getInFlight());
+        connection.closed();
+        assertEquals(base, RequestDrain.getInFlight());
+        connection.completed();
+        connection.started();
+        assertEquals(base, RequestDrain.getInFlight());
+    }
+
+    @Test
+    public void testDrainWaitsForClosedConnection() throws Exception {
+        RequestDrain.ConnectionRequests connection = RequestDrain.newConnection();
+        connection.started();
+
+        CompletableFuture<Void> close = CompletableFuture.runAsync(() -> {
+            sleep(200);
+            connection.closed();
+        });
+        assertEquals(0, RequestDrain.drain(0, 10000));
+        close.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testDrainGivesUpAtDeadline() throws Exception {
+        RequestDrain.ConnectionRequests connection = RequestDrain.newConnection();
+        connection.started();
+        try {
+            assertEquals(1, RequestDrain.drain(0, 100));
+        } finally {
+            connection.closed();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
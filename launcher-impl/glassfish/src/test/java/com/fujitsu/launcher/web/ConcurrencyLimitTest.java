@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the admission and the adaptation of {@link ConcurrencyLimit}.
+ */
+public class ConcurrencyLimitTest {
+
+    @Test
+    public void testRequestsBeyondTheLimitAreRejected() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(2, 1, 10);
+
+        assertTrue(limit.tryAcquire(false));
+        assertTrue(limit.tryAcquire(false));
+        assertFalse(limit.tryAcquire(false));
+        assertEquals(2, limit.getInFlight());
+        assertEquals(1, limit.getRejections());
+
+        limit.release(System.nanoTime());
+        assertTrue(limit.tryAcquire(false));
+    }
+
+    @Test
+    public void testLowPriorityRequestsGetAShareOfTheLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(10, 1, 10);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire(true));
+        }
+        assertFalse(limit.tryAcquire(true));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limit.tryAcquire(false));
+        }
+        assertFalse(limit.tryAcquire(false));
+    }
+
+    @Test
+    public void testLowPriorityRequestIsAdmittedUnderALimitOfOne() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(1, 1, 1);
+
+        assertTrue(limit.tryAcquire(true));
+        assertFalse(limit.tryAcquire(true));
+        assertFalse(limit.tryAcquire(false));
+
+        limit.release(System.nanoTime());
+        assertTrue(limit.tryAcquire(false));
+    }
+
+    @Test
+    public void testLimitIsBounded() {
+        assertEquals(10, new ConcurrencyLimit(100, 5, 10).getLimit());
+        assertEquals(5, new ConcurrencyLimit(0, 5, 10).getLimit());
+        // the limit never drops to zero
+        assertEquals(1, new ConcurrencyLimit(0, 0, 0).getLimit());
+    }
+
+    @Test
+    public void testLimitGrowsWhileResponseTimesAreStable() throws InterruptedException {
+        ConcurrencyLimit limit = new ConcurrencyLimit(20, 1, 1000);
+
+        for (int i = 0; i < 5; i++) {
+            runWindow(limit, 1);
+        }
+
+        assertTrue(limit.getLimit() > 20, "limit " + limit.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksWhenResponseTimesRise() throws InterruptedException {
+        ConcurrencyLimit limit = new ConcurrencyLimit(20, 1, 1000);
+        runWindow(limit, 1);
+        int stable = limit.getLimit();
+
+        // Each window still holds completions of the previous one
+        for (int i = 0; i < 4; i++) {
+            runWindow(limit, 20);
+        }
+
+        assertTrue(limit.getLimit() < stable, "limit " + limit.getLimit() + " after " + stable);
+    }
+
+    @Test
+    public void testLightLoadDoesNotChangeTheLimit() throws InterruptedException {
+        ConcurrencyLimit limit = new ConcurrencyLimit(100, 1, 1000);
+        runWindow(limit, 1);
+        int initial = limit.getLimit();
+
+        // 10 requests in flight say nothing about a limit of 100
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 10; j++) {
+                assertTrue(limit.tryAcquire(false));
+            }
+            TimeUnit.MILLISECONDS.sleep(110);
+            for (int j = 0; j < 10; j++) {
+                limit.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(100));
+            }
+        }
+
+        assertEquals(initial, limit.getLimit());
+    }
+
+    /**
+     * Fills the limit, lets the adaptation window elapse and completes the
+     * requests with the given response time.
+     */
+    private static void runWindow(ConcurrencyLimit limit, long rttMillis) throws InterruptedException {
+        int admitted = 0;
+        while (limit.tryAcquire(false)) {
+            admitted++;
+        }
+        TimeUnit.MILLISECONDS.sleep(110);
+        long start = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(rttMillis);
+        for (int i = 0; i < admitted; i++) {
+            limit.release(start);
+        }
+    }
+}
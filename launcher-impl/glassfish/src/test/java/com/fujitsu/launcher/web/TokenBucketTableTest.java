@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the refill and the eviction of the buckets of {@link TokenBucketTable}.
+ */
+public class TokenBucketTableTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBucketIsRefilledByTheRate() {
+        TokenBucketTable table = new TokenBucketTable(10, 2, 100);
+        long now = System.nanoTime();
+
+        assertEquals(0, table.tryAcquire("a", now));
+        assertEquals(0, table.tryAcquire("a", now));
+        long wait = table.tryAcquire("a", now);
+        assertTrue(wait > 0 && wait <= SECOND / 10, Long.toString(wait));
+        assertEquals(0, table.tryAcquire("a", now + SECOND / 10));
+        // the bucket holds no more than the burst
+        assertEquals(0, table.tryAcquire("a", now + 10 * SECOND));
+        assertEquals(0, table.tryAcquire("a", now + 10 * SECOND));
+        assertTrue(table.tryAcquire("a", now + 10 * SECOND) > 0);
+        assertEquals(2, table.getRejections());
+    }
+
+    @Test
+    public void testNewKeysDoNotRefillTrackedBuckets() {
+        TokenBucketTable table = new TokenBucketTable(1, 1, 1, 1);
+        long now = System.nanoTime();
+
+        assertEquals(0, table.tryAcquire("a", now));
+        // the bucket of a is not full again, so b shares the overflow bucket
+        assertEquals(0, table.tryAcquire("b", now));
+        assertTrue(table.tryAcquire("c", now) > 0);
+        assertTrue(table.tryAcquire("a", now) > 0);
+        assertEquals(1, table.getKeys());
+    }
+
+    @Test
+    public void testFullBucketIsEvicted() {
+        TokenBucketTable table = new TokenBucketTable(1, 1, 1, 1);
+        long now = System.nanoTime();
+
+        assertEquals(0, table.tryAcquire("a", now));
+        // once full again, forgetting the bucket of a grants nothing
+        assertEquals(0, table.tryAcquire("b", now + SECOND));
+        assertTrue(table.tryAcquire("b", now + SECOND) > 0);
+        assertEquals(0, table.tryAcquire("a", now + SECOND));
+        assertEquals(1, table.getKeys());
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.sun.enterprise.glassfish.bootstrap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.glassfish.embeddable.GlassFishProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link InstanceRootTemplate} reuses a complete template and
+ * replaces one that was partly deleted.
+ */
+public class InstanceRootTemplateTest {
+
+    @TempDir
+    Path tmpDir;
+
+    private final AtomicInteger populations = new AtomicInteger();
+
+    private File owner;
+
+    @BeforeEach
+    public void createOwner() throws IOException {
+        owner = Files.createDirectory(tmpDir.resolve("instance-root")).toFile();
+    }
+
+    @Test
+    public void testCompleteTemplateIsReused() throws IOException {
+        File template = get(tmpDir.resolve("first"));
+        Path copy = copy(template.toPath(), tmpDir.resolve("second"));
+
+        assertEquals(copy.toFile(), get(tmpDir.resolve("second")));
+        assertEquals(1, populations.get());
+    }
+
+    @Test
+    public void testPartlyDeletedTemplateIsRepopulated() throws IOException {
+        File template = get(tmpDir.resolve("first"));
+        Path copy = copy(template.toPath(), tmpDir.resolve("second"));
+        Files.delete(copy.resolve("config").resolve("logging.properties"));
+
+        File repopulated = get(tmpDir.resolve("second"));
+
+        assertEquals(copy.toFile(), repopulated);
+        assertEquals(2, populations.get());
+        assertTrue(Files.isRegularFile(copy.resolve("config").resolve("logging.properties")));
+    }
+
+    @Test
+    public void testTruncatedTemplateIsRepopulated() throws IOException {
+        File template = get(tmpDir.resolve("first"));
+        Path copy = copy(template.toPath(), tmpDir.resolve("second"));
+        Path domainXml = copy.resolve("config").resolve("domain.xml");
+        Files.write(domainXml, new byte[0]);
+
+        get(tmpDir.resolve("second"));
+
+        assertEquals(2, populations.get());
+        assertEquals("<domain/>", new String(Files.readAllBytes(domainXml), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTemplateWithoutManifestIsRepopulated() throws IOException {
+        File template = get(tmpDir.resolve("first"));
+        Path copy = copy(template.toPath(), tmpDir.resolve("second"));
+        Files.delete(copy.resolve(".template-manifest"));
+
+        get(tmpDir.resolve("second"));
+
+        assertEquals(2, populations.get());
+        assertTrue(Files.isRegularFile(copy.resolve(".template-manifest")));
+    }
+
+    private File get(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        File template = InstanceRootTemplate.get(directory.toFile(), owner, new GlassFishProperties(), root -> {
+            populations.incrementAndGet();
+            Path config = Files.createDirectories(root.toPath().resolve("config"));
+            Files.write(config.resolve("domain.xml"), "<domain/>".getBytes(StandardCharsets.UTF_8));
+            Files.write(config.resolve("logging.properties"), "handlers=".getBytes(StandardCharsets.UTF_8));
+            Files.createDirectories(root.toPath().resolve("lib").resolve("install").resolve("applications"));
+        });
+        assertNotNull(template);
+        return template;
+    }
+
+    /**
+     * Copies a template to another directory, where no process holds a lock
+     * on it, as if left by an earlier boot.
+     */
+    private static Path copy(Path template, Path directory) throws IOException {
+        Path copy = Files.createDirectories(directory).resolve(template.getFileName());
+        try (Stream<Path> files = Files.walk(template)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.naturalOrder())::iterator) {
+                Path destination = copy.resolve(template.relativize(file).toString());
+                if (Files.isDirectory(file)) {
+                    Files.createDirectories(destination);
+                } else {
+                    Files.copy(file, destination);
+                    destination.toFile().setWritable(true);
+                }
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.threadpool.DefaultWorkerThread;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the sizes chosen by {@link AdaptiveThreadPool} and the pool it
+ * resizes.
+ */
+public class AdaptiveThreadPoolTest {
+
+    private static final double IDLE_CPU = 0.1;
+    private static final double SATURATED_CPU = 0.95;
+
+    private final List<AdaptiveThreadPool> pools = new ArrayList<>();
+    private final List<ThreadPoolExecutor> executors = new ArrayList<>();
+
+    private long completed;
+
+    @AfterEach
+    public void stopPools() {
+        pools.forEach(AdaptiveThreadPool::stop);
+        executors.forEach(ThreadPoolExecutor::shutdownNow);
+    }
+
+    @Test
+    public void testPoolGrowsWhileThroughputImproves() {
+        AdaptiveThreadPool pool = newPool(8, 1, 64);
+
+        interval(pool, 100, 100, IDLE_CPU);
+        assertEquals(9, pool.getSize());
+        interval(pool, 200, 100, IDLE_CPU);
+        assertEquals(10, pool.getSize());
+        interval(pool, 300, 100, IDLE_CPU);
+        assertEquals(11, pool.getSize());
+        assertEquals(11, executors.get(0).getCorePoolSize());
+
+        // No more throughput for the last threads
+        interval(pool, 300, 100, IDLE_CPU);
+        assertEquals(10, pool.getSize());
+        assertEquals(10, executors.get(0).getCorePoolSize());
+    }
+
+    @Test
+    public void testPoolShrinksWhenThroughputDrops() {
+        AdaptiveThreadPool pool = newPool(8, 1, 64);
+
+        interval(pool, 100, 100, IDLE_CPU);
+        interval(pool, 50, 100, IDLE_CPU);
+
+        assertEquals(8, pool.getSize());
+    }
+
+    @Test
+    public void testOscillatingPoolIsHeld() {
+        AdaptiveThreadPool pool = newPool(8, 1, 64);
+
+        // Neither direction improves the throughput
+        for (int i = 0; i < 5; i++) {
+            interval(pool, 100, 100, IDLE_CPU);
+            assertEquals(i % 2 == 0 ? 9 : 8, pool.getSize());
+        }
+        interval(pool, 100, 100, IDLE_CPU);
+        assertEquals(9, pool.getSize());
+
+        for (int i = 0; i < 6; i++) {
+            interval(pool, 100, 100, SATURATED_CPU);
+            assertEquals(9, pool.getSize());
+        }
+        interval(pool, 100, 100, SATURATED_CPU);
+        assertEquals(8, pool.getSize());
+    }
+
+    @Test
+    public void testPoolShrinksWhenCpuIsSaturated() {
+        AdaptiveThreadPool pool = newPool(16, 1, 64);
+
+        interval(pool, 100, 100, SATURATED_CPU);
+
+        assertEquals(14, pool.getSize());
+    }
+
+    @Test
+    public void testPoolShrinksWhenThreadsAreIdle() {
+        AdaptiveThreadPool pool = newPool(8, 1, 64);
+
+        interval(pool, 100, 0, 3, IDLE_CPU);
+        assertEquals(7, pool.getSize());
+
+        // Half of the threads are busy
+        interval(pool, 100, 0, 4, IDLE_CPU);
+        assertEquals(7, pool.getSize());
+    }
+
+    @Test
+    public void testPoolStaysWithinItsBounds() {
+        AdaptiveThreadPool full = newPool(4, 1, 4);
+        interval(full, 100, 100, IDLE_CPU);
+        assertEquals(4, full.getSize());
+
+        AdaptiveThreadPool small = newPool(2, 2, 8);
+        interval(small, 100, 0, 0, IDLE_CPU);
+        assertEquals(2, small.getSize());
+
+        // The core size of the executor is brought within the bounds
+        assertEquals(8, newPool(16, 1, 8).getSize());
+    }
+
+    @Test
+    public void testExecutorRunsGrizzlyWorkerThreads() throws Exception {
+        ThreadPoolConfig config = ThreadPoolConfig.defaultConfig().copy()
+                .setPoolName("http-listener")
+                .setCorePoolSize(2)
+                .setMaxPoolSize(8)
+                .setQueueLimit(-1)
+                .setKeepAliveTime(30, TimeUnit.SECONDS);
+        ThreadPoolExecutor executor = AdaptiveThreadPool.newExecutor(config, () -> MemoryManager.DEFAULT_MEMORY_MANAGER);
+        executors.add(executor);
+
+        assertEquals(2, executor.getCorePoolSize());
+        assertEquals(8, executor.getMaximumPoolSize());
+        assertEquals(30, executor.getKeepAliveTime(TimeUnit.SECONDS));
+        Thread worker = executor.submit(Thread::currentThread).get();
+        assertTrue(worker instanceof DefaultWorkerThread, worker.getClass().getName());
+        assertEquals("http-listener(1)", worker.getName());
+    }
+
+    private AdaptiveThreadPool newPool(int coreSize, int minSize, int maxSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(coreSize, coreSize, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        executors.add(executor);
+        AdaptiveThreadPool pool = new AdaptiveThreadPool("test", executor, minSize, maxSize, 1000, 10);
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * Ends an interval of one second in which the given number of tasks
+     * completed, with all the threads busy.
+     */
+    private void interval(AdaptiveThreadPool pool, long throughput, long queued, double cpuLoad) {
+        interval(pool, throughput, queued, pool.getSize(), cpuLoad);
+    }
+
+    private void interval(AdaptiveThreadPool pool, long throughput, long queued, long busy, double cpuLoad) {
+        completed += throughput;
+        pool.adjust(completed, queued, busy, cpuLoad);
+    }
+}
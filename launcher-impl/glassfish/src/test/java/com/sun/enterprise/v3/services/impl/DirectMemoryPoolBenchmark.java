@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the default heap memory manager of Grizzly with the pooled direct
+ * memory manager of {@link DirectMemoryPool} for a buffer taken, filled from
+ * a channel, written to a channel and disposed, as a transport does for a
+ * request and its response.
+ *
+ * <p>The benchmark threads are not Grizzly worker threads, so the heap memory
+ * manager has no thread-local cache and allocates a buffer per operation,
+ * as it does on a selector thread. Run with the GC profiler to compare the
+ * allocation rate and the collections:
+ * {@code java -cp <test class path> org.openjdk.jmh.Main DirectMemoryPoolBenchmark -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx512m" })
+public class DirectMemoryPoolBenchmark {
+
+    @Param({ "heap", "direct" })
+    String memoryManagerType;
+
+    @Param({ "4096", "16384" })
+    int size;
+
+    private MemoryManager<?> memoryManager;
+
+    @Setup
+    public void createMemoryManager() {
+        if ("direct".equals(memoryManagerType)) {
+            memoryManager = new PooledMemoryManager(PooledMemoryManager.DEFAULT_BASE_BUFFER_SIZE,
+                    PooledMemoryManager.DEFAULT_NUMBER_OF_POOLS, PooledMemoryManager.DEFAULT_GROWTH_FACTOR,
+                    Runtime.getRuntime().availableProcessors(), 0.125f, 0, true);
+        } else {
+            memoryManager = new HeapMemoryManager();
+        }
+    }
+
+    /**
+     * A pipe of a benchmark thread standing for the socket of a connection.
+     */
+    @State(Scope.Thread)
+    public static class Connection {
+
+        private ByteBuffer payload;
+        private ByteBuffer sink;
+        private Pipe pipe;
+
+        @Setup
+        public void open(final DirectMemoryPoolBenchmark benchmark) throws IOException {
+            payload = ByteBuffer.allocateDirect(benchmark.size);
+            while (payload.hasRemaining()) {
+                payload.put((byte) payload.position());
+            }
+            sink = ByteBuffer.allocateDirect(benchmark.size);
+            pipe = Pipe.open();
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+    }
+
+    @Benchmark
+    public int readWrite(final Connection connection) throws IOException {
+        final Buffer buffer = memoryManager.allocate(size);
+        try {
+            // The request
+            connection.payload.clear();
+            write(connection, connection.payload);
+            final ByteBuffer byteBuffer = buffer.toByteBuffer();
+            while (byteBuffer.hasRemaining()) {
+                connection.pipe.source().read(byteBuffer);
+            }
+
+            // The response
+            byteBuffer.flip();
+            write(connection, byteBuffer);
+            connection.sink.clear();
+            while (connection.sink.hasRemaining()) {
+                connection.pipe.source().read(connection.sink);
+            }
+            return connection.sink.get(size - 1);
+        } finally {
+            buffer.tryDispose();
+        }
+    }
+
+    private static void write(final Connection connection, final ByteBuffer byteBuffer) throws IOException {
+        while (byteBuffer.hasRemaining()) {
+            connection.pipe.sink().write(byteBuffer);
+        }
+    }
+}
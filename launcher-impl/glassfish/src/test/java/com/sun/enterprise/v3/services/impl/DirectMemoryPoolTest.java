@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.memory.PooledMemoryManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the buffers counted in use by {@link DirectMemoryPool.Usage} for a
+ * pool whose only slice holds 16 buffers.
+ */
+public class DirectMemoryPoolTest {
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final int SLICE_SIZE = 16;
+
+    private final DirectMemoryPool.Usage usage = new DirectMemoryPool.Usage();
+
+    private PooledMemoryManager memoryManager;
+
+    @BeforeEach
+    public void createPool() {
+        final float sizeRatio = (float) SLICE_SIZE * BUFFER_SIZE / Runtime.getRuntime().maxMemory();
+        memoryManager = new PooledMemoryManager(BUFFER_SIZE, 1, 0, 1, sizeRatio, 0, true);
+        memoryManager.getMonitoringConfig().addProbes(usage);
+    }
+
+    @Test
+    public void testBuffersInUseAreCounted() {
+        final Buffer first = memoryManager.allocate(BUFFER_SIZE);
+        final Buffer second = memoryManager.allocate(BUFFER_SIZE);
+        final Buffer third = memoryManager.allocate(100);
+        assertEquals(3, usage.getInUse());
+
+        second.dispose();
+        assertEquals(2, usage.getInUse());
+
+        first.dispose();
+        third.dispose();
+        assertEquals(0, usage.getInUse());
+        assertEquals(3, usage.misses.sum());
+        assertEquals(3, usage.returned.sum());
+
+        // Taken back from the pool
+        final Buffer fourth = memoryManager.allocate(BUFFER_SIZE);
+        assertEquals(1, usage.getInUse());
+        assertEquals(3, usage.misses.sum());
+        fourth.dispose();
+        assertEquals(0, usage.getInUse());
+    }
+
+    @Test
+    public void testBuffersDiscardedByFullSliceAreNotInUse() {
+        final List<Buffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 3 * SLICE_SIZE; i++) {
+            buffers.add(memoryManager.allocate(BUFFER_SIZE));
+        }
+        assertEquals(3 * SLICE_SIZE, usage.getInUse());
+
+        buffers.forEach(Buffer::dispose);
+
+        assertEquals(SLICE_SIZE, usage.returned.sum());
+        assertEquals(2 * SLICE_SIZE, usage.discarded.sum());
+        assertEquals(0, usage.getInUse());
+    }
+
+    @Test
+    public void testSharedBufferIsDisposedOnce() {
+        final Buffer buffer = memoryManager.allocate(BUFFER_SIZE);
+        final Buffer slice = buffer.slice(0, 100);
+
+        buffer.dispose();
+        assertEquals(1, usage.getInUse());
+
+        slice.dispose();
+        assertEquals(0, usage.getInUse());
+        assertEquals(1, usage.returned.sum());
+    }
+}
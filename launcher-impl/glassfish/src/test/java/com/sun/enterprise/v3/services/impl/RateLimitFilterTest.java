@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Base64;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link RateLimitFilter} only keys on the subjects of verified
+ * tokens and bounds the subjects it caches.
+ */
+public class RateLimitFilterTest {
+
+    private static final String RS256 = "{\"alg\":\"RS256\",\"typ\":\"JWT\"}";
+    private static final long NOW = 1_700_000_000L;
+
+    private static KeyPair keys;
+    private static KeyPair otherKeys;
+
+    @BeforeAll
+    public static void generateKeys() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keys = generator.generateKeyPair();
+        otherKeys = generator.generateKeyPair();
+    }
+
+    @Test
+    public void testSubjectOfSignedToken() throws Exception {
+        String token = sign(RS256, "{\"iss\":\"test\", \"sub\" : \"al\\\"ice\",\"exp\":" + (NOW + 60) + "}",
+                keys.getPrivate());
+
+        RateLimitFilter.VerifiedToken verified = verify(token);
+        assertEquals("al\"ice", verified.subject);
+        assertEquals(NOW + 60, verified.expires);
+    }
+
+    @Test
+    public void testBearerToken() {
+        assertEquals("abc", RateLimitFilter.getBearerToken("Bearer abc"));
+        assertEquals("abc", RateLimitFilter.getBearerToken("bearer  abc "));
+        assertNull(RateLimitFilter.getBearerToken(null));
+        assertNull(RateLimitFilter.getBearerToken("Basic YWxpY2U6c2VjcmV0"));
+        assertNull(RateLimitFilter.getBearerToken("Bearer "));
+    }
+
+    @Test
+    public void testUnverifiedTokenHasNoSubject() throws Exception {
+        String token = sign(RS256, "{\"sub\":\"alice\"}", otherKeys.getPrivate());
+        assertNull(verify(token));
+
+        String unsigned = encode("{\"alg\":\"none\"}") + '.' + encode("{\"sub\":\"alice\"}") + '.';
+        assertNull(verify(unsigned));
+
+        String signed = sign(RS256, "{\"sub\":\"alice\"}", keys.getPrivate());
+        String forged = signed.substring(0, signed.indexOf('.') + 1) + encode("{\"sub\":\"bob\"}")
+                + signed.substring(signed.lastIndexOf('.'));
+        assertNull(verify(forged));
+    }
+
+    @Test
+    public void testTokenOutsideItsValidityHasNoSubject() throws Exception {
+        assertNull(verify(sign(RS256, "{\"sub\":\"alice\",\"exp\":" + NOW + "}", keys.getPrivate())));
+        assertNull(verify(sign(RS256, "{\"sub\":\"alice\",\"nbf\":" + (NOW + 1) + "}", keys.getPrivate())));
+        assertNull(verify(sign(RS256, "{\"sub\":\"alice\",\"nbf\":\"soon\"}", keys.getPrivate())));
+
+        String valid = sign(RS256, "{\"sub\":\"alice\",\"nbf\":" + NOW + "}", keys.getPrivate());
+        assertEquals(Long.MAX_VALUE, verify(valid).expires);
+    }
+
+    @Test
+    public void testIssuerAndAudienceAreChecked() throws Exception {
+        String token = sign(RS256, "{\"sub\":\"aud\",\"iss\":\"https://issuer\",\"aud\":[\"a\", \"api\"]}",
+                keys.getPrivate());
+        assertEquals("aud", RateLimitFilter.verify(token, keys.getPublic(), "https://issuer", "api", NOW).subject);
+        assertNull(RateLimitFilter.verify(token, keys.getPublic(), "https://other", "api", NOW));
+        assertNull(RateLimitFilter.verify(token, keys.getPublic(), "https://issuer", "ap", NOW));
+
+        String single = sign(RS256, "{\"sub\":\"alice\",\"aud\":\"api\"}", keys.getPrivate());
+        assertEquals("alice", RateLimitFilter.verify(single, keys.getPublic(), null, "api", NOW).subject);
+        assertNull(RateLimitFilter.verify(single, keys.getPublic(), "https://issuer", "api", NOW));
+
+        String none = sign(RS256, "{\"sub\":\"alice\"}", keys.getPrivate());
+        assertNull(RateLimitFilter.verify(none, keys.getPublic(), null, "api", NOW));
+    }
+
+    @Test
+    public void testTokenWithoutSubjectIsNotVerified() throws Exception {
+        assertNull(verify(sign(RS256, "{\"iss\":\"test\"}", keys.getPrivate())));
+        assertNull(verify(sign(RS256, "{\"sub\":\"\"}", keys.getPrivate())));
+    }
+
+    @Test
+    public void testMalformedTokenHasNoSubject() {
+        assertNull(verify("abc"));
+        assertNull(verify("!!.??.**"));
+    }
+
+    @Test
+    public void testSubjectCacheExpiresAndIsBounded() {
+        RateLimitFilter.SubjectCache cache = new RateLimitFilter.SubjectCache(16);
+        cache.put("token", "alice", NOW + 1);
+        assertEquals("alice", cache.get("token", NOW));
+        assertNull(cache.get("token", NOW + 1));
+        assertEquals(0, cache.size());
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put("token" + i, "alice", NOW + 60);
+        }
+        assertTrue(cache.size() <= 16, "size " + cache.size());
+    }
+
+    @Test
+    public void testPemPublicKey() throws Exception {
+        String pem = "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder().encodeToString(keys.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n";
+        PublicKey key = RateLimitFilter.parsePublicKey(pem);
+        assertEquals(keys.getPublic(), key);
+    }
+
+    private static RateLimitFilter.VerifiedToken verify(String token) {
+        return RateLimitFilter.verify(token, keys.getPublic(), null, null, NOW);
+    }
+
+    private static String sign(String header, String payload, PrivateKey key) throws Exception {
+        String content = encode(header) + '.' + encode(payload);
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(key);
+        signature.update(content.getBytes(StandardCharsets.US_ASCII));
+        return content + '.' + Base64.getUrlEncoder().withoutPadding().encodeToString(signature.sign());
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
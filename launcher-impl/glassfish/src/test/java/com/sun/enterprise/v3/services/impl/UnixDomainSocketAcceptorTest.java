@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.ConnectionProbe;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that {@link UnixDomainSocketAcceptor} serves HTTP requests on a
+ * Unix domain socket through the transport of a listener.
+ */
+public class UnixDomainSocketAcceptorTest {
+
+    private static final int PORT = 8080;
+
+    @TempDir
+    Path tmpDir;
+
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    private HttpServer server;
+    private TCPNIOTransport transport;
+    private Path path;
+    private UnixDomainSocketAcceptor acceptor;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        assumeTrue(Runtime.version().feature() >= 16, "Unix domain sockets require Java 16");
+
+        server = new HttpServer();
+        final NetworkListener listener = new NetworkListener("test", "127.0.0.1", 0);
+        server.addListener(listener);
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                response.setContentType("text/plain");
+                response.getWriter().write(request.getRemoteAddr() + " " + request.getLocalPort());
+            }
+        }, "/");
+        server.start();
+        transport = listener.getTransport();
+        transport.getConnectionMonitoringConfig().addProbes(new ConnectionProbe.Adapter() {
+            @Override
+            public void onAcceptEvent(Connection serverConnection, Connection clientConnection) {
+                accepted.incrementAndGet();
+            }
+        });
+        path = tmpDir.resolve("http.sock");
+    }
+
+    @AfterEach
+    public void stopServer() {
+        if (acceptor != null) {
+            acceptor.stop();
+        }
+        if (server != null) {
+            server.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRequestIsServedOverTheSocket() throws IOException {
+        acceptor = UnixDomainSocketAcceptor.start(transport, path, PORT);
+
+        final String response = get(path);
+
+        assertTrue(response.startsWith("HTTP/1.1 200"), response);
+        assertTrue(response.endsWith("\r\n\r\n127.0.0.1 " + PORT), response);
+        assertEquals(1, accepted.get());
+    }
+
+    @Test
+    public void testSocketFileIsDeletedOnStop() throws IOException {
+        acceptor = UnixDomainSocketAcceptor.start(transport, path, PORT);
+        assertTrue(Files.exists(path));
+
+        acceptor.stop();
+
+        assertFalse(Files.exists(path));
+        assertThrows(IOException.class, () -> get(path));
+    }
+
+    @Test
+    public void testStaleSocketFileIsReplaced() throws IOException {
+        // A socket file left by a process that did not delete it
+        try (ServerSocketChannel stale = UnixDomainSocketAcceptor.openServerSocketChannel()) {
+            stale.bind(UnixDomainSocketAcceptor.getAddress(path));
+        }
+        assertTrue(Files.exists(path));
+
+        acceptor = UnixDomainSocketAcceptor.start(transport, path, PORT);
+
+        assertTrue(get(path).startsWith("HTTP/1.1 200"));
+    }
+
+    @Test
+    public void testRegularFileIsNotReplaced() throws IOException {
+        Files.write(path, "data".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> UnixDomainSocketAcceptor.start(transport, path, PORT));
+
+        assertEquals("data", new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    private static String get(final Path path) throws IOException {
+        try (SocketChannel channel = UnixDomainSocketAcceptor.openSocketChannel()) {
+            channel.connect(UnixDomainSocketAcceptor.getAddress(path));
+            channel.write(ByteBuffer.wrap("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.ISO_8859_1)));
+
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final ByteBuffer buffer = ByteBuffer.allocate(1024);
+            while (channel.read(buffer) >= 0) {
+                response.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return new String(response.toByteArray(), StandardCharsets.ISO_8859_1);
+        }
+    }
+}
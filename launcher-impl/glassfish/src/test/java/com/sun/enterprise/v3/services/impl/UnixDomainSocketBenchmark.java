@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.enterprise.v3.services.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares keep-alive HTTP requests to a Grizzly transport over TCP on the
+ * loopback interface with the same requests over a Unix domain socket
+ * accepted by {@link UnixDomainSocketAcceptor}.
+ *
+ * <p>The throughput mode gives the requests per second, the sample time mode
+ * the distribution of the latency of a request. Each benchmark thread has a
+ * connection of its own, so run with e.g. {@code -t 8} for concurrent
+ * connections. Requires Java 16 or later.
+ *
+ * <p>Run with {@code java -cp <test class path> org.openjdk.jmh.Main UnixDomainSocketBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnixDomainSocketBenchmark {
+
+    private static final byte[] REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n"
+            .getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] BODY = "Hello".getBytes(StandardCharsets.ISO_8859_1);
+
+    @Param({ "tcp", "unix" })
+    String transport;
+
+    private HttpServer server;
+    private NetworkListener listener;
+    private Path directory;
+    private UnixDomainSocketAcceptor acceptor;
+
+    @Setup
+    public void startServer() throws IOException {
+        server = new HttpServer();
+        listener = new NetworkListener("benchmark", "127.0.0.1", 0);
+        listener.getKeepAlive().setMaxRequestsCount(-1);
+        server.addListener(listener);
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                response.setContentType("text/plain");
+                response.setContentLength(BODY.length);
+                response.getOutputStream().write(BODY);
+            }
+        }, "/");
+        server.start();
+
+        directory = Files.createTempDirectory("uds-benchmark");
+        acceptor = UnixDomainSocketAcceptor.start(listener.getTransport(), directory.resolve("http.sock"),
+                listener.getPort());
+    }
+
+    @TearDown
+    public void stopServer() throws IOException {
+        acceptor.stop();
+        server.shutdownNow();
+        Files.deleteIfExists(directory);
+    }
+
+    SocketChannel connect() throws IOException {
+        if ("unix".equals(transport)) {
+            final SocketChannel channel = UnixDomainSocketAcceptor.openSocketChannel();
+            channel.connect(UnixDomainSocketAcceptor.getAddress(directory.resolve("http.sock")));
+            return channel;
+        }
+        final SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", listener.getPort()));
+        channel.socket().setTcpNoDelay(true);
+        return channel;
+    }
+
+    /**
+     * A keep-alive connection of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private final ByteBuffer request = ByteBuffer.wrap(REQUEST);
+        private final ByteBuffer response = ByteBuffer.allocate(4096);
+
+        private SocketChannel channel;
+        private int responseLength;
+
+        @Setup
+        public void connect(final UnixDomainSocketBenchmark benchmark) throws IOException {
+            channel = benchmark.connect();
+            // The Date header has a fixed length, so every response has the
+            // length of the first one
+            send();
+            int headerEnd;
+            while ((headerEnd = indexOfHeaderEnd()) < 0) {
+                read();
+            }
+            responseLength = headerEnd + BODY.length;
+            while (response.position() < responseLength) {
+                read();
+            }
+        }
+
+        @TearDown
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        int exchange() throws IOException {
+            send();
+            while (response.position() < responseLength) {
+                read();
+            }
+            return response.get(responseLength - 1);
+        }
+
+        private void send() throws IOException {
+            request.clear();
+            response.clear();
+            while (request.hasRemaining()) {
+                channel.write(request);
+            }
+        }
+
+        private void read() throws IOException {
+            if (channel.read(response) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+
+        private int indexOfHeaderEnd() {
+            for (int i = 3; i < response.position(); i++) {
+                if (response.get(i - 3) == '\r' && response.get(i - 2) == '\n'
+                        && response.get(i - 1) == '\r' && response.get(i) == '\n') {
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+    @Benchmark
+    public int request(final Client client) throws IOException {
+        return client.exchange();
+    }
+}
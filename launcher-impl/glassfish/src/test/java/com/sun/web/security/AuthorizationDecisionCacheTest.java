@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package com.sun.web.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.Principal;
+import java.util.Set;
+
+import javax.security.auth.Subject;
+
+import com.sun.enterprise.security.SecurityContext;
+import com.sun.web.security.AuthorizationDecisionCache.Principals;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the hits, invalidation and eviction of {@link AuthorizationDecisionCache}.
+ */
+public class AuthorizationDecisionCacheTest {
+
+    private static final Principals ALICE = Principals.of(Set.of(principal("alice"), principal("users")));
+    private static final Principals BOB = Principals.of(Set.of(principal("bob"), principal("users")));
+
+    private AuthorizationDecisionCache cache;
+
+    @AfterEach
+    public void closeCache() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testDecisionIsCachedPerPrincipals() {
+        cache = new AuthorizationDecisionCache("hits", 100);
+        Object manager = new Object();
+
+        long generation = cache.getGeneration(manager);
+        assertNull(cache.get(AuthorizationDecisionCache.key("/admin", "GET", ALICE)));
+        cache.put(AuthorizationDecisionCache.key("/admin", "GET", ALICE), true, generation);
+
+        assertEquals(Boolean.TRUE, cache.get(AuthorizationDecisionCache.key("/admin", "GET",
+                Principals.of(Set.of(principal("users"), principal("alice"))))));
+        assertNull(cache.get(AuthorizationDecisionCache.key("/admin", "GET", BOB)));
+        assertNull(cache.get(AuthorizationDecisionCache.key("/admin", "GET", null)));
+        assertNull(cache.get(AuthorizationDecisionCache.key("/admin", "POST", ALICE)));
+        assertNull(cache.get(AuthorizationDecisionCache.key("/admin/", "GET", ALICE)));
+    }
+
+    @Test
+    public void testPrincipalsAreCopiedOncePerSecurityContext() {
+        cache = new AuthorizationDecisionCache("principals", 100);
+        Subject subject = new Subject();
+        subject.getPrincipals().add(principal("alice"));
+        subject.getPrincipals().add(principal("users"));
+        SecurityContext securityContext = new SecurityContext("alice", subject);
+
+        // the security context adds the caller to the principals
+        Principals principals = cache.getPrincipals(securityContext);
+        assertEquals(Principals.of(securityContext.getSubject().getPrincipals()), principals);
+        assertSame(principals, cache.getPrincipals(securityContext));
+
+        // another session of the same caller shares its decisions
+        Principals other = cache.getPrincipals(new SecurityContext("alice", subject));
+        assertNotSame(principals, other);
+        assertEquals(principals, other);
+
+        assertSame(Principals.NONE, cache.getPrincipals(null));
+    }
+
+    @Test
+    public void testInvalidateDropsDecisions() {
+        cache = new AuthorizationDecisionCache("invalidate", 100);
+        Object manager = new Object();
+        AuthorizationDecisionCache.Key key = AuthorizationDecisionCache.key("/admin", "GET", ALICE);
+
+        cache.put(key, true, cache.getGeneration(manager));
+        // as done when the policy of the module is committed
+        cache.invalidate();
+        assertNull(cache.get(key));
+
+        cache.put(key, true, cache.getGeneration(manager));
+        assertEquals(Boolean.TRUE, cache.get(key));
+        // a replaced WebSecurityManager invalidates the cache as well
+        cache.getGeneration(new Object());
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testDecisionOfPreviousPolicyIsNotStored() {
+        cache = new AuthorizationDecisionCache("generation", 100);
+        AuthorizationDecisionCache.Key key = AuthorizationDecisionCache.key("/admin", "GET", ALICE);
+
+        long generation = cache.getGeneration(this);
+        cache.invalidate();
+        cache.put(key, true, generation);
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedDecisionIsEvicted() {
+        cache = new AuthorizationDecisionCache("eviction", 160);
+        long generation = cache.getGeneration(this);
+        AuthorizationDecisionCache.Key used = AuthorizationDecisionCache.key("/used", "GET", ALICE);
+        cache.put(used, true, generation);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(AuthorizationDecisionCache.key("/" + i, "GET", ALICE), false, generation);
+            // a decision in use is kept while others are added
+            assertEquals(Boolean.TRUE, cache.get(used));
+        }
+        int cached = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get(AuthorizationDecisionCache.key("/" + i, "GET", ALICE)) != null) {
+                cached++;
+            }
+        }
+        assertTrue(cached < 160, Integer.toString(cached));
+    }
+
+    private static Principal principal(String name) {
+        return new Principal() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean equals(Object obj) {
+                return obj instanceof Principal && name.equals(((Principal) obj).getName());
+            }
+
+            @Override
+            public int hashCode() {
+                return name.hashCode();
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.grizzly.http;
+
+import static org.glassfish.grizzly.http.util.HttpCodecUtils.put;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.util.Constants;
+import org.glassfish.grizzly.http.util.DataChunk;
+import org.glassfish.grizzly.http.util.FastHttpDateFormat;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
+import org.glassfish.grizzly.memory.MemoryManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encoding the status line and the {@code Server},
+ * {@code X-Powered-By} and {@code Date} headers of a response field by field
+ * from strings, as before, with writing the arrays of
+ * {@link PreEncodedResponseHeaders} and the values encoded once per listener.
+ *
+ * <p>Run with {@code java -cp <test class path> org.openjdk.jmh.Main PreEncodedResponseHeadersBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreEncodedResponseHeadersBenchmark {
+
+    private static final String SERVER = "Fujitsu Launcher";
+    private static final String X_POWERED_BY = "Servlet/6.0 JSP/3.1 (Fujitsu Launcher Java/Eclipse Adoptium/11)";
+
+    @Param({ "200", "404" })
+    int statusCode;
+
+    private final MemoryManager memoryManager = new HeapMemoryManager();
+    private final byte[] tempEncodingBuffer = new byte[128];
+
+    private final DataChunk serverName = DataChunk.newInstance();
+    private final DataChunk xPoweredByName = DataChunk.newInstance();
+    private final DataChunk dateName = DataChunk.newInstance();
+    private final DataChunk value = DataChunk.newInstance();
+
+    private final byte[] serverBytes = SERVER.getBytes(StandardCharsets.ISO_8859_1);
+    private final byte[] xPoweredByBytes = X_POWERED_BY.getBytes(StandardCharsets.ISO_8859_1);
+
+    private HttpStatus status;
+    private Buffer output;
+
+    @Setup
+    public void setUp() {
+        status = HttpStatus.getHttpStatus(statusCode);
+        serverName.setBytes(Header.Server.getBytes());
+        xPoweredByName.setBytes(Header.XPoweredBy.getBytes());
+        dateName.setBytes(Header.Date.getBytes());
+        output = memoryManager.allocate(512);
+    }
+
+    @Benchmark
+    public Buffer encodeStrings() {
+        Buffer buffer = output.clear();
+        buffer = put(memoryManager, buffer, Protocol.HTTP_1_1.getProtocolBytes());
+        buffer = put(memoryManager, buffer, Constants.SP);
+        buffer = put(memoryManager, buffer, status.getStatusBytes());
+        buffer = put(memoryManager, buffer, Constants.SP);
+        buffer = put(memoryManager, buffer, status.getReasonPhraseBytes());
+
+        value.setString(SERVER);
+        buffer = HttpCodecFilter.encodeMimeHeader(memoryManager, buffer, serverName, value, tempEncodingBuffer, false);
+        value.setString(X_POWERED_BY);
+        buffer = HttpCodecFilter.encodeMimeHeader(memoryManager, buffer, xPoweredByName, value, tempEncodingBuffer, false);
+        value.setBytes(FastHttpDateFormat.getCurrentDateBytes());
+        buffer = HttpCodecFilter.encodeMimeHeader(memoryManager, buffer, dateName, value, tempEncodingBuffer, false);
+        output = buffer;
+        return buffer;
+    }
+
+    @Benchmark
+    public Buffer encodePreEncoded() {
+        Buffer buffer = output.clear();
+        buffer = put(memoryManager, buffer, PreEncodedResponseHeaders.getStatusLineBytes(Protocol.HTTP_1_1, status));
+
+        value.setBytes(serverBytes);
+        buffer = HttpCodecFilter.encodeMimeHeader(memoryManager, buffer, serverName, value, tempEncodingBuffer, false);
+        value.setBytes(xPoweredByBytes);
+        buffer = HttpCodecFilter.encodeMimeHeader(memoryManager, buffer, xPoweredByName, value, tempEncodingBuffer, false);
+        value.setBytes(PreEncodedResponseHeaders.getCurrentDateBytes());
+        buffer = HttpCodecFilter.encodeMimeHeader(memoryManager, buffer, dateName, value, tempEncodingBuffer, false);
+        output = buffer;
+        return buffer;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares lookups by name in {@link MimeHeaders} with the linear scan and
+ * with the hashed index across header counts, to choose
+ * {@code MimeHeaders.INDEX_THRESHOLD}.
+ *
+ * <p>{@code lookup*} look up request headers parsed from the wire, some of
+ * which are absent. {@code build*} set response headers, looking each name up
+ * before adding it, as a response is built.
+ *
+ * <p>Run with {@code java -cp <test class path> org.openjdk.jmh.Main MimeHeadersBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MimeHeadersBenchmark {
+
+    private static final String SCAN = "-Dcom.fujitsu.launcher.http.headerIndexThreshold=0";
+    private static final String INDEX = "-Dcom.fujitsu.launcher.http.headerIndexThreshold=1";
+
+    private static final String[] NAMES = {
+            "Host", "User-Agent", "Accept", "Accept-Encoding", "Accept-Language", "Authorization", "Cookie",
+            "Content-Type", "Content-Length", "X-Forwarded-For", "X-Forwarded-Proto", "X-Forwarded-Host",
+            "traceparent", "tracestate", "X-Request-Id", "X-B3-TraceId", "X-B3-SpanId", "X-B3-Sampled", "Forwarded",
+            "Origin", "Referer", "Cache-Control", "Pragma", "If-None-Match", "If-Modified-Since", "Connection",
+            "Sec-Fetch-Mode", "Sec-Fetch-Site", "Sec-Fetch-Dest", "X-Api-Key", "X-Tenant", "X-Correlation-Id"
+    };
+
+    private static final String[] LOOKUPS = {
+            "host", "content-type", "authorization", "x-forwarded-for", "traceparent", "accept-encoding",
+            "x-missing-header", "transfer-encoding"
+    };
+
+    @Param({ "4", "8", "12", "16", "24", "32", "48", "64" })
+    int headerCount;
+
+    private final MimeHeaders request = new MimeHeaders();
+    private final MimeHeaders response = new MimeHeaders();
+    private String[] responseNames;
+
+    @Setup
+    public void setUp() {
+        request.setMaxNumHeaders(-1);
+        response.setMaxNumHeaders(-1);
+        responseNames = new String[headerCount];
+        for (int i = 0; i < headerCount; i++) {
+            final String name = i < NAMES.length ? NAMES[i] : "X-Custom-Header-" + i;
+            final byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+            request.addValue(bytes, 0, bytes.length).setString("value");
+            responseNames[i] = name;
+        }
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCAN)
+    public void lookupScan(final Blackhole blackhole) {
+        lookup(blackhole);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = INDEX)
+    public void lookupIndex(final Blackhole blackhole) {
+        lookup(blackhole);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = SCAN)
+    public void buildScan(final Blackhole blackhole) {
+        build(blackhole);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = INDEX)
+    public void buildIndex(final Blackhole blackhole) {
+        build(blackhole);
+    }
+
+    private void lookup(final Blackhole blackhole) {
+        for (final String name : LOOKUPS) {
+            blackhole.consume(request.getValue(name));
+        }
+    }
+
+    private void build(final Blackhole blackhole) {
+        response.recycle();
+        for (final String name : responseNames) {
+            response.setValue(name).setString("value");
+            blackhole.consume(response.getHeader(name));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.glassfish.jersey.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.spi.ContainerResponseWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that {@link EndpointLatency} reuses its writer wrapper across the
+ * requests processed on a thread, but not while a request owns it.
+ */
+public class EndpointLatencyTest {
+
+    private final EndpointLatency latency = EndpointLatency.create("test",
+            Map.of(EndpointLatency.ENABLED, Boolean.TRUE));
+
+    @AfterEach
+    public void closeLatency() {
+        latency.close();
+    }
+
+    @Test
+    public void testWriterIsReusedBySynchronousRequests() {
+        ContainerRequest first = newRequest(new TestWriter());
+        EndpointLatency.TimingWriter timing = latency.start(first);
+        assertSame(timing, first.getResponseWriter());
+        timing.commit();
+        latency.end(timing);
+
+        TestWriter writer = new TestWriter();
+        ContainerRequest second = newRequest(writer);
+        assertSame(timing, latency.start(second));
+        timing.commit();
+        latency.end(timing);
+
+        assertEquals(1, writer.commits);
+    }
+
+    @Test
+    public void testSuspendedRequestKeepsItsWriter() throws InterruptedException {
+        TestWriter suspendedWriter = new TestWriter();
+        EndpointLatency.TimingWriter suspended = latency.start(newRequest(suspendedWriter));
+        suspended.suspend(0, TimeUnit.SECONDS, null);
+        latency.end(suspended);
+
+        TestWriter writer = new TestWriter();
+        EndpointLatency.TimingWriter timing = latency.start(newRequest(writer));
+        assertNotSame(suspended, timing);
+
+        // the suspended request completes on another thread
+        Thread resumer = new Thread(suspended::commit);
+        resumer.start();
+        resumer.join();
+        timing.commit();
+        latency.end(timing);
+
+        assertEquals(1, suspendedWriter.suspends);
+        assertEquals(1, suspendedWriter.commits);
+        assertEquals(1, writer.commits);
+    }
+
+    @Test
+    public void testNestedRequestGetsItsOwnWriter() {
+        EndpointLatency.TimingWriter outer = latency.start(newRequest(new TestWriter()));
+        EndpointLatency.TimingWriter inner = latency.start(newRequest(new TestWriter()));
+        assertNotSame(outer, inner);
+        latency.end(inner);
+        latency.end(outer);
+
+        assertSame(outer, latency.start(newRequest(new TestWriter())));
+        latency.end(outer);
+    }
+
+    @Test
+    public void testRequestWithoutWriterIsNotTimed() {
+        assertNull(latency.start(newRequest(null)));
+    }
+
+    private static ContainerRequest newRequest(ContainerResponseWriter writer) {
+        ContainerRequest request = new ContainerRequest(URI.create("http://localhost/"),
+                URI.create("http://localhost/resource"), "GET", null, new MapPropertiesDelegate(), null);
+        request.setWriter(writer);
+        return request;
+    }
+
+    private static final class TestWriter implements ContainerResponseWriter {
+
+        int suspends;
+        int commits;
+
+        @Override
+        public OutputStream writeResponseStatusAndHeaders(long contentLength, ContainerResponse responseContext) {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public boolean suspend(long timeOut, TimeUnit timeUnit, TimeoutHandler timeoutHandler) {
+            suspends++;
+            return true;
+        }
+
+        @Override
+        public void setSuspendTimeout(long timeOut, TimeUnit timeUnit) {
+        }
+
+        @Override
+        public void commit() {
+            commits++;
+        }
+
+        @Override
+        public void failure(Throwable error) {
+        }
+
+        @Override
+        public boolean enableResponseBuffering() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.config;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the values resolved by the rest of the interceptor chain, including the misses. A config has a fixed
+ * set of profiles, so the property name is a sufficient key for the cache of one config.
+ * <p>
+ * Values of dynamic config sources stay cached until they are invalidated with {@link #invalidate(String)} or
+ * {@link #invalidateAll()}. Secret keys are never cached, so that locking them keeps working.
+ */
+public class CachingConfigSourceInterceptor implements ConfigSourceInterceptor {
+    private static final long serialVersionUID = 1L;
+
+    public static final String CACHE_ENABLED = "com.fujitsu.launcher.config.cache.enabled";
+
+    private static final ConfigValue MISSING = ConfigValue.builder().withName("").build();
+    private static final Set<CachingConfigSourceInterceptor> INSTANCES = Collections
+            .synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final Set<String> secretKeys;
+    private final ConcurrentMap<String, ConfigValue> values = new ConcurrentHashMap<>();
+
+    public CachingConfigSourceInterceptor(final Set<String> secretKeys) {
+        this.secretKeys = secretKeys;
+        INSTANCES.add(this);
+    }
+
+    @Override
+    public ConfigValue getValue(final ConfigSourceInterceptorContext context, final String name) {
+        ConfigValue value = values.get(name);
+        if (value == null) {
+            value = context.proceed(name);
+            if (secretKeys.contains(name)) {
+                return value;
+            }
+            values.putIfAbsent(name, value == null ? MISSING : value);
+        }
+        return value == MISSING ? null : value;
+    }
+
+    /**
+     * Drops the cached value of the given property in all configs.
+     */
+    public static void invalidate(final String name) {
+        synchronized (INSTANCES) {
+            for (CachingConfigSourceInterceptor interceptor : INSTANCES) {
+                interceptor.values.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Drops all cached values in all configs.
+     */
+    public static void invalidateAll() {
+        synchronized (INSTANCES) {
+            for (CachingConfigSourceInterceptor interceptor : INSTANCES) {
+                interceptor.values.clear();
+            }
+        }
+    }
+}
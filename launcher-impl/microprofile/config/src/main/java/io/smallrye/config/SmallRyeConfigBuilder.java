@@ -23,7 +23,14 @@ import static io.smallrye.config.PropertiesConfigSourceProvider.classPathSources
 import static io.smallrye.config.SmallRyeConfig.SMALLRYE_CONFIG_PROFILE;
 import static io.smallrye.config.SmallRyeConfig.SMALLRYE_CONFIG_PROFILE_PARENT;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -33,8 +40,12 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
 import java.util.ServiceLoader;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -52,6 +63,10 @@ import org.eclipse.microprofile.config.spi.Converter;
 public class SmallRyeConfigBuilder implements ConfigBuilder {
     public static final String META_INF_MICROPROFILE_CONFIG_PROPERTIES = "../../META-INF/microprofile-config.properties";
     public static final String WEB_INF_MICROPROFILE_CONFIG_PROPERTIES = "META-INF/microprofile-config.properties";
+    public static final String CONFIG_SERVICES_SNAPSHOT = "uber-jar_config-services.properties";
+
+    // provider class names of the discovered services per class loader
+    private static final Map<ClassLoader, Map<String, List<String>>> DISCOVERED_TYPES = new WeakHashMap<>();
 
     // sources are not sorted by their ordinals
     private final List<ConfigSource> sources = new ArrayList<>();
@@ -97,24 +112,16 @@ public class SmallRyeConfigBuilder implements ConfigBuilder {
     }
 
     List<ConfigSource> discoverSources() {
-        List<ConfigSource> discoveredSources = new ArrayList<>();
-        ServiceLoader<ConfigSource> configSourceLoader = ServiceLoader.load(ConfigSource.class, classLoader);
-        for (ConfigSource source : configSourceLoader) {
-            discoveredSources.add(source);
-        }
+        List<ConfigSource> discoveredSources = new ArrayList<>(discover(ConfigSource.class));
 
         // load all ConfigSources from ConfigSourceProviders
-        ServiceLoader<ConfigSourceProvider> configSourceProviderLoader = ServiceLoader.load(ConfigSourceProvider.class,
-                classLoader);
-        for (ConfigSourceProvider configSourceProvider : configSourceProviderLoader) {
+        for (ConfigSourceProvider configSourceProvider : discover(ConfigSourceProvider.class)) {
             for (ConfigSource configSource : configSourceProvider.getConfigSources(classLoader)) {
                 discoveredSources.add(configSource);
             }
         }
 
-        ServiceLoader<ConfigSourceFactory> configSourceFactoryLoader = ServiceLoader.load(ConfigSourceFactory.class,
-                classLoader);
-        for (ConfigSourceFactory factory : configSourceFactoryLoader) {
+        for (ConfigSourceFactory factory : discover(ConfigSourceFactory.class)) {
             discoveredSources.add(new ConfigurableConfigSource(factory));
         }
 
@@ -123,7 +130,7 @@ public class SmallRyeConfigBuilder implements ConfigBuilder {
 
     List<Converter<?>> discoverConverters() {
         List<Converter<?>> discoveredConverters = new ArrayList<>();
-        for (Converter<?> converter : ServiceLoader.load(Converter.class, classLoader)) {
+        for (Converter<?> converter : discover(Converter.class)) {
             discoveredConverters.add(converter);
         }
         return discoveredConverters;
@@ -131,15 +138,11 @@ public class SmallRyeConfigBuilder implements ConfigBuilder {
 
     List<InterceptorWithPriority> discoverInterceptors() {
         List<InterceptorWithPriority> interceptors = new ArrayList<>();
-        ServiceLoader<ConfigSourceInterceptor> interceptorLoader = ServiceLoader.load(ConfigSourceInterceptor.class,
-                classLoader);
-        for (ConfigSourceInterceptor configSourceInterceptor : interceptorLoader) {
+        for (ConfigSourceInterceptor configSourceInterceptor : discover(ConfigSourceInterceptor.class)) {
             interceptors.add(new InterceptorWithPriority(configSourceInterceptor));
         }
 
-        ServiceLoader<ConfigSourceInterceptorFactory> interceptorFactoryLoader = ServiceLoader
-                .load(ConfigSourceInterceptorFactory.class, classLoader);
-        for (ConfigSourceInterceptorFactory interceptor : interceptorFactoryLoader) {
+        for (ConfigSourceInterceptorFactory interceptor : discover(ConfigSourceInterceptorFactory.class)) {
             interceptors.add(new InterceptorWithPriority(interceptor));
         }
 
@@ -147,14 +150,88 @@ public class SmallRyeConfigBuilder implements ConfigBuilder {
     }
 
     ConfigValidator discoverValidator() {
-        ServiceLoader<ConfigValidator> validatorLoader = ServiceLoader.load(ConfigValidator.class, classLoader);
-        Iterator<ConfigValidator> iterator = validatorLoader.iterator();
-        if (iterator.hasNext()) {
-            return iterator.next();
+        List<String> types = discoverTypes(ConfigValidator.class);
+        if (!types.isEmpty()) {
+            return newInstance(ConfigValidator.class, types.get(0));
         }
         return ConfigValidator.EMPTY;
     }
 
+    /**
+     * Instantiates the service providers visible to the class loader. Only the provider class names are
+     * looked up with {@link ServiceLoader}, they are cached per class loader so that building further configs
+     * does not scan the class path again.
+     */
+    private <S> List<S> discover(Class<S> service) {
+        List<S> instances = new ArrayList<>();
+        for (String type : discoverTypes(service)) {
+            instances.add(newInstance(service, type));
+        }
+        return instances;
+    }
+
+    private List<String> discoverTypes(Class<?> service) {
+        ClassLoader loader = getServiceClassLoader();
+        Map<String, List<String>> types;
+        synchronized (DISCOVERED_TYPES) {
+            types = DISCOVERED_TYPES.computeIfAbsent(loader, SmallRyeConfigBuilder::loadServicesSnapshot);
+        }
+        return types.computeIfAbsent(service.getName(), name -> ServiceLoader.load(service, loader).stream()
+                .map(provider -> provider.type().getName())
+                .collect(Collectors.toList()));
+    }
+
+    private <S> S newInstance(Class<S> service, String type) {
+        try {
+            return service.cast(Class.forName(type, true, getServiceClassLoader()).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new ServiceConfigurationError(service.getName() + ": Provider " + type + " could not be instantiated", e);
+        }
+    }
+
+    private ClassLoader getServiceClassLoader() {
+        return classLoader != null ? classLoader : ClassLoader.getSystemClassLoader();
+    }
+
+    /**
+     * Reads the provider class names recorded when the uber JAR was generated. The snapshot is only trusted
+     * for the system class loader while the uber JAR is the whole class path, i.e. when the class path is
+     * known to be unchanged since the snapshot was written.
+     */
+    private static Map<String, List<String>> loadServicesSnapshot(ClassLoader loader) {
+        if (loader != ClassLoader.getSystemClassLoader()) {
+            return new ConcurrentHashMap<>();
+        }
+        return readServicesSnapshot(loader.getResource(CONFIG_SERVICES_SNAPSHOT), System.getProperty("java.class.path"));
+    }
+
+    static Map<String, List<String>> readServicesSnapshot(URL url, String classPath) {
+        Map<String, List<String>> types = new ConcurrentHashMap<>();
+        if (classPath == null || classPath.contains(File.pathSeparator) || url == null
+                || !"jar".equals(url.getProtocol())) {
+            return types;
+        }
+        try {
+            String jar = url.getPath().substring(0, url.getPath().indexOf("!/"));
+            if (!Paths.get(new URI(jar)).equals(Paths.get(classPath).toAbsolutePath().normalize())) {
+                return types;
+            }
+            Properties snapshot = new Properties();
+            try (InputStream in = url.openStream()) {
+                snapshot.load(in);
+            }
+            for (String service : snapshot.stringPropertyNames()) {
+                types.put(service, Stream.of(snapshot.getProperty(service).split(","))
+                        .map(String::trim)
+                        .filter(type -> !type.isEmpty())
+                        .collect(Collectors.toList()));
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            types.clear();
+        }
+        return types;
+    }
+
     @Override
     public SmallRyeConfigBuilder addDefaultSources() {
         addDefaultSources = true;
@@ -297,6 +374,22 @@ public class SmallRyeConfigBuilder implements ConfigBuilder {
             }
         }));
         interceptors.add(new InterceptorWithPriority(new SecretKeysConfigSourceInterceptor(secretKeys)));
+        interceptors.add(new InterceptorWithPriority(new ConfigSourceInterceptorFactory() {
+            @Override
+            public ConfigSourceInterceptor getInterceptor(final ConfigSourceInterceptorContext context) {
+                ConfigValue enabled = context.proceed(CachingConfigSourceInterceptor.CACHE_ENABLED);
+                if (enabled != null && Boolean.parseBoolean(enabled.getValue())) {
+                    return new CachingConfigSourceInterceptor(secretKeys);
+                }
+                return (ctx, name) -> ctx.proceed(name);
+            }
+
+            @Override
+            public OptionalInt getPriority() {
+                // outermost, so that the cached values are fully resolved
+                return OptionalInt.of(Integer.MAX_VALUE);
+            }
+        }));
 
         return interceptors;
     }
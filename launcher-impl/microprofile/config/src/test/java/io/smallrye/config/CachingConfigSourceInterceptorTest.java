@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.microprofile.config.spi.ConfigSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the values cached by {@link CachingConfigSourceInterceptor} and their invalidation.
+ */
+public class CachingConfigSourceInterceptorTest {
+
+    @Test
+    public void testValuesAreCachedUntilInvalidated() {
+        MutableConfigSource source = new MutableConfigSource(true);
+        source.properties.put("greeting", "hello");
+        SmallRyeConfig config = build(source);
+
+        assertEquals("hello", config.getValue("greeting", String.class));
+        source.properties.put("greeting", "bye");
+        assertEquals("hello", config.getValue("greeting", String.class));
+
+        CachingConfigSourceInterceptor.invalidate("greeting");
+        assertEquals("bye", config.getValue("greeting", String.class));
+    }
+
+    @Test
+    public void testMissesAreCachedUntilInvalidated() {
+        MutableConfigSource source = new MutableConfigSource(true);
+        SmallRyeConfig config = build(source);
+
+        assertFalse(config.getOptionalValue("late", String.class).isPresent());
+        source.properties.put("late", "value");
+        assertFalse(config.getOptionalValue("late", String.class).isPresent());
+
+        CachingConfigSourceInterceptor.invalidateAll();
+        assertEquals("value", config.getValue("late", String.class));
+    }
+
+    @Test
+    public void testExpressionsAreCachedResolved() {
+        MutableConfigSource source = new MutableConfigSource(true);
+        source.properties.put("host", "localhost");
+        source.properties.put("url", "http://${host}/");
+        SmallRyeConfig config = build(source);
+
+        assertEquals("http://localhost/", config.getValue("url", String.class));
+        source.properties.put("host", "example.com");
+        assertEquals("http://localhost/", config.getValue("url", String.class));
+
+        CachingConfigSourceInterceptor.invalidate("url");
+        assertEquals("http://example.com/", config.getValue("url", String.class));
+    }
+
+    @Test
+    public void testValuesAreNotCachedByDefault() {
+        MutableConfigSource source = new MutableConfigSource(false);
+        source.properties.put("greeting", "hello");
+        SmallRyeConfig config = build(source);
+
+        assertEquals("hello", config.getValue("greeting", String.class));
+        source.properties.put("greeting", "bye");
+        assertEquals("bye", config.getValue("greeting", String.class));
+    }
+
+    private static SmallRyeConfig build(ConfigSource source) {
+        return new SmallRyeConfigBuilder().addDefaultInterceptors().withSources(source).build();
+    }
+
+    static class MutableConfigSource implements ConfigSource {
+        final Map<String, String> properties = new ConcurrentHashMap<>();
+
+        MutableConfigSource(boolean cacheEnabled) {
+            if (cacheEnabled) {
+                properties.put(CachingConfigSourceInterceptor.CACHE_ENABLED, "true");
+            }
+        }
+
+        @Override
+        public Set<String> getPropertyNames() {
+            return properties.keySet();
+        }
+
+        @Override
+        public String getValue(String propertyName) {
+            return properties.get(propertyName);
+        }
+
+        @Override
+        public String getName() {
+            return "mutable";
+        }
+    }
+}
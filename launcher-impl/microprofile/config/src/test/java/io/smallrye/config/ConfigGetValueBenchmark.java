@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@code Config.getValue} with and without the
+ * {@link CachingConfigSourceInterceptor}, for a plain value, a value with an
+ * expression, a profile-specific value and a missing property, behind a
+ * number of config sources.
+ *
+ * <p>Run with {@code java -cp <test class path> org.openjdk.jmh.Main ConfigGetValueBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigGetValueBenchmark {
+
+    @Param({ "false", "true" })
+    boolean cached;
+
+    @Param({ "1", "8" })
+    int sourceCount;
+
+    private SmallRyeConfig config;
+
+    @Setup
+    public void setUp() {
+        SmallRyeConfigBuilder builder = new SmallRyeConfigBuilder().addDefaultInterceptors();
+        for (int i = 0; i < sourceCount; i++) {
+            Map<String, String> properties = new HashMap<>();
+            for (int j = 0; j < 50; j++) {
+                properties.put("source" + i + ".property" + j, "value" + j);
+            }
+            builder.withSources(new PropertiesConfigSource(properties, "source" + i, 100 + i));
+        }
+        Map<String, String> properties = new HashMap<>();
+        properties.put(CachingConfigSourceInterceptor.CACHE_ENABLED, Boolean.toString(cached));
+        properties.put(SmallRyeConfig.SMALLRYE_CONFIG_PROFILE, "prod");
+        properties.put("app.host", "localhost");
+        properties.put("app.url", "http://${app.host}:8080/");
+        properties.put("app.timeout", "1000");
+        properties.put("%prod.app.timeout", "5000");
+        builder.withSources(new PropertiesConfigSource(properties, "application", 50));
+        config = builder.build();
+    }
+
+    @Benchmark
+    public void plain(Blackhole blackhole) {
+        blackhole.consume(config.getValue("app.host", String.class));
+    }
+
+    @Benchmark
+    public void expression(Blackhole blackhole) {
+        blackhole.consume(config.getValue("app.url", String.class));
+    }
+
+    @Benchmark
+    public void profile(Blackhole blackhole) {
+        blackhole.consume(config.getValue("app.timeout", int.class));
+    }
+
+    @Benchmark
+    public void missing(Blackhole blackhole) {
+        blackhole.consume(config.getOptionalValue("app.missing", String.class));
+    }
+}
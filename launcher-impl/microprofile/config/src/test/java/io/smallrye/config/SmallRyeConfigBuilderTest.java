@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.smallrye.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests reading the config services snapshot of an uber JAR.
+ */
+public class SmallRyeConfigBuilderTest {
+
+    private Path jar;
+    private URL snapshot;
+
+    @BeforeEach
+    public void createJar() throws IOException {
+        jar = Files.createTempFile("uber-jar", ".jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            out.putNextEntry(new JarEntry(SmallRyeConfigBuilder.CONFIG_SERVICES_SNAPSHOT));
+            out.write(("org.eclipse.microprofile.config.spi.ConfigSource=a.First, a.Second\n"
+                    + "org.eclipse.microprofile.config.spi.Converter=\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.closeEntry();
+        }
+        snapshot = new URL("jar:" + jar.toUri() + "!/" + SmallRyeConfigBuilder.CONFIG_SERVICES_SNAPSHOT);
+    }
+
+    @AfterEach
+    public void deleteJar() throws IOException {
+        Files.deleteIfExists(jar);
+    }
+
+    @Test
+    public void testSnapshotOfTheWholeClassPathIsRead() {
+        Map<String, List<String>> types = SmallRyeConfigBuilder.readServicesSnapshot(snapshot, jar.toString());
+
+        assertEquals(List.of("a.First", "a.Second"), types.get("org.eclipse.microprofile.config.spi.ConfigSource"));
+        assertEquals(List.of(), types.get("org.eclipse.microprofile.config.spi.Converter"));
+    }
+
+    @Test
+    public void testSnapshotIsIgnoredWhenTheClassPathChanged() {
+        assertTrue(SmallRyeConfigBuilder.readServicesSnapshot(snapshot,
+                jar + File.pathSeparator + "other.jar").isEmpty());
+        assertTrue(SmallRyeConfigBuilder.readServicesSnapshot(snapshot, "other.jar").isEmpty());
+    }
+
+    @Test
+    public void testMissingSnapshotIsEmpty() {
+        assertTrue(SmallRyeConfigBuilder.readServicesSnapshot(null, jar.toString()).isEmpty());
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.jwt.auth;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.lang.JoseException;
+
+/**
+ * Keeps the verification keys of a JWKS document loaded from an {@code http:}, {@code https:} or {@code file:}
+ * location. The keys are loaded eagerly and refreshed in the background before they expire, and lookups by
+ * {@code kid} read an immutable index without blocking. Lookups of unknown {@code kid}s trigger a refetch at
+ * most once per minimum refetch interval; concurrent lookups wait for the same refetch, which runs on the
+ * refresh thread like the scheduled refreshes.
+ */
+public class JwksManager implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(JwksManager.class.getName());
+    private static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)");
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI location;
+    private final Duration refreshInterval;
+    private final Duration minRefetchInterval;
+    private final Runnable rotationListener;
+    private final ScheduledExecutorService scheduler;
+    private final HttpClient httpClient;
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+    private volatile long lastFetch;
+    private final AtomicReference<CompletableFuture<Void>> refetch = new AtomicReference<>();
+
+    /**
+     * @param location the JWKS location
+     * @param refreshInterval the refresh interval used when the document does not specify its lifetime
+     * @param minRefetchInterval the minimum interval between refetches triggered by unknown {@code kid}s
+     * @param rotationListener notified after the key set has changed, may be {@code null}
+     */
+    public JwksManager(URI location, Duration refreshInterval, Duration minRefetchInterval,
+            Runnable rotationListener) {
+        this.location = location;
+        this.refreshInterval = refreshInterval;
+        this.minRefetchInterval = minRefetchInterval;
+        this.rotationListener = rotationListener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = isHttp(location) ? HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build() : null;
+    }
+
+    public static boolean isSupported(String location) {
+        return location != null
+                && (location.startsWith("http:") || location.startsWith("https:") || location.startsWith("file:"));
+    }
+
+    /**
+     * Loads the keys and schedules the background refresh.
+     *
+     * @throws IOException if the keys can't be loaded or the location is not a JWKS document
+     */
+    public void start() throws IOException {
+        Duration lifetime = refresh();
+        schedule(lifetime);
+    }
+
+    /**
+     * Returns the key for the {@code kid}, or the only key when {@code kid} is {@code null}. An unknown
+     * {@code kid} causes a refetch unless one was made within the minimum refetch interval.
+     */
+    public PublicKey getKey(String kid) {
+        PublicKey key = lookup(keys, kid);
+        if (key != null || kid == null) {
+            return key;
+        }
+        CompletableFuture<Void> pending = refetch.get();
+        if (pending == null) {
+            if (System.nanoTime() - lastFetch < minRefetchInterval.toNanos()) {
+                // a refetch may just have completed
+                return lookup(keys, kid);
+            }
+            pending = startRefetch();
+        }
+        if (pending != null) {
+            try {
+                pending.get(FETCH_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                // the key stays unknown
+            }
+        }
+        return lookup(keys, kid);
+    }
+
+    /**
+     * Submits a refetch to the refresh thread unless one is pending already, and returns the pending one.
+     */
+    private CompletableFuture<Void> startRefetch() {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        if (!refetch.compareAndSet(null, created)) {
+            return refetch.get();
+        }
+        try {
+            scheduler.execute(() -> {
+                try {
+                    refresh();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "JWKS can't be loaded from " + location, e);
+                } finally {
+                    refetch.set(null);
+                    created.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+            refetch.set(null);
+            created.complete(null);
+        }
+        return created;
+    }
+
+    public Map<String, PublicKey> getKeys() {
+        return keys;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static PublicKey lookup(Map<String, PublicKey> keys, String kid) {
+        if (kid == null) {
+            return keys.size() == 1 ? keys.values().iterator().next() : null;
+        }
+        return keys.get(kid);
+    }
+
+    /**
+     * Returns the delay of the next refresh: before the keys expire, but not more often than refetches of
+     * unknown {@code kid}s, so that a document with a very short lifetime does not cause a refresh loop.
+     */
+    long getRefreshDelayMillis(Duration lifetime) {
+        return Math.max(Math.max(1000, minRefetchInterval.toMillis()), lifetime.toMillis() * 4 / 5);
+    }
+
+    private void schedule(Duration lifetime) {
+        long delay = getRefreshDelayMillis(lifetime);
+        scheduler.schedule(() -> {
+            Duration next = refreshInterval;
+            try {
+                next = refresh();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "JWKS can't be refreshed from " + location, e);
+                next = minRefetchInterval;
+            } finally {
+                if (!scheduler.isShutdown()) {
+                    schedule(next);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches the document and replaces the key index. Returns the lifetime of the document. Called by
+     * {@link #start()} before the refresh thread is used, and by the refresh thread afterwards.
+     */
+    private Duration refresh() throws IOException {
+        lastFetch = System.nanoTime();
+        Duration lifetime = refreshInterval;
+        String content;
+        if (httpClient != null) {
+            HttpRequest request = HttpRequest.newBuilder(location).timeout(FETCH_TIMEOUT).GET().build();
+            HttpResponse<String> response;
+            try {
+                response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Unexpected status " + response.statusCode());
+            }
+            content = response.body();
+            Matcher maxAge = MAX_AGE.matcher(response.headers().firstValue("Cache-Control").orElse(""));
+            if (maxAge.find()) {
+                lifetime = Duration.ofSeconds(Long.parseLong(maxAge.group(1)));
+            }
+        } else {
+            content = new String(Files.readAllBytes(Paths.get(location)), StandardCharsets.UTF_8);
+        }
+
+        Map<String, PublicKey> loaded = new HashMap<>();
+        try {
+            for (JsonWebKey jwk : new JsonWebKeySet(content).getJsonWebKeys()) {
+                if (jwk instanceof PublicJsonWebKey && (jwk.getUse() == null || JsonWebKey.SIGNATURE.equals(jwk.getUse()))) {
+                    loaded.put(jwk.getKeyId() == null ? "" : jwk.getKeyId(), ((PublicJsonWebKey) jwk).getPublicKey());
+                }
+            }
+        } catch (JoseException e) {
+            throw new IOException("Not a JWKS document: " + location, e);
+        }
+        if (loaded.isEmpty()) {
+            throw new IOException("No verification key found: " + location);
+        }
+
+        Map<String, PublicKey> previous = keys;
+        keys = Collections.unmodifiableMap(loaded);
+        if (!previous.isEmpty() && !previous.equals(loaded)) {
+            LOGGER.log(Level.INFO, "JWKS keys were rotated: {0}", loaded.keySet());
+            if (rotationListener != null) {
+                rotationListener.run();
+            }
+        }
+        return lifetime;
+    }
+
+    private static boolean isHttp(URI location) {
+        return "http".equals(location.getScheme()) || "https".equals(location.getScheme());
+    }
+}
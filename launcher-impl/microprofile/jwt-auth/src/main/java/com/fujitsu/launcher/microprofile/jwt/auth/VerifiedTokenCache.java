@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.jwt.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+
+/**
+ * Bounded cache of successfully verified tokens, keyed by the SHA-256 digest of the raw token.
+ * An entry is used until the token expires or the verification keys may have changed.
+ * <p>
+ * The cache is split into stripes, each locked on its own and dropping its least recently used token once full.
+ */
+public class VerifiedTokenCache {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder verifications = new LongAdder();
+    private final LongAdder verificationNanos = new LongAdder();
+    private final List<Statistic> statistics = new ArrayList<>();
+
+    public VerifiedTokenCache(int maxSize) {
+        this(maxSize, Integer.highestOneBit(Math.max(1, Math.min(STRIPES, maxSize))));
+    }
+
+    VerifiedTokenCache(int maxSize, int stripeCount) {
+        int capacity = Math.max(1, maxSize / stripeCount);
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Returns the verified token for the raw token, or {@code null} when it has to be verified.
+     */
+    public JsonWebToken get(String digest) {
+        return get(digest, System.currentTimeMillis());
+    }
+
+    JsonWebToken get(String digest, long now) {
+        Stripe stripe = getStripe(digest);
+        CachedToken entry;
+        synchronized (stripe) {
+            entry = stripe.get(digest);
+            if (entry != null && now >= entry.expires) {
+                stripe.remove(digest);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.token;
+    }
+
+    public void put(String digest, JsonWebToken token, long expires) {
+        put(digest, token, expires, System.currentTimeMillis());
+    }
+
+    void put(String digest, JsonWebToken token, long expires, long now) {
+        if (expires <= now) {
+            return;
+        }
+        Stripe stripe = getStripe(digest);
+        synchronized (stripe) {
+            stripe.put(digest, new CachedToken(token, expires));
+        }
+    }
+
+    /**
+     * Drops all entries, e.g. after the verification keys have been rotated.
+     */
+    public void invalidateAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public void recordVerification(long nanos) {
+        verifications.increment();
+        verificationNanos.add(nanos);
+    }
+
+    public static String digest(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void registerStatistics() {
+        Map<String, String> tags = Map.of();
+        statistics.add(LauncherStatistics.register("jwt.cache.hits",
+                "Number of tokens found in the verified token cache", null, tags, hits::sum));
+        statistics.add(LauncherStatistics.register("jwt.cache.misses",
+                "Number of tokens not found in the verified token cache", null, tags, misses::sum));
+        statistics.add(LauncherStatistics.register("jwt.cache.hitRatio",
+                "Ratio of tokens found in the verified token cache", null, tags, this::getHitRatio));
+        statistics.add(LauncherStatistics.register("jwt.cache.size",
+                "Number of tokens in the verified token cache", null, tags, this::size));
+        statistics.add(LauncherStatistics.register("jwt.verifications",
+                "Number of token signature verifications", null, tags, verifications::sum));
+        statistics.add(LauncherStatistics.register("jwt.verificationTime",
+                "Total time spent parsing and verifying tokens", "milliseconds", tags,
+                () -> verificationNanos.sum() / 1_000_000));
+    }
+
+    public void unregisterStatistics() {
+        LauncherStatistics.unregisterAll(statistics);
+    }
+
+    private Stripe getStripe(String digest) {
+        int hash = digest.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, CachedToken> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedToken> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    private static final class CachedToken {
+        private final JsonWebToken token;
+        private final long expires;
+
+        CachedToken(JsonWebToken token, long expires) {
+            this.token = token;
+            this.expires = expires;
+        }
+    }
+}
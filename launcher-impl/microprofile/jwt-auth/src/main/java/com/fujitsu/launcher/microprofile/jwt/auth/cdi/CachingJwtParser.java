@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.jwt.auth.cdi;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jose4j.json.JsonUtil;
+import org.jose4j.lang.JoseException;
+
+import com.fujitsu.launcher.microprofile.jwt.auth.JwksManager;
+import com.fujitsu.launcher.microprofile.jwt.auth.VerifiedTokenCache;
+
+import io.smallrye.jwt.auth.principal.DefaultJWTParser;
+import io.smallrye.jwt.auth.principal.JWTAuthContextInfo;
+import io.smallrye.jwt.auth.principal.ParseException;
+
+// Skips signature verification and parsing of bearer tokens that have been verified before,
+// and verifies the others with the keys prefetched from a JWKS location.
+@ApplicationScoped
+public class CachingJwtParser extends DefaultJWTParser {
+
+    private static final String CONFIG_CACHE_ENABLED = "com.fujitsu.launcher.jwt.cache.enabled";
+    private static final String CONFIG_CACHE_MAX_SIZE = "com.fujitsu.launcher.jwt.cache.maxSize";
+    private static final String CONFIG_JWKS_PREFETCH = "com.fujitsu.launcher.jwt.jwks.prefetch";
+    private static final String CONFIG_JWKS_MIN_REFETCH_INTERVAL = "com.fujitsu.launcher.jwt.jwks.minRefetchInterval";
+
+    @Inject
+    JWTAuthContextInfo contextInfo;
+
+    private VerifiedTokenCache cache;
+    private JwksManager jwksManager;
+
+    public CachingJwtParser() {
+    }
+
+    CachingJwtParser(JWTAuthContextInfo contextInfo) {
+        super(contextInfo);
+        this.contextInfo = contextInfo;
+    }
+
+    @PostConstruct
+    void init() {
+        Config config = ConfigProvider.getConfig();
+        if (config.getOptionalValue(CONFIG_CACHE_ENABLED, boolean.class).orElse(true)) {
+            cache = new VerifiedTokenCache(config.getOptionalValue(CONFIG_CACHE_MAX_SIZE, int.class).orElse(1000));
+            cache.registerStatistics();
+        }
+        if (config.getOptionalValue(CONFIG_JWKS_PREFETCH, boolean.class).orElse(true) && isJwksManageable()) {
+            startJwksManager(config.getOptionalValue(CONFIG_JWKS_MIN_REFETCH_INTERVAL, long.class).orElse(30L));
+        }
+    }
+
+    // instantiates the parser at deployment, so that the keys are loaded before the first request
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+    }
+
+    @PreDestroy
+    void destroy() {
+        if (cache != null) {
+            cache.unregisterStatistics();
+        }
+        if (jwksManager != null) {
+            jwksManager.close();
+        }
+    }
+
+    @Override
+    public JsonWebToken parse(String token) throws ParseException {
+        if (cache == null) {
+            return verifyToken(token);
+        }
+        String digest = VerifiedTokenCache.digest(token);
+        JsonWebToken jwt = cache.get(digest);
+        if (jwt == null) {
+            long start = System.nanoTime();
+            jwt = verifyToken(token);
+            cache.recordVerification(System.nanoTime() - start);
+            cache.put(digest, jwt, getCacheExpiry(jwt));
+        }
+        return jwt;
+    }
+
+    private JsonWebToken verifyToken(String token) throws ParseException {
+        if (jwksManager == null) {
+            return super.parse(token);
+        }
+        Map<String, Object> header = parseHeader(token);
+        if (header == null || header.containsKey("enc")) {
+            // malformed or encrypted tokens take the default path
+            return super.parse(token);
+        }
+        Object kid = header.get("kid");
+        PublicKey key = jwksManager.getKey(kid == null ? null : kid.toString());
+        if (key == null) {
+            if (kid == null) {
+                return super.parse(token);
+            }
+            throw new ParseException("No verification key found for kid " + kid);
+        }
+        return verify(token, key);
+    }
+
+    private static Map<String, Object> parseHeader(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            return JsonUtil.parseJson(new String(Base64.getUrlDecoder().decode(token.substring(0, dot)),
+                    StandardCharsets.UTF_8));
+        } catch (JoseException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean isJwksManageable() {
+        // TLS and proxy customizations are left to the default key resolution
+        return JwksManager.isSupported(contextInfo.getPublicKeyLocation())
+                && contextInfo.getTlsCertificatePath() == null
+                && !contextInfo.isTlsTrustAll()
+                && contextInfo.getHttpProxyHost() == null;
+    }
+
+    private void startJwksManager(long minRefetchInterval) {
+        Integer refreshInterval = contextInfo.getJwksRefreshInterval();
+        JwksManager manager = new JwksManager(URI.create(contextInfo.getPublicKeyLocation()),
+                Duration.ofMinutes(refreshInterval == null ? 60 : refreshInterval),
+                Duration.ofSeconds(minRefetchInterval),
+                () -> {
+                    if (cache != null) {
+                        cache.invalidateAll();
+                    }
+                });
+        try {
+            manager.start();
+            jwksManager = manager;
+        } catch (IOException | RuntimeException e) {
+            manager.close();
+            Logger.getLogger(this.getClass().getName()).log(Level.FINE,
+                    "Keys are not prefetched from " + contextInfo.getPublicKeyLocation(), e);
+        }
+    }
+
+    public VerifiedTokenCache getCache() {
+        return cache;
+    }
+
+    /**
+     * A verified token can be reused until it expires, exceeds the configured token age, or, when the keys are
+     * loaded from a location without prefetching, until they may have been refreshed. Prefetched keys invalidate
+     * the cache when they are rotated.
+     */
+    private long getCacheExpiry(JsonWebToken jwt) {
+        if (jwt.getExpirationTime() <= 0) {
+            return 0;
+        }
+        long expires = TimeUnit.SECONDS.toMillis(jwt.getExpirationTime());
+        Long tokenAge = contextInfo.getTokenAge();
+        if (tokenAge != null && jwt.getIssuedAtTime() > 0) {
+            expires = Math.min(expires, TimeUnit.SECONDS.toMillis(jwt.getIssuedAtTime() + tokenAge));
+        }
+        if (jwksManager == null && contextInfo.getPublicKeyLocation() != null
+                && contextInfo.getJwksRefreshInterval() != null) {
+            expires = Math.min(expires, System.currentTimeMillis()
+                    + TimeUnit.MINUTES.toMillis(contextInfo.getJwksRefreshInterval()));
+        }
+        return expires;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.jwt.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.lang.JoseException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class JwksManagerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testKeysAreLoadedEagerly() throws Exception {
+        RsaJsonWebKey key1 = generateKey("key1");
+        RsaJsonWebKey key2 = generateKey("key2");
+        Path jwks = writeJwks(key1, key2);
+
+        try (JwksManager manager = new JwksManager(jwks.toUri(), Duration.ofHours(1), Duration.ofHours(1), null)) {
+            manager.start();
+            assertEquals(2, manager.getKeys().size());
+            assertEquals(key1.getPublicKey(), manager.getKey("key1"));
+            assertEquals(key2.getPublicKey(), manager.getKey("key2"));
+            // without kid only a single key can be selected
+            assertNull(manager.getKey(null));
+        }
+    }
+
+    @Test
+    public void testUnknownKidRefetchIsRateLimited() throws Exception {
+        RsaJsonWebKey key1 = generateKey("key1");
+        Path jwks = writeJwks(key1);
+        AtomicInteger rotations = new AtomicInteger();
+
+        try (JwksManager manager = new JwksManager(jwks.toUri(), Duration.ofHours(1), Duration.ZERO,
+                rotations::incrementAndGet)) {
+            manager.start();
+            assertEquals(key1.getPublicKey(), manager.getKey(null));
+
+            RsaJsonWebKey key2 = generateKey("key2");
+            writeJwks(key1, key2);
+            assertEquals(key2.getPublicKey(), manager.getKey("key2"));
+            assertEquals(1, rotations.get());
+        }
+
+        writeJwks(key1);
+        try (JwksManager manager = new JwksManager(jwks.toUri(), Duration.ofHours(1), Duration.ofHours(1),
+                rotations::incrementAndGet)) {
+            manager.start();
+            RsaJsonWebKey key3 = generateKey("key3");
+            writeJwks(key1, key3);
+            // the refetch interval has not elapsed since the initial fetch
+            assertNull(manager.getKey("key3"));
+            assertEquals(1, rotations.get());
+        }
+    }
+
+    @Test
+    public void testNotJwksDocument() throws Exception {
+        Path pem = Files.write(dir.resolve("key.pem"),
+                "-----BEGIN PUBLIC KEY-----".getBytes(StandardCharsets.US_ASCII));
+
+        try (JwksManager manager = new JwksManager(pem.toUri(), Duration.ofHours(1), Duration.ofHours(1), null)) {
+            assertThrows(IOException.class, manager::start);
+        }
+    }
+
+    @Test
+    public void testConcurrentUnknownKidLookupsShareOneRefetch() throws Exception {
+        RsaJsonWebKey key1 = generateKey("key1");
+        RsaJsonWebKey key2 = generateKey("key2");
+        AtomicReference<String> jwks = new AtomicReference<>(new JsonWebKeySet(key1).toJson());
+        AtomicInteger fetches = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jwks", exchange -> {
+            fetches.incrementAndGet();
+            try {
+                // keeps the refetch in flight while the lookups arrive
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = jwks.get().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        ExecutorService lookups = Executors.newFixedThreadPool(8);
+        URI location = URI.create("http://localhost:" + server.getAddress().getPort() + "/jwks");
+        try (JwksManager manager = new JwksManager(location, Duration.ofHours(1), Duration.ZERO, null)) {
+            manager.start();
+            jwks.set(new JsonWebKeySet(key1, key2).toJson());
+
+            List<Future<PublicKey>> keys = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                keys.add(lookups.submit(() -> manager.getKey("key2")));
+            }
+            for (Future<PublicKey> key : keys) {
+                assertEquals(key2.getPublicKey(), key.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, fetches.get());
+        } finally {
+            lookups.shutdownNow();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRefreshIsNotMoreFrequentThanRefetches() {
+        try (JwksManager manager = new JwksManager(URI.create("file:/jwks.json"), Duration.ofHours(1),
+                Duration.ofSeconds(30), null)) {
+            // max-age=0
+            assertEquals(30_000, manager.getRefreshDelayMillis(Duration.ZERO));
+            assertEquals(48 * 60_000, manager.getRefreshDelayMillis(Duration.ofHours(1)));
+        }
+    }
+
+    private static RsaJsonWebKey generateKey(String kid) throws JoseException {
+        RsaJsonWebKey key = RsaJwkGenerator.generateJwk(2048);
+        key.setKeyId(kid);
+        return key;
+    }
+
+    private Path writeJwks(RsaJsonWebKey... keys) throws IOException {
+        return Files.write(dir.resolve("jwks.json"), new JsonWebKeySet(keys).toJson().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.jwt.auth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.junit.jupiter.api.Test;
+
+public class VerifiedTokenCacheTest {
+
+    @Test
+    public void testTokenIsCachedUntilItExpires() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        JsonWebToken token = new TestToken("a");
+
+        cache.put("a", token, 2000, 1000);
+
+        assertSame(token, cache.get("a", 1999));
+        assertNull(cache.get("a", 2000));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testExpiredTokenIsNotCached() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+
+        cache.put("a", new TestToken("a"), 1000, 1000);
+
+        assertNull(cache.get("a", 1000));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTokenIsEvicted() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2, 1);
+        JsonWebToken a = new TestToken("a");
+        JsonWebToken c = new TestToken("c");
+
+        cache.put("a", a, 2000, 1000);
+        cache.put("b", new TestToken("b"), 2000, 1000);
+        cache.get("a", 1000);
+        cache.put("c", c, 2000, 1000);
+
+        assertSame(a, cache.get("a", 1000));
+        assertNull(cache.get("b", 1000));
+        assertSame(c, cache.get("c", 1000));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        for (int i = 0; i < 1000; i++) {
+            String digest = VerifiedTokenCache.digest("token" + i);
+            cache.put(digest, new TestToken(digest), 2000, 1000);
+        }
+
+        assertTrue(cache.size() <= 100);
+        assertTrue(cache.size() > 0);
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        cache.put("a", new TestToken("a"), 2000, 1000);
+
+        cache.invalidateAll();
+
+        assertNull(cache.get("a", 1000));
+    }
+
+    static class TestToken implements JsonWebToken {
+        private final String name;
+
+        TestToken(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Set<String> getClaimNames() {
+            return Set.of();
+        }
+
+        @Override
+        public <T> T getClaim(String claimName) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.jwt.auth.cdi;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.lang.JoseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.smallrye.jwt.auth.principal.JWTAuthContextInfo;
+import io.smallrye.jwt.auth.principal.ParseException;
+
+public class CachingJwtParserTest {
+
+    private static final String ISSUER = "https://issuer.example.com";
+
+    static RsaJsonWebKey key;
+
+    CachingJwtParser parser;
+
+    @BeforeAll
+    public static void generateKey() throws JoseException {
+        key = RsaJwkGenerator.generateJwk(2048);
+    }
+
+    @BeforeEach
+    public void createParser() {
+        parser = new CachingJwtParser(new JWTAuthContextInfo(key.getRsaPublicKey(), ISSUER));
+        parser.init();
+    }
+
+    @AfterEach
+    public void destroyParser() {
+        parser.destroy();
+    }
+
+    @Test
+    public void testVerifiedTokenIsReused() throws Exception {
+        String token = sign(key, "alice", NumericDate.now().getValue() + 300);
+
+        JsonWebToken jwt = parser.parse(token);
+
+        assertEquals("alice", jwt.getName());
+        assertSame(jwt, parser.parse(token));
+        assertEquals("bob", parser.parse(sign(key, "bob", NumericDate.now().getValue() + 300)).getName());
+    }
+
+    @Test
+    public void testRejectedTokenIsNotCached() throws Exception {
+        String token = sign(RsaJwkGenerator.generateJwk(2048), "alice", NumericDate.now().getValue() + 300);
+
+        assertThrows(ParseException.class, () -> parser.parse(token));
+        assertThrows(ParseException.class, () -> parser.parse(token));
+        assertEquals(0, parser.getCache().size());
+    }
+
+    @Test
+    public void testTokenIsVerifiedAgainOnceExpired() throws Exception {
+        long expires = NumericDate.now().getValue() + 1;
+        String token = sign(key, "alice", expires);
+
+        JsonWebToken jwt = parser.parse(token);
+        while (System.currentTimeMillis() < expires * 1000) {
+            Thread.sleep(100);
+        }
+
+        // still accepted within the default expiration grace period, but not from the cache
+        assertNotSame(jwt, parser.parse(token));
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        long expires = NumericDate.now().getValue() + 300;
+        for (int i = 0; i < 1100; i++) {
+            parser.parse(sign(key, "user" + i, expires));
+        }
+
+        // the default maximum size
+        assertTrue(parser.getCache().size() <= 1000);
+    }
+
+    private static String sign(RsaJsonWebKey signingKey, String subject, long expires) throws JoseException {
+        JwtClaims claims = new JwtClaims();
+        claims.setIssuer(ISSUER);
+        claims.setSubject(subject);
+        claims.setClaim("upn", subject);
+        claims.setIssuedAtToNow();
+        claims.setExpirationTime(NumericDate.fromSeconds(expires));
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setKey(signingKey.getPrivateKey());
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
+        jws.setHeader("typ", "JWT");
+        return jws.getCompactSerialization();
+    }
+}
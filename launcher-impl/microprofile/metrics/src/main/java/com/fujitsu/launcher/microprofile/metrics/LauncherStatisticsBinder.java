@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights
+ * reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package com.fujitsu.launcher.microprofile.metrics;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+
+/**
+ * Publishes {@link LauncherStatistics} into a metric registry as gauges.
+ */
+class LauncherStatisticsBinder {
+
+    private final Map<MetricID, Statistic> bound = new HashMap<>();
+    private long boundModificationCount = -1;
+
+    synchronized void bindTo(MetricRegistry registry) {
+        long modificationCount = LauncherStatistics.getModificationCount();
+        if (modificationCount == boundModificationCount) {
+            return;
+        }
+
+        Map<MetricID, Statistic> current = new HashMap<>();
+        for (Statistic statistic : LauncherStatistics.getStatistics()) {
+            current.put(toMetricID(statistic), statistic);
+        }
+
+        for (Iterator<Map.Entry<MetricID, Statistic>> it = bound.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<MetricID, Statistic> entry = it.next();
+            if (current.get(entry.getKey()) != entry.getValue()) {
+                registry.remove(entry.getKey());
+                it.remove();
+            }
+        }
+
+        for (Map.Entry<MetricID, Statistic> entry : current.entrySet()) {
+            if (bound.containsKey(entry.getKey())) {
+                continue;
+            }
+            Statistic statistic = entry.getValue();
+            Metadata metadata = Metadata.builder()
+                    .withName(statistic.getName())
+                    .withDescription(statistic.getDescription())
+                    .withUnit(statistic.getUnit())
+                    .build();
+            registry.gauge(metadata, statistic.getSupplier(), entry.getKey().getTagsAsArray());
+            bound.put(entry.getKey(), statistic);
+        }
+
+        boundModificationCount = modificationCount;
+    }
+
+    private static MetricID toMetricID(Statistic statistic) {
+        Tag[] tags = statistic.getTags().entrySet().stream()
+                .map(e -> new Tag(e.getKey(), e.getValue()))
+                .toArray(Tag[]::new);
+        return new MetricID(statistic.getName(), tags);
+    }
+}
@@ -23,6 +23,9 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.annotation.RegistryScope;
+
 import io.smallrye.metrics.MetricsRequestHandler;
 import io.smallrye.metrics.MetricsRequestHandler.Responder;
 
@@ -32,6 +35,12 @@ public class MetricsServlet extends HttpServlet {
     @Inject
     private MetricsRequestHandler handler;
 
+    @Inject
+    @RegistryScope(scope = MetricRegistry.VENDOR_SCOPE)
+    private MetricRegistry vendorRegistry;
+
+    private final LauncherStatisticsBinder statisticsBinder = new LauncherStatisticsBinder();
+
     @Override
     protected void doOptions(HttpServletRequest request, HttpServletResponse response) throws IOException {
         processRequest(request, response);
@@ -48,6 +57,10 @@ public class MetricsServlet extends HttpServlet {
             return;
         }
 
+        if (vendorRegistry != null) {
+            statisticsBinder.bindTo(vendorRegistry);
+        }
+
         Stream<String> acceptHeaders = Collections.list(request.getHeaders("Accept")).stream();
 
         Responder responder = new Responder() {
@@ -17,10 +17,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import jakarta.inject.Inject;
 
+import org.eclipse.microprofile.config.Config;
 import org.eclipse.microprofile.config.ConfigProvider;
 import org.glassfish.api.StartupRunLevel;
 import org.glassfish.api.deployment.archive.ReadableArchive;
@@ -41,6 +51,10 @@ import io.smallrye.openapi.api.OpenApiDocument;
 import io.smallrye.openapi.runtime.OpenApiProcessor;
 import io.smallrye.openapi.runtime.OpenApiStaticFile;
 import io.smallrye.openapi.runtime.io.Format;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.startup.StartupProfiler;
+
 /**
  *
  * @author Koki Kosaka
@@ -53,10 +67,56 @@ public class OpenApiService implements PostConstruct, EventListener {
     private static final String WEB_INF_CLASSES_PREFIX = "WEB-INF/classes/";
     private static final String CLASS_SUFFIX = ".class";
     private static final String JAR_SUFFIX = ".jar";
+    private static final String CONFIG_ASYNC = "com.fujitsu.launcher.openapi.async";
+
+    private static final Logger LOGGER = Logger.getLogger(OpenApiService.class.getName());
+
+    // Keyed by the class loader of the application whose model is built
+    private static final Map<ClassLoader, ModelBuild> BUILDS = new ConcurrentHashMap<>();
 
     @Inject
     private Events events;
 
+    /**
+     * Waits until the OpenAPI model of the application that owns the given
+     * class loader has been built. A build that has not started yet is run
+     * on the calling thread.
+     *
+     * @param classLoader the class loader of the application, or of one of
+     *        its modules
+     * @param timeout the maximum time to wait in milliseconds
+     * @return {@code true} if the model is built or no build is known for
+     *         the application, {@code false} if it is still being built
+     *         after the timeout
+     * @throws IllegalStateException if the model could not be built
+     */
+    static boolean awaitModel(ClassLoader classLoader, long timeout) {
+        ModelBuild build = findBuild(classLoader);
+        if (build == null) {
+            return true;
+        }
+        build.run();
+        return build.await(timeout);
+    }
+
+    static void register(ClassLoader classLoader, ModelBuild build) {
+        BUILDS.put(classLoader, build);
+    }
+
+    static void unregister(String application) {
+        BUILDS.values().removeIf(build -> build.application.equals(application));
+    }
+
+    private static ModelBuild findBuild(ClassLoader classLoader) {
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            ModelBuild build = BUILDS.get(loader);
+            if (build != null) {
+                return build;
+            }
+        }
+        return null;
+    }
+
     @Override
     public void postConstruct() {
         events.register(this);
@@ -65,6 +125,10 @@ public class OpenApiService implements PostConstruct, EventListener {
     @Override
     @SuppressWarnings("rawtypes")
     public void event(Event event) {
+        if (event.is(Deployment.APPLICATION_UNLOADED)) {
+            unregister(((ApplicationInfo) event.hook()).getName());
+            return;
+        }
         if (!event.is(Deployment.APPLICATION_LOADED)) {
             return;
         }
@@ -72,31 +136,67 @@ public class OpenApiService implements PostConstruct, EventListener {
         if (appInfo.getMetaData(WebBundleDescriptorImpl.class) == null) {
             return;
         }
-        openapi(appInfo);
+
+        Config mpConfig = ConfigProvider.getConfig(appInfo.getAppClassLoader());
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ModelBuild build = new ModelBuild(appInfo.getName(), () -> build(appInfo, mpConfig, contextClassLoader));
+        register(appInfo.getAppClassLoader(), build);
+        if (!mpConfig.getOptionalValue(CONFIG_ASYNC, Boolean.class).orElse(true)) {
+            build.run();
+            // rethrows the failure of the build, as the deployment did before
+            build.await(0);
+            return;
+        }
+
+        // Scanning the application does not affect its deployment, so the
+        // model is built while the deployment goes on. A request to
+        // /openapi that comes first runs the build itself.
+        Thread builder = new Thread(() -> {
+            ClassLoader original = Thread.currentThread().getContextClassLoader();
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+            try {
+                build.run();
+            } finally {
+                Thread.currentThread().setContextClassLoader(original);
+            }
+        }, "openapi-model-builder");
+        builder.setDaemon(true);
+        builder.start();
     }
 
-    private void openapi(ApplicationInfo appInfo) {
-        OpenApiConfig config = new OpenApiConfigImpl(ConfigProvider.getConfig(appInfo.getAppClassLoader()));
+    private void build(ApplicationInfo appInfo, Config mpConfig, ClassLoader contextClassLoader) {
+        // The document is shared by all applications, so the first web
+        // application to complete its build provides it.
+        synchronized (OpenApiDocument.INSTANCE) {
+            if (OpenApiDocument.INSTANCE.isSet()) {
+                return;
+            }
+            long start = System.nanoTime();
+            try (StartupProfiler.Span span = StartupProfiler.begin("openapi", "build " + appInfo.getName())) {
+                openapi(appInfo, mpConfig, contextClassLoader);
+            }
+            long buildTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            LauncherStatistics.register("openapi.modelBuildTime",
+                    "Time taken to build the OpenAPI model at startup", "milliseconds", Map.of(), () -> buildTime);
+            LOGGER.log(Level.FINE, "OpenAPI model of {0} built in {1} ms", new Object[] { appInfo.getName(), buildTime });
+        }
+    }
+
+    private void openapi(ApplicationInfo appInfo, Config mpConfig, ClassLoader contextClassLoader) {
+        OpenApiConfig config = new OpenApiConfigImpl(mpConfig);
         ReadableArchive gfArchive = appInfo.getSource();
         ClassLoader appClassLoader = appInfo.getAppClassLoader();
         IndexView index = getIndexForArchive(config, gfArchive, appClassLoader);
         OpenApiDocument doc = OpenApiDocument.INSTANCE;
-        if (doc.isSet()) {
-            return;
-        }
         OpenApiStaticFile staticFile = getOpenApiStaticFile(appClassLoader);
         doc.config(config);
         doc.modelFromStaticFile(OpenApiProcessor.modelFromStaticFile(config, staticFile));
         doc.modelFromAnnotations(OpenApiProcessor.modelFromAnnotations(config, index));
-        doc.modelFromReader(OpenApiProcessor.modelFromReader(config, getContextClassLoader()));
+        doc.modelFromReader(OpenApiProcessor.modelFromReader(config, contextClassLoader));
         doc.filter(OpenApiProcessor.getFilter(config, appClassLoader));
         doc.initialize();
     }
 
-    private ClassLoader getContextClassLoader() {
-        return Thread.currentThread().getContextClassLoader();
-    }
-
     private IndexView getIndexForArchive(OpenApiConfig config, ReadableArchive archive, ClassLoader classLoader) {
         try {
             Indexer indexer = new Indexer();
@@ -249,6 +349,50 @@ public class OpenApiService implements PostConstruct, EventListener {
         }
     }
 
+    /**
+     * The build of the OpenAPI model of one application, run once by the
+     * background builder or by the first request that needs it.
+     */
+    static final class ModelBuild {
+        private final String application;
+        private final Runnable task;
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CompletableFuture<Void> built = new CompletableFuture<>();
+
+        ModelBuild(String application, Runnable task) {
+            this.application = application;
+            this.task = task;
+        }
+
+        void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                task.run();
+                built.complete(null);
+            } catch (RuntimeException | Error e) {
+                LOGGER.log(Level.SEVERE, "Failed to build the OpenAPI model of " + application, e);
+                built.completeExceptionally(e);
+            }
+        }
+
+        boolean await(long timeout) {
+            try {
+                built.get(timeout, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("The OpenAPI model of " + application + " could not be built",
+                        e.getCause());
+            }
+        }
+    }
+
     private class OpenApiFile {
         private final String path;
         private final Format format;
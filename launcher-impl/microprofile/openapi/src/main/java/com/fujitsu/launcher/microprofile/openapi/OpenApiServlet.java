@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2019-2022 Fujitsu Limited and/or its affiliates. All rights reserved.
+ * Copyright (c) 2019-2023 Fujitsu Limited and/or its affiliates. All rights reserved.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -14,6 +14,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -23,6 +24,7 @@ import io.smallrye.openapi.api.OpenApiDocument;
 import io.smallrye.openapi.runtime.io.Format;
 import io.smallrye.openapi.runtime.io.OpenApiSerializer;
 
+import org.eclipse.microprofile.config.ConfigProvider;
 import org.glassfish.jersey.message.internal.AcceptableMediaType;
 import org.glassfish.jersey.message.internal.HttpHeaderReader;
 
@@ -46,10 +48,36 @@ public class OpenApiServlet extends HttpServlet {
         ACCEPTED_TYPES.put(Format.JSON, MediaType.APPLICATION_JSON);
     }
 
+    private static final String CONFIG_TIMEOUT = "com.fujitsu.launcher.openapi.timeout";
+    private static final long DEFAULT_TIMEOUT = 5000;
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private long timeout = DEFAULT_TIMEOUT;
+    private ClassLoader applicationClassLoader;
+
+    @Override
+    public void init() throws ServletException {
+        applicationClassLoader = getServletContext().getClassLoader();
+        timeout = ConfigProvider.getConfig(applicationClassLoader)
+                .getOptionalValue(CONFIG_TIMEOUT, Long.class)
+                .orElse(DEFAULT_TIMEOUT);
+    }
+
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
         Format format = getResponseFormat(request);
         if (format != null) {
+            // The model is built in the background after the application is loaded
+            if (!OpenApiDocument.INSTANCE.isSet()
+                    && !OpenApiService.awaitModel(getApplicationClassLoader(), getTimeout())) {
+                response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return;
+            }
+            if (!OpenApiDocument.INSTANCE.isSet()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
             String oai = OpenApiSerializer.serialize(OpenApiDocument.INSTANCE.get(), format);
             response.setContentType(ACCEPTED_TYPES.get(format));
             response.getWriter().write(oai);
@@ -59,6 +87,22 @@ public class OpenApiServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Returns the time in milliseconds a request waits for the OpenAPI model
+     * to be built before it is answered with {@code 503 Service Unavailable}.
+     */
+    protected long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Returns the class loader of the application this servlet belongs to,
+     * whose OpenAPI model build is awaited.
+     */
+    protected ClassLoader getApplicationClassLoader() {
+        return applicationClassLoader;
+    }
+
     protected Format getResponseFormat(HttpServletRequest request) {
         try {
             Format format = parseFormatQueryParameter(request);
@@ -11,12 +11,18 @@
 package com.fujitsu.launcher.microprofile.openapi;
 
 import io.smallrye.openapi.api.OpenApiConfig;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.when;
@@ -56,6 +62,45 @@ public class OpenApiServiceTest {
         when(mockOpenApiConfig.scanExcludePackages()).thenReturn(Set.of());
     }
 
+    @AfterEach
+    public void unregisterBuilds() {
+        OpenApiService.unregister("app1");
+        OpenApiService.unregister("app2");
+    }
+
+    @Test
+    public void testModelBuildsAreKeyedByApplication() {
+        ClassLoader app1 = new URLClassLoader(new URL[0]);
+        ClassLoader app2 = new URLClassLoader(new URL[0]);
+        AtomicInteger app1Builds = new AtomicInteger();
+        AtomicInteger app2Builds = new AtomicInteger();
+        OpenApiService.register(app1, new OpenApiService.ModelBuild("app1", app1Builds::incrementAndGet));
+        OpenApiService.register(app2, new OpenApiService.ModelBuild("app2", app2Builds::incrementAndGet));
+
+        // a module class loader finds the build of its application
+        assertTrue(OpenApiService.awaitModel(new URLClassLoader(new URL[0], app2), 0));
+        assertTrue(OpenApiService.awaitModel(app2, 0));
+        assertEquals(0, app1Builds.get());
+        assertEquals(1, app2Builds.get());
+
+        assertTrue(OpenApiService.awaitModel(app1, 0));
+        assertEquals(1, app1Builds.get());
+    }
+
+    @Test
+    public void testFailedBuildIsReported() {
+        ClassLoader app1 = new URLClassLoader(new URL[0]);
+        OpenApiService.register(app1, new OpenApiService.ModelBuild("app1", () -> {
+            throw new IllegalArgumentException("broken");
+        }));
+
+        assertThrows(IllegalStateException.class, () -> OpenApiService.awaitModel(app1, 0));
+        assertThrows(IllegalStateException.class, () -> OpenApiService.awaitModel(app1, 0));
+
+        OpenApiService.unregister("app1");
+        assertTrue(OpenApiService.awaitModel(app1, 0));
+    }
+
     @Test
     public void testNullOrEmptyEntry() {
         verify(null, NOT_SCAN);
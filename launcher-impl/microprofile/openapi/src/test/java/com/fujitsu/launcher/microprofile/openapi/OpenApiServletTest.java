@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2021-2022 Fujitsu Limited and/or its affiliates. All rights reserved.
+ * Copyright (c) 2021-2023 Fujitsu Limited and/or its affiliates. All rights reserved.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -11,6 +11,7 @@
 package com.fujitsu.launcher.microprofile.openapi;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
@@ -20,12 +21,17 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import io.smallrye.openapi.runtime.io.Format;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -38,6 +44,13 @@ public class OpenApiServletTest {
 
     OpenApiServlet servlet = spy(new OpenApiServlet());
 
+    ClassLoader applicationClassLoader = new URLClassLoader(new URL[0]);
+
+    @AfterEach
+    public void unregisterBuilds() {
+        OpenApiService.unregister("app");
+    }
+
     @ParameterizedTest
     @MethodSource({"provideOnlyAcceptHeader", "provideOnlyFormatQuery", "provideFormatQueryAndAcceptHeader"})
     public void testGetResponseFormat(String format, String acceptHeader, Format expected) {
@@ -104,6 +117,61 @@ public class OpenApiServletTest {
         verify(mockResponse, times(1)).sendError(406);
     }
 
+    @Test
+    public void testSendError503UntilModelIsBuilt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        OpenApiService.ModelBuild build = new OpenApiService.ModelBuild("app", () -> {
+            started.countDown();
+            try {
+                finish.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        OpenApiService.register(applicationClassLoader, build);
+        Thread builder = new Thread(build::run);
+        builder.start();
+        started.await();
+
+        doReturn(Format.JSON).when(servlet).getResponseFormat(mockRequest);
+        doReturn(0L).when(servlet).getTimeout();
+        doReturn(applicationClassLoader).when(servlet).getApplicationClassLoader();
+        try {
+            servlet.doGet(mockRequest, mockResponse);
+        } finally {
+            finish.countDown();
+            builder.join();
+        }
+        verify(mockResponse, times(1)).setHeader("Retry-After", "1");
+        verify(mockResponse, times(1)).sendError(503);
+    }
+
+    @Test
+    public void testBuildNotStartedRunsOnRequestThread() throws IOException {
+        AtomicReference<Thread> buildThread = new AtomicReference<>();
+        OpenApiService.register(applicationClassLoader,
+                new OpenApiService.ModelBuild("app", () -> buildThread.set(Thread.currentThread())));
+
+        doReturn(Format.JSON).when(servlet).getResponseFormat(mockRequest);
+        doReturn(0L).when(servlet).getTimeout();
+        doReturn(applicationClassLoader).when(servlet).getApplicationClassLoader();
+        servlet.doGet(mockRequest, mockResponse);
+
+        assertSame(Thread.currentThread(), buildThread.get());
+        // the build did not provide a document
+        verify(mockResponse, times(1)).sendError(404);
+    }
+
+    @Test
+    public void testSendError404WithoutBuild() throws IOException {
+        doReturn(Format.JSON).when(servlet).getResponseFormat(mockRequest);
+        doReturn(applicationClassLoader).when(servlet).getApplicationClassLoader();
+        servlet.doGet(mockRequest, mockResponse);
+        verify(mockResponse, times(0)).sendError(503);
+        verify(mockResponse, times(1)).sendError(404);
+    }
+
     @Test
     public void testThrowRuntimeException() {
         when(mockRequest.getParameter("format")).thenReturn(null);
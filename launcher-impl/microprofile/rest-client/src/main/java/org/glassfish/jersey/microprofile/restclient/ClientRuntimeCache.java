@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import jakarta.ws.rs.client.Client;
+
+import org.glassfish.jersey.internal.inject.InjectionManager;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+import com.fujitsu.launcher.monitoring.Statistic;
+
+/**
+ * Cache of Jersey client runtimes shared by rest client proxies built from
+ * equivalent builders.
+ * <p>
+ * A runtime stays cached while any proxy uses it, and for the configured idle
+ * timeout after the last proxy was closed or garbage collected, so that
+ * applications creating a client per request still reuse keep-alive
+ * connections. A single daemon thread periodically closes idle pooled
+ * connections and evicts unused runtimes.
+ */
+final class ClientRuntimeCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ClientRuntimeCache.class.getName());
+    private static final long EVICTION_INTERVAL_MILLIS = 5000;
+    private static final ClientRuntimeCache INSTANCE = new ClientRuntimeCache();
+    // Releases the runtime of proxies that are dropped without being closed
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Map<ClientRuntimeKey, ClientRuntime> runtimes = new ConcurrentHashMap<>();
+    // Pool statistics are aggregated per authority to keep the number of tag values bounded
+    private final Map<String, List<Statistic>> poolStatistics = new ConcurrentHashMap<>();
+    // Lease counts of closed runtimes, so that the published totals never go down
+    private final Map<String, long[]> retiredTotals = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService evictor;
+
+    private ClientRuntimeCache() {
+    }
+
+    static ClientRuntimeCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a retained runtime for the key, creating it when necessary.
+     * The caller must release it by closing the client returned from
+     * {@link ClientRuntime#newClient()}.
+     */
+    ClientRuntime acquire(ClientRuntimeKey key, Function<ClientRuntimeKey, ClientRuntime> factory) {
+        while (true) {
+            ClientRuntime runtime = runtimes.get(key);
+            if (runtime == null) {
+                // Built outside of the map so that builders of other keys are not blocked meanwhile
+                ClientRuntime created = factory.apply(key);
+                runtime = runtimes.putIfAbsent(key, created);
+                if (runtime == null) {
+                    runtime = created;
+                    if (created.connectionManager != null) {
+                        registerPoolStatistics(key.getAuthority());
+                    }
+                } else {
+                    created.close();
+                }
+            }
+            if (runtime.retain()) {
+                startEvictor();
+                return runtime;
+            }
+            // evicted concurrently, try again
+            runtimes.remove(key, runtime);
+        }
+    }
+
+    private void startEvictor() {
+        if (evictor == null) {
+            synchronized (this) {
+                if (evictor == null) {
+                    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread thread = new Thread(r, "rest-client-runtime-evictor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor.scheduleWithFixedDelay(this::evict,
+                            EVICTION_INTERVAL_MILLIS, EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    evictor = executor;
+                }
+            }
+        }
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        for (Iterator<ClientRuntime> it = runtimes.values().iterator(); it.hasNext();) {
+            ClientRuntime runtime = it.next();
+            try {
+                if (runtime.closeIfUnused(now)) {
+                    retire(runtime, it);
+                    LOGGER.log(Level.FINE, "Evicted unused rest client runtime {0}", runtime.key);
+                } else {
+                    runtime.closeIdleConnections();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to evict rest client runtime " + runtime.key, e);
+            }
+        }
+        poolStatistics.keySet().removeIf(authority -> {
+            for (ClientRuntime runtime : runtimes.values()) {
+                if (runtime.connectionManager != null && runtime.key.getAuthority().equals(authority)) {
+                    return false;
+                }
+            }
+            LauncherStatistics.unregisterAll(poolStatistics.get(authority));
+            return true;
+        });
+    }
+
+    private void retire(ClientRuntime runtime, Iterator<ClientRuntime> it) {
+        PooledConnectionManager manager = runtime.connectionManager;
+        if (manager == null) {
+            it.remove();
+            return;
+        }
+        synchronized (retiredTotals) {
+            long[] totals = retiredTotals.computeIfAbsent(runtime.key.getAuthority(), a -> new long[2]);
+            totals[0] += manager.getLeaseCount();
+            totals[1] += manager.getWaitNanos();
+            it.remove();
+        }
+    }
+
+    private void registerPoolStatistics(String authority) {
+        poolStatistics.computeIfAbsent(authority, a -> {
+            Map<String, String> tags = Map.of("pool", a);
+            List<Statistic> statistics = new ArrayList<>();
+            statistics.add(LauncherStatistics.register("restClient.pool.leased",
+                    "Number of connections currently leased from the pool", null, tags,
+                    () -> sum(a, m -> m.getTotalStats().getLeased())));
+            statistics.add(LauncherStatistics.register("restClient.pool.idle",
+                    "Number of idle keep-alive connections in the pool", null, tags,
+                    () -> sum(a, m -> m.getTotalStats().getAvailable())));
+            statistics.add(LauncherStatistics.register("restClient.pool.pending",
+                    "Number of requests waiting for a connection", null, tags,
+                    () -> sum(a, m -> m.getTotalStats().getPending())));
+            statistics.add(LauncherStatistics.register("restClient.pool.leases",
+                    "Number of connections leased from the pool", null, tags,
+                    () -> total(a, 0, PooledConnectionManager::getLeaseCount)));
+            statistics.add(LauncherStatistics.register("restClient.pool.waitTime",
+                    "Total time spent waiting to lease a connection", "milliseconds", tags,
+                    () -> TimeUnit.NANOSECONDS.toMillis(total(a, 1, PooledConnectionManager::getWaitNanos))));
+            return statistics;
+        });
+    }
+
+    private long sum(String authority, ToLongFunction<PooledConnectionManager> value) {
+        long sum = 0;
+        for (ClientRuntime runtime : runtimes.values()) {
+            if (runtime.connectionManager != null && runtime.key.getAuthority().equals(authority)) {
+                sum += value.applyAsLong(runtime.connectionManager);
+            }
+        }
+        return sum;
+    }
+
+    private long total(String authority, int index, ToLongFunction<PooledConnectionManager> value) {
+        // Consistent with retire() so that a runtime is counted exactly once while it is being evicted
+        synchronized (retiredTotals) {
+            long[] retired = retiredTotals.get(authority);
+            return (retired != null ? retired[index] : 0) + sum(authority, value);
+        }
+    }
+
+    /**
+     * A Jersey client together with its connection pool and injection manager.
+     */
+    static final class ClientRuntime {
+
+        private final ClientRuntimeKey key;
+        private final Client client;
+        private final InjectionManager injectionManager;
+        private final PooledConnectionManager connectionManager;
+        private final long idleTimeoutMillis;
+
+        private int references;
+        private long lastReleased;
+        private boolean closed;
+
+        ClientRuntime(ClientRuntimeKey key, Client client, InjectionManager injectionManager,
+                PooledConnectionManager connectionManager, long idleTimeoutMillis) {
+            this.key = key;
+            this.client = client;
+            this.injectionManager = injectionManager;
+            this.connectionManager = connectionManager;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.lastReleased = System.currentTimeMillis();
+        }
+
+        InjectionManager getInjectionManager() {
+            return injectionManager;
+        }
+
+        /**
+         * Returns a client view whose {@code close()} releases this runtime
+         * instead of closing the shared client. The runtime is also released
+         * once the view becomes unreachable without being closed.
+         */
+        Client newClient() {
+            return new SharedClient(client, CLEANER, this::release);
+        }
+
+        private synchronized boolean retain() {
+            if (closed) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+
+        private synchronized void release() {
+            references--;
+            lastReleased = System.currentTimeMillis();
+        }
+
+        private synchronized boolean closeIfUnused(long now) {
+            if (references > 0 || now - lastReleased < idleTimeoutMillis) {
+                return false;
+            }
+            if (connectionManager != null && connectionManager.getTotalStats().getLeased() > 0) {
+                return false;
+            }
+            close();
+            return true;
+        }
+
+        private synchronized void close() {
+            closed = true;
+            client.close();
+            if (connectionManager != null) {
+                connectionManager.shutdown();
+            }
+        }
+
+        private void closeIdleConnections() {
+            if (connectionManager != null) {
+                connectionManager.closeExpiredConnections();
+                connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.util.List;
+
+/**
+ * Identifies an effective client configuration. Builders producing equal keys
+ * share one {@link ClientRuntimeCache.ClientRuntime}. All components are
+ * compared by value.
+ */
+final class ClientRuntimeKey {
+
+    private final String authority;
+    private final List<Object> components;
+    private final int hashCode;
+
+    ClientRuntimeKey(String authority, List<Object> components) {
+        this.authority = authority;
+        this.components = components;
+        this.hashCode = 31 * authority.hashCode() + components.hashCode();
+    }
+
+    String getAuthority() {
+        return authority;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ClientRuntimeKey)) {
+            return false;
+        }
+        ClientRuntimeKey other = (ClientRuntimeKey) o;
+        return hashCode == other.hashCode
+                && authority.equals(other.authority)
+                && components.equals(other.components);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "ClientRuntimeKey[" + authority + "]";
+    }
+}
@@ -0,0 +1,623 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.Authenticator;
+import java.net.InetSocketAddress;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Configuration;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.JerseyClient;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.Statuses;
+
+/**
+ * Connector based on {@code java.net.http.HttpClient}.
+ * <p>
+ * HTTP/2 is negotiated when the server supports it, so concurrent requests to
+ * the same authority are multiplexed over one connection. Asynchronous
+ * invocations do not hold a thread while waiting for the response; the
+ * response is handed to Jersey on a connector callback thread.
+ * <p>
+ * Connectors with the same timeout, proxy and SSL settings share their
+ * {@code HttpClient}, which is closed with the last of them.
+ * <p>
+ * Request entities that fit into the Jersey content length buffer are sent
+ * with a {@code Content-Length}; larger ones are streamed while they are
+ * written and therefore cannot be sent again, for example to answer a proxy
+ * authentication challenge. Proxy credentials are answered to proxy
+ * authentication challenges; note that the JDK disables {@code Basic}
+ * authentication for tunnels to HTTPS targets unless
+ * {@code jdk.http.auth.tunneling.disabledSchemes} is changed.
+ */
+class HttpClientConnector implements Connector {
+
+    /**
+     * Request property set to the {@code HttpClient.Version} the response was received with.
+     */
+    static final String HTTP_VERSION = HttpClientConnector.class.getName() + ".httpVersion";
+
+    // headers managed by java.net.http.HttpClient itself, or rejected by it on Java 11
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add("Connection");
+        RESTRICTED_HEADERS.add("Content-Length");
+        RESTRICTED_HEADERS.add("Date");
+        RESTRICTED_HEADERS.add("Expect");
+        RESTRICTED_HEADERS.add("From");
+        RESTRICTED_HEADERS.add("Host");
+        RESTRICTED_HEADERS.add("Upgrade");
+        RESTRICTED_HEADERS.add("Via");
+        RESTRICTED_HEADERS.add("Warning");
+    }
+
+    private static final ExecutorService CALLBACK_EXECUTOR = Executors.newCachedThreadPool(new CallbackThreadFactory());
+
+    // guarded by itself
+    private static final Map<ClientKey, SharedClient> CLIENTS = new HashMap<>();
+
+    private final ClientKey redirectingKey;
+    private final ClientKey nonRedirectingKey;
+    private final HttpClient redirectingClient;
+    private final HttpClient nonRedirectingClient;
+    private final boolean followRedirectsByDefault;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    HttpClientConnector(Client client, Configuration config) {
+        Map<String, Object> properties = config.getProperties();
+        int connectTimeout = ClientProperties.getValue(properties, ClientProperties.CONNECT_TIMEOUT, 0, Integer.class);
+        Object proxyUri = properties.get(ClientProperties.PROXY_URI);
+        String userName = proxyUri == null ? null
+                : ClientProperties.getValue(properties, ClientProperties.PROXY_USERNAME, String.class);
+        String password = userName == null ? null
+                : ClientProperties.getValue(properties, ClientProperties.PROXY_PASSWORD, "", String.class);
+        // Jersey creates a new default context for every client, which would prevent sharing
+        SSLContext sslContext = client instanceof JerseyClient && ((JerseyClient) client).isDefaultSslContext()
+                ? null : client.getSslContext();
+
+        this.redirectingKey = new ClientKey(connectTimeout, proxyUri == null ? null : proxyUri.toString(),
+                userName, password, sslContext, HttpClient.Redirect.NORMAL);
+        this.nonRedirectingKey = new ClientKey(connectTimeout, redirectingKey.proxyUri,
+                userName, password, sslContext, HttpClient.Redirect.NEVER);
+        this.redirectingClient = acquire(redirectingKey);
+        this.nonRedirectingClient = acquire(nonRedirectingKey);
+        this.followRedirectsByDefault = ClientProperties.getValue(properties, ClientProperties.FOLLOW_REDIRECTS,
+                true, Boolean.class);
+    }
+
+    private static HttpClient acquire(ClientKey key) {
+        synchronized (CLIENTS) {
+            SharedClient shared = CLIENTS.computeIfAbsent(key, k -> new SharedClient(k.build()));
+            shared.references++;
+            return shared.client;
+        }
+    }
+
+    private static void release(ClientKey key) {
+        HttpClient unused = null;
+        synchronized (CLIENTS) {
+            SharedClient shared = CLIENTS.get(key);
+            if (--shared.references == 0) {
+                CLIENTS.remove(key);
+                unused = shared.client;
+            }
+        }
+        // java.net.http.HttpClient can be closed as of Java 21; before that, its selector
+        // thread stops once the client is unreachable
+        if (unused instanceof AutoCloseable) {
+            AutoCloseable closeable = (AutoCloseable) unused;
+            // closing waits for outstanding exchanges
+            CALLBACK_EXECUTOR.execute(() -> {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    // nothing to do
+                }
+            });
+        }
+    }
+
+    @Override
+    public ClientResponse apply(ClientRequest request) {
+        HttpRequest httpRequest = null;
+        try {
+            httpRequest = toHttpRequest(request);
+            HttpResponse<InputStream> response = selectClient(request)
+                    .send(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+            return toClientResponse(request, response);
+        } catch (IOException e) {
+            throw new ProcessingException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessingException(e.getMessage(), e);
+        } finally {
+            abortEntity(httpRequest);
+        }
+    }
+
+    @Override
+    public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = toHttpRequest(request);
+        } catch (IOException | RuntimeException e) {
+            callback.failure(e);
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<InputStream>> exchange = selectClient(request)
+                .sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream());
+        CompletableFuture<Void> result = new CompletableFuture<Void>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                // aborts the exchange if the response has not arrived yet
+                exchange.cancel(mayInterruptIfRunning);
+                return cancelled;
+            }
+        };
+        exchange.whenCompleteAsync((response, throwable) -> {
+            abortEntity(httpRequest);
+            if (result.isCancelled()) {
+                if (response != null) {
+                    closeQuietly(response.body());
+                }
+                return;
+            }
+            if (throwable != null) {
+                callback.failure(unwrap(throwable));
+                result.completeExceptionally(throwable);
+                return;
+            }
+            try {
+                callback.response(toClientResponse(request, response));
+                result.complete(null);
+            } catch (Throwable t) {
+                callback.failure(t);
+                result.completeExceptionally(t);
+            }
+        }, CALLBACK_EXECUTOR);
+        return result;
+    }
+
+    @Override
+    public String getName() {
+        return "java.net.http.HttpClient";
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release(redirectingKey);
+            release(nonRedirectingKey);
+        }
+    }
+
+    private HttpClient selectClient(ClientRequest request) {
+        boolean followRedirects = request.resolveProperty(ClientProperties.FOLLOW_REDIRECTS, followRedirectsByDefault);
+        return followRedirects ? redirectingClient : nonRedirectingClient;
+    }
+
+    /**
+     * Converts the request, once its headers are committed. The entity is
+     * written on another thread, so that one of unknown length can be streamed
+     * to the client while it is written.
+     */
+    private static HttpRequest toHttpRequest(ClientRequest request) throws IOException {
+        if (!request.hasEntity()) {
+            return toHttpRequest(request, HttpRequest.BodyPublishers.noBody());
+        }
+        CompletableFuture<HttpRequest> committed = new CompletableFuture<>();
+        CALLBACK_EXECUTOR.execute(() -> writeEntity(request, committed));
+        try {
+            return committed.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ProcessingException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+
+    private static void writeEntity(ClientRequest request, CompletableFuture<HttpRequest> committed) {
+        EntityPublisher publisher = new EntityPublisher();
+        ByteArrayOutputStream[] buffered = new ByteArrayOutputStream[1];
+        request.setStreamProvider(contentLength -> {
+            if (contentLength >= 0) {
+                // the entity fit into the Jersey buffer
+                buffered[0] = new ByteArrayOutputStream(contentLength);
+                return buffered[0];
+            }
+            committed.complete(toHttpRequest(request, publisher));
+            return publisher;
+        });
+        try {
+            request.writeEntity();
+            if (buffered[0] != null) {
+                committed.complete(toHttpRequest(request,
+                        HttpRequest.BodyPublishers.ofByteArray(buffered[0].toByteArray())));
+            } else if (committed.isDone()) {
+                publisher.close();
+            } else {
+                // the entity provider did not open the stream
+                committed.complete(toHttpRequest(request, HttpRequest.BodyPublishers.noBody()));
+            }
+        } catch (Throwable t) {
+            if (!committed.completeExceptionally(t)) {
+                publisher.fail(t);
+            }
+        }
+    }
+
+    private static void abortEntity(HttpRequest request) {
+        if (request != null) {
+            request.bodyPublisher()
+                    .filter(EntityPublisher.class::isInstance)
+                    .ifPresent(publisher -> ((EntityPublisher) publisher).cancel());
+        }
+    }
+
+    private static HttpRequest toHttpRequest(ClientRequest request, HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri())
+                .method(request.getMethod(), body);
+        int readTimeout = request.resolveProperty(ClientProperties.READ_TIMEOUT, 0);
+        if (readTimeout > 0) {
+            builder.timeout(Duration.ofMillis(readTimeout));
+        }
+        for (Map.Entry<String, List<String>> header : request.getStringHeaders().entrySet()) {
+            if (RESTRICTED_HEADERS.contains(header.getKey())) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                builder.header(header.getKey(), value);
+            }
+        }
+        return builder.build();
+    }
+
+    private static ClientResponse toClientResponse(ClientRequest request, HttpResponse<InputStream> response) {
+        request.setProperty(HTTP_VERSION, response.version());
+        ClientResponse clientResponse = new ClientResponse(Statuses.from(response.statusCode()), request);
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            // skip HTTP/2 pseudo headers such as ":status"
+            if (!header.getKey().startsWith(":")) {
+                clientResponse.getHeaders().addAll(header.getKey(), header.getValue());
+            }
+        }
+        clientResponse.setEntityStream(response.body());
+        return clientResponse;
+    }
+
+    /**
+     * Returns the address of a proxy URI, defaulting the port by its scheme.
+     */
+    static InetSocketAddress toProxyAddress(URI proxyUri) {
+        if (proxyUri.getHost() == null) {
+            throw new ProcessingException("Invalid proxy URI: " + proxyUri);
+        }
+        int port = proxyUri.getPort();
+        if (port < 0) {
+            port = "https".equalsIgnoreCase(proxyUri.getScheme()) ? 443 : 80;
+        }
+        return new InetSocketAddress(proxyUri.getHost(), port);
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable instanceof ProcessingException ? throwable : new ProcessingException(throwable);
+    }
+
+    /**
+     * Publishes a request entity to the client chunk by chunk as the entity
+     * provider writes it, blocking the writer while the client has no demand.
+     */
+    private static final class EntityPublisher extends OutputStream
+            implements HttpRequest.BodyPublisher, Flow.Subscription {
+
+        private static final int CHUNK_SIZE = 8192;
+
+        private byte[] chunk = new byte[CHUNK_SIZE];
+        private int count;
+        private boolean closed;
+
+        // guarded by this
+        private Flow.Subscriber<? super ByteBuffer> subscriber;
+        private long demand;
+        private boolean done;
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            boolean first;
+            synchronized (this) {
+                first = this.subscriber == null && !done;
+                if (first) {
+                    this.subscriber = subscriber;
+                }
+            }
+            if (first) {
+                subscriber.onSubscribe(this);
+                return;
+            }
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IOException("A streamed request entity cannot be sent again"));
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                cancel();
+                return;
+            }
+            demand += n;
+            if (demand < 0) {
+                demand = Long.MAX_VALUE;
+            }
+            notifyAll();
+        }
+
+        @Override
+        public synchronized void cancel() {
+            done = true;
+            notifyAll();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == chunk.length) {
+                emit();
+            }
+            chunk[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == chunk.length) {
+                    emit();
+                }
+                int n = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                emit();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flush();
+            Flow.Subscriber<? super ByteBuffer> target = await(false);
+            synchronized (this) {
+                done = true;
+            }
+            target.onComplete();
+        }
+
+        void fail(Throwable failure) {
+            Flow.Subscriber<? super ByteBuffer> target;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                target = subscriber;
+            }
+            if (target != null) {
+                target.onError(failure);
+            }
+        }
+
+        private void emit() throws IOException {
+            Flow.Subscriber<? super ByteBuffer> target = await(true);
+            ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, count);
+            // the client may still hold the buffer
+            chunk = new byte[CHUNK_SIZE];
+            count = 0;
+            target.onNext(buffer);
+        }
+
+        private synchronized Flow.Subscriber<? super ByteBuffer> await(boolean item) throws IOException {
+            while (!done && (subscriber == null || (item && demand == 0))) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(e.getMessage());
+                }
+            }
+            if (done) {
+                throw new IOException("The request has been aborted");
+            }
+            if (item) {
+                demand--;
+            }
+            return subscriber;
+        }
+    }
+
+    private static final class ClientKey {
+        private final int connectTimeout;
+        private final String proxyUri;
+        private final String userName;
+        private final String password;
+        private final SSLContext sslContext;
+        private final HttpClient.Redirect redirect;
+
+        ClientKey(int connectTimeout, String proxyUri, String userName, String password, SSLContext sslContext,
+                HttpClient.Redirect redirect) {
+            this.connectTimeout = connectTimeout;
+            this.proxyUri = proxyUri;
+            this.userName = userName;
+            this.password = password;
+            this.sslContext = sslContext;
+            this.redirect = redirect;
+        }
+
+        HttpClient build() {
+            HttpClient.Builder builder = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .executor(CALLBACK_EXECUTOR)
+                    .followRedirects(redirect);
+            if (sslContext != null) {
+                builder.sslContext(sslContext);
+            }
+            if (connectTimeout > 0) {
+                builder.connectTimeout(Duration.ofMillis(connectTimeout));
+            }
+            if (proxyUri != null) {
+                builder.proxy(ProxySelector.of(toProxyAddress(URI.create(proxyUri))));
+                if (userName != null) {
+                    builder.authenticator(new ProxyAuthenticator(userName, password.toCharArray()));
+                }
+            }
+            return builder.build();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return connectTimeout == other.connectTimeout
+                    && Objects.equals(proxyUri, other.proxyUri)
+                    && Objects.equals(userName, other.userName)
+                    && Objects.equals(password, other.password)
+                    && sslContext == other.sslContext
+                    && redirect == other.redirect;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(connectTimeout, proxyUri, userName, password, System.identityHashCode(sslContext),
+                    redirect);
+        }
+    }
+
+    private static final class SharedClient {
+        private final HttpClient client;
+        private int references;
+
+        SharedClient(HttpClient client) {
+            this.client = client;
+        }
+    }
+
+    private static class ProxyAuthenticator extends Authenticator {
+        private final PasswordAuthentication authentication;
+
+        ProxyAuthenticator(String userName, char[] password) {
+            this.authentication = new PasswordAuthentication(userName, password);
+        }
+
+        @Override
+        protected PasswordAuthentication getPasswordAuthentication() {
+            return getRequestorType() == RequestorType.PROXY ? authentication : null;
+        }
+    }
+
+    private static class CallbackThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "rest-client-http-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
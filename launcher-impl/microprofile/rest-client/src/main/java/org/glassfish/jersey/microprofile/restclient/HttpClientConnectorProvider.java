@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Configuration;
+
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+/**
+ * Provides {@link HttpClientConnector}, a non-blocking HTTP/2 capable connector
+ * based on {@code java.net.http.HttpClient}.
+ * <p>
+ * Select it for a rest client interface with the MicroProfile Config property
+ * {@code <interface>/mp-rest/connector=http2}.
+ */
+class HttpClientConnectorProvider implements ConnectorProvider {
+
+    static final String NAME = "http2";
+
+    static final HttpClientConnectorProvider INSTANCE = new HttpClientConnectorProvider();
+
+    @Override
+    public Connector getConnector(Client client, Configuration runtimeConfig) {
+        return new HttpClientConnector(client, runtimeConfig);
+    }
+}
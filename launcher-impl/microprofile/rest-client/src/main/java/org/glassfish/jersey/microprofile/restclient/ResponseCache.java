@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.io.ByteArrayInputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MultivaluedHashMap;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * LRU cache of buffered responses bounded by the total size of the cached entries.
+ */
+class ResponseCache {
+
+    private final long maxSize;
+    private final LinkedHashMap<String, CachedResponse> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    ResponseCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    synchronized CachedResponse get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void put(String key, CachedResponse response) {
+        long entrySize = key.length() + response.size();
+        if (entrySize > maxSize) {
+            remove(key);
+            return;
+        }
+        CachedResponse previous = entries.put(key, response);
+        if (previous != null) {
+            size -= key.length() + previous.size();
+        }
+        size += entrySize;
+
+        for (Iterator<Map.Entry<String, CachedResponse>> it = entries.entrySet().iterator(); size > maxSize && it.hasNext();) {
+            Map.Entry<String, CachedResponse> eldest = it.next();
+            size -= eldest.getKey().length() + eldest.getValue().size();
+            it.remove();
+        }
+    }
+
+    synchronized void remove(String key) {
+        CachedResponse removed = entries.remove(key);
+        if (removed != null) {
+            size -= key.length() + removed.size();
+        }
+    }
+
+    /**
+     * A fully buffered response together with its freshness lifetime.
+     */
+    static final class CachedResponse {
+
+        private final int status;
+        private final MultivaluedMap<String, String> headers;
+        private final byte[] entity;
+        private final long expires;
+
+        CachedResponse(int status, MultivaluedMap<String, String> headers, byte[] entity, long expires) {
+            this.status = status;
+            this.headers = new MultivaluedHashMap<>();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())
+                        && !"Transfer-Encoding".equalsIgnoreCase(header.getKey())) {
+                    this.headers.put(header.getKey(), header.getValue());
+                }
+            }
+            this.entity = entity;
+            this.expires = expires;
+        }
+
+        int getStatus() {
+            return status;
+        }
+
+        MultivaluedMap<String, String> getHeaders() {
+            return headers;
+        }
+
+        byte[] getEntity() {
+            return entity;
+        }
+
+        boolean isFresh(long now) {
+            return now < expires;
+        }
+
+        String getETag() {
+            return headers.getFirst(HttpHeaders.ETAG);
+        }
+
+        String getLastModified() {
+            return headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        }
+
+        boolean hasValidators() {
+            return getETag() != null || getLastModified() != null;
+        }
+
+        /**
+         * Returns a copy updated with the headers of a {@code 304 Not Modified} response.
+         */
+        CachedResponse revalidated(MultivaluedMap<String, String> notModifiedHeaders, long newExpires) {
+            MultivaluedMap<String, String> merged = new MultivaluedHashMap<>(headers);
+            for (Map.Entry<String, List<String>> header : notModifiedHeaders.entrySet()) {
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                    merged.put(header.getKey(), header.getValue());
+                }
+            }
+            return new CachedResponse(status, merged, entity, newExpires);
+        }
+
+        Response toResponse() {
+            Response.ResponseBuilder builder = Response.status(status);
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    builder.header(header.getKey(), value);
+                }
+            }
+            if (entity.length > 0) {
+                builder.entity(new ByteArrayInputStream(entity));
+            }
+            return builder.build();
+        }
+
+        private long size() {
+            long headerSize = 0;
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                for (String value : header.getValue()) {
+                    headerSize += header.getKey().length() + value.length();
+                }
+            }
+            return entity.length + headerSize;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.ws.rs.core.Configuration;
+import jakarta.ws.rs.core.Feature;
+import jakarta.ws.rs.core.FeatureContext;
+
+/**
+ * Registers a {@link ResponseCachingFilter} configured by the client properties set by
+ * {@link RestClientBuilderImpl}. All clients of a rest client interface share one cache,
+ * so that its maximum size bounds them together, and one in-flight table.
+ */
+class ResponseCachingFeature implements Feature {
+
+    static final String NAME = "com.fujitsu.launcher.restclient.responseCaching.name";
+    static final String COALESCING = "com.fujitsu.launcher.restclient.responseCaching.coalescing";
+    static final String CACHE = "com.fujitsu.launcher.restclient.responseCaching.cache";
+    static final String MAX_SIZE = "com.fujitsu.launcher.restclient.responseCaching.maxSize";
+    static final String MAX_ENTRY_SIZE = "com.fujitsu.launcher.restclient.responseCaching.maxEntrySize";
+    static final String COALESCING_TIMEOUT = "com.fujitsu.launcher.restclient.responseCaching.coalescingTimeout";
+
+    private static final Map<String, ResponseCache> CACHES = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean configure(FeatureContext context) {
+        Configuration configuration = context.getConfiguration();
+        String name = (String) configuration.getProperty(NAME);
+        if (name == null) {
+            return false;
+        }
+        boolean coalescing = Boolean.TRUE.equals(configuration.getProperty(COALESCING));
+        ResponseCache cache = Boolean.TRUE.equals(configuration.getProperty(CACHE))
+                ? CACHES.computeIfAbsent(name, n -> new ResponseCache((Long) configuration.getProperty(MAX_SIZE)))
+                : null;
+        // runs after all other request filters, so that the headers they add are part of the key
+        context.register(new ResponseCachingFilter(name, cache, coalescing,
+                (Long) configuration.getProperty(MAX_ENTRY_SIZE),
+                (Long) configuration.getProperty(COALESCING_TIMEOUT)), Integer.MAX_VALUE);
+        return true;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.spi.PostInvocationInterceptor;
+
+import com.fujitsu.launcher.monitoring.LauncherStatistics;
+
+/**
+ * Merges concurrent identical GET requests into one upstream call and serves
+ * GET responses from a {@link ResponseCache} while they are fresh according to
+ * {@code Cache-Control} / {@code Expires}. Stale entries carrying an
+ * {@code ETag} or {@code Last-Modified} are revalidated with a conditional
+ * request.
+ * <p>
+ * Requests are only merged or answered from the cache when all of their
+ * headers, including credentials and cookies, are equal, so responses are
+ * never shared between callers. Responses marked {@code private} or varying
+ * on {@code *} are not cached.
+ */
+class ResponseCachingFilter implements ClientRequestFilter, ClientResponseFilter, PostInvocationInterceptor {
+
+    private static final String KEY_PROPERTY = ResponseCachingFilter.class.getName() + ".key";
+    private static final String ANSWERED_PROPERTY = ResponseCachingFilter.class.getName() + ".answered";
+    private static final String LEADER_PROPERTY = ResponseCachingFilter.class.getName() + ".leader";
+    private static final String STALE_PROPERTY = ResponseCachingFilter.class.getName() + ".stale";
+    private static final Map<String, Counters> COUNTERS = new ConcurrentHashMap<>();
+    // shared by the clients of an interface, so that requests are merged across client runtimes
+    private static final Map<String, Map<String, InFlight>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private final ResponseCache cache;
+    private final boolean coalescing;
+    private final long maxEntrySize;
+    private final long coalescingTimeout;
+    private final Map<String, InFlight> inFlight;
+    private final Counters counters;
+
+    ResponseCachingFilter(String name, ResponseCache cache, boolean coalescing, long maxEntrySize,
+            long coalescingTimeout) {
+        this.cache = cache;
+        this.coalescing = coalescing;
+        this.maxEntrySize = maxEntrySize;
+        this.coalescingTimeout = coalescingTimeout;
+        this.inFlight = IN_FLIGHT.computeIfAbsent(name, n -> new ConcurrentHashMap<>());
+        this.counters = COUNTERS.computeIfAbsent(name, Counters::new);
+    }
+
+    @Override
+    public void filter(ClientRequestContext request) {
+        if (!HttpMethod.GET.equals(request.getMethod()) || bypassesCache(request)) {
+            return;
+        }
+        String key = createKey(request);
+        request.setProperty(KEY_PROPERTY, key);
+
+        long now = System.currentTimeMillis();
+        ResponseCache.CachedResponse cached = cache == null ? null : cache.get(key);
+        if (cached != null && cached.isFresh(now)) {
+            counters.hits.increment();
+            answer(request, cached);
+            return;
+        }
+
+        if (coalescing) {
+            InFlight leader = new InFlight(now);
+            InFlight existing = inFlight.putIfAbsent(key, leader);
+            if (existing != null && now - existing.started > coalescingTimeout) {
+                // the leader failed without a response, take over
+                inFlight.replace(key, existing, leader);
+                existing = null;
+            }
+            if (existing != null) {
+                ResponseCache.CachedResponse shared = existing.await(coalescingTimeout);
+                if (shared != null) {
+                    counters.coalesced.increment();
+                    answer(request, shared);
+                    return;
+                }
+                inFlight.remove(key, existing);
+            } else {
+                request.setProperty(LEADER_PROPERTY, leader);
+            }
+        }
+
+        counters.misses.increment();
+        if (cached != null && cached.hasValidators()) {
+            request.setProperty(STALE_PROPERTY, cached);
+            if (cached.getETag() != null) {
+                request.getHeaders().putSingle(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+            }
+            if (cached.getLastModified() != null) {
+                request.getHeaders().putSingle(HttpHeaders.IF_MODIFIED_SINCE, cached.getLastModified());
+            }
+        }
+    }
+
+    @Override
+    public void filter(ClientRequestContext request, ClientResponseContext response) throws IOException {
+        String key = (String) request.getProperty(KEY_PROPERTY);
+        if (key == null || request.getProperty(ANSWERED_PROPERTY) != null) {
+            return;
+        }
+        InFlight leader = (InFlight) request.getProperty(LEADER_PROPERTY);
+        long now = System.currentTimeMillis();
+        try {
+            ResponseCache.CachedResponse stale = (ResponseCache.CachedResponse) request.getProperty(STALE_PROPERTY);
+            if (stale != null && response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode()) {
+                counters.revalidated.increment();
+                ResponseCache.CachedResponse revalidated = stale.revalidated(response.getHeaders(),
+                        expires(response, now, true));
+                cache.put(key, revalidated);
+                response.setStatus(revalidated.getStatus());
+                response.getHeaders().clear();
+                response.getHeaders().putAll(revalidated.getHeaders());
+                response.setEntityStream(new ByteArrayInputStream(revalidated.getEntity()));
+                complete(key, leader, revalidated);
+                return;
+            }
+
+            boolean cacheable = cache != null && isCacheable(response);
+            if (leader == null && !cacheable) {
+                return;
+            }
+            byte[] entity = bufferEntity(response);
+            if (entity == null) {
+                if (cacheable) {
+                    cache.remove(key);
+                }
+                return;
+            }
+            ResponseCache.CachedResponse buffered = new ResponseCache.CachedResponse(response.getStatus(),
+                    response.getHeaders(), entity, cacheable ? expires(response, now, false) : now);
+            if (cacheable) {
+                cache.put(key, buffered);
+            }
+            complete(key, leader, buffered);
+        } finally {
+            complete(key, leader, null);
+        }
+    }
+
+    @Override
+    public void afterRequest(ClientRequestContext request, ClientResponseContext response) {
+        // the response filter has completed the leader unless the response was aborted before it
+        completeLeader(request);
+    }
+
+    @Override
+    public void onException(ClientRequestContext request, ExceptionContext exception) {
+        // the request failed without a response, so the waiting requests are sent on their own
+        completeLeader(request);
+    }
+
+    private void completeLeader(ClientRequestContext request) {
+        InFlight leader = (InFlight) request.getProperty(LEADER_PROPERTY);
+        if (leader != null) {
+            complete((String) request.getProperty(KEY_PROPERTY), leader, null);
+        }
+    }
+
+    private void complete(String key, InFlight leader, ResponseCache.CachedResponse response) {
+        if (leader != null && leader.future.complete(response)) {
+            inFlight.remove(key, leader);
+        }
+    }
+
+    private void answer(ClientRequestContext request, ResponseCache.CachedResponse cached) {
+        request.setProperty(ANSWERED_PROPERTY, Boolean.TRUE);
+        request.abortWith(cached.toResponse());
+    }
+
+    private static boolean bypassesCache(ClientRequestContext request) {
+        String cacheControl = request.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        return cacheControl != null && (cacheControl.contains("no-cache") || cacheControl.contains("no-store"));
+    }
+
+    /**
+     * Returns the key of the request: its URI and all of its headers, so that
+     * whatever header a response varies on is part of the key.
+     */
+    private static String createKey(ClientRequestContext request) {
+        StringBuilder key = new StringBuilder(request.getUri().toString());
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(request.getStringHeaders());
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            key.append('\n').append(header.getKey().toLowerCase()).append(':');
+            for (String value : header.getValue()) {
+                key.append(value).append('\n');
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean isCacheable(ClientResponseContext response) {
+        if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+            return false;
+        }
+        // all request headers are part of the key, so only "Vary: *" cannot be matched
+        String vary = response.getHeaderString(HttpHeaders.VARY);
+        if (vary != null && vary.contains("*")) {
+            return false;
+        }
+        CacheControl cacheControl = parseCacheControl(response);
+        if (cacheControl != null && (cacheControl.isNoStore() || cacheControl.isPrivate())) {
+            return false;
+        }
+        return cacheControl != null && cacheControl.getMaxAge() >= 0
+                || response.getHeaderString(HttpHeaders.EXPIRES) != null
+                || response.getEntityTag() != null
+                || response.getHeaderString(HttpHeaders.LAST_MODIFIED) != null;
+    }
+
+    /**
+     * Returns the time until which the response is fresh, or {@code now} when it must be revalidated.
+     */
+    private static long expires(ClientResponseContext response, long now, boolean notModified) {
+        CacheControl cacheControl = parseCacheControl(response);
+        if (cacheControl != null) {
+            if (cacheControl.isNoCache()) {
+                return now;
+            }
+            if (cacheControl.getMaxAge() >= 0) {
+                return now + TimeUnit.SECONDS.toMillis(cacheControl.getMaxAge());
+            }
+        }
+        String expires = response.getHeaderString(HttpHeaders.EXPIRES);
+        if (expires != null) {
+            try {
+                long expiresAt = ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                long date = response.getDate() != null ? response.getDate().getTime() : now;
+                return now + Math.max(0, expiresAt - date);
+            } catch (DateTimeParseException e) {
+                return now;
+            }
+        }
+        return now;
+    }
+
+    private static CacheControl parseCacheControl(ClientResponseContext response) {
+        String value = response.getHeaderString(HttpHeaders.CACHE_CONTROL);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CacheControl.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the entity into memory. Returns {@code null}, leaving the entity
+     * stream intact, when it is larger than the maximum entry size.
+     */
+    private byte[] bufferEntity(ClientResponseContext response) throws IOException {
+        if (!response.hasEntity()) {
+            return new byte[0];
+        }
+        InputStream in = response.getEntityStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            if (out.size() > maxEntrySize) {
+                response.setEntityStream(new SequenceInputStream(new ByteArrayInputStream(out.toByteArray()), in));
+                return null;
+            }
+        }
+        in.close();
+        byte[] entity = out.toByteArray();
+        response.setEntityStream(new ByteArrayInputStream(entity));
+        return entity;
+    }
+
+    private static final class InFlight {
+        private final long started;
+        private final CompletableFuture<ResponseCache.CachedResponse> future = new CompletableFuture<>();
+
+        InFlight(long started) {
+            this.started = started;
+        }
+
+        ResponseCache.CachedResponse await(long timeout) {
+            try {
+                return future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | TimeoutException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Hit, miss and coalesced counts of the clients of one rest client interface.
+     */
+    private static final class Counters {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        private final LongAdder revalidated = new LongAdder();
+
+        Counters(String name) {
+            Map<String, String> tags = Map.of("interface", name);
+            LauncherStatistics.register("restClient.cache.hits",
+                    "Number of GET requests answered from the response cache", null, tags, hits::sum);
+            LauncherStatistics.register("restClient.cache.misses",
+                    "Number of GET requests sent upstream", null, tags, misses::sum);
+            LauncherStatistics.register("restClient.cache.coalesced",
+                    "Number of GET requests answered by a concurrent identical request", null, tags, coalesced::sum);
+            LauncherStatistics.register("restClient.cache.revalidated",
+                    "Number of cached responses revalidated by a 304 response", null, tags, revalidated::sum);
+        }
+    }
+}
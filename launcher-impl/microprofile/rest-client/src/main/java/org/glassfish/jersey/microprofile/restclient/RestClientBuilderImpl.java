@@ -1,7 +1,7 @@
 /*
  * Copyright (c) 2019, 2022 Oracle and/or its affiliates. All rights reserved.
  * Copyright (c) 2019, 2021 Payara Foundation and/or its affiliates. All rights reserved.
- * Copyright (c) 2021, 2022 Fujitsu Limited.
+ * Copyright (c) 2021, 2023 Fujitsu Limited.
  *
  * This program and the accompanying materials are made available under the
  * terms of the Eclipse Public License v. 2.0, which is available at
@@ -19,6 +19,7 @@
 package org.glassfish.jersey.microprofile.restclient;
 
 import java.io.Closeable;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Proxy;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -26,13 +27,17 @@ import java.net.URL;
 import java.security.AccessController;
 import java.security.KeyStore;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +67,8 @@ import org.eclipse.microprofile.rest.client.ext.AsyncInvocationInterceptorFactor
 import org.eclipse.microprofile.rest.client.ext.QueryParamStyle;
 import org.eclipse.microprofile.rest.client.ext.ResponseExceptionMapper;
 import org.eclipse.microprofile.rest.client.spi.RestClientListener;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.Initializable;
@@ -85,17 +92,41 @@ class RestClientBuilderImpl implements RestClientBuilder {
     private static final String CONFIG_DISABLE_DEFAULT_MAPPER = "microprofile.rest.client.disable.default.mapper";
     private static final String CONFIG_PROVIDERS = "/mp-rest/providers";
     private static final String CONFIG_PROVIDER_PRIORITY = "/priority";
+    private static final String CONFIG_CONNECTOR = "/mp-rest/connector";
+    private static final String CONFIG_COALESCING = "/mp-rest/coalescing";
+    private static final String CONFIG_RESPONSE_CACHE = "/mp-rest/responseCache";
+    private static final String CONFIG_RESPONSE_CACHE_MAX_SIZE = "/mp-rest/responseCache/maxSize";
+    private static final String CONFIG_RESPONSE_CACHE_MAX_ENTRY_SIZE = "/mp-rest/responseCache/maxEntrySize";
+    private static final String CONFIG_COALESCING_TIMEOUT = "/mp-rest/coalescing/timeout";
     private static final String PROVIDER_SEPARATOR = ",";
+    private static final String CONFIG_SHARED_RUNTIME = "com.fujitsu.launcher.restclient.sharedRuntime";
+    private static final String CONFIG_POOL_MAX_TOTAL = "com.fujitsu.launcher.restclient.pool.maxTotal";
+    private static final String CONFIG_POOL_MAX_PER_ROUTE = "com.fujitsu.launcher.restclient.pool.maxPerRoute";
+    private static final String CONFIG_POOL_IDLE_TIMEOUT = "com.fujitsu.launcher.restclient.pool.idleTimeout";
+    private static final int DEFAULT_POOL_MAX_TOTAL = 200;
+    private static final int DEFAULT_POOL_MAX_PER_ROUTE = 50;
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT = 60000;
+    private static final long DEFAULT_RESPONSE_CACHE_MAX_SIZE = 10 * 1024 * 1024;
+    private static final long DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE = 256 * 1024;
+    private static final long DEFAULT_COALESCING_TIMEOUT = 30000;
+    private static final String POOLED_CONNECTOR_NAME = "pooled";
+    private static final ConnectorProvider POOLED_CONNECTOR = new ApacheConnectorProvider();
+
+    // RestClientListener lookup is expensive, cache the instances per application class loader
+    private static final Map<ClassLoader, SoftReference<List<RestClientListener>>> REST_CLIENT_LISTENERS =
+            Collections.synchronizedMap(new WeakHashMap<>());
 
     private final Set<ResponseExceptionMapper<?>> responseExceptionMappers;
     private final Set<ParamConverterProvider> paramConverterProviders;
     private final Set<InboundHeadersProvider> inboundHeaderProviders;
+    private final Set<Object> instantiatedProviders;
     private final List<AsyncInvocationInterceptorFactoryPriorityWrapper> asyncInterceptorFactories;
     private final Config config;
     private final ConfigWrapper configWrapper;
     private URI uri;
     private ClientBuilder clientBuilder;
     private Supplier<ExecutorService> executorService;
+    private ExecutorService explicitExecutorService;
     private HostnameVerifier sslHostnameVerifier;
     private SSLContext sslContext;
     private KeyStore sslTrustStore;
@@ -109,6 +140,7 @@ class RestClientBuilderImpl implements RestClientBuilder {
         responseExceptionMappers = new HashSet<>();
         paramConverterProviders = new HashSet<>();
         inboundHeaderProviders = new HashSet<>();
+        instantiatedProviders = Collections.newSetFromMap(new IdentityHashMap<>());
         asyncInterceptorFactories = new ArrayList<>();
         config = ConfigProvider.getConfig();
         configWrapper = new ConfigWrapper(clientBuilder.getConfiguration());
@@ -143,13 +175,14 @@ class RestClientBuilderImpl implements RestClientBuilder {
             throw new IllegalArgumentException("ExecutorService cannot be null.");
         }
         executorService = () -> executor;
+        explicitExecutorService = executor;
         return this;
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T> T build(Class<T> interfaceClass) throws IllegalStateException, RestClientDefinitionException {
-        for (RestClientListener restClientListener : ServiceFinder.find(RestClientListener.class)) {
+        for (RestClientListener restClientListener : findRestClientListeners()) {
             restClientListener.onNewClient(interfaceClass, this);
         }
 
@@ -159,18 +192,58 @@ class RestClientBuilderImpl implements RestClientBuilder {
 
         //Provider registration part
         processProviders(interfaceClass);
-        InjectionManagerExposer injectionManagerExposer = new InjectionManagerExposer();
-        register(injectionManagerExposer);
         register(SseMessageBodyReader.class);
+        configureResponseCaching(interfaceClass);
 
         //We need to check first if default exception mapper was not disabled by property on builder.
         registerExceptionMapper();
         //sort all AsyncInvocationInterceptorFactory by priority
         asyncInterceptorFactories.sort(Comparator.comparingInt(AsyncInvocationInterceptorFactoryPriorityWrapper::getPriority));
-        if (connector != null) {
+
+        ConnectorProvider connectorProvider = resolveConnector(interfaceClass);
+        ClientRuntimeKey runtimeKey = config.getOptionalValue(CONFIG_SHARED_RUNTIME, boolean.class).orElse(false)
+                ? createRuntimeKey(connectorProvider) : null;
+        Client client;
+        InjectionManager injectionManager;
+        if (runtimeKey != null) {
+            ClientRuntimeCache.ClientRuntime runtime = ClientRuntimeCache.getInstance()
+                    .acquire(runtimeKey, key -> createSharedRuntime(key, connectorProvider));
+            client = runtime.newClient();
+            injectionManager = runtime.getInjectionManager();
+        } else {
+            InjectionManagerExposer injectionManagerExposer = new InjectionManagerExposer();
+            client = createClient(injectionManagerExposer, connectorProvider);
+            preInitialize(client);
+            injectionManager = injectionManagerExposer.injectionManager;
+        }
+
+        WebTarget webTarget = client.target(this.uri);
+        webTarget.property(ClientProperties.FOLLOW_REDIRECTS, followRedirects);
+
+        RestClientContext context = RestClientContext.builder(interfaceClass)
+                .responseExceptionMappers(responseExceptionMappers)
+                .paramConverterProviders(paramConverterProviders)
+                .inboundHeadersProviders(inboundHeaderProviders)
+                .asyncInterceptorFactories(new ArrayList<>(asyncInterceptorFactories))
+                .injectionManager(injectionManager)
+                .beanManager(CdiUtil.getBeanManager())
+                .build();
+
+        RestClientModel restClientModel = RestClientModel.from(context);
+
+        return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(),
+                new Class[] {interfaceClass, AutoCloseable.class, Closeable.class},
+                new ProxyInvocationHandler(client, webTarget, restClientModel)
+        );
+    }
+
+    private Client createClient(InjectionManagerExposer injectionManagerExposer, ConnectorProvider connectorProvider) {
+        register(injectionManagerExposer);
+
+        if (connectorProvider != null) {
             ClientConfig config = new ClientConfig();
             config.loadFrom(clientBuilder.getConfiguration());
-            config.connectorProvider(connector);
+            config.connectorProvider(connectorProvider);
             clientBuilder = clientBuilder.withConfig(config); // apply config...
         }
 
@@ -193,29 +266,146 @@ class RestClientBuilderImpl implements RestClientBuilder {
             clientBuilder.keyStore(sslKeyStore, sslKeyStorePassword);
         }
 
-        Client client = clientBuilder.build();
+        return clientBuilder.build();
+    }
 
+    /**
+     * Returns the connector registered explicitly, or the one selected for the interface with
+     * {@code <interface>/mp-rest/connector}, or {@code null} for the default connector.
+     */
+    private ConnectorProvider resolveConnector(Class<?> interfaceClass) {
+        if (connector != null) {
+            return connector;
+        }
+        Optional<String> name = config.getOptionalValue(interfaceClass.getName() + CONFIG_CONNECTOR, String.class);
+        if (!name.isPresent() || name.get().isEmpty() || "default".equalsIgnoreCase(name.get())) {
+            return null;
+        }
+        if (HttpClientConnectorProvider.NAME.equalsIgnoreCase(name.get())) {
+            return HttpClientConnectorProvider.INSTANCE;
+        }
+        if (POOLED_CONNECTOR_NAME.equalsIgnoreCase(name.get())) {
+            return POOLED_CONNECTOR;
+        }
+        throw new IllegalStateException("Unknown connector for " + interfaceClass.getName() + ": " + name.get());
+    }
+
+    /**
+     * Enables GET request coalescing and response caching when configured for the interface with
+     * {@code <interface>/mp-rest/coalescing} or {@code <interface>/mp-rest/responseCache}. The settings are
+     * passed as client properties so that they become part of the shared runtime key.
+     */
+    private void configureResponseCaching(Class<?> interfaceClass) {
+        String prefix = interfaceClass.getName();
+        boolean coalescing = config.getOptionalValue(prefix + CONFIG_COALESCING, boolean.class).orElse(false);
+        boolean cache = config.getOptionalValue(prefix + CONFIG_RESPONSE_CACHE, boolean.class).orElse(false);
+        if (!coalescing && !cache) {
+            property(ResponseCachingFeature.NAME, null);
+            return;
+        }
+        property(ResponseCachingFeature.NAME, prefix);
+        property(ResponseCachingFeature.COALESCING, coalescing);
+        property(ResponseCachingFeature.CACHE, cache);
+        property(ResponseCachingFeature.MAX_SIZE, config.getOptionalValue(prefix + CONFIG_RESPONSE_CACHE_MAX_SIZE,
+                long.class).orElse(DEFAULT_RESPONSE_CACHE_MAX_SIZE));
+        property(ResponseCachingFeature.MAX_ENTRY_SIZE, config.getOptionalValue(
+                prefix + CONFIG_RESPONSE_CACHE_MAX_ENTRY_SIZE, long.class).orElse(DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE));
+        property(ResponseCachingFeature.COALESCING_TIMEOUT, config.getOptionalValue(
+                prefix + CONFIG_COALESCING_TIMEOUT, long.class).orElse(DEFAULT_COALESCING_TIMEOUT));
+        register(ResponseCachingFeature.class);
+    }
+
+    private static void preInitialize(Client client) {
         if (client instanceof Initializable) {
             ((Initializable) client).preInitialize();
         }
-        WebTarget webTarget = client.target(this.uri);
-        webTarget.property(ClientProperties.FOLLOW_REDIRECTS, followRedirects);
+    }
 
-        RestClientContext context = RestClientContext.builder(interfaceClass)
-                .responseExceptionMappers(responseExceptionMappers)
-                .paramConverterProviders(paramConverterProviders)
-                .inboundHeadersProviders(inboundHeaderProviders)
-                .asyncInterceptorFactories(new ArrayList<>(asyncInterceptorFactories))
-                .injectionManager(injectionManagerExposer.injectionManager)
-                .beanManager(CdiUtil.getBeanManager())
-                .build();
+    /**
+     * Creates a client runtime to be shared by all builders with the same effective configuration.
+     * The {@code pooled} connector gets a keep-alive connection pool of the runtime.
+     */
+    private ClientRuntimeCache.ClientRuntime createSharedRuntime(ClientRuntimeKey key,
+            ConnectorProvider connectorProvider) {
+        InjectionManagerExposer injectionManagerExposer = new InjectionManagerExposer();
+        PooledConnectionManager connectionManager = null;
+        Client client;
+        if (connectorProvider == POOLED_CONNECTOR) {
+            client = createClient(injectionManagerExposer, connectorProvider);
+            connectionManager = new PooledConnectionManager(client.getSslContext(), client.getHostnameVerifier());
+            connectionManager.setMaxTotal(config.getOptionalValue(CONFIG_POOL_MAX_TOTAL, int.class)
+                    .orElse(DEFAULT_POOL_MAX_TOTAL));
+            connectionManager.setDefaultMaxPerRoute(config.getOptionalValue(CONFIG_POOL_MAX_PER_ROUTE, int.class)
+                    .orElse(DEFAULT_POOL_MAX_PER_ROUTE));
+            client.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager);
+            client.property(ApacheClientProperties.CONNECTION_MANAGER_SHARED, true);
+        } else {
+            client = createClient(injectionManagerExposer, connectorProvider);
+        }
+        preInitialize(client);
+
+        long idleTimeout = config.getOptionalValue(CONFIG_POOL_IDLE_TIMEOUT, long.class).orElse(DEFAULT_POOL_IDLE_TIMEOUT);
+        return new ClientRuntimeCache.ClientRuntime(key, client, injectionManagerExposer.injectionManager,
+                connectionManager, idleTimeout);
+    }
+
+    /**
+     * Computes the key of the effective client configuration: target authority, properties (including timeouts
+     * and proxy), provider classes and connector. Returns {@code null} when the configuration holds instances that
+     * could only be compared by identity, such as provider instances registered by the application, an executor or
+     * SSL settings, so that such builders get a runtime of their own instead of a cached one per instance.
+     */
+    private ClientRuntimeKey createRuntimeKey(ConnectorProvider connectorProvider) {
+        if (explicitExecutorService != null || sslContext != null || sslHostnameVerifier != null
+                || sslTrustStore != null || sslKeyStore != null) {
+            return null;
+        }
+        if (connectorProvider != null && connectorProvider != POOLED_CONNECTOR
+                && connectorProvider != HttpClientConnectorProvider.INSTANCE) {
+            return null;
+        }
+        Configuration configuration = clientBuilder.getConfiguration();
+        Map<String, Object> properties = new HashMap<>(configuration.getProperties());
+        for (Object value : properties.values()) {
+            if (value != null && !(value instanceof String || value instanceof Number || value instanceof Boolean
+                    || value instanceof Enum)) {
+                return null;
+            }
+        }
+        Set<Object> providers = new HashSet<>();
+        for (Class<?> providerClass : configuration.getClasses()) {
+            providers.add(Arrays.asList(providerClass, configuration.getContracts(providerClass)));
+        }
+        for (Object provider : configuration.getInstances()) {
+            if (provider instanceof InjectionManagerExposer) {
+                continue;
+            }
+            if (!instantiatedProviders.contains(provider)) {
+                return null;
+            }
+            // created by this builder from the provider class
+            providers.add(Arrays.asList(provider.getClass(), configuration.getContracts(provider.getClass())));
+        }
 
-        RestClientModel restClientModel = RestClientModel.from(context);
+        List<Object> components = new ArrayList<>();
+        components.add(properties);
+        components.add(providers);
+        components.add(connectorProvider);
+        return new ClientRuntimeKey(uri.getScheme() + "://" + uri.getRawAuthority(), components);
+    }
 
-        return (T) Proxy.newProxyInstance(interfaceClass.getClassLoader(),
-                new Class[] {interfaceClass, AutoCloseable.class, Closeable.class},
-                new ProxyInvocationHandler(client, webTarget, restClientModel)
-        );
+    private static List<RestClientListener> findRestClientListeners() {
+        ClassLoader classLoader = AccessController.doPrivileged(ReflectionHelper.getContextClassLoaderPA());
+        if (classLoader == null) {
+            return Arrays.asList(ServiceFinder.find(RestClientListener.class).toArray());
+        }
+        SoftReference<List<RestClientListener>> cached = REST_CLIENT_LISTENERS.get(classLoader);
+        List<RestClientListener> listeners = cached == null ? null : cached.get();
+        if (listeners == null) {
+            listeners = Arrays.asList(ServiceFinder.find(RestClientListener.class).toArray());
+            REST_CLIENT_LISTENERS.put(classLoader, new SoftReference<>(listeners));
+        }
+        return listeners;
     }
 
     @Override
@@ -246,12 +436,12 @@ class RestClientBuilderImpl implements RestClientBuilder {
     private void registerExceptionMapper() {
         Object disableDefaultMapperJersey = clientBuilder.getConfiguration().getProperty(CONFIG_DISABLE_DEFAULT_MAPPER);
         if (disableDefaultMapperJersey != null && disableDefaultMapperJersey.equals(Boolean.FALSE)) {
-            register(new DefaultResponseExceptionMapper());
+            register(instantiated(new DefaultResponseExceptionMapper()));
         } else if (disableDefaultMapperJersey == null) {
             //If property was not set on Jersey ClientBuilder, we need to check config.
             Optional<Boolean> disableDefaultMapperConfig = config.getOptionalValue(CONFIG_DISABLE_DEFAULT_MAPPER, boolean.class);
             if (!disableDefaultMapperConfig.isPresent() || !disableDefaultMapperConfig.get()) {
-                register(new DefaultResponseExceptionMapper());
+                register(instantiated(new DefaultResponseExceptionMapper()));
             }
         }
     }
@@ -318,7 +508,7 @@ class RestClientBuilderImpl implements RestClientBuilder {
     @Override
     public RestClientBuilder register(Class<?> componentClass) {
         if (isSupportedCustomProvider(componentClass)) {
-            register(ReflectionUtil.createInstance(componentClass));
+            register(instantiated(ReflectionUtil.createInstance(componentClass)));
         } else {
             clientBuilder.register(componentClass);
         }
@@ -328,7 +518,7 @@ class RestClientBuilderImpl implements RestClientBuilder {
     @Override
     public RestClientBuilder register(Class<?> componentClass, int priority) {
         if (isSupportedCustomProvider(componentClass)) {
-            register(ReflectionUtil.createInstance(componentClass), priority);
+            register(instantiated(ReflectionUtil.createInstance(componentClass)), priority);
         } else {
             clientBuilder.register(componentClass, priority);
         }
@@ -338,7 +528,7 @@ class RestClientBuilderImpl implements RestClientBuilder {
     @Override
     public RestClientBuilder register(Class<?> componentClass, Class<?>... contracts) {
         if (isSupportedCustomProvider(componentClass)) {
-            register(ReflectionUtil.createInstance(componentClass), contracts);
+            register(instantiated(ReflectionUtil.createInstance(componentClass)), contracts);
         } else {
             clientBuilder.register(componentClass, contracts);
         }
@@ -348,7 +538,7 @@ class RestClientBuilderImpl implements RestClientBuilder {
     @Override
     public RestClientBuilder register(Class<?> componentClass, Map<Class<?>, Integer> contracts) {
         if (isSupportedCustomProvider(componentClass)) {
-            register(ReflectionUtil.createInstance(componentClass), contracts);
+            register(instantiated(ReflectionUtil.createInstance(componentClass)), contracts);
         } else {
             clientBuilder.register(componentClass, contracts);
         }
@@ -399,6 +589,11 @@ class RestClientBuilderImpl implements RestClientBuilder {
         return this;
     }
 
+    private Object instantiated(Object provider) {
+        instantiatedProviders.add(provider);
+        return provider;
+    }
+
     private boolean isSupportedCustomProvider(Class<?> providerClass) {
         return ResponseExceptionMapper.class.isAssignableFrom(providerClass)
                 || ParamConverterProvider.class.isAssignableFrom(providerClass)
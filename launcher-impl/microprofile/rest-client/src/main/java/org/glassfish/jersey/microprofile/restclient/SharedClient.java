@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the
+ * Eclipse Public License v. 2.0 are satisfied: GNU General Public License,
+ * version 2 with the GNU Classpath Exception, which is available at
+ * https://www.gnu.org/software/classpath/license.html.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0 WITH Classpath-exception-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import java.lang.ref.Cleaner;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLContext;
+
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.Configuration;
+import jakarta.ws.rs.core.Link;
+import jakarta.ws.rs.core.UriBuilder;
+
+/**
+ * Per-proxy view of a shared client. Closing it releases the proxy's
+ * reference to the shared runtime; the underlying client stays open for
+ * other proxies. The shared configuration cannot be modified.
+ */
+class SharedClient implements Client {
+
+    private final Client delegate;
+    private final Cleaner.Cleanable release;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * @param release releases the reference; it runs once, on {@link #close()} or when this view
+     *                becomes unreachable, and must not refer to this view
+     */
+    SharedClient(Client delegate, Cleaner cleaner, Runnable release) {
+        this.delegate = delegate;
+        this.release = cleaner.register(this, release);
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            release.clean();
+        }
+    }
+
+    @Override
+    public WebTarget target(String uri) {
+        checkNotClosed();
+        return delegate.target(uri);
+    }
+
+    @Override
+    public WebTarget target(URI uri) {
+        checkNotClosed();
+        return delegate.target(uri);
+    }
+
+    @Override
+    public WebTarget target(UriBuilder uriBuilder) {
+        checkNotClosed();
+        return delegate.target(uriBuilder);
+    }
+
+    @Override
+    public WebTarget target(Link link) {
+        checkNotClosed();
+        return delegate.target(link);
+    }
+
+    @Override
+    public Invocation.Builder invocation(Link link) {
+        checkNotClosed();
+        return delegate.invocation(link);
+    }
+
+    @Override
+    public SSLContext getSslContext() {
+        return delegate.getSslContext();
+    }
+
+    @Override
+    public HostnameVerifier getHostnameVerifier() {
+        return delegate.getHostnameVerifier();
+    }
+
+    @Override
+    public Configuration getConfiguration() {
+        return delegate.getConfiguration();
+    }
+
+    @Override
+    public Client property(String name, Object value) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Class<?> componentClass) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Class<?> componentClass, int priority) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Class<?> componentClass, Class<?>... contracts) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Class<?> componentClass, Map<Class<?>, Integer> contracts) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Object component) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Object component, int priority) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Object component, Class<?>... contracts) {
+        throw unmodifiable();
+    }
+
+    @Override
+    public Client register(Object component, Map<Class<?>, Integer> contracts) {
+        throw unmodifiable();
+    }
+
+    private void checkNotClosed() {
+        if (closed.get()) {
+            throw new IllegalStateException("Client instance has been closed.");
+        }
+    }
+
+    private static IllegalStateException unmodifiable() {
+        return new IllegalStateException("Configuration of a shared rest client runtime cannot be modified.");
+    }
+}
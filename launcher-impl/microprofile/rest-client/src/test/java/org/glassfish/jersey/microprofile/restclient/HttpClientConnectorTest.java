@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http2.Http2AddOn;
+import org.glassfish.jersey.client.ClientConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs {@link HttpClientConnector} against a local Grizzly server with the HTTP/2 add-on.
+ */
+public class HttpClientConnectorTest {
+
+    static HttpServer server;
+    static URI baseUri;
+    static Client client;
+    static volatile Object lastVersion;
+
+    @BeforeAll
+    public static void startServer() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = HttpServer.createSimpleServer(null, "localhost", port);
+        server.getListener("grizzly").registerAddOn(new Http2AddOn());
+        server.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, org.glassfish.grizzly.http.server.Response response) throws Exception {
+                String body;
+                try (BufferedReader reader = new BufferedReader(request.getReader())) {
+                    body = reader.lines().collect(Collectors.joining());
+                }
+                response.setContentType("text/plain");
+                response.setHeader("X-Echo-Header", String.valueOf(request.getHeader("X-Test")));
+                response.getWriter().write(request.getMethod().getMethodString() + " " + body);
+            }
+        }, "/echo");
+        server.start();
+
+        baseUri = URI.create("http://localhost:" + port + "/echo");
+        client = ClientBuilder.newClient(new ClientConfig().connectorProvider(HttpClientConnectorProvider.INSTANCE)
+                .register((ClientResponseFilter) (requestContext, responseContext) ->
+                        lastVersion = requestContext.getProperty(HttpClientConnector.HTTP_VERSION),
+                        ClientResponseFilter.class));
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testSynchronousGet() {
+        Response response = client.target(baseUri).request().header("X-Test", "abc").get();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("abc", response.getHeaderString("X-Echo-Header"));
+        assertEquals("GET ", response.readEntity(String.class));
+    }
+
+    @Test
+    public void testHttp2IsNegotiated() {
+        // the first request to the server may be the one upgrading the connection to h2c
+        client.target(baseUri).request().get().close();
+        Response response = client.target(baseUri).request().get();
+
+        assertEquals(200, response.getStatus());
+        assertEquals(HttpClient.Version.HTTP_2, lastVersion);
+        response.close();
+    }
+
+    @Test
+    public void testProxyAddress() {
+        assertEquals(new InetSocketAddress("localhost", 3128),
+                HttpClientConnector.toProxyAddress(URI.create("http://localhost:3128")));
+        assertEquals(new InetSocketAddress("localhost", 80),
+                HttpClientConnector.toProxyAddress(URI.create("http://localhost")));
+        assertEquals(new InetSocketAddress("localhost", 443),
+                HttpClientConnector.toProxyAddress(URI.create("https://localhost")));
+        assertThrows(ProcessingException.class, () -> HttpClientConnector.toProxyAddress(URI.create("proxy")));
+    }
+
+    @Test
+    public void testSynchronousPost() {
+        Response response = client.target(baseUri).request().post(Entity.text("hello"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("POST hello", response.readEntity(String.class));
+    }
+
+    @Test
+    public void testStreamedPost() {
+        // larger than the Jersey content length buffer
+        String entity = "x".repeat(100_000);
+        Response response = client.target(baseUri).request().post(Entity.text(entity));
+
+        assertEquals(200, response.getStatus());
+        assertEquals("POST " + entity, response.readEntity(String.class));
+    }
+
+    @Test
+    public void testRestrictedHeadersAreSkipped() {
+        Response response = client.target(baseUri).request()
+                .header("Date", "Tue, 15 Nov 1994 08:12:31 GMT")
+                .header("Via", "1.1 proxy")
+                .header("X-Test", "abc")
+                .get();
+
+        assertEquals(200, response.getStatus());
+        assertEquals("abc", response.getHeaderString("X-Echo-Header"));
+        response.close();
+    }
+
+    @Test
+    public void testClosingOneClientKeepsTheSharedClientOfAnother() {
+        Client other = ClientBuilder.newClient(new ClientConfig().connectorProvider(HttpClientConnectorProvider.INSTANCE));
+        assertEquals("GET ", other.target(baseUri).request().get(String.class));
+        other.close();
+
+        assertEquals("GET ", client.target(baseUri).request().get(String.class));
+    }
+
+    @Test
+    public void testAsynchronousInvocations() throws Exception {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[16];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = client.target(baseUri).request().rx()
+                    .post(Entity.text(Integer.toString(i)), String.class)
+                    .toCompletableFuture();
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+
+        for (int i = 0; i < futures.length; i++) {
+            assertEquals("POST " + i, futures[i].get());
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2023 Fujitsu Limited and/or its affiliates. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0, which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+
+package org.glassfish.jersey.microprofile.restclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.ClientBuilder;
+import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.Response;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs {@link ResponseCachingFilter} against a connector answering from memory.
+ */
+public class ResponseCachingFilterTest {
+
+    static final String URI = "http://upstream/resource";
+
+    Client client;
+
+    @AfterEach
+    public void closeClient() {
+        if (client != null) {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testFailedLeaderReleasesFollowers() throws Exception {
+        CountDownLatch leaderSent = new CountDownLatch(1);
+        CountDownLatch failLeader = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        WebTarget target = createTarget(new TestConnector(request -> {
+            if (calls.incrementAndGet() == 1) {
+                leaderSent.countDown();
+                await(failLeader);
+                throw new ProcessingException("Connection refused");
+            }
+            return "ok";
+        }, null), false, true);
+
+        Future<?> leader = CompletableFuture.runAsync(() ->
+                assertThrows(ProcessingException.class, () -> target.request().get(String.class)));
+        assertTrue(leaderSent.await(10, TimeUnit.SECONDS));
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> target.request().get(String.class));
+        // let the follower join the in-flight request before the leader fails
+        Thread.sleep(200);
+        failLeader.countDown();
+
+        leader.get(10, TimeUnit.SECONDS);
+        // well within the 30 second coalescing timeout
+        assertEquals("ok", follower.get(10, TimeUnit.SECONDS));
+        assertEquals("ok", CompletableFuture.supplyAsync(() -> target.request().get(String.class))
+                .get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResponsesAreNotSharedBetweenCredentials() {
+        AtomicInteger calls = new AtomicInteger();
+        WebTarget target = createTarget(new TestConnector(request -> {
+            calls.incrementAndGet();
+            return request.getHeaderString(HttpHeaders.AUTHORIZATION);
+        }, "max-age=60"), true, true);
+
+        assertEquals("Bearer a", target.request().header(HttpHeaders.AUTHORIZATION, "Bearer a").get(String.class));
+        assertEquals("Bearer b", target.request().header(HttpHeaders.AUTHORIZATION, "Bearer b").get(String.class));
+        assertEquals("Bearer a", target.request().header(HttpHeaders.AUTHORIZATION, "Bearer a").get(String.class));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testFreshResponseIsCached() {
+        AtomicInteger calls = new AtomicInteger();
+        WebTarget target = createTarget(new TestConnector(request ->
+                Integer.toString(calls.incrementAndGet()), "max-age=60"), true, false);
+
+        assertEquals("1", target.request().get(String.class));
+        assertEquals("1", target.request().get(String.class));
+        assertEquals("2", target.request().cookie("session", "x").get(String.class));
+    }
+
+    @Test
+    public void testPrivateResponseIsNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+        WebTarget target = createTarget(new TestConnector(request ->
+                Integer.toString(calls.incrementAndGet()), "private, max-age=60"), true, false);
+
+        assertEquals("1", target.request().get(String.class));
+        assertEquals("2", target.request().get(String.class));
+    }
+
+    @Test
+    public void testStaleResponseIsRevalidatedWithETag() {
+        AtomicInteger calls = new AtomicInteger();
+        TestConnector connector = new TestConnector(request -> "v" + calls.incrementAndGet(), "no-cache", "\"1\"");
+        WebTarget target = createTarget(connector, true, false);
+
+        assertEquals("v1", target.request().get(String.class));
+        Response revalidated = target.request().get();
+
+        assertEquals(200, revalidated.getStatus());
+        assertEquals("\"1\"", revalidated.getHeaderString(HttpHeaders.ETAG));
+        assertEquals("v1", revalidated.readEntity(String.class));
+        assertEquals(1, calls.get());
+        assertEquals(1, connector.notModified.get());
+    }
+
+    @Test
+    public void testCacheIsSharedByTheClientsOfAnInterface() {
+        AtomicInteger calls = new AtomicInteger();
+        TestConnector connector = new TestConnector(request ->
+                Integer.toString(calls.incrementAndGet()), "max-age=60");
+        Client first = createClient(connector, getClass().getName() + ".shared");
+        Client second = createClient(connector, getClass().getName() + ".shared");
+        try {
+            assertEquals("1", first.target(URI).request().get(String.class));
+            assertEquals("1", second.target(URI).request().get(String.class));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    private static Client createClient(Connector connector, String name) {
+        return ClientBuilder.newClient(new ClientConfig()
+                .connectorProvider((client, configuration) -> connector)
+                .property(ResponseCachingFeature.NAME, name)
+                .property(ResponseCachingFeature.COALESCING, false)
+                .property(ResponseCachingFeature.CACHE, true)
+                .property(ResponseCachingFeature.MAX_SIZE, 1024L * 1024)
+                .property(ResponseCachingFeature.MAX_ENTRY_SIZE, 64L * 1024)
+                .property(ResponseCachingFeature.COALESCING_TIMEOUT, 30000L)
+                .register(ResponseCachingFeature.class));
+    }
+
+    private WebTarget createTarget(Connector connector, boolean cache, boolean coalescing) {
+        ResponseCachingFilter filter = new ResponseCachingFilter(getClass().getName(),
+                cache ? new ResponseCache(1024 * 1024) : null, coalescing, 64 * 1024, 30000);
+        client = ClientBuilder.newClient(new ClientConfig()
+                .connectorProvider((client, configuration) -> connector)
+                .register(filter, Integer.MAX_VALUE));
+        return client.target(URI);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    interface Upstream {
+        String respond(ClientRequest request);
+    }
+
+    static class TestConnector implements Connector {
+        private final Upstream upstream;
+        private final String cacheControl;
+        private final String etag;
+        final AtomicInteger notModified = new AtomicInteger();
+
+        TestConnector(Upstream upstream, String cacheControl) {
+            this(upstream, cacheControl, null);
+        }
+
+        TestConnector(Upstream upstream, String cacheControl, String etag) {
+            this.upstream = upstream;
+            this.cacheControl = cacheControl;
+            this.etag = etag;
+        }
+
+        @Override
+        public ClientResponse apply(ClientRequest request) {
+            if (etag != null && etag.equals(request.getHeaderString(HttpHeaders.IF_NONE_MATCH))) {
+                notModified.incrementAndGet();
+                ClientResponse response = new ClientResponse(Response.Status.NOT_MODIFIED, request);
+                response.getHeaders().putSingle(HttpHeaders.ETAG, etag);
+                return response;
+            }
+            byte[] entity = upstream.respond(request).getBytes(StandardCharsets.UTF_8);
+            ClientResponse response = new ClientResponse(Response.Status.OK, request);
+            response.getHeaders().putSingle(HttpHeaders.CONTENT_TYPE, "text/plain");
+            if (cacheControl != null) {
+                response.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, cacheControl);
+            }
+            if (etag != null) {
+                response.getHeaders().putSingle(HttpHeaders.ETAG, etag);
+            }
+            response.setEntityStream(new ByteArrayInputStream(entity));
+            return response;
+        }
+
+        @Override
+        public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+            try {
+                callback.response(apply(request));
+            } catch (Throwable t) {
+                callback.failure(t);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}